@@ -17,32 +17,96 @@ package com.ctc.wstx.tools;
 
 import java.io.*;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 import javax.xml.stream.*;
 
 import org.codehaus.stax2.XMLStreamReader2;
+import org.codehaus.stax2.validation.ValidationProblemHandler;
+import org.codehaus.stax2.validation.XMLValidationException;
+import org.codehaus.stax2.validation.XMLValidationProblem;
 import org.codehaus.stax2.validation.XMLValidationSchema;
+import org.codehaus.stax2.validation.XMLValidationSchemaFactory;
 
 import com.ctc.wstx.api.ReaderConfig;
 import com.ctc.wstx.dtd.DTDSchemaFactory;
-import com.ctc.wstx.io.WstxInputSource;
+import com.ctc.wstx.msv.RelaxNGSchemaFactory;
 import com.ctc.wstx.stax.WstxInputFactory;
 import com.ctc.wstx.util.URLUtil;
 
 /**
- * Simple command-line utility that allows validating a file
+ * Simple command-line utility that allows validating files
  * (or, actually, any resource that can be validated with an URL
  * that JDK recognizes)
- * either using DTD it specifies, or
- * DTD specified with command line argument. Will validate the
- * document, and indicate any errors it finds, if any.
+ * either using DTD each document specifies, or
+ * schema (DTD, W3C Schema or RelaxNG) specified with command line
+ * argument. Will validate the documents, and indicate any errors it
+ * finds, if any.
+ *<p>
+ * Besides individual documents, arguments can also be directories (all
+ * matching files within, recursively, are validated) and glob patterns
+ * (like <code>docs/&#42;&#42;/&#42;.xml</code>). Documents are validated
+ * in parallel by multiple threads, all of which share a single input
+ * factory and compiled schema; at the end, summary and throughput
+ * statistics are output.
  */
 public class ValidateXML
 {
     final static String SWITCH_HELP = "help";
     final static String SWITCH_DTD = "dtd=";
+    final static String SWITCH_XSD = "xsd=";
+    final static String SWITCH_RNG = "rng=";
+    final static String SWITCH_THREADS = "threads=";
+    final static String SWITCH_INCLUDE = "include=";
+    final static String SWITCH_QUIET = "quiet";
 
-    private ValidateXML() { }
+    final static String DEFAULT_INCLUDE = "*.xml";
+
+    /**
+     * Maximum number of documents queued per thread, to keep memory
+     * usage bounded when validating huge numbers of files
+     */
+    final static int QUEUE_PER_THREAD = 64;
+
+    final WstxInputFactory mFactory;
+
+    /**
+     * Schema to validate all documents against, if any
+     */
+    final XMLValidationSchema mSchema;
+
+    /**
+     * Whether {@link #mSchema} is a DTD to use instead of one documents
+     * refer to
+     */
+    final boolean mDtdOverride;
+
+    final boolean mQuiet;
+
+    final AtomicLong mDocCount = new AtomicLong();
+    final AtomicLong mValidCount = new AtomicLong();
+    final AtomicLong mInvalidCount = new AtomicLong();
+    final AtomicLong mFailedCount = new AtomicLong();
+    final AtomicLong mByteCount = new AtomicLong();
+
+    private ValidateXML(XMLValidationSchema schema, boolean dtdOverride, boolean quiet)
+    {
+        mSchema = schema;
+        mDtdOverride = dtdOverride;
+        mQuiet = quiet;
+
+        mFactory = new WstxInputFactory();
+        ReaderConfig cfg = mFactory.getConfig();
+        cfg.doSupportNamespaces(true);
+        cfg.doSupportDTDs(true);
+        // If another kind of schema is given, DTDs are only used for entities
+        cfg.doValidateWithDTD(schema == null || dtdOverride);
+        cfg.setXMLReporter(new Reporter());
+    }
 
     public static void main(String[] args)
         throws Exception
@@ -59,7 +123,11 @@ public class ValidateXML
             }
         }
 
-        String dtdRef = null;
+        String schemaRef = null;
+        String schemaSwitch = null;
+        String include = DEFAULT_INCLUDE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean quiet = false;
         int i = 0;
         int len = args.length;
 
@@ -70,8 +138,33 @@ public class ValidateXML
             }
 
             arg = arg.substring(2);
-            if (arg.startsWith(SWITCH_DTD)) {
-                dtdRef = arg.substring(SWITCH_DTD.length());
+            if (arg.startsWith(SWITCH_DTD) || arg.startsWith(SWITCH_XSD) || arg.startsWith(SWITCH_RNG)) {
+                if (schemaRef != null) {
+                    System.err.println("FAIL: only one schema can be specified.");
+                    System.exit(1);
+                }
+                schemaSwitch = arg.substring(0, 4);
+                schemaRef = arg.substring(4);
+                continue;
+            }
+            if (arg.startsWith(SWITCH_THREADS)) {
+                try {
+                    threads = Integer.parseInt(arg.substring(SWITCH_THREADS.length()));
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+                if (threads < 1) {
+                    System.err.println("FAIL: invalid thread count in '"+args[i]+"'.");
+                    System.exit(1);
+                }
+                continue;
+            }
+            if (arg.startsWith(SWITCH_INCLUDE)) {
+                include = arg.substring(SWITCH_INCLUDE.length());
+                continue;
+            }
+            if (arg.equals(SWITCH_QUIET)) {
+                quiet = true;
                 continue;
             }
             if (arg.equals(SWITCH_HELP)) {
@@ -88,74 +181,301 @@ public class ValidateXML
             System.exit(1);
         }
 
-        // DTD to use instead of doc specified one(s)?
-        URL dtdSrc = null;
-        if (dtdRef != null) {
+        // Schema to use instead of doc specified DTD(s)? Compiled just once
+        XMLValidationSchema schema = null;
+        if (schemaRef != null) {
             try {
-                dtdSrc = URLUtil.urlFromSystemId(dtdRef);
+                URL schemaSrc = URLUtil.urlFromSystemId(schemaRef);
+                if (schemaSwitch.equals(SWITCH_DTD)) {
+                    schema = new DTDSchemaFactory().createSchema(schemaSrc);
+                } else if (schemaSwitch.equals(SWITCH_XSD)) {
+                    /* Located dynamically, since not all Woodstox versions
+                     * include W3C Schema support
+                     */
+                    schema = XMLValidationSchemaFactory.newInstance(XMLValidationSchema.SCHEMA_ID_W3C_SCHEMA)
+                        .createSchema(schemaSrc);
+                } else {
+                    schema = new RelaxNGSchemaFactory().createSchema(schemaSrc);
+                }
             } catch (IOException ie) {
-                System.err.println("FAIL: could not open DTD '"+dtdRef+"': "+ie);
+                System.err.println("FAIL: could not open schema '"+schemaRef+"': "+ie);
+                System.exit(1);
+            } catch (XMLStreamException strEx) {
+                System.err.println("FAIL: could not parse schema '"+schemaRef+"': "+strEx);
                 System.exit(1);
+            } catch (IllegalArgumentException iae) { // no implementation found
+                System.err.println("FAIL: schema type not supported: "+iae.getMessage());
+                System.exit(1);
+            }
+            if (!quiet) {
+                System.out.println("  [using schema '"+schemaRef+"' for validation]");
             }
         }
-        
-        WstxInputFactory f = new WstxInputFactory();
-        ReaderConfig cfg = f.getConfig();
-    
-        cfg.doSupportNamespaces(true);
-        cfg.doSupportDTDs(true);
-        cfg.doValidateWithDTD(true);
-        cfg.setXMLReporter(new Reporter());
 
-        // Ok, then, let's loop over docs
+        ValidateXML validator = new ValidateXML(schema, SWITCH_DTD.equals(schemaSwitch), quiet);
+        Pattern includePattern = globToPattern(include);
+        long start = System.currentTimeMillis();
 
+        // Bounded queue; if full, main thread validates documents too
+        ThreadPoolExecutor exec = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * QUEUE_PER_THREAD),
+                new ThreadPoolExecutor.CallerRunsPolicy());
         for (; i < len; ++i) {
-            String sysId = args[i];
-            URL xmlSrc = null;
-            
+            List<String> docs = new ArrayList<String>();
+            findDocuments(args[i], includePattern, docs);
+            if (docs.isEmpty()) {
+                System.err.println("WARNING: no documents found for '"+args[i]+"'");
+            }
+            for (final String sysId : docs) {
+                exec.execute(validator.new Task(sysId));
+            }
+        }
+        exec.shutdown();
+        exec.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+        validator.printStats(System.out, System.currentTimeMillis() - start, threads);
+        if (validator.mValidCount.get() != validator.mDocCount.get()) {
+            System.exit(1);
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Validation
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Task that validates a single document, and outputs results once
+     * done: output for a document is never interleaved with that of
+     * other documents.
+     */
+    final class Task
+        implements Runnable, ValidationProblemHandler
+    {
+        final String mSysId;
+
+        final StringBuilder mOutput = new StringBuilder();
+
+        int mProblems;
+
+        Task(String sysId) {
+            mSysId = sysId;
+        }
+
+        public void run()
+        {
+            mDocCount.incrementAndGet();
+            String result = validate();
+            if (result != null) {
+                mOutput.append(result).append('\n');
+            }
+            if (mOutput.length() > 0) {
+                synchronized (System.out) {
+                    System.out.print(mOutput);
+                    System.out.flush();
+                }
+            }
+        }
+
+        /**
+         * @return Result line to output, if any
+         */
+        private String validate()
+        {
+            URL xmlSrc;
             try {
-                xmlSrc = URLUtil.urlFromSystemId(sysId);
+                xmlSrc = URLUtil.urlFromSystemId(mSysId);
             } catch (IOException ie) {
-                System.err.println("FAIL: could not open xml document '"+sysId+"': "+ie);
-                continue;
+                mFailedCount.incrementAndGet();
+                return "FAIL: could not open xml document '"+mSysId+"': "+ie;
             }
 
-            InputStream in = null;
-            
+            CountingInputStream in = null;
             try {
-                in = xmlSrc.openStream();
-                XMLStreamReader sr = f.createXMLStreamReader(xmlSrc.toExternalForm(), in);
-                // Override DTD specified?
-                if (dtdSrc != null) {
-                    DTDSchemaFactory vf = new DTDSchemaFactory();
-                    XMLValidationSchema schema = vf.createSchema(dtdSrc);
-                    System.out.println("  [trying to use dtd '"+dtdSrc+" for validation]");
-                    ((XMLStreamReader2) sr).setFeature(XMLStreamReader2.FEATURE_DTD_OVERRIDE,
-                                                       schema);
+                in = new CountingInputStream(xmlSrc.openStream());
+                XMLStreamReader2 sr = (XMLStreamReader2) mFactory.createXMLStreamReader(xmlSrc.toExternalForm(), in);
+                sr.setValidationProblemHandler(this);
+                if (mSchema != null) {
+                    if (mDtdOverride) {
+                        sr.setFeature(XMLStreamReader2.FEATURE_DTD_OVERRIDE, mSchema);
+                    } else {
+                        sr.validateAgainst(mSchema);
+                    }
                 }
-                
                 while (sr.hasNext()) {
                     sr.next();
                 }
-                
-                System.out.println("OK: document '"+sysId+"' succesfully validated!");
+                sr.close();
             } catch (XMLStreamException strEx) {
-                System.out.println("FAIL: document '"+sysId+"' has validity problem: "+strEx);
-//strEx.printStackTrace();
+                mInvalidCount.incrementAndGet();
+                return "FAIL: document '"+mSysId+"' has validity problem: "+strEx;
             } catch (IOException ie) {
-                System.out.println("FAIL: document '"+sysId+"' has I/O error: "+ie);
-             } finally {
-                 if (in != null) {
-                     try {
-                         in.close();
-                     } catch (IOException ie2) {
-                         System.err.println("Failed to close the XML document: "+ie2);
-                     }
-                 }
-             }
-        } // doc loop
+                mFailedCount.incrementAndGet();
+                return "FAIL: document '"+mSysId+"' has I/O error: "+ie;
+            } finally {
+                if (in != null) {
+                    mByteCount.addAndGet(in.mCount);
+                    try {
+                        in.close();
+                    } catch (IOException ie2) {
+                        System.err.println("Failed to close the XML document: "+ie2);
+                    }
+                }
+            }
+            if (mProblems > 0) {
+                mInvalidCount.incrementAndGet();
+                return "FAIL: document '"+mSysId+"' has "+mProblems+" validity problem(s)";
+            }
+            mValidCount.incrementAndGet();
+            return mQuiet ? null : ("OK: document '"+mSysId+"' succesfully validated!");
+        }
+
+        public void reportProblem(XMLValidationProblem problem)
+            throws XMLValidationException
+        {
+            if (problem.getSeverity() == XMLValidationProblem.SEVERITY_WARNING) {
+                mOutput.append("WARNING: ");
+            } else {
+                ++mProblems;
+                mOutput.append("ERROR: ");
+            }
+            Location loc = problem.getLocation();
+            mOutput.append('\'').append(mSysId).append("': ").append(problem.getMessage());
+            if (loc != null) {
+                mOutput.append(" [row ").append(loc.getLineNumber()).append(", column ")
+                    .append(loc.getColumnNumber()).append(']');
+            }
+            mOutput.append('\n');
+        }
+    }
+
+    private void printStats(PrintStream out, long msecs, int threads)
+    {
+        long docs = mDocCount.get();
+        double secs = Math.max(msecs, 1L) / 1000.0;
+        out.println();
+        out.println("Documents: "+docs+" (valid: "+mValidCount.get()+", invalid: "+mInvalidCount.get()
+                +", failed: "+mFailedCount.get()+")");
+        out.println(String.format("Time: %.2f seconds, using %d thread(s)", secs, threads));
+        out.println(String.format("Throughput: %.1f documents/second, %.2f MB/second",
+                docs / secs, mByteCount.get() / (1024.0 * 1024.0) / secs));
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Finding documents
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Method for expanding a command line argument into system ids of
+     * documents to validate: argument may be a file, a directory (in
+     * which case all matching files within are included, recursively),
+     * a glob pattern, or an URL.
+     */
+    private static void findDocuments(String arg, Pattern include, List<String> result)
+    {
+        File f = new File(arg);
+        if (f.isDirectory()) {
+            findFiles(f, "", include, true, result);
+        } else if (f.exists() || !isGlob(arg)) {
+            result.add(arg);
+        } else {
+            // Glob: base directory is the part before the first wildcard
+            String path = arg.replace(File.separatorChar, '/');
+            int wildcard = firstWildcard(path);
+            int slash = path.lastIndexOf('/', wildcard);
+            File base = new File((slash < 0) ? "." : ((slash == 0) ? "/" : path.substring(0, slash)));
+            if (base.isDirectory()) {
+                findFiles(base, "", globToPattern(path.substring(slash+1)), false, result);
+            }
+        }
+    }
+
+    /**
+     * @param relPath Path of the directory relative to the base directory
+     *   of the search; matched against the pattern (which may contain
+     *   directory separators)
+     * @param matchName Whether a match of the plain file name (regardless
+     *   of the directory) is also accepted: true for the include pattern
+     *   used for directories, false for globs
+     */
+    private static void findFiles(File dir, String relPath, Pattern pattern,
+                                  boolean matchName, List<String> result)
+    {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        java.util.Arrays.sort(files);
+        for (File f : files) {
+            String path = relPath + f.getName();
+            if (f.isDirectory()) {
+                findFiles(f, path + "/", pattern, matchName, result);
+            } else if (pattern.matcher(path).matches()
+                       || (matchName && pattern.matcher(f.getName()).matches())) {
+                result.add(f.getPath());
+            }
+        }
+    }
+
+    private static boolean isGlob(String arg) {
+        return firstWildcard(arg) < arg.length();
+    }
+
+    private static int firstWildcard(String str)
+    {
+        int ix = str.length();
+        for (int i = 0; i < str.length(); ++i) {
+            char c = str.charAt(i);
+            if (c == '*' || c == '?') {
+                ix = i;
+                break;
+            }
+        }
+        return ix;
+    }
+
+    /**
+     * Method for converting a glob pattern into regular expression:
+     * '**' matches any sequence of characters (including directory
+     * separators), '*' any sequence without separators, and '?'
+     * a single character.
+     */
+    static Pattern globToPattern(String glob)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, len = glob.length(); i < len; ++i) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (i+1 < len && glob.charAt(i+1) == '*') {
+                    ++i;
+                    // "**/" may also match nothing
+                    if (i+1 < len && glob.charAt(i+1) == '/') {
+                        ++i;
+                        sb.append("(?:.*/)?");
+                    } else {
+                        sb.append(".*");
+                    }
+                } else {
+                    sb.append("[^/]*");
+                }
+            } else if (c == '?') {
+                sb.append("[^/]");
+            } else {
+                sb.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(sb.toString());
     }
 
+    /*
+    ///////////////////////////////////////////////////////////
+    // Help
+    ///////////////////////////////////////////////////////////
+     */
+
     private final static void showUsage()
     {
         printUsage(System.err);
@@ -164,9 +484,15 @@ public class ValidateXML
 
     private final static void printUsage(PrintStream out)
     {
-        out.println("Usage: "+(ValidateXML.class)+" [options] [xml doc 1] ... [xml doc N]");
+        out.println("Usage: "+(ValidateXML.class)+" [options] [xml doc/dir/glob 1] ... [xml doc/dir/glob N]");
         out.println(" options:");
         out.println("   --"+SWITCH_DTD+"[DTD to use instead of doc specified one]");
+        out.println("   --"+SWITCH_XSD+"[W3C Schema to validate against]");
+        out.println("   --"+SWITCH_RNG+"[RelaxNG schema to validate against]");
+        out.println("   --"+SWITCH_THREADS+"[number of threads; default: number of processors]");
+        out.println("   --"+SWITCH_INCLUDE+"[pattern of files to validate in directories; default: "
+                    +DEFAULT_INCLUDE+"]");
+        out.println("   --"+SWITCH_QUIET+" [only output problems and summary]");
         out.println("   --"+SWITCH_HELP+" [displays full help]");
     }
 
@@ -179,9 +505,15 @@ public class ValidateXML
         out.println();
         out.println("* Specify a DTD (by URL that points to it) that should be used for");
         out.println("  validation instead of whatever document points to (if any)");
+        out.println("* Specify a W3C Schema or RelaxNG schema to validate documents against;");
+        out.println("  schema is compiled once and shared by all threads");
+        out.println("* Specify number of threads used for validating documents in parallel");
+        out.println();
+        out.println("Arguments may be files, URLs, directories (all files matching the");
+        out.println("include pattern are validated, recursively) or glob patterns like");
+        out.println("'docs/**/*.xml'. Exit code is 0 if all documents are valid, 1 if not.");
     }
 
-
     static class Reporter
         implements XMLReporter
     {
@@ -190,5 +522,38 @@ public class ValidateXML
             System.err.println("WARNING: "+msg+" [at "+location+"]");
         }
     }
-}
 
+    /**
+     * Simple wrapper used for counting bytes read, for throughput
+     * statistics
+     */
+    final static class CountingInputStream
+        extends FilterInputStream
+    {
+        long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        public int read()
+            throws IOException
+        {
+            int b = in.read();
+            if (b >= 0) {
+                ++mCount;
+            }
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len)
+            throws IOException
+        {
+            int count = in.read(b, off, len);
+            if (count > 0) {
+                mCount += count;
+            }
+            return count;
+        }
+    }
+}
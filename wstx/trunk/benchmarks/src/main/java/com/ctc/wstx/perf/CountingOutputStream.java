@@ -0,0 +1,39 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.perf;
+
+import java.io.OutputStream;
+
+/**
+ * Output stream that just counts bytes written, used as the output
+ * target for writer benchmarks to avoid measuring buffering of
+ * output.
+ */
+final class CountingOutputStream
+    extends OutputStream
+{
+    long mCount;
+
+    @Override
+    public void write(int b) {
+        ++mCount;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        mCount += len;
+    }
+}
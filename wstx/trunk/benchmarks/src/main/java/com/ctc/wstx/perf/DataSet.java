@@ -0,0 +1,140 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.perf;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import org.codehaus.stax2.XMLStreamReader2;
+import org.codehaus.stax2.io.Stax2ByteArraySource;
+import org.openjdk.jmh.annotations.*;
+
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Shared benchmark state that contains the input document to use,
+ * read into memory once per trial. Documents come from the staxbind
+ * data sets; location of the data directory can be changed using
+ * system property {@link #PROP_DATA_DIR} (note: needs to be passed
+ * to forked JVMs using <code>-jvmArgsAppend</code>).
+ *<p>
+ * All default data sets are "db" style tables, with rows of 7 fields:
+ * this allows their use for validation and typed access benchmarks as well.
+ */
+@State(Scope.Benchmark)
+public class DataSet
+{
+    public final static String PROP_DATA_DIR = "wstx.perf.data";
+
+    /**
+     * Default data directory, relative to the benchmark module
+     * directory.
+     */
+    public final static String DEFAULT_DATA_DIR = "../../../staxbind/data";
+
+    final static String[] ROW_FIELDS = {
+        "id", "firstname", "lastname", "street", "city", "state", "zip"
+    };
+
+    @Param({ "db100.xml", "db1000.xml", "xsltmark-data/xml/db10000.xml" })
+    public String dataset;
+
+    protected byte[] mData;
+
+    protected String mSystemId;
+
+    /**
+     * Contents of the document as rows of field values; used by
+     * writer benchmarks.
+     */
+    protected String[][] mRows;
+
+    @Setup(Level.Trial)
+    public void load()
+        throws IOException, XMLStreamException
+    {
+        File dir = new File(System.getProperty(PROP_DATA_DIR, DEFAULT_DATA_DIR));
+        File f = new File(dir, dataset);
+        if (!f.isFile()) {
+            throw new FileNotFoundException("Data file '"+f.getAbsolutePath()
+                    +"' not found: specify data directory using system property '"+PROP_DATA_DIR+"'");
+        }
+        mSystemId = f.toURI().toString();
+        mData = readAll(f);
+        mRows = readRows();
+    }
+
+    public Stax2ByteArraySource source()
+    {
+        Stax2ByteArraySource src = new Stax2ByteArraySource(mData, 0, mData.length);
+        src.setSystemId(mSystemId);
+        return src;
+    }
+
+    public InputStream stream() {
+        return new ByteArrayInputStream(mData);
+    }
+
+    public int size() {
+        return mData.length;
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Internal methods
+    ///////////////////////////////////////////////////////////
+     */
+
+    private static byte[] readAll(File f)
+        throws IOException
+    {
+        InputStream in = new FileInputStream(f);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) f.length());
+            byte[] buf = new byte[8000];
+            int count;
+            while ((count = in.read(buf)) > 0) {
+                bytes.write(buf, 0, count);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private String[][] readRows()
+        throws XMLStreamException
+    {
+        List<String[]> rows = new ArrayList<String[]>();
+        XMLStreamReader2 sr = (XMLStreamReader2) new WstxInputFactory().createXMLStreamReader(source());
+        sr.nextTag(); // root
+        while (sr.nextTag() == XMLStreamConstants.START_ELEMENT) { // row
+            String[] row = new String[ROW_FIELDS.length];
+            for (int i = 0; i < row.length; ++i) {
+                sr.nextTag();
+                row[i] = sr.getElementText();
+            }
+            sr.nextTag(); // row end
+            rows.add(row);
+        }
+        sr.close();
+        return rows.toArray(new String[rows.size()][]);
+    }
+}
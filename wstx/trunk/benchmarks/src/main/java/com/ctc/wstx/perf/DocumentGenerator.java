@@ -0,0 +1,171 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.perf;
+
+import java.io.*;
+
+import com.ctc.wstx.api.ReaderConfig;
+
+/**
+ * Helper class for generating synthetic documents of various shapes,
+ * to exercise parts of the parser that the "db" data sets do not:
+ * very deep nesting, very many attributes or namespace declarations
+ * per element, and entity-heavy documents.
+ *<p>
+ * All shapes consist of a sequence of "records" under a single root
+ * element; generation stops once the document is at least of requested
+ * size. Names of elements and namespace URIs depend on the seed passed,
+ * so that documents generated with different seeds add different
+ * symbols to (shared) symbol tables.
+ */
+public final class DocumentGenerator
+{
+    public final static String SHAPE_RECORDS = "records";
+    public final static String SHAPE_DEEP = "deep";
+    public final static String SHAPE_ATTRS = "attrs";
+    public final static String SHAPE_NAMESPACES = "namespaces";
+    public final static String SHAPE_ENTITIES = "entities";
+
+    /**
+     * Maximum width that may be used without hitting default
+     * limits of the parser.
+     */
+    public final static int MAX_WIDTH = Math.min(ReaderConfig.DEFAULT_MAX_ATTRIBUTES_PER_ELEMENT,
+            ReaderConfig.DEFAULT_MAX_ELEMENT_DEPTH) - 2;
+
+    private DocumentGenerator() { }
+
+    /**
+     * @param shape Shape of the document to generate (one of
+     *   <code>SHAPE_xxx</code> constants)
+     * @param width Shape-specific dimension: nesting depth, number of
+     *   attributes, namespace declarations or entities to use; not used
+     *   for plain records
+     * @param minBytes Minimum size of the document to generate
+     * @param seed Seed that determines names used
+     * @param dtdURI URI of the external DTD subset to refer to, for
+     *   entity-heavy documents (see {@link #writeEntityDTD})
+     */
+    public static byte[] generate(String shape, int width, int minBytes, int seed, String dtdURI)
+        throws IOException
+    {
+        if (width > MAX_WIDTH) {
+            throw new IllegalArgumentException("Width "+width+" exceeds maximum of "+MAX_WIDTH);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(minBytes + 16000);
+        Writer w = new OutputStreamWriter(bytes, "UTF-8");
+        w.write("<?xml version='1.0' encoding='UTF-8'?>\n");
+        if (SHAPE_ENTITIES.equals(shape)) {
+            w.write("<!DOCTYPE root SYSTEM '"+dtdURI+"'>\n");
+        }
+        w.write("<root>\n");
+        int i = 0;
+        // need to flush to know the size
+        while (true) {
+            w.flush();
+            if (bytes.size() >= minBytes) {
+                break;
+            }
+            for (int end = i + 100; i < end; ++i) {
+                writeRecord(w, shape, width, seed, i);
+            }
+        }
+        w.write("</root>\n");
+        w.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Method for writing the external DTD subset that defines given
+     * number of general entities, referred to by documents of shape
+     * {@link #SHAPE_ENTITIES}.
+     */
+    public static void writeEntityDTD(File f, int count)
+        throws IOException
+    {
+        Writer w = new OutputStreamWriter(new FileOutputStream(f), "UTF-8");
+        try {
+            for (int i = 0; i < count; ++i) {
+                w.write("<!ENTITY e"+i+" 'Value of entity #"+i+" &amp; some more text'>\n");
+            }
+        } finally {
+            w.close();
+        }
+    }
+
+    /**
+     * Method for writing a single record of plain shape; used by streaming
+     * generators too.
+     */
+    public static void writeRecord(Writer w, int seed, int index)
+        throws IOException
+    {
+        String name = "r"+seed+"_"+(index % 50);
+        w.write("<record id='");
+        w.write(String.valueOf(index));
+        w.write("'><");
+        w.write(name);
+        w.write(">Name of record ");
+        w.write(String.valueOf(index));
+        w.write("</");
+        w.write(name);
+        w.write("><value>");
+        w.write(String.valueOf(index * 37));
+        w.write("</value></record>\n");
+    }
+
+    private static void writeRecord(Writer w, String shape, int width, int seed, int index)
+        throws IOException
+    {
+        if (SHAPE_DEEP.equals(shape)) {
+            for (int i = 0; i < width; ++i) {
+                w.write("<n"+seed+"_"+(i % 20)+">x");
+            }
+            for (int i = width; --i >= 0; ) {
+                w.write("</n"+seed+"_"+(i % 20)+">");
+            }
+            w.write('\n');
+        } else if (SHAPE_ATTRS.equals(shape)) {
+            w.write("<record");
+            for (int i = 0; i < width; ++i) {
+                w.write(" a"+seed+"_"+i+"='"+(index+i)+"'");
+            }
+            w.write("/>\n");
+        } else if (SHAPE_NAMESPACES.equals(shape)) {
+            w.write("<record");
+            for (int i = 0; i < width; ++i) {
+                w.write(" xmlns:p"+i+"='urn:test:"+seed+":"+i+"'");
+            }
+            w.write('>');
+            // and use a few of them
+            for (int i = 0; i < 10; ++i) {
+                String name = "p"+((index + i) % width)+":item";
+                w.write("<"+name+" p"+(i % width)+":attr='"+i+"'>"+i+"</"+name+">");
+            }
+            w.write("</record>\n");
+        } else if (SHAPE_ENTITIES.equals(shape)) {
+            w.write("<record>");
+            for (int i = 0; i < 5; ++i) {
+                w.write("&e"+((index * 5 + i) % width)+"; ");
+            }
+            w.write("</record>\n");
+        } else if (SHAPE_RECORDS.equals(shape)) {
+            writeRecord(w, seed, index);
+        } else {
+            throw new IllegalArgumentException("Unrecognized document shape '"+shape+"'");
+        }
+    }
+}
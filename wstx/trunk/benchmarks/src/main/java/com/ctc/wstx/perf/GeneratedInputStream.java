@@ -0,0 +1,95 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.perf;
+
+import java.io.*;
+
+/**
+ * Input stream that generates a document of specified size on the fly,
+ * consisting of plain records under the root element. Allows parsing
+ * multi-gigabyte documents without having to store them anywhere:
+ * a block of records is generated once, and then repeated as many times
+ * as needed.
+ */
+public final class GeneratedInputStream
+    extends InputStream
+{
+    private final static byte[] HEADER = bytes("<?xml version='1.0' encoding='UTF-8'?>\n<root>\n");
+    private final static byte[] FOOTER = bytes("</root>\n");
+
+    private final byte[] mBlock;
+
+    /**
+     * Number of record blocks still to output after the current one
+     */
+    private long mBlocksLeft;
+
+    private byte[] mCurr;
+
+    private int mPtr;
+
+    /**
+     * @param minBytes Minimum length of the document to generate
+     */
+    public GeneratedInputStream(long minBytes)
+        throws IOException
+    {
+        StringWriter sw = new StringWriter(70000);
+        for (int i = 0; sw.getBuffer().length() < 64000; ++i) {
+            DocumentGenerator.writeRecord(sw, 0, i);
+        }
+        mBlock = bytes(sw.toString());
+        mBlocksLeft = (minBytes + mBlock.length - 1) / mBlock.length;
+        mCurr = HEADER;
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+        byte[] b = new byte[1];
+        return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+    {
+        if (mPtr >= mCurr.length) {
+            if (mBlocksLeft > 0L) {
+                --mBlocksLeft;
+                mCurr = mBlock;
+            } else if (mCurr != FOOTER) {
+                mCurr = FOOTER;
+            } else {
+                return -1;
+            }
+            mPtr = 0;
+        }
+        int count = Math.min(len, mCurr.length - mPtr);
+        System.arraycopy(mCurr, mPtr, b, off, count);
+        mPtr += count;
+        return count;
+    }
+
+    private static byte[] bytes(String str)
+    {
+        try {
+            return str.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) { // never happens
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.perf;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import org.codehaus.stax2.XMLStreamReader2;
+import org.openjdk.jmh.annotations.*;
+
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Benchmarks for streaming through very large (multi-gigabyte)
+ * documents, generated on the fly by {@link GeneratedInputStream}.
+ * Since each operation takes a long time, single-shot mode is used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class LargeDocumentBenchmarks
+    implements XMLStreamConstants
+{
+    @Param({ "256", "2048" })
+    public long megabytes;
+
+    protected WstxInputFactory mInputFactory;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        mInputFactory = new WstxInputFactory();
+    }
+
+    @Benchmark
+    public long streamText()
+        throws IOException, XMLStreamException
+    {
+        XMLStreamReader2 sr = (XMLStreamReader2) mInputFactory.createXMLStreamReader(new GeneratedInputStream(megabytes << 20));
+        long count = 0L;
+        while (sr.hasNext()) {
+            if (sr.next() == CHARACTERS) {
+                count += sr.getTextLength();
+            }
+        }
+        sr.close();
+        return count;
+    }
+
+    @Benchmark
+    public long streamSkipText()
+        throws IOException, XMLStreamException
+    {
+        XMLStreamReader2 sr = (XMLStreamReader2) mInputFactory.createXMLStreamReader(new GeneratedInputStream(megabytes << 20));
+        long count = 0L;
+        while (sr.hasNext()) {
+            if (sr.next() == START_ELEMENT) {
+                ++count;
+            }
+        }
+        sr.close();
+        return count;
+    }
+}
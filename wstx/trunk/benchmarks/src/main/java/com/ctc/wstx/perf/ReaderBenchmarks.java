@@ -0,0 +1,170 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.perf;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+
+import org.codehaus.stax2.XMLInputFactory2;
+import org.codehaus.stax2.XMLStreamReader2;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.ctc.wstx.sax.WstxSAXParserFactory;
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Benchmarks for parsing documents using all supported parsing APIs:
+ * Stax cursor and event APIs, as well as SAX. Parsing is done both with
+ * lazy parsing (default) and without; and for cursor API, both so that
+ * all textual content is accessed and so that it is skipped.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderBenchmarks
+    implements XMLStreamConstants
+{
+    @Param({ "true", "false" })
+    public boolean lazy;
+
+    protected WstxInputFactory mInputFactory;
+
+    protected SAXParser mSaxParser;
+
+    @Setup(Level.Trial)
+    public void setup()
+        throws Exception
+    {
+        mInputFactory = new WstxInputFactory();
+        mInputFactory.setProperty(XMLInputFactory2.P_LAZY_PARSING, Boolean.valueOf(lazy));
+        mInputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        mSaxParser = new WstxSAXParserFactory(mInputFactory).newSAXParser();
+    }
+
+    /**
+     * Cursor API, accessing all element names and textual content
+     */
+    @Benchmark
+    public int cursor(DataSet data, Blackhole bh)
+        throws XMLStreamException
+    {
+        XMLStreamReader2 sr = (XMLStreamReader2) mInputFactory.createXMLStreamReader(data.source());
+        int count = 0;
+        while (sr.hasNext()) {
+            int type = sr.next();
+            if (type == START_ELEMENT) {
+                bh.consume(sr.getLocalName());
+                for (int i = 0, len = sr.getAttributeCount(); i < len; ++i) {
+                    bh.consume(sr.getAttributeValue(i));
+                }
+            } else if (type == CHARACTERS || type == SPACE || type == CDATA) {
+                count += sr.getTextLength();
+            }
+        }
+        sr.close();
+        return count;
+    }
+
+    /**
+     * Cursor API, only iterating over events: with lazy parsing,
+     * textual content is skipped without being copied
+     */
+    @Benchmark
+    public int cursorSkipText(DataSet data)
+        throws XMLStreamException
+    {
+        XMLStreamReader2 sr = (XMLStreamReader2) mInputFactory.createXMLStreamReader(data.source());
+        int count = 0;
+        while (sr.hasNext()) {
+            if (sr.next() == START_ELEMENT) {
+                ++count;
+            }
+        }
+        sr.close();
+        return count;
+    }
+
+    /**
+     * Cursor API, skipping all children of the root element using
+     * {@link XMLStreamReader2#skipElement}
+     */
+    @Benchmark
+    public int skipElements(DataSet data)
+        throws XMLStreamException
+    {
+        XMLStreamReader2 sr = (XMLStreamReader2) mInputFactory.createXMLStreamReader(data.source());
+        sr.nextTag(); // root
+        int count = 0;
+        while (sr.nextTag() == START_ELEMENT) {
+            sr.skipElement();
+            ++count;
+        }
+        sr.close();
+        return count;
+    }
+
+    @Benchmark
+    public int event(DataSet data, Blackhole bh)
+        throws XMLStreamException
+    {
+        XMLEventReader er = mInputFactory.createXMLEventReader(data.source());
+        int count = 0;
+        while (er.hasNext()) {
+            XMLEvent evt = er.nextEvent();
+            bh.consume(evt);
+            ++count;
+        }
+        er.close();
+        return count;
+    }
+
+    @Benchmark
+    public int sax(DataSet data)
+        throws Exception
+    {
+        CountingHandler h = new CountingHandler();
+        mSaxParser.parse(data.stream(), h);
+        return h.mCount;
+    }
+
+    final static class CountingHandler
+        extends DefaultHandler
+    {
+        int mCount;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs) {
+            mCount += attrs.getLength() + 1;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            mCount += length;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.perf;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.codehaus.stax2.XMLStreamReader2;
+import org.codehaus.stax2.io.Stax2ByteArraySource;
+import org.openjdk.jmh.annotations.*;
+
+import com.ctc.wstx.stax.WstxInputFactory;
+import com.ctc.wstx.stax.WstxOutputFactory;
+
+/**
+ * Benchmarks that parse and write synthetic documents (see
+ * {@link DocumentGenerator}) using a single input and output factory
+ * shared by all benchmark threads. When run with increasing number
+ * of threads (see {@link ScalingRunner}), this shows how well
+ * shared state scales: symbol table updates, DTD caching, interning of
+ * namespace URIs and so on.
+ *<p>
+ * Each thread parses a document of its own, generated with a
+ * thread-specific seed, so that names differ between threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScalingBenchmarks
+    implements XMLStreamConstants
+{
+    @Param({ DocumentGenerator.SHAPE_RECORDS, DocumentGenerator.SHAPE_DEEP,
+            DocumentGenerator.SHAPE_ATTRS, DocumentGenerator.SHAPE_NAMESPACES,
+            DocumentGenerator.SHAPE_ENTITIES })
+    public String shape;
+
+    /**
+     * Shape-specific size dimension; default is just below the default
+     * limits for attribute count and element depth.
+     */
+    @Param({ "998" })
+    public int width;
+
+    @Param({ "1024" })
+    public int kilobytes;
+
+    protected WstxInputFactory mInputFactory;
+
+    protected WstxOutputFactory mOutputFactory;
+
+    protected File mDtdFile;
+
+    protected final AtomicInteger mSeeds = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup()
+        throws IOException
+    {
+        mInputFactory = new WstxInputFactory();
+        mOutputFactory = new WstxOutputFactory();
+        if (DocumentGenerator.SHAPE_ENTITIES.equals(shape)) {
+            mDtdFile = File.createTempFile("wstx-perf", ".dtd");
+            mDtdFile.deleteOnExit();
+            DocumentGenerator.writeEntityDTD(mDtdFile, width);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        if (mDtdFile != null) {
+            mDtdFile.delete();
+        }
+    }
+
+    /**
+     * Per-thread state: document to parse
+     */
+    @State(Scope.Thread)
+    public static class ThreadDoc
+    {
+        protected byte[] mDoc;
+
+        @Setup(Level.Trial)
+        public void setup(ScalingBenchmarks bm)
+            throws IOException
+        {
+            String dtdURI = (bm.mDtdFile == null) ? null : bm.mDtdFile.toURI().toString();
+            mDoc = DocumentGenerator.generate(bm.shape, bm.width, bm.kilobytes * 1024,
+                    bm.mSeeds.incrementAndGet(), dtdURI);
+        }
+    }
+
+    @Benchmark
+    public int parse(ThreadDoc doc)
+        throws XMLStreamException
+    {
+        byte[] data = doc.mDoc;
+        XMLStreamReader2 sr = (XMLStreamReader2) mInputFactory.createXMLStreamReader(new Stax2ByteArraySource(data, 0, data.length));
+        int count = 0;
+        while (sr.hasNext()) {
+            int type = sr.next();
+            if (type == START_ELEMENT) {
+                count += sr.getAttributeCount() + sr.getNamespaceCount() + 1;
+            } else if (type == CHARACTERS) {
+                count += sr.getTextLength();
+            }
+        }
+        sr.close();
+        return count;
+    }
+
+    /**
+     * Writes a document of plain records, with namespaces; shape of
+     * the document is not varied.
+     */
+    @Benchmark
+    public long write()
+        throws XMLStreamException
+    {
+        CountingOutputStream out = new CountingOutputStream();
+        XMLStreamWriter sw = mOutputFactory.createXMLStreamWriter(out, "UTF-8");
+        sw.writeStartDocument();
+        sw.writeStartElement("root");
+        sw.writeDefaultNamespace("urn:test:records");
+        for (int i = 0, count = kilobytes * 10; i < count; ++i) {
+            sw.writeStartElement("record");
+            sw.writeAttribute("id", String.valueOf(i));
+            sw.writeStartElement("value");
+            sw.writeCharacters("Value of record #");
+            sw.writeCharacters(String.valueOf(i));
+            sw.writeEndElement();
+            sw.writeEndElement();
+        }
+        sw.writeEndElement();
+        sw.writeEndDocument();
+        sw.close();
+        return out.mCount;
+    }
+}
@@ -0,0 +1,91 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.perf;
+
+import java.util.*;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runner for {@link ScalingBenchmarks} that runs the benchmarks
+ * with 1, 2, 4 (and so on) threads, up to specified maximum (by
+ * default, number of available processors), and then prints a
+ * summary of throughput per thread count; this makes it easy to spot
+ * points where adding threads no longer helps.
+ *<p>
+ * Usage: <code>java -cp target/benchmarks.jar com.ctc.wstx.perf.ScalingRunner [max-threads] [benchmark-regexp]</code>
+ */
+public final class ScalingRunner
+{
+    private ScalingRunner() { }
+
+    public static void main(String[] args)
+        throws Exception
+    {
+        int maxThreads = (args.length > 0) ? Integer.parseInt(args[0])
+            : Runtime.getRuntime().availableProcessors();
+        String include = (args.length > 1) ? args[1] : ScalingBenchmarks.class.getSimpleName();
+
+        // benchmark + params -> thread count -> score
+        Map<String,Map<Integer,Double>> scores = new TreeMap<String,Map<Integer,Double>>();
+        List<Integer> threadCounts = new ArrayList<Integer>();
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            threadCounts.add(threads);
+            Options opts = new OptionsBuilder()
+                .include(include)
+                .threads(threads)
+                .addProfiler(GCProfiler.class)
+                .build();
+            for (RunResult r : new Runner(opts).run()) {
+                String key = r.getParams().getBenchmark();
+                String shape = r.getParams().getParam("shape");
+                if (shape != null && key.endsWith(".parse")) {
+                    key = key + " [" + shape + "]";
+                }
+                Map<Integer,Double> byThreads = scores.get(key);
+                if (byThreads == null) {
+                    byThreads = new TreeMap<Integer,Double>();
+                    scores.put(key, byThreads);
+                }
+                byThreads.put(threads, r.getPrimaryResult().getScore());
+            }
+            if (threads >= maxThreads) {
+                break;
+            }
+        }
+
+        System.out.println();
+        System.out.println("Throughput (ops/s), total over all threads; relative to single thread in parenthesis:");
+        for (Map.Entry<String,Map<Integer,Double>> en : scores.entrySet()) {
+            System.out.println(en.getKey());
+            Map<Integer,Double> byThreads = en.getValue();
+            Double base = byThreads.get(1);
+            for (Integer threads : threadCounts) {
+                Double score = byThreads.get(threads);
+                if (score == null) {
+                    continue;
+                }
+                String rel = (base == null || base.doubleValue() == 0.0) ? "?"
+                    : String.format("%.2fx", score.doubleValue() / base.doubleValue());
+                System.out.println(String.format("  %3d threads: %12.2f (%s)", threads, score, rel));
+            }
+        }
+    }
+}
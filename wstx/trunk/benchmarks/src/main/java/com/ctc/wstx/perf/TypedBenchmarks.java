@@ -0,0 +1,108 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.perf;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import org.codehaus.stax2.XMLStreamReader2;
+import org.codehaus.stax2.XMLStreamWriter2;
+import org.openjdk.jmh.annotations.*;
+
+import com.ctc.wstx.stax.WstxInputFactory;
+import com.ctc.wstx.stax.WstxOutputFactory;
+
+/**
+ * Benchmarks for the Stax2 Typed Access API: reading numeric
+ * element values (ids and zip codes of "db" documents) using typed
+ * accessors, and writing documents with typed values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TypedBenchmarks
+    implements XMLStreamConstants
+{
+    protected WstxInputFactory mInputFactory;
+
+    protected WstxOutputFactory mOutputFactory;
+
+    protected int[] mIds;
+
+    protected int[] mZips;
+
+    @Setup(Level.Trial)
+    public void setup(DataSet data)
+    {
+        mInputFactory = new WstxInputFactory();
+        mOutputFactory = new WstxOutputFactory();
+        String[][] rows = data.mRows;
+        mIds = new int[rows.length];
+        mZips = new int[rows.length];
+        for (int i = 0; i < rows.length; ++i) {
+            mIds[i] = Integer.parseInt(rows[i][0].trim());
+            mZips[i] = Integer.parseInt(rows[i][6].trim());
+        }
+    }
+
+    @Benchmark
+    public long typedRead(DataSet data)
+        throws XMLStreamException
+    {
+        XMLStreamReader2 sr = (XMLStreamReader2) mInputFactory.createXMLStreamReader(data.source());
+        long total = 0L;
+        while (sr.hasNext()) {
+            if (sr.next() == START_ELEMENT) {
+                String name = sr.getLocalName();
+                // names are interned, can compare by identity
+                if (name == "id" || name == "zip") {
+                    total += sr.getElementAsInt();
+                }
+            }
+        }
+        sr.close();
+        return total;
+    }
+
+    @Benchmark
+    public long typedWrite()
+        throws XMLStreamException
+    {
+        CountingOutputStream out = new CountingOutputStream();
+        XMLStreamWriter2 sw = (XMLStreamWriter2) mOutputFactory.createXMLStreamWriter(out, "UTF-8");
+        sw.writeStartDocument();
+        sw.writeStartElement("table");
+        for (int i = 0; i < mIds.length; ++i) {
+            sw.writeStartElement("row");
+            sw.writeStartElement("id");
+            sw.writeInt(mIds[i]);
+            sw.writeEndElement();
+            sw.writeStartElement("zip");
+            sw.writeInt(mZips[i]);
+            sw.writeEndElement();
+            sw.writeEndElement();
+        }
+        sw.writeEndElement();
+        sw.writeEndDocument();
+        sw.close();
+        return out.mCount;
+    }
+}
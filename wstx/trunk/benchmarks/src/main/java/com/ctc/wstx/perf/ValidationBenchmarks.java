@@ -0,0 +1,88 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.perf;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.codehaus.stax2.XMLStreamReader2;
+import org.codehaus.stax2.validation.XMLValidationSchema;
+import org.codehaus.stax2.validation.XMLValidationSchemaFactory;
+import org.openjdk.jmh.annotations.*;
+
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Benchmarks for parsing documents while validating them against a
+ * DTD, W3C Schema or RelaxNG schema. Schemas are compiled once, and
+ * attached to readers using the Stax2 validation API, so that only
+ * validation itself is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmarks
+{
+    @Param({ "dtd", "xsd", "rng" })
+    public String schemaType;
+
+    protected WstxInputFactory mInputFactory;
+
+    protected XMLValidationSchema mSchema;
+
+    @Setup(Level.Trial)
+    public void setup()
+        throws XMLStreamException
+    {
+        mInputFactory = new WstxInputFactory();
+        String schemaId, resource;
+        if ("dtd".equals(schemaType)) {
+            schemaId = XMLValidationSchema.SCHEMA_ID_DTD;
+            resource = "db.dtd";
+        } else if ("xsd".equals(schemaType)) {
+            schemaId = XMLValidationSchema.SCHEMA_ID_W3C_SCHEMA;
+            resource = "db.xsd";
+        } else if ("rng".equals(schemaType)) {
+            schemaId = XMLValidationSchema.SCHEMA_ID_RELAXNG;
+            resource = "db.rng";
+        } else {
+            throw new IllegalArgumentException("Unrecognized schema type '"+schemaType+"'");
+        }
+        URL url = ValidationBenchmarks.class.getResource(resource);
+        mSchema = XMLValidationSchemaFactory.newInstance(schemaId).createSchema(url);
+    }
+
+    @Benchmark
+    public int validate(DataSet data)
+        throws XMLStreamException
+    {
+        XMLStreamReader2 sr = (XMLStreamReader2) mInputFactory.createXMLStreamReader(data.source());
+        sr.validateAgainst(mSchema);
+        int count = 0;
+        while (sr.hasNext()) {
+            if (sr.next() == XMLStreamReader2.START_ELEMENT) {
+                ++count;
+            }
+        }
+        sr.close();
+        return count;
+    }
+}
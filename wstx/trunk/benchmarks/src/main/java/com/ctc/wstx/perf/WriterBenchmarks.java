@@ -0,0 +1,97 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.perf;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.ctc.wstx.stax.WstxOutputFactory;
+
+/**
+ * Benchmarks for writing documents using each of the writer backends:
+ * UTF-8 (Woodstox's own encoder), ISO-8859-1 and US-ASCII (encoding
+ * writers), as well as plain character output to a {@link java.io.Writer}
+ * (encoding "chars"). Content written is that of the "db" data set
+ * document.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterBenchmarks
+{
+    @Param({ "UTF-8", "ISO-8859-1", "US-ASCII", "chars" })
+    public String encoding;
+
+    protected WstxOutputFactory mOutputFactory;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        mOutputFactory = new WstxOutputFactory();
+    }
+
+    @Benchmark
+    public long write(DataSet data)
+        throws XMLStreamException
+    {
+        if ("chars".equals(encoding)) {
+            StringWriter w = new StringWriter(data.size());
+            XMLStreamWriter sw = mOutputFactory.createXMLStreamWriter(w);
+            writeDoc(sw, data.mRows, null);
+            return w.getBuffer().length();
+        }
+        CountingOutputStream out = new CountingOutputStream();
+        XMLStreamWriter sw = mOutputFactory.createXMLStreamWriter(out, encoding);
+        writeDoc(sw, data.mRows, encoding);
+        return out.mCount;
+    }
+
+    private static void writeDoc(XMLStreamWriter sw, String[][] rows, String enc)
+        throws XMLStreamException
+    {
+        if (enc == null) {
+            sw.writeStartDocument();
+        } else {
+            sw.writeStartDocument(enc, "1.0");
+        }
+        sw.writeStartElement("table");
+        final String[] fields = DataSet.ROW_FIELDS;
+        for (String[] row : rows) {
+            sw.writeCharacters("\n  ");
+            sw.writeStartElement("row");
+            for (int i = 0; i < fields.length; ++i) {
+                sw.writeCharacters("\n    ");
+                sw.writeStartElement(fields[i]);
+                sw.writeCharacters(row[i]);
+                sw.writeEndElement();
+            }
+            sw.writeCharacters("\n  ");
+            sw.writeEndElement();
+        }
+        sw.writeCharacters("\n");
+        sw.writeEndElement();
+        sw.writeEndDocument();
+        sw.close();
+    }
+}
@@ -235,6 +235,16 @@ abstract class CommonConfig
 
     protected abstract boolean setProperty(String propName, int id, Object value);
 
+    /**
+     * Method that sub-classes need to call (and implement) before
+     * changing any settings: needed to prevent modification of frozen
+     * configuration snapshots, and to let owning factories know that
+     * their snapshots need to be rebuilt.
+     *
+     * @since 5.0
+     */
+    protected abstract void markModified();
+
     /*
     ///////////////////////////////////////////////////////////////////////
     // Internal methods
@@ -257,6 +267,7 @@ abstract class CommonConfig
         // Only one settable property...
         switch (id) {
         case PROP_RETURN_NULL_FOR_DEFAULT_NAMESPACE:
+            markModified();
             mReturnNullForDefaultNamespace = ArgUtil.convertToBoolean(propName, value);
             return true;
         }
@@ -16,8 +16,10 @@ import com.ctc.wstx.dtd.DTDEventListener;
 import com.ctc.wstx.ent.IntEntity;
 import com.ctc.wstx.ent.EntityDecl;
 import com.ctc.wstx.io.BufferRecycler;
+import com.ctc.wstx.metrics.ParserMetricsListener;
 import com.ctc.wstx.util.ArgUtil;
 import com.ctc.wstx.util.DataUtil;
+import com.ctc.wstx.util.NameVocabulary;
 import com.ctc.wstx.util.SymbolTable;
 
 /**
@@ -31,6 +33,13 @@ import com.ctc.wstx.util.SymbolTable;
  * make this a very convenience place to add that functionality...
  * (that is: conceptually this is not right, but from pragmatic viewpoint
  * it just makes sense)
+ *<p>
+ * Factories may also create <b>frozen</b> snapshots of their configuration
+ * (see {@link #createFrozen}): such instances can not be modified, and
+ * can be shared by all readers created until the factory configuration
+ * is changed. Frozen snapshots do not contain a symbol table (readers get
+ * one separately), and they look up the buffer recycler of the calling
+ * thread for each buffer allocation and release.
  */
 public final class ReaderConfig
     extends CommonConfig
@@ -102,6 +111,9 @@ public final class ReaderConfig
     final static int PROP_LAZY_PARSING = 44;
     final static int PROP_SUPPORT_DTDPP = 45;
     final static int PROP_TREAT_CHAR_REFS_AS_ENTS = 46;
+    final static int PROP_LAZY_ATTRIBUTE_VALUES = 47;
+    final static int PROP_INPUT_READ_AHEAD = 48;
+    final static int PROP_INPUT_DECOMPRESSION = 49;
 
     // Object type properties:
 
@@ -114,6 +126,8 @@ public final class ReaderConfig
     final static int PROP_UNDECLARED_ENTITY_RESOLVER = 56;
     final static int PROP_BASE_URL = 57;
     final static int PROP_INPUT_PARSING_MODE = 58;
+    final static int PROP_METRICS_LISTENER = 59;
+    final static int PROP_NAME_VOCABULARY = 69;
 
     // Size limitation to prevent various DOS attacks
     final static int PROP_MAX_ATTRIBUTES_PER_ELEMENT = 60;
@@ -304,6 +318,12 @@ public final class ReaderConfig
                 DataUtil.Integer(PROP_TREAT_CHAR_REFS_AS_ENTS));
         sProperties.put(WstxInputProperties.P_NORMALIZE_LFS,
                 DataUtil.Integer(PROP_NORMALIZE_LFS));
+        sProperties.put(WstxInputProperties.P_LAZY_ATTRIBUTE_VALUES,
+                DataUtil.Integer(PROP_LAZY_ATTRIBUTE_VALUES));
+        sProperties.put(WstxInputProperties.P_INPUT_READ_AHEAD,
+                DataUtil.Integer(PROP_INPUT_READ_AHEAD));
+        sProperties.put(WstxInputProperties.P_INPUT_DECOMPRESSION,
+                DataUtil.Integer(PROP_INPUT_DECOMPRESSION));
         
 
         // Non-standard ones, non-flags:
@@ -346,6 +366,10 @@ public final class ReaderConfig
                         DataUtil.Integer(PROP_BASE_URL));
         sProperties.put(WstxInputProperties.P_INPUT_PARSING_MODE,
                         DataUtil.Integer(PROP_INPUT_PARSING_MODE));
+        sProperties.put(WstxInputProperties.P_METRICS_LISTENER,
+                        DataUtil.Integer(PROP_METRICS_LISTENER));
+        sProperties.put(WstxInputProperties.P_NAME_VOCABULARY,
+                        DataUtil.Integer(PROP_NAME_VOCABULARY));
     }
 
     /*
@@ -416,6 +440,24 @@ public final class ReaderConfig
      */
     protected boolean mXml11 = false;
 
+    /**
+     * Flag that indicates whether this instance is an immutable snapshot
+     * that may be shared between readers.
+     *
+     * @since 5.0
+     */
+    final protected boolean mFrozen;
+
+    /**
+     * Number of modifications made to this configuration object; used by
+     * factories to know when their frozen snapshot needs to be rebuilt.
+     * For frozen instances, modification count of the configuration
+     * the snapshot was created from.
+     *
+     * @since 5.0
+     */
+    protected int mModCount;
+
     /*
     ///////////////////////////////////////////////////////////////////////
     // Common configuration objects
@@ -439,12 +481,14 @@ public final class ReaderConfig
 
     Object[] mSpecialProperties = null;
 
-    private final static int SPEC_PROC_COUNT = 4;
+    private final static int SPEC_PROC_COUNT = 6;
 
     private final static int SP_IX_CUSTOM_ENTITIES = 0;
     private final static int SP_IX_UNDECL_ENT_RESOLVER = 1;
     private final static int SP_IX_DTD_EVENT_LISTENER = 2;
     private final static int SP_IX_DTD_OVERRIDE = 3;
+    private final static int SP_IX_METRICS_LISTENER = 4;
+    private final static int SP_IX_NAME_VOCABULARY = 5;
 
     /*
     ///////////////////////////////////////////////////////////////////////
@@ -478,10 +522,21 @@ public final class ReaderConfig
             int configFlags, int configFlagMods,
             int inputBufLen,
             int minTextSegmentLen)
+    {
+        this(base, j2meSubset, symbols, configFlags, configFlagMods,
+             inputBufLen, minTextSegmentLen, false);
+    }
+
+    private ReaderConfig(ReaderConfig base,
+            boolean j2meSubset, SymbolTable symbols,
+            int configFlags, int configFlagMods,
+            int inputBufLen,
+            int minTextSegmentLen, boolean frozen)
     {
         super(base);
         mIsJ2MESubset = j2meSubset;
         mSymbols = symbols;
+        mFrozen = frozen;
 
         mConfigFlags = configFlags;
         mConfigFlagMods = configFlagMods;
@@ -504,11 +559,14 @@ public final class ReaderConfig
          * are lazily constructed, and since GC may just flush them out
          * on its whims, it's possible we might not find one. That's ok;
          * we can reconstruct one if and when we are to return one or more
-         * buffers.
+         * buffers. Frozen instances may be used from multiple threads,
+         * so they can not hold on to one.
          */
-        SoftReference<BufferRecycler> ref = mRecyclerRef.get();
-        if (ref != null) {
-            mCurrRecycler = ref.get();
+        if (!frozen) {
+            SoftReference<BufferRecycler> ref = mRecyclerRef.get();
+            if (ref != null) {
+                mCurrRecycler = ref.get();
+            }
         }
     }
 
@@ -542,11 +600,34 @@ public final class ReaderConfig
     {
         // should we throw an exception?
         //if (sym == null) { }
+        return _createCopy(sym, false);
+    }
+
+    /**
+     * Method for constructing an immutable snapshot of the current
+     * settings of this configuration object. Snapshot can be shared
+     * by any number of readers (and threads); it has no symbol table,
+     * and any attempt to modify it results in an
+     * {@link IllegalStateException}.
+     * Per-reader modifications are done by first creating a non-shared
+     * copy using {@link #createNonShared}.
+     *
+     * @since 5.0
+     */
+    public ReaderConfig createFrozen()
+    {
+        ReaderConfig rc = _createCopy(null, true);
+        rc.mModCount = mModCount;
+        return rc;
+    }
+
+    private ReaderConfig _createCopy(SymbolTable sym, boolean frozen)
+    {
         ReaderConfig rc = new ReaderConfig(this,
                 mIsJ2MESubset, sym,
                 mConfigFlags, mConfigFlagMods,
                 mInputBufferLen,
-                mMinTextSegmentLen);
+                mMinTextSegmentLen, frozen);
         rc.mReporter = mReporter;
         rc.mDtdResolver = mDtdResolver;
         rc.mEntityResolver = mEntityResolver;
@@ -578,6 +659,9 @@ public final class ReaderConfig
      */
     public void resetState()
     {
+        if (mFrozen) { // nothing to reset
+            return;
+        }
         // Current, only xml 1.0 vs 1.1 state is stored here:
         mXml11 = false;
     }
@@ -604,6 +688,23 @@ public final class ReaderConfig
 
     public SymbolTable getSymbols() { return mSymbols; }
 
+    /**
+     * @return True if this instance is an immutable snapshot, created
+     *   using {@link #createFrozen}
+     *
+     * @since 5.0
+     */
+    public boolean isFrozen() { return mFrozen; }
+
+    /**
+     * @return Number of modifications made to this instance; for frozen
+     *   instances, number of modifications made to the configuration
+     *   snapshot was created from, before snapshot was created.
+     *
+     * @since 5.0
+     */
+    public int getModCount() { return mModCount; }
+
     /**
      * In future this property could/should be made configurable?
      */
@@ -702,6 +803,27 @@ public final class ReaderConfig
         return _hasConfigFlag(CFG_TREAT_CHAR_REFS_AS_ENTS);
     }
 
+    /**
+     * @since 5.0
+     */
+    public boolean willDecodeAttributeValuesLazily() {
+        return _hasConfigFlag(CFG_LAZY_ATTRIBUTE_VALUES);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public boolean willReadInputAhead() {
+        return _hasConfigFlag(CFG_INPUT_READ_AHEAD);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public boolean willDecompressInput() {
+        return _hasConfigFlag(CFG_INPUT_DECOMPRESSION);
+    }
+
     public int getInputBufferLength() { return mInputBufferLen; }
 
     public int getShortestReportedTextSegment() { return mMinTextSegmentLen; }
@@ -745,6 +867,17 @@ public final class ReaderConfig
         return custEnt.get(id);
     }
 
+    /**
+     * @return True if any custom internal entities have been defined
+     *
+     * @since 5.0
+     */
+    public boolean hasCustomInternalEntities()
+    {
+        Map<?,?> custEnt = (Map<?,?>) _getSpecialProperty(SP_IX_CUSTOM_ENTITIES);
+        return (custEnt != null) && !custEnt.isEmpty();
+    }
+
     public XMLReporter getXMLReporter() { return mReporter; }
 
     public XMLResolver getXMLResolver() { return mEntityResolver; }
@@ -786,6 +919,20 @@ public final class ReaderConfig
         return (DTDValidationSchema) _getSpecialProperty(SP_IX_DTD_OVERRIDE);
     }
 
+    /**
+     * @since 5.0
+     */
+    public ParserMetricsListener getMetricsListener() {
+        return (ParserMetricsListener) _getSpecialProperty(SP_IX_METRICS_LISTENER);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public NameVocabulary getNameVocabulary() {
+        return (NameVocabulary) _getSpecialProperty(SP_IX_NAME_VOCABULARY);
+    }
+
     /**
      * Special accessor to use to verify whether name interning has
      * explicitly been enabled; true if call was been made to set
@@ -806,11 +953,13 @@ public final class ReaderConfig
      */
 
     public void setConfigFlag(int flag) {
+        _markModified();
         mConfigFlags |= flag;
         mConfigFlagMods |= flag;
     }
 
     public void clearConfigFlag(int flag) {
+        _markModified();
         mConfigFlags &= ~flag;
         mConfigFlagMods |= flag;
     }
@@ -899,8 +1048,30 @@ public final class ReaderConfig
         setConfigFlag(CFG_NORMALIZE_LFS, state);
     }
 
+    /**
+     * @since 5.0
+     */
+    public void doDecodeAttributeValuesLazily(final boolean state) {
+        setConfigFlag(CFG_LAZY_ATTRIBUTE_VALUES, state);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public void doReadInputAhead(final boolean state) {
+        setConfigFlag(CFG_INPUT_READ_AHEAD, state);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public void doDecompressInput(final boolean state) {
+        setConfigFlag(CFG_INPUT_DECOMPRESSION, state);
+    }
+
     public void setInputBufferLength(int value)
     {
+        _markModified();
         /* Let's enforce minimum here; necessary to allow longest
          * consequtive text span to be available (xml decl, etc)
          */
@@ -911,33 +1082,43 @@ public final class ReaderConfig
     }
 
     public void setShortestReportedTextSegment(int value) {
+        _markModified();
         mMinTextSegmentLen = value;
     }
     public void setMaxAttributesPerElement(int value) {
+        _markModified();
         mMaxAttributesPerElement = value;
     }
     public void setMaxAttributeSize(int value) {
+        _markModified();
         mMaxAttributeSize = value;
     }
     public void setMaxChildrenPerElement(int value) {
+        _markModified();
         mMaxChildrenPerElement = value;
     }
     public void setMaxElementDepth(int value) {
+        _markModified();
         mMaxElementDepth = value;
     }
     public void setMaxElementCount(long value) {
+        _markModified();
         mMaxElementCount = value;
     }
     public void setMaxCharacters(long value) {
+        _markModified();
         mMaxCharacters = value;
     }
     public void setMaxTextLength(int value) {
+        _markModified();
         mMaxTextLength = value;
     }
     public void setMaxEntityDepth(int value) {
+        _markModified();
         mMaxEntityDepth = value;
     }
     public void setMaxEntityCount(long value) {
+        _markModified();
         mMaxEntityCount = value;
     }
 
@@ -969,6 +1150,7 @@ public final class ReaderConfig
     }
 
     public void setXMLReporter(XMLReporter r) {
+        _markModified();
         mReporter = r;
     }
 
@@ -977,15 +1159,18 @@ public final class ReaderConfig
      * and {@link #setDtdResolver} instead.
      */
     public void setXMLResolver(XMLResolver r) {
+        _markModified();
         mEntityResolver = r;
         mDtdResolver = r;
     }
 
     public void setDtdResolver(XMLResolver r) {
+        _markModified();
         mDtdResolver = r;
     }
 
     public void setEntityResolver(XMLResolver r) {
+        _markModified();
         mEntityResolver = r;
     }
 
@@ -993,9 +1178,13 @@ public final class ReaderConfig
         _setSpecialProperty(SP_IX_UNDECL_ENT_RESOLVER, r);
     }
 
-    public void setBaseURL(URL baseURL) { mBaseURL = baseURL; }
+    public void setBaseURL(URL baseURL) {
+        _markModified();
+        mBaseURL = baseURL;
+    }
 
     public void setInputParsingMode(WstxInputProperties.ParsingMode mode) {
+        _markModified();
         mParsingMode = mode;
     }
 
@@ -1004,6 +1193,7 @@ public final class ReaderConfig
      * disabled, defaults to xml 1.0 compliant processing.
      */
     public void enableXml11(boolean state) {
+        _markModified();
         mXml11 = state;
     }
 
@@ -1015,6 +1205,20 @@ public final class ReaderConfig
         _setSpecialProperty(SP_IX_DTD_OVERRIDE, schema);
     }
 
+    /**
+     * @since 5.0
+     */
+    public void setMetricsListener(ParserMetricsListener l) {
+        _setSpecialProperty(SP_IX_METRICS_LISTENER, l);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public void setNameVocabulary(NameVocabulary v) {
+        _setSpecialProperty(SP_IX_NAME_VOCABULARY, v);
+    }
+
     /*
     ///////////////////////////////////////////////////////////////////////
     // Profile mutators:
@@ -1235,8 +1439,9 @@ public final class ReaderConfig
 
     public char[] allocSmallCBuffer(int minSize)
     {
-        if (mCurrRecycler != null) {
-            char[] result = mCurrRecycler.getSmallCBuffer(minSize);
+        BufferRecycler recycler = _getRecycler();
+        if (recycler != null) {
+            char[] result = recycler.getSmallCBuffer(minSize);
             if (result != null) {
                 return result;
             }
@@ -1248,16 +1453,14 @@ public final class ReaderConfig
     public void freeSmallCBuffer(char[] buffer)
     {
         // Need to create (and assign) the buffer?
-        if (mCurrRecycler == null) {
-            mCurrRecycler = createRecycler();
-        }
-        mCurrRecycler.returnSmallCBuffer(buffer);
+        _getOrCreateRecycler().returnSmallCBuffer(buffer);
     }
 
     public char[] allocMediumCBuffer(int minSize)
     {
-        if (mCurrRecycler != null) {
-            char[] result = mCurrRecycler.getMediumCBuffer(minSize);
+        BufferRecycler recycler = _getRecycler();
+        if (recycler != null) {
+            char[] result = recycler.getMediumCBuffer(minSize);
             if (result != null) {
                 return result;
             }
@@ -1267,16 +1470,14 @@ public final class ReaderConfig
 
     public void freeMediumCBuffer(char[] buffer)
     {
-        if (mCurrRecycler == null) {
-            mCurrRecycler = createRecycler();
-        }
-        mCurrRecycler.returnMediumCBuffer(buffer);
+        _getOrCreateRecycler().returnMediumCBuffer(buffer);
     }
 
     public char[] allocFullCBuffer(int minSize)
     {
-        if (mCurrRecycler != null) {
-            char[] result = mCurrRecycler.getFullCBuffer(minSize);
+        BufferRecycler recycler = _getRecycler();
+        if (recycler != null) {
+            char[] result = recycler.getFullCBuffer(minSize);
             if (result != null) {
                 return result;
             }
@@ -1287,16 +1488,14 @@ public final class ReaderConfig
     public void freeFullCBuffer(char[] buffer)
     {
         // Need to create (and assign) the buffer?
-        if (mCurrRecycler == null) {
-            mCurrRecycler = createRecycler();
-        }
-        mCurrRecycler.returnFullCBuffer(buffer);
+        _getOrCreateRecycler().returnFullCBuffer(buffer);
     }
 
     public byte[] allocFullBBuffer(int minSize)
     {
-        if (mCurrRecycler != null) {
-            byte[] result = mCurrRecycler.getFullBBuffer(minSize);
+        BufferRecycler recycler = _getRecycler();
+        if (recycler != null) {
+            byte[] result = recycler.getFullBBuffer(minSize);
             if (result != null) {
                 return result;
             }
@@ -1307,10 +1506,28 @@ public final class ReaderConfig
     public void freeFullBBuffer(byte[] buffer)
     {
         // Need to create (and assign) the buffer?
-        if (mCurrRecycler == null) {
-            mCurrRecycler = createRecycler();
+        _getOrCreateRecycler().returnFullBBuffer(buffer);
+    }
+
+    private BufferRecycler _getRecycler()
+    {
+        if (mFrozen) {
+            SoftReference<BufferRecycler> ref = mRecyclerRef.get();
+            return (ref == null) ? null : ref.get();
+        }
+        return mCurrRecycler;
+    }
+
+    private BufferRecycler _getOrCreateRecycler()
+    {
+        BufferRecycler recycler = _getRecycler();
+        if (recycler == null) {
+            recycler = createRecycler();
+            if (!mFrozen) {
+                mCurrRecycler = recycler;
+            }
         }
-        mCurrRecycler.returnFullBBuffer(buffer);
+        return recycler;
     }
 
     private BufferRecycler createRecycler()
@@ -1329,6 +1546,7 @@ public final class ReaderConfig
 
     private void setConfigFlag(int flag, boolean state)
     {
+        _markModified();
         if (state) {
             mConfigFlags |= flag;
         } else {
@@ -1410,6 +1628,15 @@ public final class ReaderConfig
         case PROP_NORMALIZE_LFS:
             return willNormalizeLFs() ? Boolean.TRUE : Boolean.FALSE;
 
+        case PROP_LAZY_ATTRIBUTE_VALUES:
+            return willDecodeAttributeValuesLazily() ? Boolean.TRUE : Boolean.FALSE;
+
+        case PROP_INPUT_READ_AHEAD:
+            return willReadInputAhead() ? Boolean.TRUE : Boolean.FALSE;
+
+        case PROP_INPUT_DECOMPRESSION:
+            return willDecompressInput() ? Boolean.TRUE : Boolean.FALSE;
+
             // then object values:
         case PROP_INPUT_BUFFER_LENGTH:
             return DataUtil.Integer(getInputBufferLength());
@@ -1446,6 +1673,10 @@ public final class ReaderConfig
             return getBaseURL();
         case PROP_INPUT_PARSING_MODE:
             return getInputParsingMode();
+        case PROP_METRICS_LISTENER:
+            return getMetricsListener();
+        case PROP_NAME_VOCABULARY:
+            return getNameVocabulary();
 
         default: // sanity check, should never happen
             throw new IllegalStateException("Internal error: no handler for property with internal id "+id+".");
@@ -1454,6 +1685,7 @@ public final class ReaderConfig
 
 	public boolean setProperty(String propName, int id, Object value)
     {
+        _markModified();
         switch (id) {
             // First, standard (Stax 1.0) properties:
 
@@ -1573,6 +1805,18 @@ public final class ReaderConfig
         case PROP_NORMALIZE_LFS:
             doNormalizeLFs(ArgUtil.convertToBoolean(propName, value));
             break;
+
+        case PROP_LAZY_ATTRIBUTE_VALUES:
+            doDecodeAttributeValuesLazily(ArgUtil.convertToBoolean(propName, value));
+            break;
+
+        case PROP_INPUT_READ_AHEAD:
+            doReadInputAhead(ArgUtil.convertToBoolean(propName, value));
+            break;
+
+        case PROP_INPUT_DECOMPRESSION:
+            doDecompressInput(ArgUtil.convertToBoolean(propName, value));
+            break;
             
         // // // And then Woodstox specific, enum/object:
 
@@ -1658,6 +1902,14 @@ public final class ReaderConfig
             setInputParsingMode((WstxInputProperties.ParsingMode) value);
             break;
 
+        case PROP_METRICS_LISTENER:
+            setMetricsListener((ParserMetricsListener) value);
+            break;
+
+        case PROP_NAME_VOCABULARY:
+            setNameVocabulary((NameVocabulary) value);
+            break;
+
         default: // sanity check, should never happen
             throw new IllegalStateException("Internal error: no handler for property with internal id "+id+".");
         }
@@ -1678,6 +1930,24 @@ public final class ReaderConfig
         return _hasConfigFlag(flag) && (mConfigFlagMods & flag) != 0;
     }
 
+    /**
+     * Method called by all mutators before changing state: verifies
+     * that this instance is not a frozen snapshot, and keeps track
+     * of the number of modifications.
+     */
+    private final void _markModified()
+    {
+        if (mFrozen) {
+            throw new IllegalStateException("Can not modify a frozen (shared) ReaderConfig snapshot");
+        }
+        ++mModCount;
+    }
+
+    @Override
+    protected final void markModified() {
+        _markModified();
+    }
+
     private final Object _getSpecialProperty(int ix)
     {
         if (mSpecialProperties == null) {
@@ -1688,6 +1958,7 @@ public final class ReaderConfig
 
     private final void _setSpecialProperty(int ix, Object value)
     {
+        _markModified();
         if (mSpecialProperties == null) {
             mSpecialProperties = new Object[SPEC_PROC_COUNT];
         }
@@ -35,5 +35,10 @@ public final class ValidatorConfig
         // nothing to set:
         return false;
     }
+
+    protected void markModified() {
+        // shared singleton, can not allow changes to shared settings either
+        throw new IllegalStateException("Can not modify shared ValidatorConfig instance");
+    }
 }
 
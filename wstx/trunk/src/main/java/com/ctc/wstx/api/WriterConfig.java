@@ -19,6 +19,10 @@ import com.ctc.wstx.util.DataUtil;
 /**
  * Simple configuration container class; passed by writer factory to writer
  * instance created.
+ *<p>
+ * As with {@link ReaderConfig}, factories may create immutable
+ * <b>frozen</b> snapshots (see {@link #createFrozen}) that are shared by
+ * all writers created until factory configuration is changed.
  */
 public final class WriterConfig
     extends CommonConfig
@@ -73,6 +77,11 @@ public final class WriterConfig
 
     final static int PROP_OUTPUT_INVALID_CHAR_HANDLER = 21;
     final static int PROP_OUTPUT_EMPTY_ELEMENT_HANDLER = 22;
+    final static int PROP_RECYCLE_WRITERS = 23;
+    final static int PROP_WRITE_BEHIND = 24;
+    final static int PROP_INDENTATION = 25;
+    final static int PROP_LINE_SEPARATOR = 26;
+    final static int PROP_INDENT_MIXED_CONTENT = 27;
 
     // Per-writer instance information
 
@@ -217,6 +226,16 @@ public final class WriterConfig
                         DataUtil.Integer(PROP_OUTPUT_INVALID_CHAR_HANDLER));
         sProperties.put(WstxOutputProperties.P_OUTPUT_EMPTY_ELEMENT_HANDLER,
                         DataUtil.Integer(PROP_OUTPUT_EMPTY_ELEMENT_HANDLER));
+        sProperties.put(WstxOutputProperties.P_OUTPUT_RECYCLE_WRITERS,
+                        DataUtil.Integer(PROP_RECYCLE_WRITERS));
+        sProperties.put(WstxOutputProperties.P_OUTPUT_WRITE_BEHIND,
+                        DataUtil.Integer(PROP_WRITE_BEHIND));
+        sProperties.put(WstxOutputProperties.P_OUTPUT_INDENTATION,
+                        DataUtil.Integer(PROP_INDENTATION));
+        sProperties.put(WstxOutputProperties.P_OUTPUT_LINE_SEPARATOR,
+                        DataUtil.Integer(PROP_LINE_SEPARATOR));
+        sProperties.put(WstxOutputProperties.P_OUTPUT_INDENT_MIXED_CONTENT,
+                        DataUtil.Integer(PROP_INDENT_MIXED_CONTENT));
 
         // Validation settings:
         sProperties.put(WstxOutputProperties.P_OUTPUT_VALIDATE_STRUCTURE,
@@ -261,7 +280,7 @@ public final class WriterConfig
 
     Object[] mSpecialProperties = null;
 
-    private final static int SPEC_PROC_COUNT = 6;
+    private final static int SPEC_PROC_COUNT = 8;
 
     private final static int SP_IX_AUTO_NS_PREFIX = 0;
     private final static int SP_IX_TEXT_ESCAPER_FACTORY = 1;
@@ -269,6 +288,8 @@ public final class WriterConfig
     private final static int SP_IX_PROBLEM_REPORTER = 3;
     private final static int SP_IX_INVALID_CHAR_HANDLER = 4;
     private final static int SP_IX_EMPTY_ELEMENT_HANDLER = 5;
+    private final static int SP_IX_INDENTATION = 6;
+    private final static int SP_IX_LINE_SEPARATOR = 7;
 
     /*
     //////////////////////////////////////////////////////////
@@ -291,6 +312,29 @@ public final class WriterConfig
      */
     BufferRecycler mCurrRecycler = null;
 
+    /*
+    //////////////////////////////////////////////////////////
+    // Snapshot support:
+    //////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Flag that indicates whether this instance is an immutable snapshot
+     * that may be shared between writers.
+     *
+     * @since 5.0
+     */
+    final protected boolean mFrozen;
+
+    /**
+     * Number of modifications made to this configuration object; for
+     * frozen instances, modification count of the configuration
+     * the snapshot was created from.
+     *
+     * @since 5.0
+     */
+    protected int mModCount;
+
     /*
     //////////////////////////////////////////////////////////
     // Life-cycle:
@@ -299,21 +343,32 @@ public final class WriterConfig
 
     private WriterConfig(WriterConfig base,
             boolean j2meSubset, int flags, Object[] specProps)
+    {
+        this(base, j2meSubset, flags, specProps, false);
+    }
+
+    private WriterConfig(WriterConfig base,
+            boolean j2meSubset, int flags, Object[] specProps,
+            boolean frozen)
     {
         super(base);
         mIsJ2MESubset = j2meSubset;
         mConfigFlags = flags;
         mSpecialProperties = specProps;
+        mFrozen = frozen;
 
         /* Ok, let's then see if we can find a buffer recycler. Since they
          * are lazily constructed, and since GC may just flush them out
          * on its whims, it's possible we might not find one. That's ok;
          * we can reconstruct one if and when we are to return one or more
-         * buffers.
+         * buffers. Frozen instances may be used from multiple threads,
+         * so they can not hold on to one.
          */
-        SoftReference<BufferRecycler> ref = mRecyclerRef.get();
-        if (ref != null) {
-            mCurrRecycler = ref.get();
+        if (!frozen) {
+            SoftReference<BufferRecycler> ref = mRecyclerRef.get();
+            if (ref != null) {
+                mCurrRecycler = ref.get();
+            }
         }
     }
 
@@ -329,16 +384,69 @@ public final class WriterConfig
 
     public WriterConfig createNonShared()
     {
-        Object[] specProps;
+        return new WriterConfig(this, mIsJ2MESubset, mConfigFlags, copySpecialProperties());
+    }
 
-        if (mSpecialProperties != null) {
-            int len = mSpecialProperties.length;
-            specProps = new Object[len];
-            System.arraycopy(mSpecialProperties, 0, specProps, 0, len);
-        } else {
-            specProps = null;
+    /**
+     * Method for constructing an immutable snapshot of the current
+     * settings of this configuration object, to be shared by writers.
+     * Any attempt to modify the snapshot results in an
+     * {@link IllegalStateException}; per-writer modifications are done
+     * by first creating a non-shared copy using {@link #createNonShared}.
+     *
+     * @since 5.0
+     */
+    public WriterConfig createFrozen()
+    {
+        WriterConfig wc = new WriterConfig(this, mIsJ2MESubset, mConfigFlags,
+                copySpecialProperties(), true);
+        wc.mModCount = mModCount;
+        return wc;
+    }
+
+    private Object[] copySpecialProperties()
+    {
+        if (mSpecialProperties == null) {
+            return null;
         }
-        return new WriterConfig(this, mIsJ2MESubset, mConfigFlags, specProps);
+        int len = mSpecialProperties.length;
+        Object[] specProps = new Object[len];
+        System.arraycopy(mSpecialProperties, 0, specProps, 0, len);
+        return specProps;
+    }
+
+    /**
+     * @return True if this instance is an immutable snapshot, created
+     *   using {@link #createFrozen}
+     *
+     * @since 5.0
+     */
+    public boolean isFrozen() { return mFrozen; }
+
+    /**
+     * @since 5.0
+     */
+    public int getModCount() { return mModCount; }
+
+    /**
+     * Method for checking whether this configuration has the same
+     * settings as the given one; used to check whether a recycled stream
+     * writer can be reused with current configuration of a factory.
+     *
+     * @since 5.0
+     */
+    public boolean hasSameSettings(WriterConfig other)
+    {
+        if (mConfigFlags != other.mConfigFlags
+            || mReturnNullForDefaultNamespace != other.mReturnNullForDefaultNamespace) {
+            return false;
+        }
+        for (int i = 0; i < SPEC_PROC_COUNT; ++i) {
+            if (getSpecialProperty(i) != other.getSpecialProperty(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /*
@@ -418,6 +526,16 @@ public final class WriterConfig
             return getInvalidCharHandler();
         case PROP_OUTPUT_EMPTY_ELEMENT_HANDLER:
             return getEmptyElementHandler();
+        case PROP_RECYCLE_WRITERS:
+            return willRecycleWriters() ? Boolean.TRUE : Boolean.FALSE;
+        case PROP_WRITE_BEHIND:
+            return willWriteBehind() ? Boolean.TRUE : Boolean.FALSE;
+        case PROP_INDENTATION:
+            return getIndentation();
+        case PROP_LINE_SEPARATOR:
+            return getLineSeparator();
+        case PROP_INDENT_MIXED_CONTENT:
+            return willIndentMixedContent() ? Boolean.TRUE : Boolean.FALSE;
 
             // And then per-instance properties: not valid via config object
         case PROP_UNDERLYING_STREAM:
@@ -434,6 +552,7 @@ public final class WriterConfig
      */
     public boolean setProperty(String name, int id, Object value)
     {
+        markModified();
         switch (id) {
         // First, Stax 1.0 properties:
 
@@ -512,6 +631,21 @@ public final class WriterConfig
         case PROP_OUTPUT_EMPTY_ELEMENT_HANDLER:
             setEmptyElementHandler((EmptyElementHandler) value);
             break;
+        case PROP_RECYCLE_WRITERS:
+            doRecycleWriters(ArgUtil.convertToBoolean(name, value));
+            break;
+        case PROP_WRITE_BEHIND:
+            doWriteBehind(ArgUtil.convertToBoolean(name, value));
+            break;
+        case PROP_INDENTATION:
+            setIndentation((String) value);
+            break;
+        case PROP_LINE_SEPARATOR:
+            setLineSeparator((String) value);
+            break;
+        case PROP_INDENT_MIXED_CONTENT:
+            doIndentMixedContent(ArgUtil.convertToBoolean(name, value));
+            break;
 
         case PROP_UNDERLYING_STREAM:
         case PROP_UNDERLYING_WRITER:
@@ -602,6 +736,27 @@ public final class WriterConfig
         return hasConfigFlag(CFG_FIX_CONTENT);
     }
 
+    /**
+     * @since 5.0
+     */
+    public boolean willRecycleWriters() {
+        return hasConfigFlag(CFG_RECYCLE_WRITERS);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public boolean willWriteBehind() {
+        return hasConfigFlag(CFG_WRITE_BEHIND);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public boolean willIndentMixedContent() {
+        return hasConfigFlag(CFG_INDENT_MIXED_CONTENT);
+    }
+
     /**
      * @return Prefix to use as the base for automatically generated
      *   namespace prefixes ("namespace prefix prefix", so to speak).
@@ -635,6 +790,27 @@ public final class WriterConfig
         return (EmptyElementHandler) getSpecialProperty(SP_IX_EMPTY_ELEMENT_HANDLER);
     }
 
+    /**
+     * @return String to repeat for each nesting level when indenting
+     *   output; null if output is not to be indented
+     *
+     * @since 5.0
+     */
+    public String getIndentation() {
+        return (String) getSpecialProperty(SP_IX_INDENTATION);
+    }
+
+    /**
+     * @return Line separator to use for indentation; defaults to
+     *   a linefeed
+     *
+     * @since 5.0
+     */
+    public String getLineSeparator() {
+        String sep = (String) getSpecialProperty(SP_IX_LINE_SEPARATOR);
+        return (sep == null) ? "\n" : sep;
+    }
+
     // // // Mutators:
 
     // Standard properies:
@@ -704,6 +880,27 @@ public final class WriterConfig
         setConfigFlag(CFG_FIX_CONTENT, state);
     }
 
+    /**
+     * @since 5.0
+     */
+    public void doRecycleWriters(boolean state) {
+        setConfigFlag(CFG_RECYCLE_WRITERS, state);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public void doWriteBehind(boolean state) {
+        setConfigFlag(CFG_WRITE_BEHIND, state);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public void doIndentMixedContent(boolean state) {
+        setConfigFlag(CFG_INDENT_MIXED_CONTENT, state);
+    }
+
     /**
      * @param prefix Prefix to use as the base for automatically generated
      *   namespace prefixes ("namespace prefix prefix", so to speak).
@@ -732,6 +929,38 @@ public final class WriterConfig
         setSpecialProperty(SP_IX_EMPTY_ELEMENT_HANDLER, h);
     }
 
+    /**
+     * @param indent String to repeat for each nesting level when indenting
+     *   output (may only contain spaces and tabs); or null to disable
+     *   indentation
+     *
+     * @since 5.0
+     */
+    public void setIndentation(String indent) {
+        if (indent != null) {
+            for (int i = 0, len = indent.length(); i < len; ++i) {
+                char c = indent.charAt(i);
+                if (c != ' ' && c != '\t') {
+                    throw new IllegalArgumentException("Illegal indentation: can only contain spaces and tabs");
+                }
+            }
+        }
+        setSpecialProperty(SP_IX_INDENTATION, indent);
+    }
+
+    /**
+     * @param sep Line separator to use for indentation; one of
+     *   "\n", "\r\n" or "\r" (or null for default)
+     *
+     * @since 5.0
+     */
+    public void setLineSeparator(String sep) {
+        if (sep != null && !("\n".equals(sep) || "\r\n".equals(sep) || "\r".equals(sep))) {
+            throw new IllegalArgumentException("Illegal line separator: has to be one of \\n, \\r\\n or \\r");
+        }
+        setSpecialProperty(SP_IX_LINE_SEPARATOR, sep);
+    }
+
     /*
     //////////////////////////////////////////////////////////
     // Extended Woodstox API, profiles
@@ -795,8 +1024,9 @@ public final class WriterConfig
      */
     public char[] allocMediumCBuffer(int minSize)
     {
-        if (mCurrRecycler != null) {
-            char[] result = mCurrRecycler.getMediumCBuffer(minSize);
+        BufferRecycler recycler = getRecycler();
+        if (recycler != null) {
+            char[] result = recycler.getMediumCBuffer(minSize);
             if (result != null) {
                 return result;
             }
@@ -806,17 +1036,14 @@ public final class WriterConfig
 
     public void freeMediumCBuffer(char[] buffer)
     {
-        // Need to create (and assign) the buffer?
-        if (mCurrRecycler == null) {
-            mCurrRecycler = createRecycler();
-        }
-        mCurrRecycler.returnMediumCBuffer(buffer);
+        getOrCreateRecycler().returnMediumCBuffer(buffer);
     }
 
     public char[] allocFullCBuffer(int minSize)
     {
-        if (mCurrRecycler != null) {
-            char[] result = mCurrRecycler.getFullCBuffer(minSize);
+        BufferRecycler recycler = getRecycler();
+        if (recycler != null) {
+            char[] result = recycler.getFullCBuffer(minSize);
             if (result != null) {
                 return result;
             }
@@ -826,17 +1053,14 @@ public final class WriterConfig
 
     public void freeFullCBuffer(char[] buffer)
     {
-        // Need to create (and assign) the buffer?
-        if (mCurrRecycler == null) {
-            mCurrRecycler = createRecycler();
-        }
-        mCurrRecycler.returnFullCBuffer(buffer);
+        getOrCreateRecycler().returnFullCBuffer(buffer);
     }
 
     public byte[] allocFullBBuffer(int minSize)
     {
-        if (mCurrRecycler != null) {
-            byte[] result = mCurrRecycler.getFullBBuffer(minSize);
+        BufferRecycler recycler = getRecycler();
+        if (recycler != null) {
+            byte[] result = recycler.getFullBBuffer(minSize);
             if (result != null) {
                 return result;
             }
@@ -846,11 +1070,28 @@ public final class WriterConfig
 
     public void freeFullBBuffer(byte[] buffer)
     {
-        // Need to create (and assign) the buffer?
-        if (mCurrRecycler == null) {
-            mCurrRecycler = createRecycler();
+        getOrCreateRecycler().returnFullBBuffer(buffer);
+    }
+
+    private BufferRecycler getRecycler()
+    {
+        if (mFrozen) {
+            SoftReference<BufferRecycler> ref = mRecyclerRef.get();
+            return (ref == null) ? null : ref.get();
+        }
+        return mCurrRecycler;
+    }
+
+    private BufferRecycler getOrCreateRecycler()
+    {
+        BufferRecycler recycler = getRecycler();
+        if (recycler == null) {
+            recycler = createRecycler();
+            if (!mFrozen) {
+                mCurrRecycler = recycler;
+            }
         }
-        mCurrRecycler.returnFullBBuffer(buffer);
+        return recycler;
     }
 
     private BufferRecycler createRecycler()
@@ -868,6 +1109,7 @@ public final class WriterConfig
      */
 
     private void setConfigFlag(int flag, boolean state) {
+        markModified();
         if (state) {
             mConfigFlags |= flag;
         } else {
@@ -875,6 +1117,19 @@ public final class WriterConfig
         }
     }
 
+    /**
+     * Method called by all mutators before changing state: verifies
+     * that this instance is not a frozen snapshot, and keeps track
+     * of the number of modifications.
+     */
+    @Override
+    protected void markModified() {
+        if (mFrozen) {
+            throw new IllegalStateException("Can not modify a frozen (shared) WriterConfig snapshot");
+        }
+        ++mModCount;
+    }
+
     private final boolean hasConfigFlag(int flag) {
         return ((mConfigFlags & flag) == flag);
     }
@@ -889,6 +1144,7 @@ public final class WriterConfig
 
     private final void setSpecialProperty(int ix, Object value)
     {
+        markModified();
         if (mSpecialProperties == null) {
             mSpecialProperties = new Object[SPEC_PROC_COUNT];
         }
@@ -137,6 +137,50 @@ public final class WstxInputProperties
      */
     public static final String P_TREAT_CHAR_REFS_AS_ENTS = "com.ctc.wstx.treatCharRefsAsEnts";
 
+    /**
+     * Whether stream readers are allowed to defer decoding of attribute
+     * values until they are accessed. If enabled, values that contain no
+     * entity references or white space that needs normalization are
+     * only located (not copied) when start tag is parsed; this can
+     * significantly reduce work for elements with many attributes, of
+     * which only some are accessed. Values that do need decoding are still
+     * decoded eagerly.
+     *<p>
+     * Default value is <code>false</code>.
+     *
+     * @since 5.0
+     */
+    public final static String P_LAZY_ATTRIBUTE_VALUES = "com.ctc.wstx.lazyAttributeValues";
+
+    /**
+     * Whether stream readers constructed from input streams (including
+     * ones opened for Files and URLs) should read content ahead using
+     * a background thread, so that reading (and decompressing, see
+     * {@link #P_INPUT_DECOMPRESSION}) of input overlaps with parsing.
+     * If enabled, reader will always close the read-ahead stream it
+     * creates (to stop the thread), but the underlying stream is only
+     * closed if auto-closing is enabled.
+     *<p>
+     * Default value is <code>false</code>.
+     *
+     * @since 5.0
+     */
+    public final static String P_INPUT_READ_AHEAD = "com.ctc.wstx.inputReadAhead";
+
+    /**
+     * Whether stream readers constructed from input streams (including
+     * ones opened for Files and URLs) should check whether content is
+     * compressed using GZIP or zlib (Deflate with zlib header), and
+     * if so, decompress it. If read-ahead is enabled (see
+     * {@link #P_INPUT_READ_AHEAD}), decompression is done by the
+     * background thread.
+     *<p>
+     * Default value is <code>false</code>.
+     *
+     * @since 5.0
+     */
+    public final static String P_INPUT_DECOMPRESSION = "com.ctc.wstx.inputDecompression";
+
     // // // Enabling alternate mode for parsing XML fragments instead
     // // // of full documents
 
@@ -277,6 +321,31 @@ public final class WstxInputProperties
      */
     public final static String P_BASE_URL = "com.ctc.wstx.baseURL";
 
+    /**
+     * Property of type {@link com.ctc.wstx.metrics.ParserMetricsListener},
+     * that will make readers collect parsing metrics (bytes and characters
+     * read, buffer loads, events by type, entity expansions, DTD cache
+     * accesses, symbol table statistics, time spent in validators), and
+     * report them to the listener once the document has been parsed.
+     *<p>
+     * Default value is null, meaning that no metrics are collected.
+     *
+     * @since 5.0
+     */
+    public final static String P_METRICS_LISTENER = "com.ctc.wstx.metricsListener";
+
+    /**
+     * Property of type {@link com.ctc.wstx.util.NameVocabulary}, that
+     * will make readers resolve names of elements to integer ids
+     * of the vocabulary, accessible via
+     * {@link com.ctc.wstx.sr.BasicStreamReader#getLocalNameId}.
+     *<p>
+     * Default value is null, meaning that no ids are resolved.
+     *
+     * @since 5.0
+     */
+    public final static String P_NAME_VOCABULARY = "com.ctc.wstx.nameVocabulary";
+
     // // // Alternate parsing modes
 
     /**
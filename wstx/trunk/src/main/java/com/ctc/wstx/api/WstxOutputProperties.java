@@ -151,6 +151,80 @@ public final class WstxOutputProperties
      */
     public final static String P_OUTPUT_EMPTY_ELEMENT_HANDLER = "com.ctc.wstx.outputEmptyElementHandler";
 
+    /**
+     * Property that determines whether output factory recycles stream
+     * writers it has created: if enabled, a writer is retained by the
+     * factory when closed (by the thread that created it), and reused
+     * (after being reset) when a writer is next created by the same
+     * thread, to output to the same type of target using the same
+     * encoding and configuration.
+     *<p>
+     * Since a recycled writer may be handed out again as soon as it has
+     * been closed, applications must not access writers in any way
+     * after closing them, when this feature is enabled.
+     * Default value is false.
+     *
+     * @since 5.0
+     */
+    public final static String P_OUTPUT_RECYCLE_WRITERS = "com.ctc.wstx.outputRecycleWriters";
+
+    /**
+     * Property that determines whether stream writers constructed for
+     * output streams (including ones opened for Files) write their output
+     * asynchronously: full output buffers are handed to a background
+     * thread, which writes them to the stream while serialization
+     * continues into the next buffer. Calls to <code>flush()</code> and
+     * <code>close()</code> block until all buffered output has been
+     * written, and report any failures to write it.
+     *<p>
+     * Writers using write-behind output are not recycled.
+     * Default value is false.
+     *
+     * @since 5.0
+     */
+    public final static String P_OUTPUT_WRITE_BEHIND = "com.ctc.wstx.outputWriteBehind";
+
+    // // // Indentation
+
+    /**
+     * Property of type {@link String} that enables indentation
+     * (pretty-printing) of output: if set, stream writers start a new line
+     * (see {@link #P_OUTPUT_LINE_SEPARATOR}) before each start tag,
+     * comment and processing instruction, and before end tags of elements
+     * that contain such markup; each line is indented by repeating the
+     * value once per nesting level. Value may only contain spaces and tabs
+     * (and may be empty, to only start new lines).
+     *<p>
+     * Indentation is not added within elements that contain text (including
+     * white space written by the caller) unless
+     * {@link #P_OUTPUT_INDENT_MIXED_CONTENT} is enabled, since doing so
+     * changes the text content.
+     * Default value is null, meaning output is not indented.
+     *
+     * @since 5.0
+     */
+    public final static String P_OUTPUT_INDENTATION = "com.ctc.wstx.outputIndentation";
+
+    /**
+     * Property of type {@link String} that defines the line separator
+     * used for indentation (see {@link #P_OUTPUT_INDENTATION}); one of
+     * "\n", "\r\n" or "\r".
+     * Default value is "\n".
+     *
+     * @since 5.0
+     */
+    public final static String P_OUTPUT_LINE_SEPARATOR = "com.ctc.wstx.outputLineSeparator";
+
+    /**
+     * Property that determines whether indentation (see
+     * {@link #P_OUTPUT_INDENTATION}) is added also within elements that
+     * contain text, in addition to child elements (mixed content).
+     * Default value is false.
+     *
+     * @since 5.0
+     */
+    public final static String P_OUTPUT_INDENT_MIXED_CONTENT = "com.ctc.wstx.outputIndentMixedContent";
+
     // // // Per-instance access to underlying output objects
 
     /**
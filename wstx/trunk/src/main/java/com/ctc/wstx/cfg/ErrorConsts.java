@@ -148,6 +148,8 @@ public class ErrorConsts
 
     public static String WERR_ATTR_NO_ELEM =
         "Trying to write an attribute when there is no open start element.";
+    public static String WERR_ATTR_DUPLICATE =
+        "Duplicate attribute write for attribute ''{0}''";
 
     public static String WERR_NAME_EMPTY = "Illegal to pass empty name";
 
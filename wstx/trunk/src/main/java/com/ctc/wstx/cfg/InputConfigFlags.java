@@ -200,5 +200,22 @@ public interface InputConfigFlags
      * 
      */
     final static int CFG_TREAT_CHAR_REFS_AS_ENTS = 0x00800000;
-}
 
+    /**
+     * If true, values of attributes that need no normalization or entity
+     * expansion are not copied when start tag is parsed, but only when
+     * (and if) they are accessed.
+     */
+    final static int CFG_LAZY_ATTRIBUTE_VALUES = 0x01000000;
+
+    /**
+     * If true, input streams are read ahead by a background thread.
+     */
+    final static int CFG_INPUT_READ_AHEAD = 0x02000000;
+
+    /**
+     * If true, compressed (GZIP, zlib) input streams are detected
+     * and decompressed.
+     */
+    final static int CFG_INPUT_DECOMPRESSION = 0x04000000;
+}
@@ -109,4 +109,28 @@ public interface OutputConfigFlags
      * The default is to use single quotes.
      */
     final static int CFG_USE_DOUBLE_QUOTES_IN_XML_DECL = 0x4000;
+
+    /**
+     * Property that determines whether output factory recycles stream
+     * writers it has created, once they are closed.
+     *
+     * @since 5.0
+     */
+    final static int CFG_RECYCLE_WRITERS = 0x8000;
+
+    /**
+     * Property that determines whether output to streams is written
+     * by a background thread.
+     *
+     * @since 5.0
+     */
+    final static int CFG_WRITE_BEHIND = 0x10000;
+
+    /**
+     * Property that determines whether indentation is added within
+     * elements that contain text.
+     *
+     * @since 5.0
+     */
+    final static int CFG_INDENT_MIXED_CONTENT = 0x20000;
 }
@@ -0,0 +1,377 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.dom;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.*;
+
+import com.ctc.wstx.sr.AttributeCollector;
+import com.ctc.wstx.sr.InputElementStack;
+import com.ctc.wstx.sr.StreamReaderImpl;
+
+/**
+ * Class that can be used to build DOM trees directly from Woodstox
+ * stream readers. Unlike generic Stax-to-DOM builders (and JAXP
+ * transformers), this class does not go through public accessors of
+ * {@link XMLStreamReader} for element and attribute information, but
+ * accesses {@link InputElementStack} and {@link AttributeCollector}
+ * directly. Since names come from the reader's symbol table they are
+ * canonical, which allows for cheap caching of qualified names
+ * needed by DOM API.
+ *<p>
+ * In addition to building full documents, builder can also build
+ * individual subtrees (see {@link #buildElement}); this can be used
+ * for "on demand" construction, in which caller iterates over
+ * the document using the stream reader, and only builds DOM
+ * representation for subtrees it needs, skipping others with
+ * {@link org.codehaus.stax2.XMLStreamReader2#skipElement}.
+ *<p>
+ * Instances are not thread-safe, but may be reused for building
+ * multiple documents sequentially.
+ *
+ * @since 5.0
+ */
+public class WstxDOMBuilder
+{
+    /**
+     * Size of the qualified name cache; needs to be a power of two.
+     */
+    final static int QNAME_CACHE_SIZE = 64;
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Configuration
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Whether ignorable white space should be ignored, ie not added
+     * in the resulting DOM tree. Default value if false.
+     */
+    protected boolean mCfgIgnoreWs = false;
+
+    /**
+     * Whether comments are to be added in the resulting DOM tree
+     * or not. Default value is true.
+     */
+    protected boolean mCfgIncludeComments = true;
+
+    /**
+     * Builder used for constructing new documents, if caller does
+     * not pass one; lazily constructed.
+     */
+    protected DocumentBuilder mDocBuilder;
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // State
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Simple direct-mapped cache for qualified names: since reader
+     * names are canonicalized via symbol table, identity comparison
+     * is enough in most cases.
+     */
+    protected final String[] mQNameCache = new String[QNAME_CACHE_SIZE * 3];
+
+    /**
+     * Last text node added, if the last node appended was a (non-CDATA)
+     * text node; used for combining consequtive text segments.
+     */
+    protected Text mLastText;
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Life-cycle, configuration
+    ///////////////////////////////////////////////////////////
+     */
+
+    public WstxDOMBuilder() { }
+
+    public WstxDOMBuilder(DocumentBuilder docBuilder) {
+        mDocBuilder = docBuilder;
+    }
+
+    /**
+     * Method used to change whether the build methods will add ignorable
+     * (element) white space in the DOM tree or not.
+     *<p>
+     * Whether all-whitespace text segment is ignorable white space or
+     * not is based on DTD read in, as per XML specifications (white space
+     * is only significant in mixed content or pure text elements).
+     */
+    public void setIgnoreWhitespace(boolean state) {
+        mCfgIgnoreWs = state;
+    }
+
+    public void setIncludeComments(boolean state) {
+        mCfgIncludeComments = state;
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Public API
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Method that will create a new {@link Document} and populate it
+     * using all remaining content from given stream reader.
+     *
+     * @param sr Stream reader from which input is read; has to be
+     *   a Woodstox stream reader.
+     */
+    public Document build(XMLStreamReader sr)
+        throws XMLStreamException
+    {
+        Document doc = constructDocument();
+        build(sr, doc);
+        return doc;
+    }
+
+    /**
+     * Method that will populate given {@link Document} using all remaining
+     * content from given stream reader. Reader has to be positioned
+     * either at START_DOCUMENT, or at START_ELEMENT of the root element
+     * (which is then included) when this method is called; when it
+     * returns, reader will be at END_DOCUMENT.
+     */
+    public void build(XMLStreamReader sr, Document doc)
+        throws XMLStreamException
+    {
+        StreamReaderImpl r = checkReader(sr);
+        mLastText = null;
+        Node current = doc;
+        int type = sr.getEventType();
+        if (type == XMLStreamConstants.START_ELEMENT) {
+            current = createElement(r, doc);
+            doc.appendChild(current);
+        } else if (type != XMLStreamConstants.START_DOCUMENT) {
+            throw new IllegalStateException("Reader has to point to START_DOCUMENT or START_ELEMENT; current event "
+                    +type);
+        }
+        buildTree(r, sr, doc, current, 0);
+    }
+
+    /**
+     * Method that will build DOM element for the START_ELEMENT event
+     * stream reader currently points to, including all of its
+     * descendants. When method returns, reader will point to the
+     * matching END_ELEMENT event. Returned element is not attached
+     * to the document; caller needs to do that if necessary.
+     */
+    public Element buildElement(XMLStreamReader sr, Document doc)
+        throws XMLStreamException
+    {
+        StreamReaderImpl r = checkReader(sr);
+        if (sr.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            throw new IllegalStateException("Reader has to point to START_ELEMENT; current event "
+                    +sr.getEventType());
+        }
+        mLastText = null;
+        Element elem = createElement(r, doc);
+        buildTree(r, sr, doc, elem, 1);
+        return elem;
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Internal methods, building
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Main build loop: iterative, using DOM parent links for keeping
+     * track of the current context node.
+     *
+     * @param depth Number of open elements built by this call; if
+     *   non-zero, building stops when the element open at depth 1 is
+     *   closed; if zero, continues until the end of document.
+     */
+    protected void buildTree(StreamReaderImpl r, XMLStreamReader sr, Document doc,
+            Node current, int depth)
+        throws XMLStreamException
+    {
+        final boolean stopAtEnd = (depth > 0);
+
+        while (true) {
+            int type = sr.next();
+            Node child;
+
+            switch (type) {
+            case XMLStreamConstants.START_ELEMENT:
+                child = createElement(r, doc);
+                current.appendChild(child);
+                current = child;
+                mLastText = null;
+                ++depth;
+                continue;
+
+            case XMLStreamConstants.END_ELEMENT:
+                mLastText = null;
+                if (--depth == 0 && stopAtEnd) {
+                    return;
+                }
+                current = current.getParentNode();
+                continue;
+
+            case XMLStreamConstants.SPACE:
+            case XMLStreamConstants.CHARACTERS:
+                // DOM does not allow white space outside of root element
+                if (type == XMLStreamConstants.SPACE
+                    && (current == doc || mCfgIgnoreWs)) {
+                    continue;
+                }
+                if (mLastText != null) {
+                    mLastText.appendData(sr.getText());
+                    continue;
+                }
+                child = mLastText = doc.createTextNode(sr.getText());
+                current.appendChild(child);
+                continue;
+
+            case XMLStreamConstants.CDATA:
+                child = doc.createCDATASection(sr.getText());
+                break;
+
+            case XMLStreamConstants.COMMENT:
+                if (!mCfgIncludeComments) {
+                    continue;
+                }
+                child = doc.createComment(sr.getText());
+                break;
+
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                child = doc.createProcessingInstruction(sr.getPITarget(), sr.getPIData());
+                break;
+
+            case XMLStreamConstants.ENTITY_REFERENCE:
+                child = doc.createEntityReference(sr.getLocalName());
+                break;
+
+            case XMLStreamConstants.END_DOCUMENT:
+                return;
+
+            case XMLStreamConstants.START_DOCUMENT:
+            case XMLStreamConstants.DTD: // DOM level 2 offers no way to create DocumentType nodes here
+                continue;
+
+            default:
+                throw new XMLStreamException("Unrecognized event type: "+type);
+            }
+            current.appendChild(child);
+            mLastText = null;
+        }
+    }
+
+    protected Element createElement(StreamReaderImpl r, Document doc)
+        throws XMLStreamException
+    {
+        InputElementStack es = r.getInputElementStack();
+        AttributeCollector ac = r.getAttributeCollector();
+        Element elem;
+
+        if (!r.isNamespaceAware()) {
+            elem = doc.createElement(es.getLocalName());
+            for (int i = 0, len = ac.getCount(); i < len; ++i) {
+                elem.setAttribute(getQualified(ac.getPrefix(i), ac.getLocalName(i)),
+                        ac.getValue(i));
+            }
+            return elem;
+        }
+
+        elem = doc.createElementNS(nsURI(es.getNsURI()),
+                getQualified(es.getPrefix(), es.getLocalName()));
+
+        // First, namespace declarations, if any
+        for (int i = 0, len = es.getCurrentNsCount(); i < len; ++i) {
+            String prefix = es.getLocalNsPrefix(i);
+            String qname = (prefix == null || prefix.length() == 0) ?
+                XMLConstants.XMLNS_ATTRIBUTE : getQualified(XMLConstants.XMLNS_ATTRIBUTE, prefix);
+            elem.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, qname, es.getLocalNsURI(i));
+        }
+        // Then regular attributes
+        for (int i = 0, len = ac.getCount(); i < len; ++i) {
+            elem.setAttributeNS(nsURI(ac.getURI(i)),
+                    getQualified(ac.getPrefix(i), ac.getLocalName(i)), ac.getValue(i));
+        }
+        return elem;
+    }
+
+    /**
+     * Method for constructing qualified name DOM requires. Since names
+     * come from reader's symbol table, a small identity-based cache
+     * avoids most of String concatenations.
+     */
+    protected final String getQualified(String prefix, String localName)
+    {
+        if (prefix == null || prefix.length() == 0) {
+            return localName;
+        }
+        int ix = 3 * ((localName.hashCode() ^ prefix.hashCode()) & (QNAME_CACHE_SIZE-1));
+        String[] cache = mQNameCache;
+        if (cache[ix+1] == localName && cache[ix] == prefix) {
+            return cache[ix+2];
+        }
+        String qname = prefix + ":" + localName;
+        cache[ix] = prefix;
+        cache[ix+1] = localName;
+        cache[ix+2] = qname;
+        return qname;
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Internal methods, other
+    ///////////////////////////////////////////////////////////
+     */
+
+    protected Document constructDocument()
+        throws XMLStreamException
+    {
+        if (mDocBuilder == null) {
+            DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+            f.setNamespaceAware(true);
+            try {
+                mDocBuilder = f.newDocumentBuilder();
+            } catch (ParserConfigurationException e) {
+                throw new XMLStreamException(e);
+            }
+        }
+        return mDocBuilder.newDocument();
+    }
+
+    protected StreamReaderImpl checkReader(XMLStreamReader sr)
+    {
+        if (!(sr instanceof StreamReaderImpl)) {
+            throw new IllegalArgumentException("Can only build DOM trees from Woodstox stream readers; got "
+                    +sr.getClass().getName());
+        }
+        return (StreamReaderImpl) sr;
+    }
+
+    private final static String nsURI(String uri) {
+        return (uri == null || uri.length() == 0) ? null : uri;
+    }
+}
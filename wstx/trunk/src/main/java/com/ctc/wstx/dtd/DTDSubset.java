@@ -24,6 +24,7 @@ import org.codehaus.stax2.validation.*;
 
 import com.ctc.wstx.ent.EntityDecl;
 import com.ctc.wstx.sr.InputProblemReporter;
+import com.ctc.wstx.util.NameVocabulary;
 import com.ctc.wstx.util.PrefixedName;
 
 /**
@@ -37,7 +38,7 @@ import com.ctc.wstx.util.PrefixedName;
  * validation logics, just entity expansion.
  */
 public abstract class DTDSubset
-    implements DTDValidationSchema
+    implements DTDValidationSchema, NameVocabulary.NameSource
 {
     /*
     //////////////////////////////////////////////////////
@@ -115,4 +116,25 @@ public abstract class DTDSubset
     public abstract List<NotationDeclaration> getNotationList();
 
     public abstract HashMap<PrefixedName,DTDElement> getElementMap();
+
+    /*
+    //////////////////////////////////////////////////////
+    // NameVocabulary.NameSource implementation
+    //////////////////////////////////////////////////////
+     */
+
+    /**
+     * Adds local names of declared elements; if the DTD was read in
+     * non-namespace-aware mode, these are full names (with prefix).
+     * Since DTDs have no information about namespaces elements belong
+     * to, names are not qualified, and so match elements in any namespace.
+     *
+     * @since 5.0
+     */
+    public void addElementNames(Collection<String> names)
+    {
+        for (PrefixedName name : getElementMap().keySet()) {
+            names.add(name.getLocalName());
+        }
+    }
 }
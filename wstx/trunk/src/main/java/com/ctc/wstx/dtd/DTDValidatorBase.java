@@ -429,6 +429,18 @@ public abstract class DTDValidatorBase
         return mHasNsDefaults;
     }
 
+    /**
+     * @return True if the DTD has element or attribute declarations,
+     *   that is, if this validator may affect content reported (attribute
+     *   types and default values, ignorable white space); false if
+     *   the DTD only declares entities and/or notations
+     *
+     * @since 5.0
+     */
+    public boolean hasElementSpecs() {
+        return !mElemSpecs.isEmpty();
+    }
+
     /*
     ///////////////////////////////////////
     // Package methods, error handling
@@ -30,6 +30,14 @@ public class IntEntity
 
     String mReplText = null;
 
+    /**
+     * Flag that indicates whether replacement text is known to be plain
+     * text (no markup, entity or character references), so that it
+     * can be expanded without constructing a new input source:
+     * 0 means not yet checked, 1 plain text, -1 not plain text.
+     */
+    private int mPlainText = 0;
+
     public IntEntity(Location loc, String name, URL ctxt,
                      char[] repl, Location defLoc)
     {
@@ -112,6 +120,51 @@ public class IntEntity
         return mRepl;
     }
 
+    /**
+     * Method that will check whether replacement text of this entity
+     * is plain non-empty text that needs no further parsing: that is,
+     * contains no markup, no entity or character references, and no
+     * control characters other than white space. Result is
+     * calculated on first call, and cached.
+     *
+     * @return Replacement text, if it is plain text; null if it needs
+     *    to be parsed
+     *
+     * @since 5.0
+     */
+    public char[] getPlainTextReplacement()
+    {
+        int state = mPlainText;
+        if (state == 0) {
+            state = isPlainText(mRepl) ? 1 : -1;
+            mPlainText = state;
+        }
+        return (state > 0) ? mRepl : null;
+    }
+
+    private static boolean isPlainText(char[] text)
+    {
+        final int len = text.length;
+        if (len == 0) {
+            return false;
+        }
+        for (int i = 0; i < len; ++i) {
+            char c = text[i];
+            if (c < 0x0020) {
+                if (c != '\n' && c != '\r' && c != '\t') {
+                    return false;
+                }
+            } else if (c == '<' || c == '&') {
+                return false;
+            } else if (c == '>') { // can not contain "]]>" either
+                if (i >= 2 && text[i-1] == ']' && text[i-2] == ']') {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     // // // Type information
     
     public boolean isExternal() { return false; }
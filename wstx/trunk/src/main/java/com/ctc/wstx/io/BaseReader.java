@@ -49,6 +49,12 @@ abstract class BaseReader
      */
     protected int mByteBufferEnd;
 
+    /**
+     * Total number of bytes read from the underlying stream (including
+     * ones read by the bootstrapper before this reader was constructed)
+     */
+    protected long mBytesRead;
+
     /**
      * Flag that indicates whether the read buffer is to be recycled
      * when Reader is closed or not.
@@ -69,6 +75,7 @@ abstract class BaseReader
         mByteBuffer = buf;
         mBytePtr = ptr;
         mByteBufferEnd = len;
+        mBytesRead = len;
 	mRecycleBuffer = recycleBuffer;
     }
 
@@ -142,6 +149,13 @@ abstract class BaseReader
 
     protected final InputStream getStream() { return mIn; }
 
+    /**
+     * @return Total number of bytes read from the underlying stream so far
+     *
+     * @since 5.0
+     */
+    public final long getBytesRead() { return mBytesRead; }
+
     /**
      * Method for reading as many bytes from the underlying stream as possible
      * (that fit in the buffer), to the beginning of the buffer.
@@ -155,6 +169,7 @@ abstract class BaseReader
             int count = mIn.read(mByteBuffer, 0, mByteBuffer.length);
             if (count > 0) {
                 mByteBufferEnd = count;
+                mBytesRead += count;
             }
             return count;
         }
@@ -176,6 +191,7 @@ abstract class BaseReader
             int count = mIn.read(mByteBuffer, offset, mByteBuffer.length - offset);
             if (count > 0) {
                 mByteBufferEnd += count;
+                mBytesRead += count;
             }
             return count;
         }
@@ -0,0 +1,154 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.io;
+
+import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+
+/**
+ * Simple {@link Writer} implementation that encodes all content
+ * written into given {@link ByteBuffer}, using specified encoding.
+ * Used when raw content is captured from stream readers into byte
+ * buffers.
+ *<p>
+ * If content does not fit in the buffer, rest of the content is
+ * discarded, and {@link #flush} restores the original position of
+ * the buffer and throws a {@link BufferOverflowException}: this way
+ * callers can complete writing (to keep their own state consistent)
+ * without leaving partial content in the buffer. Characters that can
+ * not be encoded result in a {@link CharacterCodingException}.
+ *
+ * @since 5.0
+ */
+public final class ByteBufferWriter
+    extends Writer
+{
+    final CharsetEncoder mEncoder;
+
+    final ByteBuffer mBuffer;
+
+    /**
+     * Position of the buffer before anything was written
+     */
+    final int mStartPos;
+
+    /**
+     * Flag set when content did not fit in the buffer
+     */
+    boolean mOverflow;
+
+    /**
+     * Chars that could not be encoded yet (first half of a surrogate
+     * pair at the end of previous write call)
+     */
+    CharBuffer mPending;
+
+    public ByteBufferWriter(ByteBuffer bb, Charset cs)
+    {
+        mBuffer = bb;
+        mStartPos = bb.position();
+        // Input has been decoded using the same charset; so no
+        // unmappable chars are to be expected, but if there are, must
+        // not be silently replaced in a raw copy:
+        mEncoder = cs.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len)
+        throws IOException
+    {
+        if (mOverflow) { // no room, just discard
+            return;
+        }
+        CharBuffer in = CharBuffer.wrap(cbuf, off, len);
+        if (mPending != null) {
+            CharBuffer combined = CharBuffer.allocate(mPending.remaining() + len);
+            combined.put(mPending).put(in).flip();
+            in = combined;
+            mPending = null;
+        }
+        encode(in, false);
+        if (in.hasRemaining()) {
+            mPending = CharBuffer.allocate(in.remaining());
+            mPending.put(in).flip();
+        }
+    }
+
+    @Override
+    public void write(int c)
+        throws IOException
+    {
+        write(new char[] { (char) c }, 0, 1);
+    }
+
+    @Override
+    public void write(String str, int off, int len)
+        throws IOException
+    {
+        write(str.toCharArray(), off, len);
+    }
+
+    /**
+     * Flushing encodes any pending chars, and completes encoding: no
+     * more content is to be written after the call.
+     *
+     * @throws BufferOverflowException If content did not fit in the
+     *   buffer; if so, position of the buffer has been restored to
+     *   what it was before writing
+     */
+    @Override
+    public void flush()
+        throws IOException
+    {
+        if (!mOverflow) {
+            CharBuffer in = (mPending == null) ? CharBuffer.allocate(0) : mPending;
+            mPending = null;
+            encode(in, true);
+            if (!mOverflow && mEncoder.flush(mBuffer).isOverflow()) {
+                mOverflow = true;
+            }
+        }
+        if (mOverflow) {
+            mBuffer.position(mStartPos);
+            throw new BufferOverflowException();
+        }
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        flush();
+    }
+
+    private void encode(CharBuffer in, boolean endOfInput)
+        throws IOException
+    {
+        CoderResult result = mEncoder.encode(in, mBuffer, endOfInput);
+        if (result.isOverflow()) {
+            mOverflow = true;
+            mPending = null;
+            in.position(in.limit());
+        } else if (result.isError()) {
+            result.throwException();
+        }
+    }
+}
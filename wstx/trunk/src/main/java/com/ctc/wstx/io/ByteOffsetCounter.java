@@ -0,0 +1,228 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ctc.wstx.io;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * Helper class used for converting character offsets reported by
+ * stream readers into byte offsets within the underlying file (for
+ * element indexes and reader checkpoints). Since readers decode input in blocks,
+ * they can not keep track of byte offsets; but for the encodings
+ * supported here it is cheap to calculate them: for single-byte
+ * encodings and UTF-16 there is a fixed ratio, and for UTF-8 the
+ * file is scanned (a second time) without decoding, using just the
+ * lead bytes to count characters.
+ *<p>
+ * Offsets have to be requested in non-decreasing order.
+ *
+ * @since 5.0
+ */
+public final class ByteOffsetCounter
+{
+    final static int BUFFER_LENGTH = 16000;
+
+    /**
+     * Number of bytes per character for fixed-width encodings; 0 for
+     * UTF-8
+     */
+    private final int mBytesPerChar;
+
+    /**
+     * Length of the byte order mark, if any: character offsets are
+     * counted from the first char after it.
+     */
+    private final int mBomLength;
+
+    /**
+     * Name of the charset to use for decoding content; for UTF-16 this
+     * also indicates endianness.
+     */
+    private final String mCharset;
+
+    /**
+     * Stream used to scan UTF-8 content; null for other encodings
+     */
+    private InputStream mIn;
+
+    private final byte[] mBuffer;
+
+    private int mPtr, mEnd;
+
+    /**
+     * Byte offset (excluding BOM) matching {@link #mCharPos}
+     */
+    private long mBytePos;
+
+    private long mCharPos;
+
+    private ByteOffsetCounter(InputStream in, int bytesPerChar, int bomLength, String charset)
+    {
+        mIn = in;
+        mBytesPerChar = bytesPerChar;
+        mBomLength = bomLength;
+        mCharset = charset;
+        mBuffer = (in == null) ? null : new byte[BUFFER_LENGTH];
+    }
+
+    /**
+     * @param encoding Encoding of the document, as reported by the stream
+     *   reader
+     *
+     * @return Counter for the file, if offsets can be calculated for
+     *   given encoding; null if not
+     */
+    public static ByteOffsetCounter construct(File f, String encoding)
+        throws IOException
+    {
+        return construct(f, encoding, 0L, -1L);
+    }
+
+    /**
+     * Factory method to use when character offset and matching byte
+     * offset of a location in the file are known (like when resuming
+     * parsing from a checkpoint): counting can then start from that
+     * location.
+     *
+     * @param charOffset Character offset of the known location
+     * @param byteOffset Byte offset of the known location; -1 if not known
+     *   (in which case <code>charOffset</code> must be 0)
+     */
+    public static ByteOffsetCounter construct(File f, String encoding,
+                                              long charOffset, long byteOffset)
+        throws IOException
+    {
+        byte[] bom = new byte[3];
+        int bomLen = 0;
+        InputStream in = new FileInputStream(f);
+        try {
+            int count = 0;
+            while (count < bom.length) {
+                int n = in.read(bom, count, bom.length - count);
+                if (n < 0) {
+                    break;
+                }
+                count += n;
+            }
+            if (count >= 3 && bom[0] == (byte) 0xEF && bom[1] == (byte) 0xBB && bom[2] == (byte) 0xBF) {
+                bomLen = 3;
+            } else if (count >= 2 && ((bom[0] == (byte) 0xFE && bom[1] == (byte) 0xFF)
+                                      || (bom[0] == (byte) 0xFF && bom[1] == (byte) 0xFE))) {
+                bomLen = 2;
+            }
+        } finally {
+            in.close();
+        }
+
+        Charset cs;
+        try {
+            cs = Charset.forName((encoding == null) ? CharsetNames.CS_UTF8 : encoding);
+        } catch (IllegalArgumentException iae) { // unknown or illegal name
+            return null;
+        }
+        String name = cs.name();
+        if (name.equals(CharsetNames.CS_UTF8)) {
+            if (byteOffset < 0L) {
+                byteOffset = bomLen;
+            }
+            FileInputStream fin = new FileInputStream(f);
+            fin.getChannel().position(byteOffset);
+            ByteOffsetCounter counter = new ByteOffsetCounter(fin, 0, bomLen, name);
+            counter.mCharPos = charOffset;
+            counter.mBytePos = byteOffset - bomLen;
+            return counter;
+        }
+        if (name.equals(CharsetNames.CS_UTF16) || name.equals(CharsetNames.CS_UTF16BE)
+            || name.equals(CharsetNames.CS_UTF16LE)) {
+            if (name.equals(CharsetNames.CS_UTF16)) { // need to use BOM (if any) for endianness
+                name = (bomLen == 2 && bom[0] == (byte) 0xFF) ? CharsetNames.CS_UTF16LE : CharsetNames.CS_UTF16BE;
+            }
+            return new ByteOffsetCounter(null, 2, bomLen, name);
+        }
+        if (bomLen == 0 && cs.canEncode() && cs.newEncoder().maxBytesPerChar() == 1.0f) {
+            return new ByteOffsetCounter(null, 1, 0, name);
+        }
+        return null;
+    }
+
+    /**
+     * @return Name of the charset to use for decoding sections of the
+     *   file
+     */
+    public String getCharset() { return mCharset; }
+
+    public long toByteOffset(long charOffset)
+        throws IOException
+    {
+        if (mBytesPerChar > 0) {
+            return mBomLength + charOffset * mBytesPerChar;
+        }
+        if (charOffset < mCharPos) {
+            throw new IllegalStateException("Offsets requested out of order: "+charOffset+" after "+mCharPos);
+        }
+        long charPos = mCharPos;
+        long bytePos = mBytePos;
+        while (charPos < charOffset) {
+            int b = nextByte();
+            int len;
+            if (b < 0x80) {
+                len = 1;
+            } else if ((b & 0xE0) == 0xC0) {
+                len = 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                len = 3;
+            } else {
+                len = 4;
+                ++charPos; // decoded into a surrogate pair
+            }
+            for (int i = 1; i < len; ++i) {
+                nextByte();
+            }
+            bytePos += len;
+            ++charPos;
+        }
+        mCharPos = charPos;
+        mBytePos = bytePos;
+        return mBomLength + bytePos;
+    }
+
+    public void close()
+        throws IOException
+    {
+        if (mIn != null) {
+            InputStream in = mIn;
+            mIn = null;
+            in.close();
+        }
+    }
+
+    private int nextByte()
+        throws IOException
+    {
+        if (mPtr >= mEnd) {
+            int count = mIn.read(mBuffer, 0, mBuffer.length);
+            if (count <= 0) {
+                throw new EOFException("Unexpected end of file when calculating byte offsets, at byte "
+                        +(mBomLength + mBytePos));
+            }
+            mPtr = 0;
+            mEnd = count;
+        }
+        return mBuffer[mPtr++] & 0xFF;
+    }
+}
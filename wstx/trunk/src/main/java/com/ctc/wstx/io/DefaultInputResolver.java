@@ -185,12 +185,20 @@ public final class DefaultInputResolver
         } else if (normEnc.startsWith(CharsetNames.CS_UTF32)) {
             boolean isBE = (normEnc == CharsetNames.CS_UTF32BE);
             r = new UTF32Reader(cfg, in, cfg.allocFullBBuffer(inputBufLen), 0, 0, recycleBuffer, isBE);
+        } else if (normEnc == CharsetNames.CS_UTF16BE || normEnc == CharsetNames.CS_UTF16LE) {
+            // (plain "UTF-16" needs BOM handling, left to JDK)
+            boolean isBE = (normEnc == CharsetNames.CS_UTF16BE);
+            r = new UTF16Reader(cfg, in, cfg.allocFullBBuffer(inputBufLen), 0, 0, recycleBuffer, isBE);
         } else {
-            try {
-                return new InputStreamReader(in, encoding);
-            } catch (UnsupportedEncodingException ex) {
-                throw new XMLStreamException("[unsupported encoding]: "+ex);
+            SingleByteCodec codec = SingleByteCodec.forEncoding(normEnc);
+            if (codec == null) {
+                try {
+                    return new InputStreamReader(in, encoding);
+                } catch (UnsupportedEncodingException ex) {
+                    throw new XMLStreamException("[unsupported encoding]: "+ex);
+                }
             }
+            r = new SingleByteReader(cfg, in, cfg.allocFullBBuffer(inputBufLen), 0, 0, recycleBuffer, codec);
         }
 
         if (isXml11) { // only need to set if we are xml 1.1 compliant (1.0 is the default)
@@ -0,0 +1,97 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.io;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Helper class used for detecting whether an input stream contains
+ * compressed content, and if so, for wrapping it in a stream that
+ * decompresses it. Detection is based on the first two bytes: GZIP
+ * content starts with the GZIP magic bytes; and zlib (Deflate) content
+ * with the zlib header that uses the default 32k window. Neither can
+ * start a well-formed XML document or fragment (except for an unlikely
+ * fragment starting with text "x^"), so no other checks are needed.
+ *<p>
+ * Raw Deflate content (without zlib header) can not be reliably detected,
+ * and is not supported.
+ *
+ * @since 5.0
+ */
+public final class InputDecompressor
+{
+    final static int GZIP_MAGIC1 = 0x1F;
+    final static int GZIP_MAGIC2 = 0x8B;
+
+    /**
+     * Zlib compression method/flags byte for Deflate with 32k window
+     */
+    final static int ZLIB_CMF = 0x78;
+
+    private InputDecompressor() { }
+
+    /**
+     * @return Stream that returns decompressed contents of the given
+     *   stream, if it starts with a GZIP or zlib header; or stream that
+     *   returns contents as is, if not
+     */
+    public static InputStream wrapIfCompressed(InputStream in)
+        throws IOException
+    {
+        byte[] header = new byte[2];
+        int count;
+
+        if (in.markSupported()) {
+            in.mark(header.length);
+            count = readHeader(in, header);
+            in.reset();
+        } else {
+            count = readHeader(in, header);
+            PushbackInputStream pin = new PushbackInputStream(in, header.length);
+            if (count > 0) {
+                pin.unread(header, 0, count);
+            }
+            in = pin;
+        }
+        if (count == header.length) {
+            int b1 = header[0] & 0xFF;
+            int b2 = header[1] & 0xFF;
+            if (b1 == GZIP_MAGIC1 && b2 == GZIP_MAGIC2) {
+                return new GZIPInputStream(in);
+            }
+            if (b1 == ZLIB_CMF && ((b1 << 8) | b2) % 31 == 0) {
+                return new InflaterInputStream(in);
+            }
+        }
+        return in;
+    }
+
+    private static int readHeader(InputStream in, byte[] header)
+        throws IOException
+    {
+        int count = 0;
+        while (count < header.length) {
+            int n = in.read(header, count, header.length - count);
+            if (n < 0) {
+                break;
+            }
+            count += n;
+        }
+        return count;
+    }
+}
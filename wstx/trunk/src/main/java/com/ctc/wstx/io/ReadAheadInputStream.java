@@ -0,0 +1,335 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.io;
+
+import java.io.*;
+
+/**
+ * {@link InputStream} implementation that reads content of another
+ * stream ahead of time, using a background (daemon) thread. Content is
+ * read into a ring of fixed-size byte buffers, which are reused once the
+ * consuming thread has read their contents; this allows the cost of
+ * reading (and, in particular, decompressing, see
+ * {@link InputDecompressor}) input to overlap with parsing.
+ *<p>
+ * Buffers are handed to the consumer only once they are full (or the
+ * end of input has been reached). Exceptions encountered by the
+ * background thread are rethrown to the consumer, after content read
+ * before the failure has been returned.
+ *<p>
+ * Instances have to be closed to stop the background thread, unless
+ * all content is read; closing the underlying stream is optional.
+ *
+ * @since 5.0
+ */
+public final class ReadAheadInputStream
+    extends InputStream
+    implements Runnable
+{
+    public final static int DEFAULT_BUFFER_COUNT = 4;
+
+    public final static int DEFAULT_BUFFER_LENGTH = 32000;
+
+    /**
+     * Stream from which content is read ahead
+     */
+    final InputStream mIn;
+
+    /**
+     * Whether {@link #close} should also close the underlying stream
+     */
+    final boolean mCloseSource;
+
+    /**
+     * Whether background thread should check if content is compressed
+     * and decompress it, if so.
+     */
+    final boolean mDecompress;
+
+    final byte[][] mBuffers;
+
+    final int[] mLengths;
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // State shared by threads; guarded by 'this'
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Number of buffers filled by the background thread that the consumer
+     * has not yet released (including the one being read, if any)
+     */
+    int mFilled;
+
+    /**
+     * Index of the buffer background thread fills next
+     */
+    int mWriteIx;
+
+    boolean mEOF;
+
+    boolean mClosed;
+
+    IOException mError;
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Consumer state
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Index of the buffer being read, if {@link #mHasCurrent} is true;
+     * otherwise of the buffer to read next.
+     */
+    int mReadIx;
+
+    boolean mHasCurrent;
+
+    byte[] mCurr;
+
+    int mPtr;
+
+    int mEnd;
+
+    private ReadAheadInputStream(InputStream in, boolean closeSource, boolean decompress,
+                                 int bufferCount, int bufferLen)
+    {
+        mIn = in;
+        mCloseSource = closeSource;
+        mDecompress = decompress;
+        mBuffers = new byte[bufferCount][];
+        for (int i = 0; i < bufferCount; ++i) {
+            mBuffers[i] = new byte[bufferLen];
+        }
+        mLengths = new int[bufferCount];
+    }
+
+    /**
+     * Factory method that constructs a read-ahead stream with default
+     * number and size of buffers, and starts the background thread.
+     *
+     * @param closeSource Whether closing the constructed stream should also
+     *   close the underlying stream
+     * @param decompress Whether to detect compressed (GZIP, zlib) content,
+     *   and decompress it in the background thread
+     */
+    public static ReadAheadInputStream construct(InputStream in, boolean closeSource,
+                                                 boolean decompress)
+    {
+        return construct(in, closeSource, decompress,
+                         DEFAULT_BUFFER_COUNT, DEFAULT_BUFFER_LENGTH);
+    }
+
+    public static ReadAheadInputStream construct(InputStream in, boolean closeSource,
+                                                 boolean decompress,
+                                                 int bufferCount, int bufferLen)
+    {
+        if (bufferCount < 2 || bufferLen < 1) {
+            throw new IllegalArgumentException("Illegal buffer count ("+bufferCount+") or length ("+bufferLen+"): need at least 2 buffers");
+        }
+        ReadAheadInputStream ra = new ReadAheadInputStream(in, closeSource, decompress,
+                                                           bufferCount, bufferLen);
+        Thread t = new Thread(ra, "Woodstox read-ahead");
+        t.setDaemon(true);
+        t.start();
+        return ra;
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // InputStream implementation
+    ///////////////////////////////////////////////////////////
+     */
+
+    public int available()
+    {
+        return mHasCurrent ? (mEnd - mPtr) : 0;
+    }
+
+    public void close()
+        throws IOException
+    {
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            mCurr = null;
+            mHasCurrent = false;
+            notifyAll();
+        }
+        if (mCloseSource) {
+            mIn.close();
+        }
+    }
+
+    public int read()
+        throws IOException
+    {
+        if (!mHasCurrent || mPtr >= mEnd) {
+            if (!nextBuffer()) {
+                return -1;
+            }
+        }
+        return mCurr[mPtr++] & 0xFF;
+    }
+
+    public int read(byte[] b)
+        throws IOException
+    {
+        return read(b, 0, b.length);
+    }
+
+    public int read(byte[] b, int off, int len)
+        throws IOException
+    {
+        if (len < 1) {
+            return 0;
+        }
+        if (!mHasCurrent || mPtr >= mEnd) {
+            if (!nextBuffer()) {
+                return -1;
+            }
+        }
+        int avail = mEnd - mPtr;
+        if (len > avail) {
+            len = avail;
+        }
+        System.arraycopy(mCurr, mPtr, b, off, len);
+        mPtr += len;
+        return len;
+    }
+
+    /**
+     * Method called by the consumer to release the current buffer (if any),
+     * and to wait for the next one to be filled.
+     *
+     * @return True if a buffer with content is available; false if the
+     *   end of input has been reached (or stream closed)
+     */
+    private synchronized boolean nextBuffer()
+        throws IOException
+    {
+        if (mHasCurrent) {
+            mHasCurrent = false;
+            mCurr = null;
+            mReadIx = (mReadIx + 1) % mBuffers.length;
+            --mFilled;
+            notifyAll();
+        }
+        while (mFilled == 0) {
+            if (mClosed) {
+                return false;
+            }
+            if (mError != null) {
+                throw mError;
+            }
+            if (mEOF) {
+                return false;
+            }
+            try {
+                wait();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for read-ahead input");
+            }
+        }
+        if (mClosed) {
+            return false;
+        }
+        mHasCurrent = true;
+        mCurr = mBuffers[mReadIx];
+        mPtr = 0;
+        mEnd = mLengths[mReadIx];
+        return true;
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Runnable implementation (background thread)
+    ///////////////////////////////////////////////////////////
+     */
+
+    public void run()
+    {
+        try {
+            InputStream in = mDecompress ? InputDecompressor.wrapIfCompressed(mIn) : mIn;
+            while (true) {
+                int ix;
+                synchronized (this) {
+                    while (mFilled == mBuffers.length && !mClosed) {
+                        wait();
+                    }
+                    if (mClosed) {
+                        return;
+                    }
+                    ix = mWriteIx;
+                }
+                // buffer is not visible to consumer until counted as filled:
+                byte[] buf = mBuffers[ix];
+                int count = 0;
+                boolean eof = false;
+                while (count < buf.length) {
+                    int n = in.read(buf, count, buf.length - count);
+                    if (n < 0) {
+                        eof = true;
+                        break;
+                    }
+                    count += n;
+                }
+                synchronized (this) {
+                    if (count > 0) {
+                        mLengths[ix] = count;
+                        mWriteIx = (ix + 1) % mBuffers.length;
+                        ++mFilled;
+                    }
+                    mEOF = eof;
+                    notifyAll();
+                }
+                if (eof) {
+                    return;
+                }
+            }
+        } catch (IOException ioe) {
+            synchronized (this) {
+                mError = ioe;
+                notifyAll();
+            }
+        } catch (RuntimeException re) {
+            // must not leave reading thread waiting indefinitely
+            synchronized (this) {
+                mError = new IOException("Read-ahead input failed: "+re.getMessage(), re);
+                notifyAll();
+            }
+        } catch (InterruptedException ie) {
+            // should not happen, nothing interrupts the thread; but if so, just quit
+            synchronized (this) {
+                mError = new InterruptedIOException("Read-ahead thread interrupted");
+                notifyAll();
+            }
+        } finally {
+            // and for Errors, which are let through, need to signal termination as well
+            synchronized (this) {
+                if (!mEOF && !mClosed && mError == null) {
+                    mError = new IOException("Read-ahead thread terminated unexpectedly");
+                    notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -31,6 +31,12 @@ public class ReaderSource
     int mInputRow = 1;
     int mInputRowStart = 0;
 
+    /**
+     * Number of bytes underlying reader had read when it was closed,
+     * if known
+     */
+    long mBytesRead = -1L;
+
     public ReaderSource(ReaderConfig cfg, WstxInputSource parent, String fromEntity,
                         String pubId, SystemId sysId,
                         Reader r, boolean realClose)
@@ -70,6 +76,14 @@ public class ReaderSource
      * This is a hard-coded assumption, for now this source is
      * only created from external entities
      */
+    @Override
+    public long getBytesRead() {
+        if (mReader instanceof BaseReader) {
+            return ((BaseReader) mReader).getBytesRead();
+        }
+        return mBytesRead;
+    }
+
     public boolean fromInternalEntity() {
         return false;
     }
@@ -195,6 +209,7 @@ public class ReaderSource
             }
             if (fullClose) {
                 Reader r = mReader;
+                mBytesRead = getBytesRead();
                 mReader = null;
                 r.close();
             }
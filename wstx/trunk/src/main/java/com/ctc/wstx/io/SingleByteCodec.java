@@ -0,0 +1,207 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ctc.wstx.io;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.HashMap;
+
+/**
+ * Container for the code tables of a single-byte encoding (like
+ * windows-1252, other ISO-8859-x variants, or EBCDIC code pages), used
+ * by {@link SingleByteReader} and
+ * {@link com.ctc.wstx.sw.ISOLatin1XmlWriter} to decode and encode
+ * content without going through JDK readers and writers.
+ *<p>
+ * Tables are built from the JDK-provided {@link Charset}, so that
+ * decoding results are identical to those of JDK decoders (bytes not
+ * defined in the code page decode to the replacement character,
+ * U+FFFD). Instances are immutable, and shared: they are constructed
+ * once per encoding, when first needed.
+ *
+ * @since 5.0
+ */
+public final class SingleByteCodec
+{
+    /**
+     * Codecs constructed so far, keyed by canonical charset name. Only
+     * single-byte encodings supported by the JDK are cached, so the size
+     * is bounded by the number of such charsets.
+     */
+    private final static HashMap<String,SingleByteCodec> sCodecs = new HashMap<String,SingleByteCodec>();
+
+    private final String mEncoding;
+
+    /**
+     * Decoded value of each byte
+     */
+    private final char[] mDecodeTable;
+
+    /**
+     * Encoded values of non-ascii chars, as 256-entry pages indexed
+     * by the high byte of a char; missing pages, and 0 bytes within
+     * pages, denote chars that can not be encoded.
+     */
+    private final byte[][] mEncodePages;
+
+    private final boolean mAsciiCompatible;
+
+    private SingleByteCodec(String enc, char[] decode, byte[][] encode,
+                            boolean asciiCompatible)
+    {
+        mEncoding = enc;
+        mDecodeTable = decode;
+        mEncodePages = encode;
+        mAsciiCompatible = asciiCompatible;
+    }
+
+    /**
+     * Factory method for accessing code tables of specified encoding.
+     *
+     * @return Codec for the encoding, if it is a (stateless) single-byte
+     *   encoding supported by the JDK; null otherwise
+     */
+    public static SingleByteCodec forEncoding(String enc)
+    {
+        Charset cs;
+        try {
+            cs = Charset.forName(enc);
+        } catch (IllegalArgumentException iae) { // illegal or unsupported
+            return null;
+        }
+        // Aliases share the codec of the canonical name
+        String name = cs.name();
+        SingleByteCodec codec;
+        synchronized (sCodecs) {
+            codec = sCodecs.get(name);
+        }
+        if (codec == null) {
+            /* Other encodings are not cached: they are rejected quickly
+             * (before building any tables) anyway
+             */
+            codec = construct(cs);
+            if (codec != null) {
+                synchronized (sCodecs) {
+                    sCodecs.put(name, codec);
+                }
+            }
+        }
+        return codec;
+    }
+
+    /*
+    ////////////////////////////////////////
+    // Public API
+    ////////////////////////////////////////
+    */
+
+    public String getEncoding() { return mEncoding; }
+
+    /**
+     * @return Table of 256 entries, containing the decoded value of
+     *   each byte. Callers are not to modify the table.
+     */
+    public char[] getDecodeTable() { return mDecodeTable; }
+
+    /**
+     * @return True if bytes 0x00 - 0x7F decode to matching ascii
+     *   characters (which is the case for all but EBCDIC variants);
+     *   only such encodings can be used for output.
+     */
+    public boolean isAsciiCompatible() { return mAsciiCompatible; }
+
+    /**
+     * Method for encoding a non-ascii character (for ascii characters,
+     * result is only well-defined for ascii-compatible encodings).
+     *
+     * @return Encoded byte (0 - 255), or -1 if the character can
+     *   not be encoded
+     */
+    public int encode(int c)
+    {
+        if (c < 0x80 && mAsciiCompatible) {
+            return c;
+        }
+        byte[] page = mEncodePages[c >> 8];
+        if (page != null) {
+            int b = page[c & 0xFF];
+            if (b != 0) {
+                return b & 0xFF;
+            }
+        }
+        return -1;
+    }
+
+    /*
+    ////////////////////////////////////////
+    // Internal methods
+    ////////////////////////////////////////
+    */
+
+    private static SingleByteCodec construct(Charset cs)
+    {
+        if (!cs.canEncode()) {
+            return null;
+        }
+        CharsetDecoder dec = cs.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharsetEncoder encoder = cs.newEncoder();
+        if (dec.maxCharsPerByte() != 1.0f || encoder.maxBytesPerChar() != 1.0f) {
+            return null;
+        }
+        char[] decode = new char[256];
+        byte[][] encode = new byte[256][];
+        boolean asciiCompatible = true;
+        ByteBuffer in = ByteBuffer.allocate(1);
+        CharBuffer out = CharBuffer.allocate(2);
+
+        for (int i = 0; i < 256; ++i) {
+            in.clear();
+            in.put((byte) i).flip();
+            out.clear();
+            dec.reset();
+            if (dec.decode(in, out, true).isError() || dec.flush(out).isError()
+                || out.position() != 1) {
+                return null;
+            }
+            char c = out.get(0);
+            decode[i] = c;
+            if (i < 0x80 && c != i) {
+                asciiCompatible = false;
+            }
+        }
+        // Encoding is only needed for non-ascii chars (for output)
+        if (asciiCompatible) {
+            for (int i = 0x80; i < 256; ++i) {
+                char c = decode[i];
+                if (c < 0x80 || c == '\uFFFD' || !encoder.canEncode(c)) {
+                    continue;
+                }
+                byte[] page = encode[c >> 8];
+                if (page == null) {
+                    encode[c >> 8] = page = new byte[256];
+                }
+                if (page[c & 0xFF] == 0) { // first one wins, if multiple
+                    page[c & 0xFF] = (byte) i;
+                }
+            }
+        }
+        return new SingleByteCodec(cs.name(), decode, encode, asciiCompatible);
+    }
+}
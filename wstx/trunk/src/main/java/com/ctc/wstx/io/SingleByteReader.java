@@ -0,0 +1,140 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ctc.wstx.io;
+
+import java.io.*;
+
+import com.ctc.wstx.api.ReaderConfig;
+import com.ctc.wstx.cfg.XmlConsts;
+
+/**
+ * Optimized Reader that reads content encoded using a single-byte
+ * encoding (such as windows-1252, other ISO-8859-x variants, or EBCDIC
+ * code pages), using the decoding table of the encoding, as provided
+ * by {@link SingleByteCodec}. Works much like {@link ISOLatinReader},
+ * except for table lookup for decoding.
+ *
+ * @since 5.0
+ */
+public final class SingleByteReader
+    extends BaseReader
+{
+    final char[] mDecodeTable;
+
+    boolean mXml11 = false;
+
+    /**
+     * Total read byte (and char) count; used for error reporting purposes
+     */
+    int mByteCount = 0;
+
+    /*
+    ////////////////////////////////////////
+    // Life-cycle
+    ////////////////////////////////////////
+    */
+
+    public SingleByteReader(ReaderConfig cfg, InputStream in, byte[] buf, int ptr, int len,
+                            boolean recycleBuffer, SingleByteCodec codec)
+    {
+        super(cfg, in, buf, ptr, len, recycleBuffer);
+        mDecodeTable = codec.getDecodeTable();
+    }
+
+    public void setXmlCompliancy(int xmlVersion)
+    {
+        mXml11 = (xmlVersion == XmlConsts.XML_V_11);
+    }
+
+    /*
+    ////////////////////////////////////////
+    // Public API
+    ////////////////////////////////////////
+    */
+
+    public int read(char[] cbuf, int start, int len)
+        throws IOException
+    {
+        // Let's then ensure there's enough room...
+        if (start < 0 || (start+len) > cbuf.length) {
+            reportBounds(cbuf, start, len);
+        }
+        // Already EOF?
+        if (mByteBuffer == null) {
+            return -1;
+        }
+        if (len < 1) { // dummy call?
+            return 0;
+        }
+
+        // Need to load more data?
+        int avail = mByteBufferEnd - mBytePtr;
+        if (avail <= 0) {
+            mByteCount += mByteBufferEnd;
+            // Let's always (try to) read full buffers
+            int count = readBytes();
+            if (count <= 0) {
+                if (count == 0) {
+                    reportStrangeStream();
+                }
+                freeBuffers(); // to help GC?
+                return -1;
+            }
+            avail = count;
+        }
+
+        // Have at least one byte == char, good enough
+        if (len > avail) {
+            len = avail;
+        }
+        final byte[] buf = mByteBuffer;
+        final char[] table = mDecodeTable;
+        int i = mBytePtr;
+        int last = i + len;
+
+        if (mXml11) {
+            final int origStart = start;
+            for (; i < last; ) {
+                char c = table[buf[i++] & 0xFF];
+                if (c >= CHAR_DEL) {
+                    if (c <= 0x9F) {
+                        if (c == 0x85) { // NEL, let's convert?
+                            c = CONVERT_NEL_TO;
+                        } else { // DEL, ctrl chars
+                            int pos = mByteCount + i;
+                            reportInvalidXml11(c, pos, pos);
+                        }
+                    } else if (c == 0x2028) { // LSEP
+                        // as with UTF8Reader, preceding \r needs conversion
+                        if (start > origStart && cbuf[start-1] == '\r') {
+                            cbuf[start-1] = '\n';
+                        }
+                        c = CONVERT_LSEP_TO;
+                    }
+                }
+                cbuf[start++] = c;
+            }
+        } else {
+            for (; i < last; ) {
+                cbuf[start++] = table[buf[i++] & 0xFF];
+            }
+        }
+
+        mBytePtr = last;
+        return len;
+    }
+}
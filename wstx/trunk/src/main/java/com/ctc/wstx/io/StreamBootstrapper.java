@@ -227,25 +227,33 @@ public final class StreamBootstrapper
             }
             r = new UTF32Reader(cfg, mIn, mByteBuffer, mInputPtr, mInputEnd,
 				mRecycleBuffer, mBigEndian);
+        } else if (normEnc == CharsetNames.CS_UTF16) {
+            // As with UTF-32, let's augment with actual endianness info
+            mInputEncoding = mBigEndian ? CharsetNames.CS_UTF16BE : CharsetNames.CS_UTF16LE;
+            r = new UTF16Reader(cfg, mIn, mByteBuffer, mInputPtr, mInputEnd,
+                                mRecycleBuffer, mBigEndian);
+        } else if (normEnc == CharsetNames.CS_UTF16BE
+                   || normEnc == CharsetNames.CS_UTF16LE) {
+            r = new UTF16Reader(cfg, mIn, mByteBuffer, mInputPtr, mInputEnd,
+                                mRecycleBuffer, (normEnc == CharsetNames.CS_UTF16BE));
         } else {
-            // Nah, JDK needs to try it
-            // Ok; first, do we need to merge stuff back?
-            InputStream in = mIn;
-            if (mInputPtr < mInputEnd) {
-                in = new MergedStream(cfg, in, mByteBuffer, mInputPtr, mInputEnd);
-            }
-            /* 20-Jan-2006, TSa: Ok; although it is possible to declare
-             *   stream as 'UTF-16', JDK may need help in figuring out
-             *   the right order, so let's be explicit:
-             */
-            if (normEnc == CharsetNames.CS_UTF16) {
-                mInputEncoding = normEnc = mBigEndian ? CharsetNames.CS_UTF16BE : CharsetNames.CS_UTF16LE;
-            }
-            try {
-                return new InputStreamReader(in, normEnc);
-            } catch (UnsupportedEncodingException usex) {
-                throw new WstxIOException("Unsupported encoding: "+usex.getMessage());
+            // Other single-byte encodings can be decoded using code tables
+            SingleByteCodec codec = SingleByteCodec.forEncoding(normEnc);
+            if (codec == null) {
+                // Nah, JDK needs to try it
+                // Ok; first, do we need to merge stuff back?
+                InputStream in = mIn;
+                if (mInputPtr < mInputEnd) {
+                    in = new MergedStream(cfg, in, mByteBuffer, mInputPtr, mInputEnd);
+                }
+                try {
+                    return new InputStreamReader(in, normEnc);
+                } catch (UnsupportedEncodingException usex) {
+                    throw new WstxIOException("Unsupported encoding: "+usex.getMessage());
+                }
             }
+            r = new SingleByteReader(cfg, mIn, mByteBuffer, mInputPtr, mInputEnd,
+                                     mRecycleBuffer, codec);
         }
 
         if (mXml11Handling) {
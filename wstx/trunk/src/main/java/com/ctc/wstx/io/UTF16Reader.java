@@ -0,0 +1,283 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ctc.wstx.io;
+
+import java.io.*;
+
+import com.ctc.wstx.api.ReaderConfig;
+import com.ctc.wstx.cfg.XmlConsts;
+
+/**
+ * Optimized Reader that reads UTF-16 (big- or little-endian) encoded
+ * content from an input stream. Used instead of the JDK-provided
+ * decoder to avoid an additional layer of buffering (and
+ * synchronization), and to allow recycling of the input buffer;
+ * as well as to verify that surrogate characters are properly paired.
+ *
+ * @since 5.0
+ */
+public final class UTF16Reader
+    extends BaseReader
+{
+    final boolean mBigEndian;
+
+    boolean mXml11;
+
+    /**
+     * Second half of a surrogate pair that did not fit in the output
+     * buffer during the last read.
+     */
+    char mSurrogate = NULL_CHAR;
+
+    /**
+     * Total read character count; used for error reporting purposes
+     */
+    int mCharCount = 0;
+
+    /**
+     * Total read byte count; used for error reporting purposes
+     */
+    int mByteCount = 0;
+
+    /*
+    ////////////////////////////////////////
+    // Life-cycle
+    ////////////////////////////////////////
+    */
+
+    public UTF16Reader(ReaderConfig cfg, InputStream in, byte[] buf, int ptr, int len,
+                       boolean recycleBuffer, boolean isBigEndian)
+    {
+        super(cfg, in, buf, ptr, len, recycleBuffer);
+        mBigEndian = isBigEndian;
+    }
+
+    public void setXmlCompliancy(int xmlVersion)
+    {
+        mXml11 = (xmlVersion == XmlConsts.XML_V_11);
+    }
+
+    /*
+    ////////////////////////////////////////
+    // Public API
+    ////////////////////////////////////////
+    */
+
+    public int read(char[] cbuf, int start, int len)
+        throws IOException
+    {
+        // Let's first ensure there's enough room...
+        if (start < 0 || (start+len) > cbuf.length) {
+            reportBounds(cbuf, start, len);
+        }
+        // Already EOF?
+        if (mByteBuffer == null) {
+            return -1;
+        }
+        if (len < 1) { // dummy call?
+            return 0;
+        }
+
+        len += start;
+        int outPtr = start;
+
+        // Ok, first; do we have a surrogate from last round?
+        if (mSurrogate != NULL_CHAR) {
+            cbuf[outPtr++] = mSurrogate;
+            mSurrogate = NULL_CHAR;
+            // No need to load more, already got one char
+        } else {
+            /* To prevent unnecessary blocking, we'll only require
+             * bytes for a single char (or surrogate pair)
+             */
+            int left = (mByteBufferEnd - mBytePtr);
+            if (left < 4) {
+                if (!loadMore(left)) { // (legal) EOF?
+                    return -1;
+                }
+            }
+        }
+
+        final byte[] buf = mByteBuffer;
+        // need 2 bytes for each code unit:
+        final int inEnd = mByteBufferEnd - 1;
+        int inPtr = mBytePtr;
+
+        main_loop:
+        while (outPtr < len && inPtr < inEnd) {
+            int c;
+            if (mBigEndian) {
+                c = ((buf[inPtr] & 0xFF) << 8) | (buf[inPtr+1] & 0xFF);
+            } else {
+                c = (buf[inPtr] & 0xFF) | ((buf[inPtr+1] & 0xFF) << 8);
+            }
+            inPtr += 2;
+
+            if (c >= 0x7F) {
+                if (c <= 0x9F) {
+                    if (mXml11) { // high-order ctrl char detection...
+                        if (c == 0x85) { // NEL, let's convert?
+                            c = CONVERT_NEL_TO;
+                        } else { // DEL, ctrl chars
+                            reportInvalidXml11(c, mByteCount + inPtr - 2,
+                                               mCharCount + (outPtr-start));
+                        }
+                    }
+                } else if (c >= 0xD800) {
+                    if (c < 0xDC00) { // first half of a surrogate pair
+                        if (inPtr >= inEnd) { // second half not yet read
+                            inPtr -= 2;
+                            break main_loop;
+                        }
+                        int d;
+                        if (mBigEndian) {
+                            d = ((buf[inPtr] & 0xFF) << 8) | (buf[inPtr+1] & 0xFF);
+                        } else {
+                            d = (buf[inPtr] & 0xFF) | ((buf[inPtr+1] & 0xFF) << 8);
+                        }
+                        if (d < 0xDC00 || d >= 0xE000) {
+                            reportInvalid(c, inPtr, outPtr-start,
+                                          "(first half of a surrogate pair, not followed by the second half) ");
+                        }
+                        inPtr += 2;
+                        cbuf[outPtr++] = (char) c;
+                        c = d;
+                        // Room for second part?
+                        if (outPtr >= len) { // nope
+                            mSurrogate = (char) c;
+                            break main_loop;
+                        }
+                    } else if (c < 0xE000) {
+                        reportInvalid(c, inPtr, outPtr-start,
+                                      "(second half of a surrogate pair, without the first half) ");
+                    } else if (c >= 0xFFFE) {
+                        reportInvalid(c, inPtr, outPtr-start, "");
+                    }
+                } else if (mXml11 && c == 0x2028) { // LSEP?
+                    // As with UTF8Reader: need to convert preceding \r
+                    if (outPtr > start && cbuf[outPtr-1] == '\r') {
+                        cbuf[outPtr-1] = '\n';
+                    }
+                    c = CONVERT_LSEP_TO;
+                }
+            }
+            cbuf[outPtr++] = (char) c;
+        }
+
+        mBytePtr = inPtr;
+        len = outPtr - start;
+        mCharCount += len;
+        return len;
+    }
+
+    /*
+    ////////////////////////////////////////
+    // Internal methods
+    ////////////////////////////////////////
+    */
+
+    private void reportUnexpectedEOF(int gotBytes, int needed)
+        throws IOException
+    {
+        int bytePos = mByteCount + gotBytes;
+        int charPos = mCharCount;
+
+        throw new CharConversionException("Unexpected EOF in the middle of a UTF-16 char: got "
+                                          +gotBytes+", needed "+needed
+                                          +", at char #"+charPos+", byte #"+bytePos+")");
+    }
+
+    /**
+     * @param inPtr Input pointer, pointing right after the invalid
+     *   code unit
+     * @param offset Offset of the char from the start of the output
+     *   of the current read call
+     */
+    private void reportInvalid(int value, int inPtr, int offset, String msg)
+        throws IOException
+    {
+        int bytePos = mByteCount + inPtr - 2;
+        int charPos = mCharCount + offset;
+
+        throw new CharConversionException("Invalid UTF-16 character 0x"
+                                          +Integer.toHexString(value)+msg
+                                          +" at char #"+charPos+", byte #"+bytePos+")");
+    }
+
+    /**
+     * @param available Number of "unused" bytes in the input buffer
+     *
+     * @return True, if enough bytes were read to allow decoding of at least
+     *   one full character; false if EOF was encountered instead.
+     */
+    private boolean loadMore(int available)
+        throws IOException
+    {
+        mByteCount += (mByteBufferEnd - available);
+
+        // Bytes that need to be moved to the beginning of buffer?
+        if (available > 0) {
+            // can only move if we own the buffer
+            if (mBytePtr > 0 && canModifyBuffer()) {
+                for (int i = 0; i < available; ++i) {
+                    mByteBuffer[i] = mByteBuffer[mBytePtr+i];
+                }
+                mBytePtr = 0;
+                mByteBufferEnd = available;
+            }
+        } else {
+            /* Ok; here we can actually reasonably expect an EOF,
+             * so let's do a separate read right away:
+             */
+            int count = readBytes();
+            if (count < 1) {
+                if (count < 0) { // -1
+                    freeBuffers(); // to help GC?
+                    return false;
+                }
+                // 0 count is no good; let's err out
+                reportStrangeStream();
+            }
+        }
+
+        // Need at least one full code unit...
+        loadAtLeast(2);
+        // and if it starts a surrogate pair, the second one as well
+        int first = mBigEndian ? mByteBuffer[mBytePtr] : mByteBuffer[mBytePtr+1];
+        if ((first & 0xFC) == 0xD8) {
+            loadAtLeast(4);
+        }
+        return true;
+    }
+
+    private void loadAtLeast(int needed)
+        throws IOException
+    {
+        while ((mBytePtr + needed) > mByteBufferEnd) {
+            int count = readBytesAt(mByteBufferEnd);
+            if (count < 1) {
+                if (count < 0) { // -1, EOF... no good!
+                    int got = mByteBufferEnd - mBytePtr;
+                    freeBuffers();
+                    reportUnexpectedEOF(got, needed);
+                }
+                // 0 count is no good; let's err out
+                reportStrangeStream();
+            }
+        }
+    }
+}
@@ -27,11 +27,11 @@ public final class UTF8Writer
 
     final boolean mAutoCloseOutput;
 
-    final OutputStream mOut;
+    OutputStream mOut;
 
     byte[] mOutBuffer;
 
-    final int mOutBufferLast;
+    int mOutBufferLast;
 
     int mOutPtr;
 
@@ -56,6 +56,27 @@ public final class UTF8Writer
         mOutPtr = 0;
     }
 
+    /**
+     * Method called to reuse this writer for outputting to another
+     * stream. Content buffered for the previous stream is discarded;
+     * output buffer is re-allocated if it was released on close.
+     *
+     * @param out Stream to output to; or null to just release the
+     *   reference to the current stream
+     *
+     * @since 5.0
+     */
+    public void reset(OutputStream out)
+    {
+        mOut = out;
+        if (out != null && mOutBuffer == null) {
+            mOutBuffer = (mConfig == null) ? new byte[DEFAULT_BUF_LEN] : mConfig.allocFullBBuffer(DEFAULT_BUF_LEN);
+            mOutBufferLast = mOutBuffer.length - 4;
+        }
+        mOutPtr = 0;
+        mSurrogate = 0;
+    }
+
     /*
     ////////////////////////////////////////////////////////
     // CompletelyCloseable impl
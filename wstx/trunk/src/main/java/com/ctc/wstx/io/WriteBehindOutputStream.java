@@ -0,0 +1,312 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.io;
+
+import java.io.*;
+
+/**
+ * {@link OutputStream} implementation that writes content to another
+ * stream asynchronously, using a background (daemon) thread. Content
+ * is first copied into a ring of fixed-size byte buffers; full buffers
+ * are handed to the background thread, and the writing thread continues
+ * with the next free buffer. This allows serialization to overlap with
+ * slow output (network, disks). If all buffers are waiting to be written,
+ * writing thread blocks until one has been written.
+ *<p>
+ * Calling {@link #flush} hands out the partially filled buffer, waits
+ * until all buffers have been written, and then flushes the underlying
+ * stream; {@link #close} additionally closes the underlying stream.
+ * Exceptions encountered by the background thread are rethrown
+ * by the next call to a write, flush or close method.
+ *<p>
+ * Background thread is only started when a buffer is handed to it, and
+ * exits once it has been idle for a while; so instances need not be
+ * closed to release the thread.
+ *
+ * @since 5.0
+ */
+public final class WriteBehindOutputStream
+    extends OutputStream
+    implements Runnable
+{
+    public final static int DEFAULT_BUFFER_COUNT = 4;
+
+    public final static int DEFAULT_BUFFER_LENGTH = 32000;
+
+    /**
+     * Time (in milliseconds) background thread waits for more output,
+     * before exiting
+     */
+    final static long IDLE_TIMEOUT_MSECS = 1000L;
+
+    /**
+     * Stream to which content is written
+     */
+    final OutputStream mOut;
+
+    final byte[][] mBuffers;
+
+    final int[] mLengths;
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // State shared by threads; guarded by 'this'
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Number of buffers handed to the background thread that have not
+     * yet been (completely) written
+     */
+    int mQueued;
+
+    /**
+     * Index of the buffer background thread writes next
+     */
+    int mFlushIx;
+
+    /**
+     * Whether background thread is running (or has been started)
+     */
+    boolean mFlusherRunning;
+
+    IOException mError;
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Writer state
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Index of the buffer being filled
+     */
+    int mWriteIx;
+
+    byte[] mCurr;
+
+    int mPtr;
+
+    public WriteBehindOutputStream(OutputStream out)
+    {
+        this(out, DEFAULT_BUFFER_COUNT, DEFAULT_BUFFER_LENGTH);
+    }
+
+    public WriteBehindOutputStream(OutputStream out, int bufferCount, int bufferLen)
+    {
+        if (bufferCount < 2 || bufferLen < 1) {
+            throw new IllegalArgumentException("Illegal buffer count ("+bufferCount+") or length ("+bufferLen+"): need at least 2 buffers");
+        }
+        mOut = out;
+        mBuffers = new byte[bufferCount][];
+        for (int i = 0; i < bufferCount; ++i) {
+            mBuffers[i] = new byte[bufferLen];
+        }
+        mLengths = new int[bufferCount];
+        mCurr = mBuffers[0];
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // OutputStream implementation
+    ///////////////////////////////////////////////////////////
+     */
+
+    public void write(int b)
+        throws IOException
+    {
+        if (mPtr >= mCurr.length) {
+            handOff();
+        }
+        mCurr[mPtr++] = (byte) b;
+    }
+
+    public void write(byte[] b)
+        throws IOException
+    {
+        write(b, 0, b.length);
+    }
+
+    public void write(byte[] b, int off, int len)
+        throws IOException
+    {
+        while (len > 0) {
+            if (mPtr >= mCurr.length) {
+                handOff();
+            }
+            int count = Math.min(len, mCurr.length - mPtr);
+            System.arraycopy(b, off, mCurr, mPtr, count);
+            mPtr += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    public void flush()
+        throws IOException
+    {
+        if (mCurr == null) { // closed
+            return;
+        }
+        if (mPtr > 0) {
+            handOff();
+        }
+        waitUntilWritten();
+        // background thread is idle now, safe to flush from this thread
+        mOut.flush();
+    }
+
+    public void close()
+        throws IOException
+    {
+        if (mCurr == null) { // already closed
+            return;
+        }
+        try {
+            if (mPtr > 0) {
+                handOff();
+            }
+            waitUntilWritten();
+        } finally {
+            mCurr = null;
+            mOut.close();
+        }
+    }
+
+    /**
+     * Method called to hand the current buffer to the background thread,
+     * and switch to the next free buffer (waiting for one to become
+     * free, if necessary).
+     */
+    private void handOff()
+        throws IOException
+    {
+        if (mCurr == null) {
+            throw new IOException("Stream closed");
+        }
+        final int count = mBuffers.length;
+        synchronized (this) {
+            // one buffer has to remain free for writing the next content
+            while (mQueued >= (count - 1) && mError == null) {
+                waitForFlusher();
+            }
+            if (mError != null) {
+                throw mError;
+            }
+            mLengths[mWriteIx] = mPtr;
+            ++mQueued;
+            if (mFlusherRunning) {
+                notifyAll();
+            } else {
+                mFlusherRunning = true;
+                Thread t = new Thread(this, "Woodstox write-behind");
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+        mWriteIx = (mWriteIx + 1) % count;
+        mCurr = mBuffers[mWriteIx];
+        mPtr = 0;
+    }
+
+    private synchronized void waitUntilWritten()
+        throws IOException
+    {
+        while (mQueued > 0 && mError == null) {
+            waitForFlusher();
+        }
+        if (mError != null) {
+            throw mError;
+        }
+    }
+
+    private void waitForFlusher()
+        throws IOException
+    {
+        try {
+            wait();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for write-behind output");
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Runnable implementation (background thread)
+    ///////////////////////////////////////////////////////////
+     */
+
+    public void run()
+    {
+        boolean idle = false;
+        try {
+            while (true) {
+                int ix;
+                synchronized (this) {
+                    if (mQueued == 0) {
+                        wait(IDLE_TIMEOUT_MSECS);
+                        // (may also be a spurious wake-up; fine, will be restarted as needed)
+                        if (mQueued == 0) {
+                            mFlusherRunning = false;
+                            idle = true;
+                            return;
+                        }
+                    }
+                    ix = mFlushIx;
+                }
+                // buffer is not touched by writing thread until released:
+                mOut.write(mBuffers[ix], 0, mLengths[ix]);
+                synchronized (this) {
+                    mFlushIx = (ix + 1) % mBuffers.length;
+                    --mQueued;
+                    notifyAll();
+                }
+            }
+        } catch (IOException ioe) {
+            synchronized (this) {
+                mFlusherRunning = false;
+                mError = ioe;
+                notifyAll();
+            }
+        } catch (RuntimeException re) {
+            // must not leave writing thread waiting indefinitely
+            synchronized (this) {
+                mFlusherRunning = false;
+                mError = new IOException("Write-behind output failed: "+re.getMessage(), re);
+                notifyAll();
+            }
+        } catch (InterruptedException ie) {
+            // should not happen, nothing interrupts the thread; but if so, just quit
+            synchronized (this) {
+                mFlusherRunning = false;
+                mError = new InterruptedIOException("Write-behind thread interrupted");
+                notifyAll();
+            }
+        } finally {
+            // and for Errors, which are let through, need to signal termination as well
+            if (!idle) {
+                synchronized (this) {
+                    if (mError == null) {
+                        mFlusherRunning = false;
+                        mError = new IOException("Write-behind thread terminated unexpectedly");
+                        notifyAll();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -143,6 +143,14 @@ public abstract class WstxInputSource
     public int getScopeId() { return mScopeId; }
 
     public int getEntityDepth() { return mEntityDepth; }
+
+    /**
+     * @return Number of bytes read from the underlying byte stream, if
+     *   known; -1 if not (no byte stream, or not decoded by Woodstox)
+     *
+     * @since 5.0
+     */
+    public long getBytesRead() { return -1L; }
     
     /*
     //////////////////////////////////////////////////////////
@@ -0,0 +1,228 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.metrics;
+
+import javax.xml.stream.XMLStreamConstants;
+
+/**
+ * Container for metrics collected by a single stream reader, while
+ * parsing a single document. Instances are only created if a
+ * {@link ParserMetricsListener} has been registered with the input
+ * factory; mutators are called by the reader during parsing, and
+ * accessors by listeners after parsing has completed.
+ *<p>
+ * Instances are not thread-safe: they are only to be modified by
+ * the reader that created them.
+ *
+ * @since 5.0
+ */
+public final class DocumentMetrics
+{
+    /**
+     * Largest event type for which separate counts are kept; covers
+     * all types defined by {@link XMLStreamConstants}.
+     */
+    final static int MAX_EVENT_TYPE = XMLStreamConstants.ENTITY_DECLARATION;
+
+    final String mSystemId;
+
+    final long mStartTime;
+
+    long mEndTime;
+
+    /**
+     * Number of bytes read from the underlying input stream, if known;
+     * -1 if not (input was passed as a character stream, or decoded by
+     * a JDK provided decoder).
+     */
+    long mBytesRead = -1L;
+
+    long mCharsRead;
+
+    int mBufferLoads;
+
+    final int[] mEventCounts = new int[MAX_EVENT_TYPE+1];
+
+    int mEntityExpansions;
+
+    int mDtdCacheHits;
+
+    int mDtdCacheMisses;
+
+    int mSymbolCount;
+
+    int mSymbolCollisions;
+
+    double mSymbolAvgSeek;
+
+    long mValidationTime;
+
+    boolean mCompleted;
+
+    public DocumentMetrics(String systemId)
+    {
+        mSystemId = systemId;
+        mStartTime = System.nanoTime();
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Methods called by stream readers
+    ///////////////////////////////////////////////////////////
+     */
+
+    public void bufferLoaded() {
+        ++mBufferLoads;
+    }
+
+    public void eventRead(int type) {
+        if (type >= 0 && type <= MAX_EVENT_TYPE) {
+            ++mEventCounts[type];
+        }
+    }
+
+    public void dtdCacheAccessed(boolean hit) {
+        if (hit) {
+            ++mDtdCacheHits;
+        } else {
+            ++mDtdCacheMisses;
+        }
+    }
+
+    /**
+     * @param nanos Time spent in validators, in nanoseconds
+     */
+    public void addValidationTime(long nanos) {
+        mValidationTime += nanos;
+    }
+
+    /**
+     * Method called by the reader once parsing is done, to add
+     * totals it keeps track of anyway.
+     *
+     * @return True if this was the first call to the method; false
+     *   if metrics were already marked as completed
+     */
+    public boolean complete(long charsRead, long bytesRead, int entityExpansions,
+            int symbolCount, int symbolCollisions, double symbolAvgSeek)
+    {
+        if (mCompleted) {
+            return false;
+        }
+        mCompleted = true;
+        mEndTime = System.nanoTime();
+        mCharsRead = charsRead;
+        mBytesRead = bytesRead;
+        mEntityExpansions = entityExpansions;
+        mSymbolCount = symbolCount;
+        mSymbolCollisions = symbolCollisions;
+        mSymbolAvgSeek = symbolAvgSeek;
+        return true;
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Accessors
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * @return System id of the document parsed, if known; null if not
+     */
+    public String getSystemId() { return mSystemId; }
+
+    public boolean isCompleted() { return mCompleted; }
+
+    /**
+     * @return Time between construction of the reader and completion
+     *   of parsing, in nanoseconds. Note that this includes time
+     *   application spent processing events.
+     */
+    public long getParseTime() {
+        return (mCompleted ? mEndTime : System.nanoTime()) - mStartTime;
+    }
+
+    public long getBytesRead() { return mBytesRead; }
+
+    public long getCharsRead() { return mCharsRead; }
+
+    /**
+     * @return Number of times input buffer was (re)filled from the
+     *   underlying input source
+     */
+    public int getBufferLoads() { return mBufferLoads; }
+
+    /**
+     * @return Number of events of given type returned by the reader
+     */
+    public int getEventCount(int type) {
+        return (type >= 0 && type <= MAX_EVENT_TYPE) ? mEventCounts[type] : 0;
+    }
+
+    public int getTotalEventCount()
+    {
+        int total = 0;
+        for (int count : mEventCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    public int getEntityExpansions() { return mEntityExpansions; }
+
+    public int getDtdCacheHits() { return mDtdCacheHits; }
+
+    public int getDtdCacheMisses() { return mDtdCacheMisses; }
+
+    /**
+     * @return Number of distinct names in the symbol table used by
+     *   the reader, including ones inherited from the factory
+     */
+    public int getSymbolCount() { return mSymbolCount; }
+
+    /**
+     * @return Number of symbols in the symbol table that did not get
+     *   a primary hash slot
+     */
+    public int getSymbolCollisions() { return mSymbolCollisions; }
+
+    /**
+     * @return Average number of comparisons needed to find a symbol
+     *   in the symbol table (1.0 being optimal)
+     */
+    public double getSymbolAvgSeek() { return mSymbolAvgSeek; }
+
+    /**
+     * @return Time spent in validators, in nanoseconds
+     */
+    public long getValidationTime() { return mValidationTime; }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(100);
+        sb.append("[DocumentMetrics: systemId=").append(mSystemId)
+            .append(", time=").append(getParseTime() / 1000L).append(" us")
+            .append(", bytes=").append(mBytesRead)
+            .append(", chars=").append(mCharsRead)
+            .append(", bufferLoads=").append(mBufferLoads)
+            .append(", events=").append(getTotalEventCount())
+            .append(", entities=").append(mEntityExpansions)
+            .append(", symbols=").append(mSymbolCount)
+            .append("]");
+        return sb.toString();
+    }
+}
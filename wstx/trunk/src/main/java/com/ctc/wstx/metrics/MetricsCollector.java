@@ -0,0 +1,189 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.xml.stream.XMLStreamConstants;
+
+/**
+ * Simple thread-safe {@link ParserMetricsListener} implementation that
+ * aggregates metrics of all documents parsed since construction (or
+ * the last call to {@link #reset}). Can be used as is, via its
+ * accessors, or registered as a standard JMX MBean (see
+ * {@link #registerMBean}).
+ *<p>
+ * Symbol table statistics are not cumulative: values reported are
+ * those of the most recently completed document, which reflect the
+ * state of the symbol table shared via the factory.
+ *
+ * @since 5.0
+ */
+public class MetricsCollector
+    implements ParserMetricsListener, MetricsCollectorMBean
+{
+    protected final AtomicLong mDocuments = new AtomicLong();
+    protected final AtomicLong mBytesRead = new AtomicLong();
+    protected final AtomicLong mCharsRead = new AtomicLong();
+    protected final AtomicLong mBufferLoads = new AtomicLong();
+    protected final AtomicLong mEvents = new AtomicLong();
+    protected final AtomicLong mElements = new AtomicLong();
+    protected final AtomicLong mEntityExpansions = new AtomicLong();
+    protected final AtomicLong mDtdCacheHits = new AtomicLong();
+    protected final AtomicLong mDtdCacheMisses = new AtomicLong();
+    protected final AtomicLong mValidationTime = new AtomicLong();
+    protected final AtomicLong mParseTime = new AtomicLong();
+
+    protected volatile int mSymbolCount;
+    protected volatile double mSymbolAvgSeek;
+
+    // Slowest document; guarded by 'this'
+
+    protected long mMaxParseTime;
+    protected String mSlowestDocument;
+
+    public MetricsCollector() { }
+
+    /**
+     * Convenience method for registering this collector with given
+     * MBean server, using given object name.
+     */
+    public void registerMBean(MBeanServer server, ObjectName name)
+        throws JMException
+    {
+        server.registerMBean(this, name);
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // ParserMetricsListener implementation
+    ///////////////////////////////////////////////////////////
+     */
+
+    @Override
+    public void documentCompleted(DocumentMetrics metrics)
+    {
+        mDocuments.incrementAndGet();
+        if (metrics.getBytesRead() > 0L) {
+            mBytesRead.addAndGet(metrics.getBytesRead());
+        }
+        mCharsRead.addAndGet(metrics.getCharsRead());
+        mBufferLoads.addAndGet(metrics.getBufferLoads());
+        mEvents.addAndGet(metrics.getTotalEventCount());
+        mElements.addAndGet(metrics.getEventCount(XMLStreamConstants.START_ELEMENT));
+        mEntityExpansions.addAndGet(metrics.getEntityExpansions());
+        mDtdCacheHits.addAndGet(metrics.getDtdCacheHits());
+        mDtdCacheMisses.addAndGet(metrics.getDtdCacheMisses());
+        mValidationTime.addAndGet(metrics.getValidationTime());
+        long time = metrics.getParseTime();
+        mParseTime.addAndGet(time);
+        mSymbolCount = metrics.getSymbolCount();
+        mSymbolAvgSeek = metrics.getSymbolAvgSeek();
+
+        synchronized (this) {
+            if (time > mMaxParseTime) {
+                mMaxParseTime = time;
+                mSlowestDocument = metrics.getSystemId();
+            }
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Accessors, MBean implementation
+    ///////////////////////////////////////////////////////////
+     */
+
+    @Override
+    public long getDocumentCount() { return mDocuments.get(); }
+
+    @Override
+    public long getBytesRead() { return mBytesRead.get(); }
+
+    @Override
+    public long getCharsRead() { return mCharsRead.get(); }
+
+    @Override
+    public long getBufferLoads() { return mBufferLoads.get(); }
+
+    @Override
+    public long getEventCount() { return mEvents.get(); }
+
+    @Override
+    public long getElementCount() { return mElements.get(); }
+
+    @Override
+    public long getEntityExpansions() { return mEntityExpansions.get(); }
+
+    @Override
+    public long getDtdCacheHits() { return mDtdCacheHits.get(); }
+
+    @Override
+    public long getDtdCacheMisses() { return mDtdCacheMisses.get(); }
+
+    @Override
+    public int getSymbolCount() { return mSymbolCount; }
+
+    @Override
+    public double getSymbolAvgSeek() { return mSymbolAvgSeek; }
+
+    @Override
+    public long getValidationTimeMillis() {
+        return mValidationTime.get() / 1000000L;
+    }
+
+    @Override
+    public long getParseTimeMillis() {
+        return mParseTime.get() / 1000000L;
+    }
+
+    @Override
+    public synchronized long getMaxParseTimeMillis() {
+        return mMaxParseTime / 1000000L;
+    }
+
+    /**
+     * @return System id of the document that took longest to parse,
+     *   if known
+     */
+    @Override
+    public synchronized String getSlowestDocument() {
+        return mSlowestDocument;
+    }
+
+    @Override
+    public void reset()
+    {
+        mDocuments.set(0L);
+        mBytesRead.set(0L);
+        mCharsRead.set(0L);
+        mBufferLoads.set(0L);
+        mEvents.set(0L);
+        mElements.set(0L);
+        mEntityExpansions.set(0L);
+        mDtdCacheHits.set(0L);
+        mDtdCacheMisses.set(0L);
+        mValidationTime.set(0L);
+        mParseTime.set(0L);
+        synchronized (this) {
+            mMaxParseTime = 0L;
+            mSlowestDocument = null;
+        }
+    }
+}
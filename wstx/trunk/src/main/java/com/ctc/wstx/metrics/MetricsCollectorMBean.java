@@ -0,0 +1,57 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.metrics;
+
+/**
+ * Management interface of {@link MetricsCollector}, used to expose
+ * aggregated parsing metrics as a standard JMX MBean.
+ *
+ * @since 5.0
+ */
+public interface MetricsCollectorMBean
+{
+    public long getDocumentCount();
+
+    public long getBytesRead();
+
+    public long getCharsRead();
+
+    public long getBufferLoads();
+
+    public long getEventCount();
+
+    public long getElementCount();
+
+    public long getEntityExpansions();
+
+    public long getDtdCacheHits();
+
+    public long getDtdCacheMisses();
+
+    public int getSymbolCount();
+
+    public double getSymbolAvgSeek();
+
+    public long getValidationTimeMillis();
+
+    public long getParseTimeMillis();
+
+    public long getMaxParseTimeMillis();
+
+    public String getSlowestDocument();
+
+    public void reset();
+}
@@ -0,0 +1,44 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.metrics;
+
+/**
+ * Interface for objects that want to receive parsing metrics from
+ * stream readers. Listener is registered with the input factory, using
+ * property {@link com.ctc.wstx.api.WstxInputProperties#P_METRICS_LISTENER};
+ * all readers constructed by the factory will then collect
+ * {@link DocumentMetrics} and report them once they are done.
+ *<p>
+ * If no listener is registered, readers do not collect any metrics.
+ *<p>
+ * Note that since a single factory is usually shared by multiple threads,
+ * implementations need to be thread-safe.
+ *
+ * @since 5.0
+ */
+public interface ParserMetricsListener
+{
+    /**
+     * Method called by a stream reader when it has completed parsing
+     * of a document: either after reaching the end of input, or when
+     * closed by the application (whichever occurs first). Method is
+     * called at most once per reader.
+     *
+     * @param metrics Metrics collected while parsing the document; will
+     *    not be modified after this call
+     */
+    public void documentCompleted(DocumentMetrics metrics);
+}
@@ -0,0 +1,76 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ctc.wstx.msv;
+
+import java.util.*;
+
+import com.sun.msv.grammar.*;
+import com.sun.msv.grammar.util.ExpressionWalker;
+
+/**
+ * Helper class used for enumerating qualified names (in Clark notation,
+ * "{namespace-uri}local-name") of all elements that an MSV grammar can
+ * match, for constructing
+ * {@link com.ctc.wstx.util.NameVocabulary} instances. Wildcards
+ * (any-name and namespace-name classes) have no names to add, and
+ * are skipped.
+ *
+ * @since 5.0
+ */
+final class ElementNameCollector
+    extends ExpressionWalker
+{
+    final Collection<String> mNames;
+
+    /**
+     * Elements already visited; needed since recursive content models
+     * refer back to enclosing elements.
+     */
+    final Set<ElementExp> mVisited = new HashSet<ElementExp>();
+
+    private ElementNameCollector(Collection<String> names)
+    {
+        mNames = names;
+    }
+
+    public static void collect(Grammar grammar, Collection<String> names)
+    {
+        grammar.getTopLevel().visit(new ElementNameCollector(names));
+    }
+
+    @Override
+    public void onElement(ElementExp exp)
+    {
+        if (mVisited.add(exp)) {
+            addNames(exp.getNameClass());
+            super.onElement(exp);
+        }
+    }
+
+    private void addNames(NameClass nc)
+    {
+        if (nc instanceof SimpleNameClass) {
+            SimpleNameClass snc = (SimpleNameClass) nc;
+            mNames.add("{"+snc.namespaceURI+"}"+snc.localName);
+        } else if (nc instanceof ChoiceNameClass) {
+            addNames(((ChoiceNameClass) nc).nc1);
+            addNames(((ChoiceNameClass) nc).nc2);
+        } else if (nc instanceof DifferenceNameClass) {
+            addNames(((DifferenceNameClass) nc).nc1);
+        }
+    }
+}
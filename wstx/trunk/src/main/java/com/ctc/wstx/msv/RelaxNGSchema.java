@@ -15,6 +15,8 @@
 
 package com.ctc.wstx.msv;
 
+import java.util.Collection;
+
 import javax.xml.stream.*;
 
 import org.codehaus.stax2.validation.*;
@@ -22,12 +24,14 @@ import org.codehaus.stax2.validation.*;
 import com.sun.msv.grammar.trex.TREXGrammar;
 import com.sun.msv.verifier.regexp.REDocumentDeclaration;
 
+import com.ctc.wstx.util.NameVocabulary;
+
 /**
  * This is a validation schema instance based on a RELAX NG schema. It
  * serves as a shareable "blueprint" for creating actual validator instances.
  */
 public class RelaxNGSchema
-    implements XMLValidationSchema
+    implements XMLValidationSchema, NameVocabulary.NameSource
 {
     /**
      * This is VGM (in MSV lingo); shareable schema blueprint, basically
@@ -51,4 +55,12 @@ public class RelaxNGSchema
         REDocumentDeclaration dd = new REDocumentDeclaration(mGrammar);
         return new GenericMsvValidator(this, ctxt, dd);
     }
+
+    /**
+     * @since 5.0
+     */
+    public void addElementNames(Collection<String> names)
+    {
+        ElementNameCollector.collect(mGrammar, names);
+    }
 }
@@ -15,6 +15,8 @@
 
 package com.ctc.wstx.msv;
 
+import java.util.Collection;
+
 import javax.xml.stream.*;
 
 import org.codehaus.stax2.validation.*;
@@ -22,12 +24,14 @@ import org.codehaus.stax2.validation.*;
 import com.sun.msv.grammar.xmlschema.XMLSchemaGrammar;
 import com.sun.msv.verifier.regexp.xmlschema.XSREDocDecl;
 
+import com.ctc.wstx.util.NameVocabulary;
+
 /**
  * This is a validation schema instance based on a W3C schema. It
  * serves as a shareable "blueprint" for creating actual validator instances.
  */
 public class W3CSchema
-    implements XMLValidationSchema
+    implements XMLValidationSchema, NameVocabulary.NameSource
 {
     protected final XMLSchemaGrammar mGrammar;
 
@@ -46,4 +50,12 @@ public class W3CSchema
         XSREDocDecl dd = new XSREDocDecl(mGrammar);
         return new GenericMsvValidator(this, ctxt, dd);
     }
+
+    /**
+     * @since 5.0
+     */
+    public void addElementNames(Collection<String> names)
+    {
+        ElementNameCollector.collect(mGrammar, names);
+    }
 }
@@ -0,0 +1,452 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ctc.wstx.record;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+
+import org.codehaus.stax2.XMLStreamReader2;
+
+import com.ctc.wstx.api.ReaderConfig;
+import com.ctc.wstx.api.WstxInputProperties;
+import com.ctc.wstx.exc.WstxIOException;
+import com.ctc.wstx.io.ReaderBootstrapper;
+import com.ctc.wstx.io.SystemId;
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Index of locations of chosen elements within a (large) XML file, as
+ * built by {@link ElementIndexBuilder}. For each indexed element, index
+ * contains byte offsets of its start and end (offset right after its end
+ * tag), its depth, and namespace bindings it inherited from its
+ * ancestors. This allows parsing a single indexed element without
+ * scanning the file from the beginning: only the bytes of the element
+ * are read, and parsed in fragment mode (see
+ * {@link #createReader(WstxInputFactory, FileChannel, int)}).
+ *<p>
+ * Index can be stored on disk using a compact binary format (see
+ * {@link #writeTo} and {@link #readFrom}). Instances are immutable, and
+ * thus can be shared between threads.
+ *<p>
+ * As with {@link RecordFragment}s, references to entities declared in
+ * the DTD of the original document are not expanded when parsing
+ * indexed elements, unless reader is configured to know about them.
+ *
+ * @since 5.0
+ */
+public final class ElementIndex
+{
+    final static int MAGIC = 0x57784958; // "WxIX"
+
+    final static int FORMAT_VERSION = 1;
+
+    /**
+     * Name of the charset that is to be used for decoding indexed
+     * elements
+     */
+    private final String mCharset;
+
+    /**
+     * Element paths that were indexed; each entry is a path from the
+     * root element to indexed elements
+     */
+    private final QName[][] mPaths;
+
+    /**
+     * Distinct sets of inherited namespace bindings of indexed elements;
+     * entries refer to these by index, since usually most elements share
+     * the same set.
+     */
+    private final List<Map<String,String>> mNsBindings;
+
+    private final int mSize;
+
+    private final int[] mPathIndexes;
+
+    private final int[] mDepths;
+
+    private final int[] mNsIndexes;
+
+    private final long[] mStartOffsets;
+
+    private final long[] mEndOffsets;
+
+    ElementIndex(String charset, QName[][] paths, List<Map<String,String>> nsBindings,
+                 int size, int[] pathIndexes, int[] depths, int[] nsIndexes,
+                 long[] startOffsets, long[] endOffsets)
+    {
+        mCharset = charset;
+        mPaths = paths;
+        mNsBindings = nsBindings;
+        mSize = size;
+        mPathIndexes = pathIndexes;
+        mDepths = depths;
+        mNsIndexes = nsIndexes;
+        mStartOffsets = startOffsets;
+        mEndOffsets = endOffsets;
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Accessors
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * @return Number of indexed elements
+     */
+    public int size() { return mSize; }
+
+    public String getCharset() { return mCharset; }
+
+    public int getPathCount() { return mPaths.length; }
+
+    /**
+     * @return Path (names of elements from the root element down to the
+     *   indexed element) with given index, in the order paths were added
+     *   to the builder
+     */
+    public List<QName> getPath(int pathIndex) {
+        return Collections.unmodifiableList(Arrays.asList(mPaths[pathIndex]));
+    }
+
+    /**
+     * @return Index of the path that the entry matched
+     */
+    public int getPathIndex(int entry) {
+        checkEntry(entry);
+        return mPathIndexes[entry];
+    }
+
+    /**
+     * @return Depth of the element (1 for the root element)
+     */
+    public int getDepth(int entry) {
+        checkEntry(entry);
+        return mDepths[entry];
+    }
+
+    /**
+     * @return Byte offset of the start tag of the element (offset of the
+     *   opening '&lt;')
+     */
+    public long getStartOffset(int entry) {
+        checkEntry(entry);
+        return mStartOffsets[entry];
+    }
+
+    /**
+     * @return Byte offset right after the end tag of the element (or
+     *   the empty element tag)
+     */
+    public long getEndOffset(int entry) {
+        checkEntry(entry);
+        return mEndOffsets[entry];
+    }
+
+    /**
+     * @return Namespace bindings (from prefix to URI; empty String as
+     *   prefix for the default namespace) that the element inherited from
+     *   its ancestors, and that it did not re-declare
+     */
+    public Map<String,String> getNamespaceBindings(int entry) {
+        checkEntry(entry);
+        return Collections.unmodifiableMap(mNsBindings.get(mNsIndexes[entry]));
+    }
+
+    /**
+     * @return Indexes of all entries that matched the path with given
+     *   index, in document order
+     */
+    public int[] getEntriesForPath(int pathIndex)
+    {
+        int count = 0;
+        for (int i = 0; i < mSize; ++i) {
+            if (mPathIndexes[i] == pathIndex) {
+                ++count;
+            }
+        }
+        int[] result = new int[count];
+        count = 0;
+        for (int i = 0; i < mSize; ++i) {
+            if (mPathIndexes[i] == pathIndex) {
+                result[count++] = i;
+            }
+        }
+        return result;
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Random access to indexed elements
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Method for constructing a stream reader for parsing given indexed
+     * element of the indexed file, using configuration of the given
+     * factory, except that the reader is in fragment parsing mode (see
+     * {@link WstxInputProperties#P_INPUT_PARSING_MODE}). Only bytes of the
+     * element are read from the file; and namespace declarations for
+     * bindings the element inherited are added to its start tag.
+     *<p>
+     * Channel is accessed using absolute positioning, so that its
+     * position is not changed; this means that it is safe to call this
+     * method concurrently from multiple threads (as the factory itself
+     * is not modified either).
+     */
+    public XMLStreamReader2 createReader(WstxInputFactory f, FileChannel ch, int entry)
+        throws XMLStreamException
+    {
+        return createReader(f, ch, entry, SystemId.construct((String) null));
+    }
+
+    /**
+     * Convenience method that opens given file, and calls
+     * {@link #createReader(WstxInputFactory, FileChannel, int)}.
+     */
+    public XMLStreamReader2 createReader(WstxInputFactory f, File file, int entry)
+        throws XMLStreamException
+    {
+        try {
+            SystemId sysId = SystemId.construct(file.toURI().toURL());
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                return createReader(f, raf.getChannel(), entry, sysId);
+            } finally {
+                raf.close();
+            }
+        } catch (IOException ioe) {
+            throw new WstxIOException(ioe);
+        }
+    }
+
+    private XMLStreamReader2 createReader(WstxInputFactory f, FileChannel ch, int entry, SystemId sysId)
+        throws XMLStreamException
+    {
+        checkEntry(entry);
+        long start = mStartOffsets[entry];
+        long len = mEndOffsets[entry] - start;
+        if (len > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Indexed element too long to parse separately ("+len+" bytes)");
+        }
+        ByteBuffer bb = ByteBuffer.allocate((int) len);
+        try {
+            while (bb.hasRemaining()) {
+                if (ch.read(bb, start + bb.position()) < 0) {
+                    throw new EOFException("Unexpected end of file when reading indexed element at "
+                            +start+" (file modified after indexing?)");
+                }
+            }
+        } catch (IOException ioe) {
+            throw new WstxIOException(ioe);
+        }
+        bb.flip();
+        CharBuffer cb = Charset.forName(mCharset).decode(bb);
+        char[] content = new char[cb.remaining()];
+        cb.get(content);
+        Map<String,String> ns = mNsBindings.get(mNsIndexes[entry]);
+        if (!ns.isEmpty()) {
+            content = addNsDeclarations(content, ns);
+        }
+        ReaderConfig cfg = f.createPrivateConfig();
+        cfg.setInputParsingMode(WstxInputProperties.PARSING_MODE_FRAGMENT);
+        return f.createSR(cfg, sysId, ReaderBootstrapper.getInstance
+                          (null, sysId, new CharArrayReader(content), null), false, true);
+    }
+
+    private static char[] addNsDeclarations(char[] content, Map<String,String> bindings)
+    {
+        int nameEnd = 1;
+        while (nameEnd < content.length) {
+            char c = content[nameEnd];
+            if (c <= 0x0020 || c == '/' || c == '>') {
+                break;
+            }
+            ++nameEnd;
+        }
+        CharArrayWriter w = new CharArrayWriter(content.length + 50 * bindings.size());
+        w.write(content, 0, nameEnd);
+        try {
+            RecordSplitter.writeNsDeclarations(w, bindings);
+        } catch (IOException ioe) { // never gets thrown for in-memory writer
+            throw new IllegalStateException(ioe);
+        }
+        w.write(content, nameEnd, content.length - nameEnd);
+        return w.toCharArray();
+    }
+
+    private void checkEntry(int entry)
+    {
+        if (entry < 0 || entry >= mSize) {
+            throw new IllegalArgumentException("Illegal entry index "+entry+"; index only has "+mSize+" entries");
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Serialization
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Method for writing the index using a compact binary format: offsets
+     * are delta-encoded, and all numbers are written using variable
+     * length encoding.
+     */
+    public void writeTo(OutputStream out)
+        throws IOException
+    {
+        DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out));
+        dout.writeInt(MAGIC);
+        dout.writeByte(FORMAT_VERSION);
+        dout.writeUTF(mCharset);
+
+        writeVInt(dout, mPaths.length);
+        for (QName[] path : mPaths) {
+            writeVInt(dout, path.length);
+            for (QName name : path) {
+                dout.writeUTF(name.getNamespaceURI());
+                dout.writeUTF(name.getLocalPart());
+            }
+        }
+        writeVInt(dout, mNsBindings.size());
+        for (Map<String,String> bindings : mNsBindings) {
+            writeVInt(dout, bindings.size());
+            for (Map.Entry<String,String> en : bindings.entrySet()) {
+                dout.writeUTF(en.getKey());
+                dout.writeUTF(en.getValue());
+            }
+        }
+        writeVInt(dout, mSize);
+        long prevStart = 0L;
+        for (int i = 0; i < mSize; ++i) {
+            writeVInt(dout, mPathIndexes[i]);
+            writeVInt(dout, mDepths[i]);
+            writeVInt(dout, mNsIndexes[i]);
+            writeVLong(dout, mStartOffsets[i] - prevStart);
+            writeVLong(dout, mEndOffsets[i] - mStartOffsets[i]);
+            prevStart = mStartOffsets[i];
+        }
+        dout.flush();
+    }
+
+    /**
+     * Method for reading an index written using {@link #writeTo}.
+     */
+    public static ElementIndex readFrom(InputStream in)
+        throws IOException
+    {
+        DataInputStream din = new DataInputStream(new BufferedInputStream(in));
+        if (din.readInt() != MAGIC) {
+            throw new IOException("Invalid element index: does not start with the expected signature");
+        }
+        int version = din.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported element index format version "+version
+                    +"; only version "+FORMAT_VERSION+" supported");
+        }
+        String charset = din.readUTF();
+
+        QName[][] paths = new QName[readVInt(din)][];
+        for (int i = 0; i < paths.length; ++i) {
+            QName[] path = new QName[readVInt(din)];
+            for (int j = 0; j < path.length; ++j) {
+                String uri = din.readUTF();
+                path[j] = new QName(uri, din.readUTF());
+            }
+            paths[i] = path;
+        }
+        int nsCount = readVInt(din);
+        List<Map<String,String>> nsBindings = new ArrayList<Map<String,String>>(nsCount);
+        for (int i = 0; i < nsCount; ++i) {
+            int count = readVInt(din);
+            Map<String,String> bindings = new LinkedHashMap<String,String>();
+            for (int j = 0; j < count; ++j) {
+                String prefix = din.readUTF();
+                bindings.put(prefix, din.readUTF());
+            }
+            nsBindings.add(bindings);
+        }
+        int size = readVInt(din);
+        int[] pathIndexes = new int[size];
+        int[] depths = new int[size];
+        int[] nsIndexes = new int[size];
+        long[] starts = new long[size];
+        long[] ends = new long[size];
+        long prevStart = 0L;
+        for (int i = 0; i < size; ++i) {
+            pathIndexes[i] = readVInt(din);
+            depths[i] = readVInt(din);
+            nsIndexes[i] = readVInt(din);
+            if (pathIndexes[i] >= paths.length || nsIndexes[i] >= nsCount) {
+                throw new IOException("Invalid element index: entry #"+i+" refers to undefined path or namespace bindings");
+            }
+            prevStart += readVLong(din);
+            starts[i] = prevStart;
+            ends[i] = prevStart + readVLong(din);
+        }
+        return new ElementIndex(charset, paths, nsBindings, size, pathIndexes, depths, nsIndexes, starts, ends);
+    }
+
+    private static void writeVInt(DataOutput out, int value)
+        throws IOException
+    {
+        writeVLong(out, value);
+    }
+
+    private static void writeVLong(DataOutput out, long value)
+        throws IOException
+    {
+        while ((value & ~0x7FL) != 0L) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static int readVInt(DataInput in)
+        throws IOException
+    {
+        long value = readVLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Invalid element index: value "+value+" out of range");
+        }
+        return (int) value;
+    }
+
+    private static long readVLong(DataInput in)
+        throws IOException
+    {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= ((long) (b & 0x7F)) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid element index: malformed variable-length number");
+    }
+}
@@ -0,0 +1,257 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ctc.wstx.record;
+
+import java.io.*;
+import java.util.*;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import com.ctc.wstx.api.ReaderConfig;
+import com.ctc.wstx.exc.WstxIOException;
+import com.ctc.wstx.io.ByteOffsetCounter;
+import com.ctc.wstx.io.StreamBootstrapper;
+import com.ctc.wstx.io.SystemId;
+import com.ctc.wstx.sr.BasicStreamReader;
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Builder that scans an XML file once, and constructs an
+ * {@link ElementIndex} that contains locations of all elements that
+ * match one of specified element paths. Index can then be used to parse
+ * individual elements without re-scanning the file.
+ *<p>
+ * Paths are absolute, starting from the root element; all elements with
+ * matching path are indexed, including ones nested within other indexed
+ * elements. General entity references are not expanded when building the
+ * index, so elements contained in entity expansions are not indexed.
+ *<p>
+ * Since offsets within the file have to be calculated from character
+ * offsets stored by stream readers, only files encoded using UTF-8,
+ * UTF-16 or a single-byte encoding (like ISO-8859-1) can be indexed.
+ *<p>
+ * Instances are not thread-safe.
+ *
+ * @since 5.0
+ */
+public class ElementIndexBuilder
+    implements XMLStreamConstants
+{
+    protected final WstxInputFactory mFactory;
+
+    protected final ArrayList<QName[]> mPaths = new ArrayList<QName[]>();
+
+    // // // State while building
+
+    /**
+     * For each path, number of its leading names that match the names
+     * of the current element and its ancestors
+     */
+    private int[] mMatched;
+
+    private int mSize;
+
+    private int[] mPathIndexes, mDepths, mNsIndexes;
+
+    private long[] mStartOffsets, mEndOffsets;
+
+    /**
+     * For each open element depth, index of the first entry created for
+     * the element (or -1 if none), so that end offsets can be filled in
+     */
+    private int[] mOpenEntries;
+
+    private HashMap<Map<String,String>,Integer> mNsIndexMap;
+
+    private ArrayList<Map<String,String>> mNsBindings;
+
+    /**
+     * @param f Factory used for constructing the stream reader used for
+     *   scanning files; its configuration is not modified
+     */
+    public ElementIndexBuilder(WstxInputFactory f)
+    {
+        mFactory = f;
+    }
+
+    /**
+     * Method for adding a path of elements to index.
+     *
+     * @param path Names of elements on the path, starting with the root
+     *   element (if a name has no namespace URI, only elements that do not
+     *   belong to a namespace match)
+     */
+    public ElementIndexBuilder addPath(QName... path)
+    {
+        if (path.length == 0) {
+            throw new IllegalArgumentException("Empty element path");
+        }
+        mPaths.add(path.clone());
+        return this;
+    }
+
+    public ElementIndex build(File file)
+        throws XMLStreamException
+    {
+        if (mPaths.isEmpty()) {
+            throw new IllegalStateException("No element paths to index have been added");
+        }
+        ReaderConfig cfg = mFactory.createPrivateConfig();
+        cfg.doReplaceEntityRefs(false);
+        cfg.doCoalesceText(false);
+        SystemId sysId;
+        InputStream in;
+        try {
+            sysId = SystemId.construct(file.toURI().toURL());
+            in = new FileInputStream(file);
+        } catch (IOException ioe) {
+            throw new WstxIOException(ioe);
+        }
+        BasicStreamReader sr = (BasicStreamReader) mFactory.createSR(cfg, sysId,
+                StreamBootstrapper.getInstance(null, sysId, in), false, true);
+        ByteOffsetCounter counter = null;
+        try {
+            counter = ByteOffsetCounter.construct(file, sr.getEncoding());
+            if (counter == null) {
+                throw new XMLStreamException("Can not index document with encoding '"+sr.getEncoding()
+                        +"': byte offsets can only be calculated for UTF-8, UTF-16 and single-byte encodings");
+            }
+            return build(sr, counter);
+        } catch (IOException ioe) {
+            throw new WstxIOException(ioe);
+        } finally {
+            sr.closeCompletely();
+            if (counter != null) {
+                try {
+                    counter.close();
+                } catch (IOException ioe) {
+                    throw new WstxIOException(ioe);
+                }
+            }
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Internal methods
+    ///////////////////////////////////////////////////////////
+     */
+
+    private ElementIndex build(BasicStreamReader sr, ByteOffsetCounter counter)
+        throws IOException, XMLStreamException
+    {
+        final QName[][] paths = mPaths.toArray(new QName[mPaths.size()][]);
+        mMatched = new int[paths.length];
+        mSize = 0;
+        mPathIndexes = new int[64];
+        mDepths = new int[64];
+        mNsIndexes = new int[64];
+        mStartOffsets = new long[64];
+        mEndOffsets = new long[64];
+        mOpenEntries = new int[16];
+        mNsIndexMap = new HashMap<Map<String,String>,Integer>();
+        mNsBindings = new ArrayList<Map<String,String>>();
+
+        while (sr.hasNext()) {
+            int type = sr.next();
+            if (type == START_ELEMENT) {
+                int depth = sr.getDepth();
+                if (depth >= mOpenEntries.length) {
+                    mOpenEntries = Arrays.copyOf(mOpenEntries, mOpenEntries.length * 2);
+                }
+                mOpenEntries[depth] = -1;
+                for (int i = 0; i < paths.length; ++i) {
+                    QName[] path = paths[i];
+                    if (mMatched[i] == depth-1 && depth <= path.length
+                        && nameMatches(sr, path[depth-1])) {
+                        mMatched[i] = depth;
+                        if (depth == path.length) {
+                            addEntry(sr, counter, i, depth);
+                        }
+                    }
+                }
+            } else if (type == END_ELEMENT) {
+                int depth = sr.getDepth();
+                int ix = mOpenEntries[depth];
+                if (ix >= 0) {
+                    long end = counter.toByteOffset(sr.getEndingCharOffset());
+                    for (; ix < mSize && mDepths[ix] == depth; ++ix) {
+                        mEndOffsets[ix] = end;
+                    }
+                }
+                for (int i = 0; i < paths.length; ++i) {
+                    if (mMatched[i] == depth) {
+                        mMatched[i] = depth-1;
+                    }
+                }
+            }
+        }
+        ElementIndex index = new ElementIndex(counter.getCharset(), paths, mNsBindings, mSize,
+                mPathIndexes, mDepths, mNsIndexes, mStartOffsets, mEndOffsets);
+        mNsIndexMap = null;
+        mNsBindings = null;
+        return index;
+    }
+
+    private void addEntry(BasicStreamReader sr, ByteOffsetCounter counter, int pathIndex, int depth)
+        throws IOException
+    {
+        long start = counter.toByteOffset(sr.getStartingCharOffset());
+        if (mSize >= mDepths.length) {
+            int newLen = mDepths.length * 2;
+            mPathIndexes = Arrays.copyOf(mPathIndexes, newLen);
+            mDepths = Arrays.copyOf(mDepths, newLen);
+            mNsIndexes = Arrays.copyOf(mNsIndexes, newLen);
+            mStartOffsets = Arrays.copyOf(mStartOffsets, newLen);
+            mEndOffsets = Arrays.copyOf(mEndOffsets, newLen);
+        }
+        Map<String,String> inherited = sr.getInputElementStack().getInheritedNsBindings();
+        // Bindings the element itself re-declares need not be added
+        for (int i = 0, len = sr.getNamespaceCount(); i < len; ++i) {
+            String prefix = sr.getNamespacePrefix(i);
+            inherited.remove((prefix == null) ? "" : prefix);
+        }
+        Integer nsIndex = mNsIndexMap.get(inherited);
+        if (nsIndex == null) {
+            nsIndex = Integer.valueOf(mNsBindings.size());
+            mNsBindings.add(inherited);
+            mNsIndexMap.put(inherited, nsIndex);
+        }
+        if (mOpenEntries[depth] < 0) {
+            mOpenEntries[depth] = mSize;
+        }
+        mPathIndexes[mSize] = pathIndex;
+        mDepths[mSize] = depth;
+        mNsIndexes[mSize] = nsIndex.intValue();
+        mStartOffsets[mSize] = start;
+        ++mSize;
+    }
+
+    private static boolean nameMatches(BasicStreamReader sr, QName name)
+    {
+        if (!name.getLocalPart().equals(sr.getLocalName())) {
+            return false;
+        }
+        String uri = sr.getNamespaceURI();
+        if (uri == null || uri.length() == 0) {
+            return name.getNamespaceURI().length() == 0;
+        }
+        return uri.equals(name.getNamespaceURI());
+    }
+}
@@ -0,0 +1,668 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.record;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import org.codehaus.stax2.XMLStreamReader2;
+
+import com.ctc.wstx.exc.WstxIOException;
+import com.ctc.wstx.io.CharsetNames;
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Parser for record-oriented documents (sequence of record elements
+ * directly under the root element, like database dumps) that can parse
+ * a single large document using multiple threads.
+ *<p>
+ * Document is split into chunks of roughly {@link #getChunkSize} bytes,
+ * speculatively: each chunk (except the first one) starts at the first
+ * occurrence of the record start tag (like <code>&lt;record</code>) after
+ * nominal chunk start. Chunks are then parsed by worker threads, each
+ * using a separate stream reader that is first fed the document prolog
+ * and root start tag, so that namespace bindings, entity declarations
+ * and such are available as if parsing the whole document.
+ *<p>
+ * Since the tag found may not actually be a record start tag (it may be
+ * within a comment, CDATA section, or be a nested element), chunk joins
+ * are verified: a chunk is only used if the worker that parsed the
+ * preceding (verified) chunk reaches a record start at exactly the same
+ * location. If not, that worker simply continues parsing (that is,
+ * falls back to sequential parsing) until it reaches start of another
+ * chunk, and results for chunks skipped over are discarded.
+ *<p>
+ * Records are converted into application objects by a
+ * {@link RecordMapper}, on worker threads, and then passed to a
+ * {@link RecordConsumer}: either in document order, by the calling
+ * thread (default), or, if not ordered, concurrently by worker threads,
+ * a chunk at a time.
+ *<p>
+ * Parallel parsing is only done for documents encoded using UTF-8,
+ * ISO-8859-1 or US-ASCII; others are parsed sequentially by the calling
+ * thread. Note, too, that validation (if enabled for the input factory)
+ * is done separately for each chunk; so identity constraints that span
+ * multiple records (ID/IDREF) can not be checked.
+ *
+ * @since 5.0
+ */
+public class ParallelRecordParser
+    implements XMLStreamConstants
+{
+    public final static long DEFAULT_CHUNK_SIZE = 16L * 1024 * 1024;
+
+    protected final WstxInputFactory mFactory;
+
+    protected final String mRecordName;
+
+    protected final String mRecordPrefix;
+
+    protected final String mRecordLocalName;
+
+    protected int mThreadCount = Runtime.getRuntime().availableProcessors();
+
+    protected long mChunkSize = DEFAULT_CHUNK_SIZE;
+
+    protected boolean mOrdered = true;
+
+    /**
+     * @param f Input factory used for constructing all stream readers;
+     *   needs to be configured for parsing full documents
+     * @param recordName Name of the record elements, as used in the
+     *   document: either local name, or prefixed name (like
+     *   "db:record") if record elements use a namespace prefix
+     */
+    public ParallelRecordParser(WstxInputFactory f, String recordName)
+    {
+        mFactory = f;
+        mRecordName = recordName;
+        int ix = recordName.indexOf(':');
+        mRecordPrefix = (ix < 0) ? "" : recordName.substring(0, ix);
+        mRecordLocalName = recordName.substring(ix+1);
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Configuration
+    ///////////////////////////////////////////////////////////
+     */
+
+    public int getThreadCount() { return mThreadCount; }
+
+    public long getChunkSize() { return mChunkSize; }
+
+    public boolean isOrdered() { return mOrdered; }
+
+    /**
+     * @param count Number of worker threads to use; if 1, document is
+     *   parsed sequentially by the calling thread
+     */
+    public void setThreadCount(int count)
+    {
+        if (count < 1) {
+            throw new IllegalArgumentException("Illegal thread count ("+count+"): has to be at least 1");
+        }
+        mThreadCount = count;
+    }
+
+    public void setChunkSize(long size)
+    {
+        if (size < 1L) {
+            throw new IllegalArgumentException("Illegal chunk size ("+size+"): has to be positive");
+        }
+        mChunkSize = size;
+    }
+
+    /**
+     * @param state If true, records are passed to the consumer in
+     *   document order, by the thread that calls {@link #parse}; if false,
+     *   they are passed by worker threads as soon as possible, and
+     *   consumer needs to be thread-safe.
+     */
+    public void setOrdered(boolean state) { mOrdered = state; }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Public API
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Method for parsing all records of given document, and passing
+     * them to given consumer.
+     *
+     * @return Number of records passed to the consumer
+     */
+    public <T> long parse(File file, RecordMapper<T> mapper, RecordConsumer<? super T> consumer)
+        throws XMLStreamException
+    {
+        long rootEndChars;
+        boolean utf8;
+
+        XMLStreamReader2 sr = mFactory.createXMLStreamReader(file);
+        try {
+            if (!findRoot(sr)) { // empty root element, no records
+                return 0L;
+            }
+            String enc = CharsetNames.normalize(sr.getEncoding());
+            utf8 = CharsetNames.CS_UTF8.equals(enc);
+            if (mThreadCount < 2
+                || !(utf8 || CharsetNames.CS_ISO_LATIN1.equals(enc) || CharsetNames.CS_US_ASCII.equals(enc))) {
+                Counter<T> counter = new Counter<T>(consumer);
+                readRecords(sr, null, 0L, mapper, counter);
+                return counter.mCount;
+            }
+            rootEndChars = sr.getLocationInfo().getEndingCharOffset();
+        } finally {
+            sr.closeCompletely();
+        }
+
+        try {
+            long rootEnd = findByteOffset(file, rootEndChars, utf8);
+            byte[] prolog = new byte[(int) rootEnd];
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                in.readFully(prolog);
+            } finally {
+                in.close();
+            }
+            return parseChunks(file, prolog, findChunks(file, rootEnd), utf8, mapper, consumer);
+        } catch (IOException ioe) {
+            throw new WstxIOException(ioe);
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Internal methods, splitting
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * @return True if the root element has content; false if it is an
+     *   empty element
+     */
+    private boolean findRoot(XMLStreamReader2 sr)
+        throws XMLStreamException
+    {
+        while (sr.next() != START_ELEMENT) { }
+        return !sr.isEmptyElement();
+    }
+
+    /**
+     * Method for finding start offsets of chunks: first chunk starts
+     * right after the root start tag, others at the first occurrence of
+     * record start tag after nominal chunk start.
+     */
+    private long[] findChunks(File file, long rootEnd)
+        throws IOException
+    {
+        final long fileLen = file.length();
+        // Record name can only contain ASCII chars, to be found by byte matching
+        byte[] pattern = null;
+        if (isAscii(mRecordName)) {
+            pattern = ("<"+mRecordName).getBytes("US-ASCII");
+        }
+        List<Long> starts = new ArrayList<Long>();
+        starts.add(rootEnd);
+        if (pattern != null) {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                for (long pos = rootEnd + mChunkSize; pos < fileLen; ) {
+                    long start = findRecordStart(raf, pos, pattern);
+                    if (start < 0L) {
+                        break;
+                    }
+                    starts.add(start);
+                    pos = start + mChunkSize;
+                }
+            } finally {
+                raf.close();
+            }
+        }
+        long[] result = new long[starts.size()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = starts.get(i);
+        }
+        return result;
+    }
+
+    private static boolean isAscii(String name)
+    {
+        for (int i = 0, len = name.length(); i < len; ++i) {
+            if (name.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Offset of the first occurrence of the pattern, followed by
+     *   white space, '&gt;' or '/', at or after given offset; or -1 if
+     *   there is no such occurrence
+     */
+    private static long findRecordStart(RandomAccessFile raf, long pos, byte[] pattern)
+        throws IOException
+    {
+        raf.seek(pos);
+        InputStream in = new BufferedInputStream(Channels.newInputStream(raf.getChannel()), 16000);
+        int matched = 0;
+        for (long offset = pos; true; ++offset) {
+            int b = in.read();
+            if (b < 0) {
+                return -1L;
+            }
+            if (matched == pattern.length) {
+                if (b == ' ' || b == '>' || b == '/' || b == '\n' || b == '\r' || b == '\t') {
+                    return offset - matched;
+                }
+                matched = 0;
+            }
+            if (b == pattern[matched]) {
+                ++matched;
+            } else {
+                // '<' can not be a name char, so no need for backtracking
+                matched = (b == '<') ? 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * Method for converting character offset reported by a stream reader
+     * into byte offset, by decoding content.
+     */
+    private static long findByteOffset(File file, long charOffset, boolean utf8)
+        throws IOException
+    {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 16000);
+        try {
+            long offset = 0L;
+            long chars = 0L;
+            if (utf8) { // BOM is not included in char offsets
+                in.mark(3);
+                if (in.read() == 0xEF && in.read() == 0xBB && in.read() == 0xBF) {
+                    offset = 3L;
+                } else {
+                    in.reset();
+                }
+            }
+            while (chars < charOffset) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new EOFException("Unexpected end of input when locating root element end");
+                }
+                chars += utf8 ? CharCountingStream.utf8Chars(b) : 1;
+                ++offset;
+            }
+            // Must skip continuation bytes of the last char too
+            if (utf8) {
+                while (true) {
+                    int b = in.read();
+                    if (b < 0 || CharCountingStream.utf8Chars(b) != 0) {
+                        break;
+                    }
+                    ++offset;
+                }
+            }
+            return offset;
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Internal methods, parsing
+    ///////////////////////////////////////////////////////////
+     */
+
+    private <T> long parseChunks(final File file, final byte[] prolog, final long[] starts,
+            final boolean utf8, final RecordMapper<T> mapper, final RecordConsumer<? super T> consumer)
+        throws XMLStreamException
+    {
+        final int chunkCount = starts.length;
+        final int window = mThreadCount * 2;
+        final String systemId = file.toURI().toString();
+        ExecutorService exec = Executors.newFixedThreadPool(mThreadCount);
+        List<Future<Chunk<T>>> chunks = new ArrayList<Future<Chunk<T>>>
+            (Collections.<Future<Chunk<T>>>nCopies(chunkCount, null));
+        List<Future<?>> deliveries = new ArrayList<Future<?>>();
+        long count = 0L;
+        int submitted = 0;
+
+        try {
+            int next = 0;
+            for (int i = 0; i < chunkCount; ++i) {
+                for (int end = Math.min(chunkCount, i + window); submitted < end; ++submitted) {
+                    final int index = submitted;
+                    chunks.set(index, exec.submit(new Callable<Chunk<T>>() {
+                        @Override
+                        public Chunk<T> call() throws Exception {
+                            return parseChunk(systemId, file, prolog, starts, index, utf8, mapper);
+                        }
+                    }));
+                }
+                Future<Chunk<T>> f = chunks.set(i, null);
+                if (i != next) { // speculation failed: not a record boundary
+                    f.cancel(true);
+                    continue;
+                }
+                final Chunk<T> chunk = waitFor(f);
+                next = chunk.mNextChunk;
+                count += chunk.mRecords.size();
+                if (mOrdered) {
+                    chunk.deliver(consumer);
+                } else {
+                    deliveries.add(exec.submit(new Callable<Object>() {
+                        @Override
+                        public Object call() throws Exception {
+                            chunk.deliver(consumer);
+                            return null;
+                        }
+                    }));
+                }
+            }
+            for (Future<?> f : deliveries) {
+                waitFor(f);
+            }
+        } finally {
+            exec.shutdownNow();
+        }
+        return count;
+    }
+
+    private <T> Chunk<T> parseChunk(String systemId, File file, byte[] prolog, long[] starts,
+            int index, boolean utf8, RecordMapper<T> mapper)
+        throws IOException, XMLStreamException
+    {
+        long start = starts[index];
+        long[] boundaries = new long[starts.length - index - 1];
+        System.arraycopy(starts, index+1, boundaries, 0, boundaries.length);
+
+        FileInputStream fin = new FileInputStream(file);
+        fin.getChannel().position(start);
+        CharCountingStream counting = new CharCountingStream(fin, start, boundaries, utf8);
+        InputStream in = new SequenceInputStream(new ByteArrayInputStream(prolog), counting);
+        XMLStreamReader2 sr = (XMLStreamReader2) mFactory.createXMLStreamReader(systemId, in);
+        Chunk<T> chunk = new Chunk<T>();
+        try {
+            findRoot(sr);
+            long base = sr.getLocationInfo().getEndingCharOffset();
+            int next = readRecords(sr, counting, base, mapper, chunk);
+            chunk.mNextChunk = (next < 0) ? starts.length : (index + 1 + next);
+        } finally {
+            sr.closeCompletely();
+        }
+        return chunk;
+    }
+
+    /**
+     * Method that reads records until either end of the root element,
+     * or start of another chunk is reached.
+     *
+     * @param counter Stream used for locating starts of following chunks,
+     *   if any
+     * @param base Character offset of the start of the chunk
+     *
+     * @return Index of the following chunk reached (within boundaries
+     *   of counter), or -1 if the end of the root element was reached
+     */
+    private <T> int readRecords(XMLStreamReader2 sr, CharCountingStream counter, long base,
+            RecordMapper<T> mapper, RecordConsumer<? super T> consumer)
+        throws XMLStreamException
+    {
+        int boundary = 0;
+        while (true) {
+            int type = sr.next();
+            if (type == END_ELEMENT) { // end of root
+                return -1;
+            }
+            if (type != START_ELEMENT) {
+                continue;
+            }
+            if (counter != null) {
+                long offset = sr.getLocationInfo().getStartingCharOffset() - base;
+                int crossed = counter.getBoundariesCrossed();
+                while (boundary < crossed && counter.getBoundaryChars(boundary) < offset) {
+                    ++boundary;
+                }
+                if (boundary < crossed && counter.getBoundaryChars(boundary) == offset) {
+                    return boundary;
+                }
+                if (Thread.currentThread().isInterrupted()) { // chunk was cancelled
+                    throw new XMLStreamException("Parsing of chunk interrupted");
+                }
+            }
+            if (!mRecordLocalName.equals(sr.getLocalName()) || !mRecordPrefix.equals(prefixOf(sr))) {
+                sr.skipElement();
+                continue;
+            }
+            int depth = sr.getDepth();
+            T record = mapper.mapRecord(sr);
+            // Skip whatever mapper did not read
+            while (sr.getEventType() != END_ELEMENT || sr.getDepth() != depth) {
+                sr.next();
+            }
+            if (record != null) {
+                consumer.consumeRecord(record);
+            }
+        }
+    }
+
+    private static String prefixOf(XMLStreamReader2 sr)
+    {
+        String prefix = sr.getPrefix();
+        return (prefix == null) ? "" : prefix;
+    }
+
+    private static <T> T waitFor(Future<T> f)
+        throws XMLStreamException
+    {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XMLStreamException("Interrupted while waiting for records", e);
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof XMLStreamException) {
+                throw (XMLStreamException) t;
+            }
+            if (t instanceof IOException) {
+                throw new WstxIOException((IOException) t);
+            }
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw new XMLStreamException(t);
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Helper classes
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Records parsed from a single chunk
+     */
+    final static class Chunk<T>
+        implements RecordConsumer<T>
+    {
+        final List<T> mRecords = new ArrayList<T>();
+
+        /**
+         * Index of the chunk that follows this one; equal to number of
+         * chunks if there are none
+         */
+        int mNextChunk;
+
+        @Override
+        public void consumeRecord(T record) {
+            mRecords.add(record);
+        }
+
+        public void deliver(RecordConsumer<? super T> consumer)
+            throws XMLStreamException
+        {
+            for (T record : mRecords) {
+                consumer.consumeRecord(record);
+            }
+        }
+    }
+
+    /**
+     * Consumer used when parsing sequentially
+     */
+    final static class Counter<T>
+        implements RecordConsumer<T>
+    {
+        final RecordConsumer<? super T> mConsumer;
+
+        long mCount;
+
+        Counter(RecordConsumer<? super T> consumer) {
+            mConsumer = consumer;
+        }
+
+        @Override
+        public void consumeRecord(T record)
+            throws XMLStreamException
+        {
+            ++mCount;
+            mConsumer.consumeRecord(record);
+        }
+    }
+
+    /**
+     * Input stream wrapper that keeps track of number of characters
+     * that bytes read decode to, and records these counts at specified
+     * byte offsets (starts of following chunks). This allows mapping
+     * of those offsets to character offsets reported by the reader.
+     */
+    final static class CharCountingStream
+        extends FilterInputStream
+    {
+        final long[] mBoundaries;
+
+        final long[] mBoundaryChars;
+
+        final boolean mUtf8;
+
+        int mCrossed;
+
+        long mOffset;
+
+        long mChars;
+
+        CharCountingStream(InputStream in, long offset, long[] boundaries, boolean utf8)
+        {
+            super(in);
+            mOffset = offset;
+            mBoundaries = boundaries;
+            mBoundaryChars = new long[boundaries.length];
+            mUtf8 = utf8;
+        }
+
+        int getBoundariesCrossed() { return mCrossed; }
+
+        long getBoundaryChars(int index) { return mBoundaryChars[index]; }
+
+        /**
+         * @return Number of chars the given byte contributes to, in
+         *   UTF-8 decoding: 0 for continuation bytes, 2 for the first
+         *   byte of 4-byte sequences (which decode to surrogate pairs)
+         */
+        static int utf8Chars(int b)
+        {
+            if (b < 0x80) {
+                return 1;
+            }
+            if (b < 0xC0) {
+                return 0;
+            }
+            return (b >= 0xF0) ? 2 : 1;
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            byte[] buf = new byte[1];
+            return (read(buf, 0, 1) < 0) ? -1 : (buf[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+            throws IOException
+        {
+            int count = in.read(b, off, len);
+            if (count > 0) {
+                int ptr = off;
+                final int end = off + count;
+                while (mCrossed < mBoundaries.length && (mOffset + (end - ptr)) >= mBoundaries[mCrossed]) {
+                    int segEnd = ptr + (int) (mBoundaries[mCrossed] - mOffset);
+                    count(b, ptr, segEnd);
+                    ptr = segEnd;
+                    mBoundaryChars[mCrossed++] = mChars;
+                }
+                count(b, ptr, end);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n)
+            throws IOException
+        {
+            // Needs to see all content
+            byte[] buf = new byte[(int) Math.min(n, 4000L)];
+            int count = read(buf, 0, buf.length);
+            return (count < 0) ? 0L : count;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(byte[] b, int ptr, int end)
+        {
+            mOffset += (end - ptr);
+            if (mUtf8) {
+                long chars = 0L;
+                for (; ptr < end; ++ptr) {
+                    chars += utf8Chars(b[ptr] & 0xFF);
+                }
+                mChars += chars;
+            } else {
+                mChars += (end - ptr);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.record;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Interface for objects that receive records produced by
+ * {@link ParallelRecordParser}. Depending on configuration of the
+ * parser, consumer is either called by the thread that called the
+ * parser, one record at a time and in document order; or by multiple
+ * worker threads concurrently, in which case the implementation needs
+ * to be thread-safe.
+ *
+ * @since 5.0
+ */
+public interface RecordConsumer<T>
+{
+    public void consumeRecord(T record)
+        throws XMLStreamException;
+}
@@ -0,0 +1,102 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.record;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.codehaus.stax2.XMLStreamReader2;
+
+import com.ctc.wstx.api.ReaderConfig;
+import com.ctc.wstx.api.WstxInputProperties;
+import com.ctc.wstx.io.StreamBootstrapper;
+import com.ctc.wstx.io.SystemId;
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Self-contained copy of a single record element, as produced by
+ * {@link RecordSplitter}: contains the element (start tag, content and
+ * end tag) as UTF-8 encoded bytes, with declarations of all namespace
+ * bindings it inherited from its ancestors added to its start tag.
+ * This means that it can be parsed independently of the document it
+ * came from; for example, by a worker thread.
+ *<p>
+ * Note that references to entities declared in the DTD of the original
+ * document are not expanded: if records may contain such references,
+ * reader used for parsing fragments has to be configured to know about
+ * them (see {@link WstxInputProperties#P_CUSTOM_INTERNAL_ENTITIES}).
+ *
+ * @since 5.0
+ */
+public final class RecordFragment
+{
+    private final byte[] mContent;
+
+    private final Map<String,String> mInheritedNamespaces;
+
+    private final String mSystemId;
+
+    RecordFragment(byte[] content, Map<String,String> inheritedNs, String systemId)
+    {
+        mContent = content;
+        mInheritedNamespaces = inheritedNs;
+        mSystemId = systemId;
+    }
+
+    /**
+     * @return Contents of the fragment, encoded as UTF-8; caller is not to
+     *   modify the array
+     */
+    public byte[] getContent() { return mContent; }
+
+    public InputStream getContentAsStream() {
+        return new ByteArrayInputStream(mContent);
+    }
+
+    /**
+     * @return Namespace bindings (from prefix to URI; empty String as
+     *   prefix for the default namespace) that the record element
+     *   inherited from its ancestors, and that have been added to the
+     *   start tag of the fragment
+     */
+    public Map<String,String> getInheritedNamespaces() { return mInheritedNamespaces; }
+
+    /**
+     * @return System id of the document this fragment came from, if known
+     */
+    public String getSystemId() { return mSystemId; }
+
+    /**
+     * Method for constructing a stream reader for parsing the fragment,
+     * using configuration of the given factory, except that the reader
+     * is in fragment parsing mode (see
+     * {@link WstxInputProperties#P_INPUT_PARSING_MODE}). Factory itself
+     * is not modified, so it is safe to call this method concurrently
+     * from multiple threads.
+     */
+    public XMLStreamReader2 createReader(WstxInputFactory f)
+        throws XMLStreamException
+    {
+        ReaderConfig cfg = f.createPrivateConfig();
+        cfg.setInputParsingMode(WstxInputProperties.PARSING_MODE_FRAGMENT);
+        SystemId sysId = SystemId.construct(mSystemId);
+        return f.createSR(cfg, sysId, StreamBootstrapper.getInstance(null, sysId, mContent, 0, mContent.length),
+                false, false);
+    }
+}
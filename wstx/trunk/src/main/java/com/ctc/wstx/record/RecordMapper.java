@@ -0,0 +1,46 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.record;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.codehaus.stax2.XMLStreamReader2;
+
+/**
+ * Interface for objects that convert record elements into application
+ * objects, when records are parsed using {@link ParallelRecordParser}.
+ *<p>
+ * Since records are parsed by multiple threads, implementations need to
+ * be thread-safe. Further, they should not have any side effects: when
+ * parser speculatively parses a part of the document that turns out not
+ * to start at a record boundary, results of the mapper are discarded.
+ *
+ * @since 5.0
+ */
+public interface RecordMapper<T>
+{
+    /**
+     * Method called with a stream reader positioned at the
+     * <code>START_ELEMENT</code> of a record. Method may read the record
+     * (but not beyond its matching <code>END_ELEMENT</code>); if it does
+     * not read the whole record, the rest is skipped by the caller.
+     *
+     * @return Object to pass to the {@link RecordConsumer}; or null to
+     *    indicate that the record is to be skipped
+     */
+    public T mapRecord(XMLStreamReader2 sr)
+        throws XMLStreamException;
+}
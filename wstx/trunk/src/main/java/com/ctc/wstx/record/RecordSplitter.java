@@ -0,0 +1,207 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.record;
+
+import java.io.*;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.ctc.wstx.exc.WstxIOException;
+import com.ctc.wstx.sr.BasicStreamReader;
+import com.ctc.wstx.stax.WstxOutputFactory;
+import com.ctc.wstx.sw.BaseStreamWriter;
+
+/**
+ * Helper class that splits a document read using a Woodstox stream
+ * reader into independent {@link RecordFragment}s: one for each
+ * element with the specified name (elements nested within a record are
+ * included in it, not split separately). This allows for simple
+ * producer/consumer processing, where a single thread reads the document
+ * and hands out records to worker threads, each of which can parse
+ * their records using a separate reader
+ * (see {@link RecordFragment#createReader}).
+ *<p>
+ * Records are copied from the input buffer as is, without parsing their
+ * contents (see {@link BasicStreamReader#captureRawElement(Writer)});
+ * except if this is not possible (record comes from an expanded entity,
+ * or document is being validated), in which case the record is parsed
+ * and serialized using a stream writer.
+ *<p>
+ * Instances are not thread-safe.
+ *
+ * @since 5.0
+ */
+public class RecordSplitter
+    implements XMLStreamConstants
+{
+    protected final BasicStreamReader mReader;
+
+    protected final String mRecordNsURI;
+
+    protected final String mRecordLocalName;
+
+    /**
+     * Output factory used for serializing records that can not be
+     * copied as is; constructed when first needed
+     */
+    protected WstxOutputFactory mOutputFactory;
+
+    /**
+     * Size of the latest record, used as initial buffer size for the next
+     * one
+     */
+    protected int mLastSize = 200;
+
+    /**
+     * @param sr Reader to split content of; has to be a Woodstox stream
+     *   reader
+     * @param recordName Name of the record elements (if it has no
+     *   namespace URI, only elements that do not belong to a namespace
+     *   match)
+     */
+    public RecordSplitter(XMLStreamReader sr, QName recordName)
+    {
+        if (!(sr instanceof BasicStreamReader)) {
+            throw new IllegalArgumentException("Can only split records of Woodstox stream readers, not of "
+                    +sr.getClass().getName());
+        }
+        mReader = (BasicStreamReader) sr;
+        mRecordNsURI = recordName.getNamespaceURI();
+        mRecordLocalName = recordName.getLocalPart();
+    }
+
+    /**
+     * Method that advances the reader to the next record element (unless
+     * reader already points to one), and copies it into a fragment.
+     * After the call, reader points to the END_ELEMENT of the record.
+     *
+     * @return Fragment that contains the next record; or null if there
+     *   are no more records
+     */
+    public RecordFragment nextRecord()
+        throws XMLStreamException
+    {
+        final BasicStreamReader sr = mReader;
+        int type = sr.getEventType();
+        while (type != START_ELEMENT || !isRecord(sr)) {
+            if (!sr.hasNext()) {
+                return null;
+            }
+            type = sr.next();
+        }
+        try {
+            return captureRecord(sr);
+        } catch (IOException ioe) {
+            throw new WstxIOException(ioe);
+        }
+    }
+
+    protected boolean isRecord(BasicStreamReader sr)
+    {
+        if (!mRecordLocalName.equals(sr.getLocalName())) {
+            return false;
+        }
+        String uri = sr.getNamespaceURI();
+        if (uri == null || uri.length() == 0) {
+            return mRecordNsURI.length() == 0;
+        }
+        return uri.equals(mRecordNsURI);
+    }
+
+    private RecordFragment captureRecord(BasicStreamReader sr)
+        throws IOException, XMLStreamException
+    {
+        Map<String,String> inherited = sr.getInputElementStack().getInheritedNsBindings();
+        // Bindings the element itself re-declares need not be added
+        for (int i = 0, len = sr.getNamespaceCount(); i < len; ++i) {
+            String prefix = sr.getNamespacePrefix(i);
+            inherited.remove((prefix == null) ? "" : prefix);
+        }
+        String name = sr.getPrefixedName();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(mLastSize + 16);
+        Writer w = new OutputStreamWriter(bytes, "UTF-8");
+        if (!sr.captureRawElement(w)) {
+            if (mOutputFactory == null) {
+                mOutputFactory = new WstxOutputFactory();
+            }
+            BaseStreamWriter sw = (BaseStreamWriter) mOutputFactory.createXMLStreamWriter(w);
+            sw.copyElementFromReader(sr);
+            sw.flush();
+        }
+        w.flush();
+        byte[] content = bytes.toByteArray();
+        mLastSize = content.length;
+        if (!inherited.isEmpty()) {
+            content = addNsDeclarations(content, name, inherited);
+        }
+        return new RecordFragment(content, inherited, sr.getLocation().getSystemId());
+    }
+
+    /**
+     * Method for inserting namespace declarations right after the element
+     * name in the start tag.
+     */
+    private static byte[] addNsDeclarations(byte[] content, String name, Map<String,String> bindings)
+        throws IOException
+    {
+        int nameEnd = 1 + name.getBytes("UTF-8").length;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length + 50 * bindings.size());
+        bytes.write(content, 0, nameEnd);
+        Writer w = new OutputStreamWriter(bytes, "UTF-8");
+        writeNsDeclarations(w, bindings);
+        w.flush();
+        bytes.write(content, nameEnd, content.length - nameEnd);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Helper method for writing given namespace bindings as namespace
+     * declaration attributes (each preceded by a space).
+     */
+    static void writeNsDeclarations(Writer w, Map<String,String> bindings)
+        throws IOException
+    {
+        for (Map.Entry<String,String> en : bindings.entrySet()) {
+            String prefix = en.getKey();
+            if (prefix.length() == 0) {
+                w.write(" xmlns=\"");
+            } else {
+                w.write(" xmlns:");
+                w.write(prefix);
+                w.write("=\"");
+            }
+            String uri = en.getValue();
+            for (int i = 0, len = uri.length(); i < len; ++i) {
+                char c = uri.charAt(i);
+                if (c == '&') {
+                    w.write("&amp;");
+                } else if (c == '<') {
+                    w.write("&lt;");
+                } else if (c == '"') {
+                    w.write("&quot;");
+                } else {
+                    w.write(c);
+                }
+            }
+            w.write('"');
+        }
+    }
+}
@@ -56,6 +56,19 @@ final class Attribute
      */
     protected String mReusableValue;
 
+    /**
+     * If value has not been copied in the text builder (lazy attribute
+     * value decoding), offset of the first character of the value within
+     * collector's raw value buffer; -1 otherwise.
+     */
+    protected int mRawStart = -1;
+
+    /**
+     * End offset (exclusive) matching {@link #mRawStart}, if latter is
+     * non-negative.
+     */
+    protected int mRawEnd;
+
     /*
     //////////////////////////////////////////////////
     // Life-cycle
@@ -76,6 +89,7 @@ final class Attribute
         mValueStartOffset = valueStart;
         mNamespaceURI = null;
         mReusableValue = null;
+        mRawStart = -1;
     }
 
     /**
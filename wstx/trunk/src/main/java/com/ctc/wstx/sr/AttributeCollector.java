@@ -155,6 +155,33 @@ public final class AttributeCollector
      */
     private final TextBuilder mNamespaceBuilder = new TextBuilder(EXP_NS_COUNT);
 
+    /*
+    ///////////////////////////////////////////////////////////
+    // Lazily decoded ("raw") attribute values
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Buffer that contains values of attributes that have not been
+     * copied into {@link #mValueBuilder}; either the input buffer of
+     * the reader, or, if the input buffer has been overwritten after
+     * values were located, {@link #mRawCopy}.
+     */
+    protected char[] mRawBuffer;
+
+    /**
+     * Number of attributes of the current element that have raw values.
+     */
+    protected int mRawCount;
+
+    /**
+     * Private buffer into which raw values are copied if the input
+     * buffer that contains them is about to be overwritten.
+     */
+    protected char[] mRawCopy;
+
+    protected int mRawCopyLen;
+
     /*
     //////////////////////////////////////////////////////////////
     // Information that defines "Map-like" data structure used for
@@ -240,6 +267,8 @@ public final class AttributeCollector
         if (mAttrCount > 0) {
             mValueBuilder.reset();
             mAttrCount = 0;
+            mRawCount = 0;
+            mRawCopyLen = 0;
             if (mXmlIdAttrIndex >= 0) {
                 mXmlIdAttrIndex = XMLID_IX_NONE;
             }
@@ -260,11 +289,17 @@ public final class AttributeCollector
     public void normalizeSpacesInValue(int index)
     {
         // StringUtil has a method, but it works on char arrays...
-        char[] attrCB = mValueBuilder.getCharBuffer();
-        String normValue = StringUtil.normalizeSpaces
-            (attrCB, getValueStartOffset(index), getValueStartOffset(index+1));
+        Attribute attr = mAttributes[index];
+        String normValue;
+        if (attr.mRawStart >= 0) {
+            normValue = StringUtil.normalizeSpaces(mRawBuffer, attr.mRawStart, attr.mRawEnd);
+        } else {
+            char[] attrCB = mValueBuilder.getCharBuffer();
+            normValue = StringUtil.normalizeSpaces
+                (attrCB, getValueStartOffset(index), getValueStartOffset(index+1));
+        }
         if (normValue != null) {
-            mAttributes[index].setValue(normValue);
+            attr.setValue(normValue);
         }
     }
 
@@ -359,8 +394,15 @@ public final class AttributeCollector
         if (index < 0 || index >= mAttrCount) {
             throwIndex(index);
         }
-        String full = mValueBuilder.getAllValues();
         Attribute attr = mAttributes[index];
+        if (attr.mRawStart >= 0) { // not yet decoded?
+            if (attr.mReusableValue == null) {
+                attr.mReusableValue = new String(mRawBuffer, attr.mRawStart,
+                        attr.mRawEnd - attr.mRawStart);
+            }
+            return attr.mReusableValue;
+        }
+        String full = mValueBuilder.getAllValues();
         ++index;
         if (index < mAttrCount) { // not last
             int endOffset = mAttributes[index].mValueStartOffset;
@@ -506,9 +548,18 @@ public final class AttributeCollector
          * have a String
          */
         // Either way, need to trim before passing:
-        char[] buf = mValueBuilder.getCharBuffer();
-        int start = mAttributes[index].mValueStartOffset;
-        int end = getValueStartOffset(index+1);
+        Attribute attr = mAttributes[index];
+        char[] buf;
+        int start, end;
+        if (attr.mRawStart >= 0) {
+            buf = mRawBuffer;
+            start = attr.mRawStart;
+            end = attr.mRawEnd;
+        } else {
+            buf = mValueBuilder.getCharBuffer();
+            start = attr.mValueStartOffset;
+            end = getValueStartOffset(index+1);
+        }
 
         while (true) {
             if (start >= end) {
@@ -539,6 +590,10 @@ public final class AttributeCollector
             throwIndex(index);
         }
         // Char[] faster than String... and no need to trim here:
+        Attribute attr = mAttributes[index];
+        if (attr.mRawStart >= 0) {
+            return decodeValues(tad, rep, mRawBuffer, attr.mRawStart, attr.mRawEnd);
+        }
         return decodeValues(tad, rep,
                             mValueBuilder.getCharBuffer(),
                             mAttributes[index].mValueStartOffset,
@@ -556,9 +611,17 @@ public final class AttributeCollector
          * available, faster to process from char[]
          */
         Attribute attr = mAttributes[index];
-        char[] cbuf = mValueBuilder.getCharBuffer();
-        int start = attr.mValueStartOffset;
-        int end = getValueStartOffset(index+1);
+        char[] cbuf;
+        int start, end;
+        if (attr.mRawStart >= 0) {
+            cbuf = mRawBuffer;
+            start = attr.mRawStart;
+            end = attr.mRawEnd;
+        } else {
+            cbuf = mValueBuilder.getCharBuffer();
+            start = attr.mValueStartOffset;
+            end = getValueStartOffset(index+1);
+        }
         int len = end-start;
         dec.init(v, true, cbuf, start, len, null);
         try {
@@ -726,11 +789,18 @@ public final class AttributeCollector
         throws XMLStreamException
     {
         Attribute attr = mAttributes[index];
-        String normValue = vld.validateAttribute
-            (attr.mLocalName, attr.mNamespaceURI, attr.mPrefix,
-             mValueBuilder.getCharBuffer(),
-             getValueStartOffset(index),
-             getValueStartOffset(index+1));
+        String normValue;
+        if (attr.mRawStart >= 0) {
+            normValue = vld.validateAttribute
+                (attr.mLocalName, attr.mNamespaceURI, attr.mPrefix,
+                 mRawBuffer, attr.mRawStart, attr.mRawEnd);
+        } else {
+            normValue = vld.validateAttribute
+                (attr.mLocalName, attr.mNamespaceURI, attr.mPrefix,
+                 mValueBuilder.getCharBuffer(),
+                 getValueStartOffset(index),
+                 getValueStartOffset(index+1));
+        }
 
         if (normValue != null) {
             attr.setValue(normValue);
@@ -789,6 +859,61 @@ public final class AttributeCollector
         return mValueBuilder;
     }
 
+    /**
+     * Method called by the stream reader when lazy attribute value
+     * decoding is enabled, and it has located a value that needs no
+     * decoding (no entities, no white space to normalize): instead of
+     * copying it into the value builder, only its location is
+     * recorded. Value remains in the given buffer (which is usually
+     * the input buffer of the reader); contents must not be changed
+     * before {@link #retainRawValues} has been called.
+     *
+     * @since 5.0
+     */
+    public final void addRawAttribute(String attrPrefix, String attrLocalName,
+            char[] buf, int start, int end)
+        throws XMLStreamException
+    {
+        // Zero-length contribution to builder keeps offsets consistent
+        getAttrBuilder(attrPrefix, attrLocalName);
+        Attribute attr = mAttributes[mAttrCount-1];
+        if (mRawCount > 0 && buf != mRawBuffer) {
+            // input buffer has changed; need to copy this one as well
+            retainRawValues();
+            start = appendRawCopy(buf, start, end);
+            end = mRawCopyLen;
+        } else {
+            mRawBuffer = buf;
+        }
+        attr.mRawStart = start;
+        attr.mRawEnd = end;
+        ++mRawCount;
+    }
+
+    /**
+     * Method that the stream reader calls before contents of its
+     * input buffer get overwritten (or it switches to another input
+     * buffer): if there are raw values that refer to the buffer, they
+     * are copied to a buffer owned by this collector.
+     *
+     * @since 5.0
+     */
+    public final void retainRawValues()
+    {
+        if (mRawCount == 0 || mRawBuffer == mRawCopy) {
+            return;
+        }
+        char[] buf = mRawBuffer;
+        mRawBuffer = mRawCopy;
+        for (int i = 0, count = mAttrCount; i < count; ++i) {
+            Attribute attr = mAttributes[i];
+            if (attr.mRawStart >= 0) {
+                attr.mRawStart = appendRawCopy(buf, attr.mRawStart, attr.mRawEnd);
+                attr.mRawEnd = mRawCopyLen;
+            }
+        }
+    }
+
     /**
      * Method called by validator to insert an attribute that has a default
      * value and wasn't yet included in collector's attribute set.
@@ -1078,6 +1203,29 @@ public final class AttributeCollector
     ///////////////////////////////////////////////
      */
 
+    /**
+     * @return Offset of the first copied character within
+     *   {@link #mRawCopy}
+     */
+    private int appendRawCopy(char[] buf, int start, int end)
+    {
+        int len = end - start;
+        int offset = mRawCopyLen;
+        if (mRawCopy == null || (offset + len) > mRawCopy.length) {
+            char[] old = mRawCopy;
+            mRawCopy = new char[Math.max(offset + len, (old == null) ? 200 : (old.length << 1))];
+            if (offset > 0) {
+                System.arraycopy(old, 0, mRawCopy, 0, offset);
+            }
+            if (mRawBuffer == old) {
+                mRawBuffer = mRawCopy;
+            }
+        }
+        System.arraycopy(buf, start, mRawCopy, offset, len);
+        mRawCopyLen = offset + len;
+        return offset;
+    }
+
     /**
      * @return Null, if attribute is a duplicate (to indicate error);
      *    map itself, or resized version, otherwise.
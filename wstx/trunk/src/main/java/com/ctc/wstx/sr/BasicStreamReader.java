@@ -17,6 +17,7 @@ package com.ctc.wstx.sr;
 
 import java.io.*;
 import java.text.MessageFormat;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.xml.sax.Attributes;
@@ -45,8 +46,12 @@ import com.ctc.wstx.cfg.XmlConsts;
 import com.ctc.wstx.dtd.MinimalDTDReader;
 import com.ctc.wstx.ent.EntityDecl;
 import com.ctc.wstx.exc.WstxException;
+import com.ctc.wstx.exc.WstxIOException;
 import com.ctc.wstx.io.*;
+import com.ctc.wstx.metrics.DocumentMetrics;
+import com.ctc.wstx.metrics.ParserMetricsListener;
 import com.ctc.wstx.util.DefaultXmlSymbolTable;
+import com.ctc.wstx.util.SymbolTable;
 import com.ctc.wstx.util.TextBuffer;
 import com.ctc.wstx.util.TextBuilder;
 
@@ -183,6 +188,14 @@ public abstract class BasicStreamReader
     protected final boolean mCfgReportTextAsChars;
     protected final boolean mCfgLazyParsing;
 
+    /**
+     * Whether decoding of attribute values may be deferred until
+     * they are accessed.
+     *
+     * @since 5.0
+     */
+    protected final boolean mCfgLazyAttrValues;
+
     /**
      * Minimum number of characters parser can return as partial text
      * segment, IF it's not required to coalesce adjacent text
@@ -202,6 +215,14 @@ public abstract class BasicStreamReader
      */
     final protected ReaderCreator mOwner;
 
+    /**
+     * Metrics collected for the document, if a metrics listener has
+     * been registered; null if not.
+     *
+     * @since 5.0
+     */
+    final protected DocumentMetrics mMetrics;
+
     /*
     ///////////////////////////////////////////////////////////
     // Additional XML document information, in addition
@@ -257,6 +278,30 @@ public abstract class BasicStreamReader
      */
     final protected TextBuffer mTextBuffer;
 
+    /**
+     * Reader returned by the most recent call to {@link #getTextReader},
+     * if it is still streaming content of the current text event.
+     *
+     * @since 5.0
+     */
+    protected StreamingTextReader mTextReader;
+
+    /**
+     * Helper object used for calculating byte offsets of checkpoints;
+     * created when the first checkpoint is created.
+     *
+     * @since 5.0
+     */
+    protected ByteOffsetCounter mOffsetCounter;
+
+    /**
+     * Checkpoint this reader was resumed from, if any; needed for
+     * calculating byte offsets of further checkpoints.
+     *
+     * @since 5.0
+     */
+    protected ReaderCheckpoint mResumedFrom;
+
     /**
      * Currently open element tree
      */
@@ -390,6 +435,8 @@ public abstract class BasicStreamReader
      */
 
     /**
+     * @param symbols Symbol table to use for names; usually a child table
+     *   of the factory's shared table
      * @param elemStack Input element stack to use; if null, will create
      *   instance locally.
      * @param forER Override indicator; if true, this stream reader will be
@@ -399,13 +446,15 @@ public abstract class BasicStreamReader
      */
     protected BasicStreamReader(InputBootstrapper bs,
                                 BranchingReaderSource input, ReaderCreator owner,
-                                ReaderConfig cfg, InputElementStack elemStack,
-                                boolean forER)
+                                ReaderConfig cfg, SymbolTable symbols,
+                                InputElementStack elemStack, boolean forER)
         throws XMLStreamException
     {
-        super(input, cfg, cfg.getEntityResolver());
+        super(input, cfg, symbols, cfg.getEntityResolver());
 
         mOwner = owner;
+        mMetrics = (cfg.getMetricsListener() == null) ? null
+            : new DocumentMetrics(input.getSystemId());
 
         mTextBuffer = TextBuffer.createRecyclableBuffer(cfg);
 
@@ -427,6 +476,8 @@ public abstract class BasicStreamReader
          *   not catching all exceptions as expected)
          */
         mCfgLazyParsing = !forER && ((mConfigFlags & CFG_LAZY_PARSING) != 0);
+        // Same goes for attribute values: events will access all of them
+        mCfgLazyAttrValues = !forER && ((mConfigFlags & CFG_LAZY_ATTRIBUTE_VALUES) != 0);
 
         /* There are a few derived settings used during tokenization that
          * need to be initialized now...
@@ -479,6 +530,7 @@ public abstract class BasicStreamReader
 
         mElementStack = elemStack;
         mAttrCollector = elemStack.getAttrCollector();
+        elemStack.setMetrics(mMetrics);
 
         // And finally, location information may have offsets:
         input.initInputLocation(this, mCurrDepth, 0);
@@ -487,6 +539,25 @@ public abstract class BasicStreamReader
         mReturnNullForDefaultNamespace = mConfig.returnNullForDefaultNamespace();
     }
 
+    /**
+     * Method called before modifying configuration of this reader, or
+     * passing it to a DTD reader (which needs to use symbol table of
+     * this reader): if configuration is a snapshot shared with other
+     * readers, it is replaced with a private copy.
+     *
+     * @return Configuration object that is private to this reader
+     *
+     * @since 5.0
+     */
+    protected final ReaderConfig ensurePrivateConfig()
+    {
+        if (mConfig.isFrozen()) {
+            mConfig = mConfig.createNonShared(mSymbols);
+            mElementStack.setConfig(mConfig);
+        }
+        return mConfig;
+    }
+
     protected static InputElementStack createElementStack(ReaderConfig cfg)
     {
         return new InputElementStack(cfg, cfg.willSupportNamespaces());
@@ -770,6 +841,27 @@ public abstract class BasicStreamReader
         throw new IllegalStateException("Current state not START_ELEMENT, END_ELEMENT or ENTITY_REFERENCE");
     }
 
+    /**
+     * Method for accessing id of the name (namespace URI and local name)
+     * of the current element, as resolved using the name vocabulary
+     * configured with {@link WstxInputProperties#P_NAME_VOCABULARY}.
+     * Ids are resolved once, when the start tag is parsed; matching end
+     * element has the same id.
+     *
+     * @return Id of the local name of the current element; or
+     *   {@link com.ctc.wstx.util.NameVocabulary#NO_ID} (-1) if no
+     *   vocabulary is configured, or if the name is not in it.
+     *
+     * @since 5.0
+     */
+    public int getLocalNameId()
+    {
+        if (mCurrToken == START_ELEMENT || mCurrToken == END_ELEMENT) {
+            return mElementStack.getLocalNameId();
+        }
+        throw new IllegalStateException(ErrorConsts.ERR_STATE_NOT_ELEM);
+    }
+
     // // // getLocation() defined in StreamScanner
 
     @Override
@@ -1114,6 +1206,9 @@ public abstract class BasicStreamReader
         if (mParseState == STATE_TREE) {
             int type = nextFromTree();
             mCurrToken = type;
+            if (mMetrics != null) {
+                mMetrics.eventRead(type);
+            }
             if (mTokenState < mStTextThreshold) { // incomplete?
                 /* Can remain incomplete if lazy parsing is enabled,
                  * and this is not a validatable text segment; otherwise
@@ -1186,6 +1281,9 @@ public abstract class BasicStreamReader
             }
             throw new java.util.NoSuchElementException();
         }
+        if (mMetrics != null) {
+            mMetrics.eventRead(mCurrToken);
+        }
         return mCurrToken;
     }
 
@@ -1255,7 +1353,11 @@ public abstract class BasicStreamReader
              * The root input source also prevents multiple close() calls
              * for the underlying source, so we need not check that here.
              */
+            if (mMetrics != null) {
+                reportMetrics();
+            }
             closeAllInput(false);
+            closeOffsetCounter();
             // And finally, can now recycle low-level (text) buffers
             mTextBuffer.recycle(true);
         }
@@ -1297,7 +1399,7 @@ public abstract class BasicStreamReader
     @Override
     public boolean setProperty(String name, Object value)
     {
-        boolean ok = mConfig.setProperty(name, value);
+        boolean ok = ensurePrivateConfig().setProperty(name, value);
         /* To make [WSTX-50] work fully dynamically (i.e. allow
          * setting BASE_URL after stream reader has been constructed)
          * need to force
@@ -1467,6 +1569,46 @@ public abstract class BasicStreamReader
         return mTextBuffer.rawContentsTo(w);
     }
 
+    /**
+     * Method that can be called at CHARACTERS, CDATA or SPACE event to
+     * access textual content of the event as a {@link Reader}. Unlike
+     * with {@link #getText()} (or {@link #getText(Writer, boolean)}),
+     * content that has not yet been parsed (when lazy parsing is
+     * enabled) is not buffered in full: it is parsed from the input as
+     * the returned Reader is read, a text buffer segment at a time, with
+     * entity expansion and linefeed normalization done as usual. This
+     * allows processing very long text content with bounded memory
+     * usage; as with {@link #getText(Writer, boolean)}, maximum text
+     * length limit is not enforced for content accessed this way.
+     *<p>
+     * Returned Reader is only valid until the stream reader is advanced,
+     * or text content is accessed by other means; and once reading of
+     * unparsed content has started, other text accessors are not
+     * guaranteed to return meaningful content for the event.
+     * Content not read via returned Reader is skipped when advancing
+     * the stream reader.
+     *
+     * @since 5.0
+     */
+    public Reader getTextReader()
+        throws XMLStreamException
+    {
+        if (mCurrToken != CHARACTERS && mCurrToken != CDATA
+            && mCurrToken != SPACE) {
+            throwNotTextual(mCurrToken);
+        }
+        if (mCurrToken == SPACE || mTokenState >= mStTextThreshold) {
+            ensureFinishToken();
+            try {
+                return mTextBuffer.rawContentsViaReader();
+            } catch (IOException ioe) {
+                throw new WstxIOException(ioe);
+            }
+        }
+        mTextReader = new StreamingTextReader(this);
+        return mTextReader;
+    }
+
     // // // StAX 2, Other accessors
 
     /**
@@ -1532,6 +1674,346 @@ public abstract class BasicStreamReader
     @Override
     public void closeCompletely() throws XMLStreamException {
         closeAllInput(true);
+        closeOffsetCounter();
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Woodstox-specific API, checkpoints
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Method that can be called when this reader points to a
+     * START_ELEMENT (of a non-empty element) or END_ELEMENT, to create a
+     * checkpoint from which parsing can later be resumed, without
+     * re-parsing the document from the beginning (see
+     * {@link com.ctc.wstx.stax.WstxInputFactory#createResumedReader}).
+     * Parsing will resume right after the start or end tag.
+     *<p>
+     * Checkpoints can only be created for documents read from files
+     * (system id of the document must be a file URL), encoded using
+     * UTF-8, UTF-16 or a single-byte encoding; and not when the current
+     * element comes from an entity expansion, or when validation is
+     * enabled, since state of validators can not be captured.
+     * Of DTD information, only declarations of internal entities are
+     * retained: so checkpoints can not be created if the DTD declares
+     * any elements or attributes (which could affect content, such as
+     * default attribute values).
+     *<p>
+     * Checkpoints must be created in document order (which is the
+     * natural order): for UTF-8 encoded documents, byte offsets are
+     * calculated by scanning the file incrementally, from the previous
+     * checkpoint.
+     *
+     * @since 5.0
+     */
+    public ReaderCheckpoint createCheckpoint()
+        throws XMLStreamException
+    {
+        int depth;
+        if (mCurrToken == START_ELEMENT) {
+            if (mStEmptyElem) {
+                throw new IllegalStateException("Can not create a checkpoint at START_ELEMENT of an empty element; only at its END_ELEMENT");
+            }
+            depth = mElementStack.getDepth();
+        } else if (mCurrToken == END_ELEMENT) {
+            depth = mElementStack.getDepth() - 1;
+        } else {
+            throw new IllegalStateException("Can only create checkpoints at START_ELEMENT or END_ELEMENT; current event "
+                    +ErrorConsts.tokenTypeDesc(mCurrToken));
+        }
+        if (mInput != mRootInput) {
+            throw new IllegalStateException("Can not create a checkpoint for an element within an entity expansion");
+        }
+        /* Resumed readers have no DTD or validators, so can not handle
+         * content that depends on them (like default attribute values)
+         */
+        if (mElementStack.hasContentAffectingValidator()) {
+            throw new IllegalStateException("Can not create a checkpoint when validation is enabled, or DTD declares elements or attributes");
+        }
+        long charOffset = mCurrInputProcessed + mInputPtr;
+        long byteOffset;
+        try {
+            if (mOffsetCounter == null) {
+                mOffsetCounter = constructOffsetCounter();
+            }
+            byteOffset = mOffsetCounter.toByteOffset(charOffset);
+        } catch (IOException ioe) {
+            throw new WstxIOException(ioe);
+        }
+        Map<String,String> entities = new LinkedHashMap<String,String>();
+        if (mResumedFrom != null) { // no DTD, but same entities as the earlier reader
+            entities.putAll(mResumedFrom.mEntities);
+        }
+        if (mGeneralEntities != null) {
+            for (EntityDecl ed : mGeneralEntities.values()) {
+                if (!ed.isExternal() && ed.isParsed()) {
+                    entities.put(ed.getName(), ed.getReplacementText());
+                }
+            }
+        }
+        return new ReaderCheckpoint(mRootInput.getSystemId(), mOffsetCounter.getCharset(),
+                byteOffset, charOffset, mCurrInputRow, mInputPtr - mCurrInputRowStart,
+                mDocXmlVersion, mDocXmlEncoding, mDocStandalone,
+                mElementStack.getOpenElements(depth), mElementStack.getTotalElements(),
+                mEntityExpansionCount, entities);
+    }
+
+    /**
+     * Method called by the factory right after constructing a reader for
+     * content that follows given checkpoint, to restore the state of the
+     * reader to match the state at the checkpoint.
+     *
+     * @since 5.0
+     */
+    public void resumeFromCheckpoint(ReaderCheckpoint cp)
+    {
+        if (mCurrToken != START_DOCUMENT || mParseState == STATE_CLOSED) {
+            throw new IllegalStateException("Can only resume from a checkpoint before parsing any content");
+        }
+        mResumedFrom = cp;
+        mCurrInputProcessed = cp.mCharOffset;
+        mCurrInputRow = cp.mRow;
+        mCurrInputRowStart = -cp.mColumn;
+        mDocXmlVersion = cp.mXmlVersion;
+        mDocXmlEncoding = cp.mXmlEncoding;
+        mDocInputEncoding = cp.mCharset;
+        mDocStandalone = cp.mStandalone;
+        mEntityExpansionCount = cp.mEntityExpansionCount;
+        mElementStack.restoreOpenElements(cp.mOpenElements, cp.mTotalElements, mSymbols);
+        mCurrDepth = cp.mOpenElements.length;
+        mParseState = (cp.mOpenElements.length > 0) ? STATE_TREE : STATE_EPILOG;
+    }
+
+    private ByteOffsetCounter constructOffsetCounter()
+        throws IOException
+    {
+        java.net.URL url = mRootInput.getSource();
+        File f = null;
+        if (url != null && "file".equals(url.getProtocol())) {
+            try {
+                f = new File(url.toURI());
+            } catch (java.net.URISyntaxException e) {
+                ; // can't convert, will fail below
+            }
+        }
+        if (f == null) {
+            throw new IllegalStateException("Can only create checkpoints for documents read from files; system id '"
+                    +mRootInput.getSystemId()+"' does not refer to a file");
+        }
+        ByteOffsetCounter counter;
+        if (mResumedFrom == null) {
+            counter = ByteOffsetCounter.construct(f, mDocInputEncoding);
+        } else {
+            counter = ByteOffsetCounter.construct(f, mResumedFrom.mCharset,
+                    mResumedFrom.mCharOffset, mResumedFrom.mByteOffset);
+        }
+        if (counter == null) {
+            throw new IllegalStateException("Can not create checkpoints for document with encoding '"+mDocInputEncoding
+                    +"': byte offsets can only be calculated for UTF-8, UTF-16 and single-byte encodings");
+        }
+        return counter;
+    }
+
+    private void closeOffsetCounter()
+        throws XMLStreamException
+    {
+        if (mOffsetCounter != null) {
+            try {
+                mOffsetCounter.close();
+            } catch (IOException ioe) {
+                throw new WstxIOException(ioe);
+            }
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Woodstox-specific API, raw content access
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Method that can be called to check whether the current CHARACTERS
+     * or SPACE event is indentation: a linefeed followed by spaces or
+     * tabs (but not both), recognized and represented using a shared
+     * canonical run when parsing. This allows writers that copy events
+     * to output it without having to check and escape the content.
+     *
+     * @return Indentation character (space or tab) if the current event
+     *   is recognized indentation, with {@link #getTextLength} minus one
+     *   indentation characters; 0 otherwise (including when it is not
+     *   known)
+     *
+     * @since 5.0
+     */
+    @Override
+    public char getIndentationChar()
+    {
+        if (mCurrToken == CHARACTERS || mCurrToken == SPACE) {
+            // Recognized indentation is always complete when tokenized
+            if (mTokenState >= TOKEN_FULL_SINGLE) {
+                return mTextBuffer.getIndentationChar();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Method that can be called when this reader points to a
+     * START_ELEMENT, to copy all content of the element to given
+     * Writer as is: characters are copied directly from the input buffer,
+     * without tokenizing, normalizing or unescaping them. After the call,
+     * reader points to the matching END_ELEMENT (end tag itself is parsed
+     * normally, and is not copied).
+     *<p>
+     * Copied content is only checked to the degree needed to find the
+     * matching end tag: well-formedness of nested elements (other than
+     * proper nesting), names and character content is NOT verified, nor
+     * are events within content reported to validators or metrics
+     * listeners.
+     * Raw copying is not done if the logical content could differ from
+     * its serialized form: that is, if the element comes from an expanded
+     * entity, if any validator (including DTD-based attribute defaulting)
+     * is in use, or if any general entities have been declared. In these
+     * cases nothing is copied, and the caller has to access the
+     * content using regular event-based methods.
+     *
+     * @return True if the content was copied (and reader now points to
+     *   the matching END_ELEMENT); false if raw copying was not possible,
+     *   in which case state of the reader has not changed.
+     *
+     * @since 5.0
+     */
+    @Override
+    public boolean copyRawContent(Writer w)
+        throws XMLStreamException
+    {
+        if (mCurrToken != START_ELEMENT) {
+            throw new IllegalStateException(ErrorConsts.ERR_STATE_NOT_STELEM);
+        }
+        // Need to avoid DTD-based attribute defaulting as well
+        if (mInput != mRootInput || mElementStack.mValidator != null) {
+            return false;
+        }
+        if ((mGeneralEntities != null && !mGeneralEntities.isEmpty())
+            || mConfig.hasCustomInternalEntities()) {
+            return false;
+        }
+        if (!mStEmptyElem) {
+            try {
+                copyRawElementContent(w);
+            } catch (IOException ioe) {
+                throw new WstxIOException(ioe);
+            }
+        }
+        next();
+        return true;
+    }
+
+    /**
+     * Method that can be called when this reader points to a
+     * START_ELEMENT, to capture the whole element (start tag, content
+     * and end tag) exactly as it appears in the input, without parsing
+     * its content: only nesting of elements is tracked (see
+     * {@link #copyRawContent} for details on what is and is not checked).
+     * After the call, reader points to the matching END_ELEMENT.
+     *<p>
+     * Content is copied directly from the input buffer; the only case
+     * where output may differ from the input is if the start or end tag
+     * spans an input buffer boundary, and is no longer available in the
+     * buffer. If so the tag is written out from its parsed
+     * representation: attribute values are then quoted using double
+     * quotes, and white space within the tag is normalized.
+     *<p>
+     * Unlike {@link #copyRawContent}, entity references are allowed,
+     * since they are just copied as is. Capturing is not possible if
+     * the element comes from an expanded entity, or if the document is
+     * being validated: in these cases nothing is copied, and method
+     * returns false.
+     *
+     * @return True if element was captured (and reader now points to
+     *   the matching END_ELEMENT); false if capturing was not possible,
+     *   in which case state of the reader has not changed.
+     *
+     * @since 5.0
+     */
+    public boolean captureRawElement(Writer w)
+        throws XMLStreamException
+    {
+        if (mCurrToken != START_ELEMENT) {
+            throw new IllegalStateException(ErrorConsts.ERR_STATE_NOT_STELEM);
+        }
+        if (!canAccessRawContent()) {
+            return false;
+        }
+        try {
+            captureRawElement2(w);
+        } catch (IOException ioe) {
+            throw new WstxIOException(ioe);
+        }
+        return true;
+    }
+
+    /**
+     * Method similar to {@link #captureRawElement(Writer)}, but which
+     * writes captured content to given stream, encoded using the
+     * encoding of the input document (UTF-8, if input came from a
+     * character source). This means that for byte-based input the
+     * output contains the same bytes as the input. Characters are never
+     * replaced: if some can not be encoded, an exception is thrown.
+     *
+     * @since 5.0
+     */
+    public boolean captureRawElement(OutputStream out)
+        throws XMLStreamException
+    {
+        if (mCurrToken != START_ELEMENT) {
+            throw new IllegalStateException(ErrorConsts.ERR_STATE_NOT_STELEM);
+        }
+        if (!canAccessRawContent()) {
+            return false;
+        }
+        try {
+            Writer w = new OutputStreamWriter(out, getRawOutputCharset().newEncoder());
+            captureRawElement2(w);
+            w.flush();
+        } catch (IOException ioe) {
+            throw new WstxIOException(ioe);
+        }
+        return true;
+    }
+
+    /**
+     * Method similar to {@link #captureRawElement(OutputStream)}, but
+     * which writes captured content into given buffer. If buffer does
+     * not have enough room for the element, a
+     * {@link java.nio.BufferOverflowException} is thrown once the whole
+     * element has been read: in that case the buffer is left unchanged
+     * (its position is not advanced), and the reader points to the
+     * END_ELEMENT matching the start element, so that parsing can
+     * continue after the element, but content of the element is lost.
+     *
+     * @since 5.0
+     */
+    public boolean captureRawElement(java.nio.ByteBuffer bb)
+        throws XMLStreamException
+    {
+        if (mCurrToken != START_ELEMENT) {
+            throw new IllegalStateException(ErrorConsts.ERR_STATE_NOT_STELEM);
+        }
+        if (!canAccessRawContent()) {
+            return false;
+        }
+        try {
+            Writer w = new ByteBufferWriter(bb, getRawOutputCharset());
+            captureRawElement2(w);
+            w.flush();
+        } catch (IOException ioe) {
+            throw new WstxIOException(ioe);
+        }
+        return true;
     }
 
     /*
@@ -2007,11 +2489,25 @@ public abstract class BasicStreamReader
                         // Ok, fine, c is whatever it is
                         ;
                     } else { // full entity just changes buffer...
-                        ch = fullyResolveEntity(false);
+                        ch = fullyResolveEntity(false, true);
                         if (ch == 0) {
                             // need to skip output, thusly (expanded to new input source)
                             continue;
                         }
+                        if (ch == CHAR_ENTITY_INLINED) {
+                            // plain text; need to normalize white space, but that's all
+                            char[] text = mInlinedEntityText;
+                            for (int i = 0, len = text.length; i < len; ++i) {
+                                if (outPtr >= outLen) {
+                                    verifyLimit("Maximum attribute size", mConfig.getMaxAttributeSize(), tb.getCharSize());
+                                    outBuf = tb.bufferFull(1);
+                                    outLen = outBuf.length;
+                                }
+                                char d = text[i];
+                                outBuf[outPtr++] = (d < CHAR_SPACE) ? CHAR_SPACE : d;
+                            }
+                            continue;
+                        }
                     }
                     if (ch <= 0xFFFF) {
                         c = (char) ch;
@@ -2042,6 +2538,75 @@ public abstract class BasicStreamReader
         tb.setBufferSize(outPtr);
     }
     
+    /**
+     * Method called when lazy attribute value decoding is enabled, to
+     * see if the attribute value that follows is fully contained in
+     * the current input buffer, and contains no characters that would
+     * need to be decoded or normalized (entities, linefeeds, tabs). If
+     * so, only the location of the value is passed to the attribute
+     * collector, and value is decoded if and when it is accessed.
+     *
+     * @return True if value was located and added to the attribute
+     *   collector; false if it needs to be parsed using
+     *   {@link #parseAttrValue} (in which case no input has been consumed)
+     */
+    private final boolean parseRawAttrValue(char openingQuote, String prefix, String localName)
+        throws XMLStreamException
+    {
+        final char[] inputBuf = mInputBuffer;
+        final int start = mInputPtr;
+        final int end = mInputEnd;
+
+        for (int ptr = start; ptr < end; ++ptr) {
+            char c = inputBuf[ptr];
+            if (c <= '\'') {
+                if (c == openingQuote) {
+                    if ((ptr - start) > mConfig.getMaxAttributeSize()) { // let full parsing report it
+                        return false;
+                    }
+                    mAttrCollector.addRawAttribute(prefix, localName, inputBuf, start, ptr);
+                    mInputPtr = ptr+1;
+                    return true;
+                }
+                if (c < CHAR_SPACE || c == '&') {
+                    return false;
+                }
+            } else if (c == '<') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Input buffer contents are about to change; any attribute values
+     * that still refer to it need to be copied.
+     */
+    @Override
+    protected void inputBufferChanging() {
+        mAttrCollector.retainRawValues();
+        if (mMetrics != null) {
+            mMetrics.bufferLoaded();
+        }
+    }
+
+    /**
+     * Method called once the document has been parsed, or reader
+     * is closed, to pass collected metrics to the listener. Only
+     * called if metrics are being collected.
+     */
+    protected void reportMetrics()
+    {
+        ParserMetricsListener l = mConfig.getMetricsListener();
+        if (mMetrics.complete(mCurrInputProcessed + mInputPtr, mRootInput.getBytesRead(),
+                mEntityExpansionCount, mSymbols.size(), mSymbols.calcCollisionCount(),
+                (mSymbols.size() == 0) ? 0.0 : mSymbols.calcAvgSeek())) {
+            if (l != null) {
+                l.documentCompleted(mMetrics);
+            }
+        }
+    }
+
     /*
     ///////////////////////////////////////////////////////////
     // Internal methods, parsing prolog (before root) and
@@ -2212,6 +2777,9 @@ public abstract class BasicStreamReader
         if (isProlog) {
             throwUnexpectedEOF(SUFFIX_IN_PROLOG);
         }
+        if (mMetrics != null) {
+            reportMetrics();
+        }
         return mCurrToken;
     }
 
@@ -2649,7 +3217,7 @@ public abstract class BasicStreamReader
             }
 
             try {
-                MinimalDTDReader.skipInternalSubset(this, mInput, mConfig);
+                MinimalDTDReader.skipInternalSubset(this, mInput, ensurePrivateConfig());
             } finally {
                 /* Let's close branching in any and every case (may allow
                  * graceful recovery in error cases in future
@@ -2818,9 +3386,20 @@ public abstract class BasicStreamReader
             /* Need to call different methods based on whether we can do
              * automatic entity expansion or not:
              */
+            // Plain text entities can be expanded without new input source,
+            // as long as content model allows text
             int ch = mCfgReplaceEntities ?
-                fullyResolveEntity(true) : resolveCharOnlyEntity(true);
+                fullyResolveEntity(true, mVldContent > XMLValidator.CONTENT_ALLOW_WS_NONSTRICT)
+                : resolveCharOnlyEntity(true);
 
+            if (ch == CHAR_ENTITY_INLINED) {
+                TextBuffer tb = mTextBuffer;
+                tb.resetInitialized();
+                char[] text = mInlinedEntityText;
+                tb.append(text, 0, text.length);
+                mTokenState = TOKEN_STARTED;
+                return CHARACTERS;
+            }
             if (ch != 0) {
                 /* Char-entity... need to initialize text output buffer, then;
                  * independent of whether it'll be needed or not.
@@ -3132,10 +3711,14 @@ public abstract class BasicStreamReader
                 if (null == tb) {
                     throwParseError("Duplicate default namespace declaration.");
                 }
+            } else if (mCfgLazyAttrValues && parseRawAttrValue(c, prefix, localName)) {
+                tb = null;
             } else {
                 tb = ac.getAttrBuilder(prefix, localName);
             }
-            parseAttrValue(c, tb);
+            if (tb != null) {
+                parseAttrValue(c, tb);
+            }
 
             /* 19-Jul-2004, TSa: Need to check that non-default namespace
              *     URI is NOT empty, as per XML namespace specs, #2,
@@ -3188,7 +3771,6 @@ public abstract class BasicStreamReader
             }
 
             String name = parseFullName(c);
-            TextBuilder tb = ac.getAttrBuilder(null, name);
             c = (mInputPtr < mInputEnd) ?
                 mInputBuffer[mInputPtr++] : getNextCharFromCurrent(SUFFIX_IN_ELEMENT);
             if (c <= CHAR_SPACE) {
@@ -3209,7 +3791,9 @@ public abstract class BasicStreamReader
             }
 
             // And then the actual value
-            parseAttrValue(c, tb);
+            if (!mCfgLazyAttrValues || !parseRawAttrValue(c, null, name)) {
+                parseAttrValue(c, ac.getAttrBuilder(null, name));
+            }
             // and then we need to iterate some more
             c = (mInputPtr < mInputEnd) ?
                 mInputBuffer[mInputPtr++] : getNextCharFromCurrent(SUFFIX_IN_ELEMENT);
@@ -3394,6 +3978,313 @@ public abstract class BasicStreamReader
     ///////////////////////////////////////////////////////////
      */
 
+    /**
+     * @return True if the current element and its content come directly
+     *   from the main input source, and are not being validated; that is,
+     *   content can be accessed without parsing it
+     */
+    private boolean canAccessRawContent()
+    {
+        return (mInput == mRootInput) && !mElementStack.reallyValidating();
+    }
+
+    private void captureRawElement2(Writer w)
+        throws IOException, XMLStreamException
+    {
+        // First the start tag; if still completely in buffer, can copy as is
+        int start = (int) (mTokenInputTotal - mCurrInputProcessed);
+        if (start >= 0 && start < mInputPtr && mInputBuffer[start] == '<') {
+            w.write(mInputBuffer, start, mInputPtr - start);
+        } else {
+            writeParsedStartTag(w);
+        }
+        if (mStEmptyElem) { // no content, no end tag
+            next();
+            return;
+        }
+        copyRawElementContent(w);
+        // Let's try to ensure end tag will be within the buffer, too
+        String name = getPrefixedName();
+        ensureInput(name.length() + 3);
+        next();
+        start = (int) (mTokenInputTotal - mCurrInputProcessed);
+        if (start >= 0 && start < mInputPtr && mInputBuffer[start] == '<') {
+            w.write(mInputBuffer, start, mInputPtr - start);
+        } else {
+            w.write("</");
+            w.write(name);
+            w.write('>');
+        }
+    }
+
+    /**
+     * Method called to output the current start tag based on its parsed
+     * representation, when its raw form is no longer available.
+     */
+    private void writeParsedStartTag(Writer w)
+        throws IOException
+    {
+        w.write('<');
+        w.write(getPrefixedName());
+        for (int i = 0, len = getNamespaceCount(); i < len; ++i) {
+            String prefix = getNamespacePrefix(i);
+            if (prefix == null || prefix.length() == 0) {
+                w.write(" xmlns=\"");
+            } else {
+                w.write(" xmlns:");
+                w.write(prefix);
+                w.write("=\"");
+            }
+            writeEscapedAttrValue(w, getNamespaceURI(i));
+            w.write('"');
+        }
+        for (int i = 0, len = getAttributeCount(); i < len; ++i) {
+            w.write(' ');
+            String prefix = getAttributePrefix(i);
+            if (prefix != null && prefix.length() > 0) {
+                w.write(prefix);
+                w.write(':');
+            }
+            w.write(getAttributeLocalName(i));
+            w.write("=\"");
+            writeEscapedAttrValue(w, getAttributeValue(i));
+            w.write('"');
+        }
+        w.write(mStEmptyElem ? "/>" : ">");
+    }
+
+    private static void writeEscapedAttrValue(Writer w, String value)
+        throws IOException
+    {
+        for (int i = 0, len = value.length(); i < len; ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '&':
+                w.write("&amp;");
+                break;
+            case '<':
+                w.write("&lt;");
+                break;
+            case '"':
+                w.write("&quot;");
+                break;
+            case '\t':
+            case '\n':
+            case '\r':
+                w.write("&#");
+                w.write(String.valueOf((int) c));
+                w.write(';');
+                break;
+            default:
+                w.write(c);
+            }
+        }
+    }
+
+    /**
+     * @return Charset to use for encoding raw content, when captured as
+     *   bytes: same as the input encoding, if known
+     */
+    private java.nio.charset.Charset getRawOutputCharset()
+    {
+        String enc = mDocInputEncoding;
+        if (enc == null) {
+            enc = CharsetNames.CS_UTF8;
+        } else if (enc.equals(CharsetNames.CS_UTF16)) { // no BOM wanted
+            enc = CharsetNames.CS_UTF16BE;
+        }
+        return java.nio.charset.Charset.forName(enc);
+    }
+
+    // States of the raw content scanner
+    private final static int RAW_TEXT = 0;
+    private final static int RAW_START_TAG = 1;
+    private final static int RAW_END_TAG = 2;
+    private final static int RAW_DIRECTIVE = 3;
+    private final static int RAW_COMMENT_START = 4;
+    private final static int RAW_COMMENT = 5;
+    private final static int RAW_CDATA = 6;
+    private final static int RAW_PI = 7;
+
+    /**
+     * Method called by {@link #copyRawContent} to copy contents of the
+     * current (non-empty) start element as is, up to but not including
+     * its matching end tag. Only markup boundaries (tags, comments, CDATA
+     * sections, processing instructions) and quoting within start tags
+     * are recognized, to track nesting. Linefeeds are counted to
+     * keep location information accurate.
+     *<p>
+     * Note: caller must have verified that input comes from the root
+     * input source.
+     */
+    private void copyRawElementContent(Writer w)
+        throws IOException, XMLStreamException
+    {
+        int depth = 0;
+        int state = RAW_TEXT;
+        char quote = 0; // quote char of attribute value, if within one
+        int count = 0; // number of dashes, brackets seen before end marker
+        char prev = 0;
+        int start = mInputPtr;
+
+        while (true) {
+            if (mInputPtr >= mInputEnd) {
+                w.write(mInputBuffer, start, mInputPtr - start);
+                loadMore(rawStateSuffix(state));
+                start = mInputPtr;
+            }
+            char c = mInputBuffer[mInputPtr++];
+
+            if (c <= CHAR_CR_LF_OR_NULL) {
+                if (c == '\n') {
+                    if (prev == '\r') { // \r\n: already counted
+                        mCurrInputRowStart = mInputPtr;
+                    } else {
+                        markLF();
+                    }
+                } else if (c == '\r') {
+                    markLF();
+                }
+                // white space never is part of end markers
+                count = 0;
+                prev = c;
+                continue;
+            }
+            prev = c;
+
+            switch (state) {
+            case RAW_TEXT:
+                if (c != '<') {
+                    continue;
+                }
+                // need to see the next char as well, from the same buffer
+                if (mInputPtr >= mInputEnd) {
+                    --mInputPtr;
+                    w.write(mInputBuffer, start, mInputPtr - start);
+                    if (!ensureInput(2)) {
+                        throwUnexpectedEOF(SUFFIX_IN_DOC);
+                    }
+                    start = mInputPtr;
+                    ++mInputPtr;
+                }
+                c = mInputBuffer[mInputPtr];
+                if (c == '/') {
+                    if (depth == 0) { // end tag of the element itself
+                        --mInputPtr;
+                        w.write(mInputBuffer, start, mInputPtr - start);
+                        return;
+                    }
+                    ++mInputPtr;
+                    state = RAW_END_TAG;
+                } else if (c == '!') {
+                    ++mInputPtr;
+                    state = RAW_DIRECTIVE;
+                } else if (c == '?') {
+                    ++mInputPtr;
+                    count = 0;
+                    state = RAW_PI;
+                } else {
+                    quote = 0;
+                    count = 0;
+                    state = RAW_START_TAG;
+                }
+                break;
+
+            case RAW_START_TAG:
+                // 'count' is used to indicate slash preceding '>' here
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '>') {
+                    if (count == 0) { // not an empty element
+                        ++depth;
+                    }
+                    state = RAW_TEXT;
+                } else {
+                    if (c == '"' || c == '\'') {
+                        quote = c;
+                    }
+                    count = (c == '/') ? 1 : 0;
+                }
+                break;
+
+            case RAW_END_TAG:
+                if (c == '>') {
+                    --depth;
+                    state = RAW_TEXT;
+                }
+                break;
+
+            case RAW_DIRECTIVE:
+                if (c == '-') {
+                    state = RAW_COMMENT_START;
+                } else if (c == '[') {
+                    count = 0;
+                    state = RAW_CDATA;
+                } else {
+                    throwUnexpectedChar(c, SUFFIX_IN_DOC+"; expected '-' or '[' after '<!'");
+                }
+                break;
+
+            case RAW_COMMENT_START:
+                if (c != '-') {
+                    throwUnexpectedChar(c, SUFFIX_IN_DOC+"; expected '-' after '<!-'");
+                }
+                count = 0;
+                state = RAW_COMMENT;
+                break;
+
+            case RAW_COMMENT:
+                if (c == '-') {
+                    ++count;
+                } else if (c == '>' && count >= 2) {
+                    state = RAW_TEXT;
+                } else {
+                    count = 0;
+                }
+                break;
+
+            case RAW_CDATA:
+                if (c == ']') {
+                    ++count;
+                } else if (c == '>' && count >= 2) {
+                    state = RAW_TEXT;
+                } else {
+                    count = 0;
+                }
+                break;
+
+            case RAW_PI:
+                if (c == '?') {
+                    count = 1;
+                } else if (c == '>' && count > 0) {
+                    state = RAW_TEXT;
+                } else {
+                    count = 0;
+                }
+                break;
+            }
+        }
+    }
+
+    private static String rawStateSuffix(int state)
+    {
+        switch (state) {
+        case RAW_START_TAG:
+            return SUFFIX_IN_ELEMENT;
+        case RAW_END_TAG:
+            return SUFFIX_IN_CLOSE_ELEMENT;
+        case RAW_COMMENT:
+            return SUFFIX_IN_COMMENT;
+        case RAW_CDATA:
+            return SUFFIX_IN_CDATA;
+        case RAW_PI:
+            return SUFFIX_IN_PROC_INSTR;
+        }
+        return SUFFIX_IN_DOC;
+    }
+
     /**
      * Method called to skip last part of current token, when full token
      * has not been parsed. Generally happens when caller is not interested
@@ -3410,6 +4301,7 @@ public abstract class BasicStreamReader
         throws XMLStreamException
     {
         int result;
+        mTextReader = null;
 
         main_switch:
         switch (mCurrToken) {
@@ -3765,6 +4657,7 @@ public abstract class BasicStreamReader
     protected void finishToken(boolean deferErrors)
         throws XMLStreamException
     {
+        mTextReader = null;
         switch (mCurrToken) {
         case CDATA:
             if (mCfgCoalesceText) {
@@ -4471,8 +5364,10 @@ public abstract class BasicStreamReader
             // Need more room?
             if (outPtr >= outBuf.length) {
                 TextBuffer tb = mTextBuffer;
-                // Perhaps we have now enough to return?
-                if (!mCfgCoalesceText) {
+                /* Perhaps we have now enough to return? (never the case
+                 * when coalescing, except for streaming access)
+                 */
+                if (shortestSegment < Integer.MAX_VALUE) {
                     tb.setCurrentLength(outBuf.length);
                     if (tb.size() >= shortestSegment) {
                         mInputPtr = inputPtr;
@@ -4771,7 +5666,7 @@ public abstract class BasicStreamReader
                             && (ch = resolveSimpleEntity(true)) != 0) {
                             // Ok, it's fine then
                         } else {
-                            ch = fullyResolveEntity(true);
+                            ch = fullyResolveEntity(true, true);
                             if (ch == 0) {
                                 // Input buffer changed, nothing to output quite yet:
                                 inputBuffer = mInputBuffer;
@@ -4779,6 +5674,18 @@ public abstract class BasicStreamReader
                                 inputPtr = mInputPtr;
                                 continue;
                             }
+                            if (ch == CHAR_ENTITY_INLINED) {
+                                // Plain text, can just append as is
+                                mTextBuffer.setCurrentLength(outPtr);
+                                char[] text = mInlinedEntityText;
+                                mTextBuffer.append(text, 0, text.length);
+                                verifyLimit("Text size", mConfig.getMaxTextLength(), mTextBuffer.size());
+                                outBuf = mTextBuffer.getCurrentSegment();
+                                outPtr = mTextBuffer.getCurrentSegmentSize();
+                                inputPtr = mInputPtr;
+                                inputLen = mInputEnd;
+                                continue;
+                            }
                             // otherwise char is now fine...
                         }
                     } else {
@@ -5475,6 +6382,90 @@ public abstract class BasicStreamReader
         return count;
     }
 
+    /*
+    ///////////////////////////////////////////////////////////
+    // Internal methods, streaming text access
+    ///////////////////////////////////////////////////////////
+     */
+
+    final boolean isActiveTextReader(StreamingTextReader r) {
+        return (mTextReader == r);
+    }
+
+    /**
+     * Method called by {@link StreamingTextReader} when it has returned
+     * all content in the text buffer, to parse the next chunk of content
+     * of the current text event (including following CDATA and text
+     * segments, when coalescing) into the text buffer.
+     *
+     * @return True if more content was read in the text buffer; false
+     *   if the end of the current event was reached.
+     */
+    final boolean readNextTextChunk()
+        throws XMLStreamException
+    {
+        mTextBuffer.resetWithEmpty();
+        while (true) {
+            if (mTokenState < TOKEN_FULL_SINGLE) {
+                // 1 -> return as soon as a text buffer segment is full
+                boolean done = (mCurrToken == CDATA) ? readCDataSecondary(1)
+                    : readTextSecondary(1, false);
+                if (done) {
+                    mTokenState = TOKEN_FULL_SINGLE;
+                }
+                if (mTextBuffer.size() > 0) {
+                    return true;
+                }
+            } else if (mTokenState >= mStTextThreshold || !startNextCoalescedSegment()) {
+                mTokenState = mCfgCoalesceText ? TOKEN_FULL_COALESCED : TOKEN_FULL_SINGLE;
+                mTextReader = null;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Method called when coalescing text with streaming access, after
+     * a segment has been completely read, to see if it is followed by
+     * another CDATA or text segment; if so, token type and state are
+     * changed to match the new segment (which is fine, since coalesced
+     * CDATA is reported as CHARACTERS).
+     *
+     * @return True if another segment was found
+     */
+    private boolean startNextCoalescedSegment()
+        throws XMLStreamException
+    {
+        if (mInputPtr >= mInputEnd) {
+            if (!loadMore()) {
+                return false;
+            }
+        }
+        char c = mInputBuffer[mInputPtr];
+        if (c == '<') {
+            if ((mInputEnd - mInputPtr) < 3) {
+                if (!ensureInput(3)) {
+                    return false;
+                }
+            }
+            if (mInputBuffer[mInputPtr+1] != '!'
+                || mInputBuffer[mInputPtr+2] != '[') {
+                return false;
+            }
+            mInputPtr += 3;
+            checkCData();
+            mCurrToken = CDATA;
+        } else {
+            // unexpandable entity can only follow text, not CDATA
+            if (c == '&' && mCurrToken != CDATA) {
+                return false;
+            }
+            mCurrToken = CHARACTERS;
+        }
+        mTokenState = TOKEN_PARTIAL_SINGLE;
+        return true;
+    }
+
     /*
     ///////////////////////////////////////////////////////////
     // Internal methods, low-level input access
@@ -0,0 +1,266 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.sr;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.Namespace;
+
+import org.codehaus.stax2.ri.evt.NamespaceEventImpl;
+
+import com.ctc.wstx.util.BaseNsContext;
+import com.ctc.wstx.util.DataUtil;
+
+/**
+ * Immutable non-transient namespace context implementation, in which
+ * each instance only contains bindings declared by a single element,
+ * and links to the context of the parent scope for everything else.
+ * This allows contexts to be shared structurally: a new instance is
+ * only needed for elements that declare namespaces, and all descendants
+ * that do not declare any can share the same "inherited" instance
+ * (see {@link #inheritedContext}).
+ *<p>
+ * Instances are constructed by {@link InputElementStack}, and are
+ * mostly used by the Event API implementation.
+ *
+ * @since 5.0
+ */
+public final class ChainedNsContext
+    extends BaseNsContext
+{
+    final static String[] NO_BINDINGS = new String[0];
+
+    final Location mLocation;
+
+    /**
+     * Context of the enclosing scope, if any; null for outermost
+     * declarations.
+     */
+    final ChainedNsContext mParent;
+
+    /**
+     * Bindings declared in this scope: 2 Strings for each binding;
+     * first is the prefix (null for the default namespace), second URI.
+     */
+    final String[] mNamespaces;
+
+    /**
+     * Context that has the same bindings as this one, but no local
+     * declarations; created lazily when first needed.
+     */
+    ChainedNsContext mInherited;
+
+    /**
+     * List only needed to support List accessor from start-element event;
+     * created lazily if/as needed.
+     */
+    transient ArrayList<Namespace> mNsList;
+
+    public ChainedNsContext(Location loc, ChainedNsContext parent,
+            String[] namespaces)
+    {
+        mLocation = loc;
+        mParent = parent;
+        mNamespaces = namespaces;
+        // Contexts without local bindings are their own inherited contexts
+        if (namespaces.length == 0) {
+            mInherited = this;
+        }
+    }
+
+    /**
+     * Method for accessing context that child elements without
+     * namespace declarations of their own can use: same bindings,
+     * but none of them local.
+     */
+    public ChainedNsContext inheritedContext()
+    {
+        ChainedNsContext ctxt = mInherited;
+        if (ctxt == null) {
+            mInherited = ctxt = new ChainedNsContext(null, this, NO_BINDINGS);
+        }
+        return ctxt;
+    }
+
+    /*
+    ///////////////////////////////////////////////////////
+    // BaseNsContext implementation
+    ///////////////////////////////////////////////////////
+     */
+
+    /**
+     * @param prefix Non-null, non-empty prefix (base-class verifies these
+     *  constraints) to find namespace URI for.
+     */
+    @Override
+    public String doGetNamespaceURI(String prefix)
+    {
+        // default namespace is bound with null prefix
+        return findURI((prefix.length() == 0) ? null : prefix);
+    }
+
+    @Override
+    public String doGetPrefix(String nsURI)
+    {
+        for (ChainedNsContext ctxt = this; ctxt != null; ctxt = ctxt.mParent) {
+            String[] ns = ctxt.mNamespaces;
+            for (int i = ns.length-1; i > 0; i -= 2) {
+                if (nsURI.equals(ns[i])) {
+                    String prefix = ns[i-1];
+                    // Need to ensure binding is not masked by an inner one
+                    if (nsURI.equals(findURI(prefix))) {
+                        return (prefix == null) ? "" : prefix;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Iterator<String> doGetPrefixes(String nsURI)
+    {
+        String first = null;
+        ArrayList<String> all = null;
+
+        for (ChainedNsContext ctxt = this; ctxt != null; ctxt = ctxt.mParent) {
+            String[] ns = ctxt.mNamespaces;
+            for (int i = ns.length-1; i > 0; i -= 2) {
+                if (!nsURI.equals(ns[i])) {
+                    continue;
+                }
+                String prefix = ns[i-1];
+                if (!nsURI.equals(findURI(prefix))) { // masked
+                    continue;
+                }
+                if (prefix == null) {
+                    prefix = "";
+                }
+                if (first == null) {
+                    first = prefix;
+                } else if (!first.equals(prefix)) {
+                    if (all == null) {
+                        all = new ArrayList<String>();
+                        all.add(first);
+                    }
+                    // same binding may be repeated in multiple scopes
+                    if (!all.contains(prefix)) {
+                        all.add(prefix);
+                    }
+                }
+            }
+        }
+        if (all != null) {
+            return all.iterator();
+        }
+        if (first != null) {
+            return DataUtil.singletonIterator(first);
+        }
+        return DataUtil.emptyIterator();
+    }
+
+    /**
+     * @param prefix Prefix to find the innermost binding for; null for
+     *   the default namespace
+     */
+    private String findURI(String prefix)
+    {
+        for (ChainedNsContext ctxt = this; ctxt != null; ctxt = ctxt.mParent) {
+            String[] ns = ctxt.mNamespaces;
+            for (int i = ns.length-2; i >= 0; i -= 2) {
+                String p = ns[i];
+                // Prefixes are interned, but let's not rely on it here
+                if (p == prefix || (p != null && p.equals(prefix))) {
+                    return ns[i+1];
+                }
+            }
+        }
+        return null;
+    }
+
+    /*
+    ///////////////////////////////////////////////////////
+    // Extended API, needed by Wstx classes
+    ///////////////////////////////////////////////////////
+     */
+
+    @Override
+    public Iterator<Namespace> getNamespaces()
+    {
+        if (mNsList == null) {
+            String[] ns = mNamespaces;
+            int len = ns.length;
+            if (len == 0) {
+                return DataUtil.emptyIterator();
+            }
+            if (len == 2) { // only one NS
+                return DataUtil.<Namespace>singletonIterator(NamespaceEventImpl.constructNamespace
+                        (mLocation, ns[0], ns[1]));
+            }
+            ArrayList<Namespace> l = new ArrayList<Namespace>(len >> 1);
+            for (int i = 0; i < len; i += 2) {
+                l.add(NamespaceEventImpl.constructNamespace(mLocation, ns[i], ns[i+1]));
+            }
+            mNsList = l;
+        }
+        return mNsList.iterator();
+    }
+
+    /**
+     * Method called by {@link com.ctc.wstx.evt.CompactStartElement}
+     * to output all namespace declarations made in the scope of the
+     * element this context was created for, if any.
+     */
+    @Override
+    public void outputNamespaceDeclarations(Writer w) throws IOException
+    {
+        String[] ns = mNamespaces;
+        for (int i = 0, len = ns.length; i < len; i += 2) {
+            w.write(' ');
+            w.write(XMLConstants.XMLNS_ATTRIBUTE);
+            String prefix = ns[i];
+            if (prefix != null && prefix.length() > 0) {
+                w.write(':');
+                w.write(prefix);
+            }
+            w.write("=\"");
+            w.write(ns[i+1]);
+            w.write('"');
+        }
+    }
+
+    @Override
+    public void outputNamespaceDeclarations(XMLStreamWriter w) throws XMLStreamException
+    {
+        String[] ns = mNamespaces;
+        for (int i = 0, len = ns.length; i < len; i += 2) {
+            String nsURI = ns[i+1];
+            String prefix = ns[i];
+            if (prefix != null && prefix.length() > 0) {
+                w.writeNamespace(prefix, nsURI);
+            } else {
+                w.writeDefaultNamespace(nsURI);
+            }
+        }
+    }
+}
@@ -15,6 +15,8 @@
 
 package com.ctc.wstx.sr;
 
+import com.ctc.wstx.util.BaseNsContext;
+
 /**
  * Container for information collected regarding a single
  * (start) element instance.
@@ -53,6 +55,13 @@ final class Element
      */
     protected int mNsOffset;
 
+    /**
+     * Non-transient namespace context for this element, if one has
+     * been constructed; either a {@link ChainedNsContext} or the
+     * shared empty context.
+     */
+    protected BaseNsContext mNsContext;
+
     // // // Back links to parent element(s)
 
     /**
@@ -65,6 +74,14 @@ final class Element
      */
     protected int mChildCount;
 
+    /**
+     * Id of the local name of this element within the name vocabulary
+     * in use, if any; -1 if none, or if name is not in the vocabulary.
+     *
+     * @since 5.0
+     */
+    protected int mNameId = -1;
+
     /*
     /////////////////////////////////////////////////////////
     // Life-cycle
@@ -86,6 +103,7 @@ final class Element
         mPrefix = prefix;
         mLocalName = ln;
         mChildCount = 0;
+        mNsContext = null;
     }
 
     /**
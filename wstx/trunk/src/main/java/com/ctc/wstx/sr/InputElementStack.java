@@ -36,6 +36,7 @@ import com.ctc.wstx.cfg.ErrorConsts;
 import com.ctc.wstx.cfg.XmlConsts;
 import com.ctc.wstx.compat.QNameCreator;
 import com.ctc.wstx.dtd.DTDValidatorBase; // unfortunate dependency
+import com.ctc.wstx.metrics.DocumentMetrics;
 import com.ctc.wstx.util.*;
 
 /**
@@ -66,7 +67,14 @@ public final class InputElementStack
 
     protected final AttributeCollector mAttrCollector;
 
-    protected final ReaderConfig mConfig;
+    protected ReaderConfig mConfig;
+
+    /**
+     * Vocabulary used for resolving ids of element names, if any.
+     *
+     * @since 5.0
+     */
+    protected final NameVocabulary mNameVocabulary;
 
     protected InputProblemReporter mReporter = null;
 
@@ -121,6 +129,12 @@ public final class InputElementStack
      */
     protected int mIdAttrIndex = ID_ATTR_NONE;
 
+    /**
+     * Metrics object to report time spent in validation to, if
+     * metrics are being collected; null otherwise.
+     */
+    protected DocumentMetrics mMetrics;
+
     /*
     ///////////////////////////////////////////////////////////
     // Simple 1-slot QName cache; used for improving
@@ -141,16 +155,6 @@ public final class InputElementStack
     ///////////////////////////////////////////////////////////
      */
 
-    // Non-transient NamespaceContext caching; mostly for event API
-
-    /**
-     * Last potentially shareable NamespaceContext created by
-     * this stack. This reference is cleared each time bindings
-     * change (either due to a start element with new bindings, or due
-     * to the matching end element that closes scope of such binding(s)).
-     */
-    protected BaseNsContext mLastNsContext = null;
-
     // Chain of reusable Element instances
 
     protected Element mFreeElement = null;
@@ -166,6 +170,18 @@ public final class InputElementStack
         mConfig = cfg;
         mNsAware = nsAware;
         mAttrCollector = new AttributeCollector(cfg, nsAware);
+        mNameVocabulary = cfg.getNameVocabulary();
+    }
+
+    /**
+     * Method called by the owning reader if it replaces its (shared)
+     * configuration object with a private copy.
+     *
+     * @since 5.0
+     */
+    protected void setConfig(ReaderConfig cfg)
+    {
+        mConfig = cfg;
     }
 
     protected void connectReporter(InputProblemReporter rep)
@@ -173,6 +189,14 @@ public final class InputElementStack
         mReporter = rep;
     }
 
+    /**
+     * @since 5.0
+     */
+    protected void setMetrics(DocumentMetrics metrics)
+    {
+        mMetrics = metrics;
+    }
+
     protected XMLValidator addValidator(XMLValidator vld)
     {
         if (mValidator == null) {
@@ -273,6 +297,27 @@ public final class InputElementStack
         return ((DTDValidatorBase) mValidator).reallyValidating();
     }
 
+    /**
+     * Method called to check whether any of validators may affect content
+     * reported: this is the case for actual validators, but also for
+     * the non-validating DTD-aware "validator" if the DTD declares any
+     * elements or attributes (since it supplies attribute types and
+     * default values).
+     *
+     * @since 5.0
+     */
+    protected boolean hasContentAffectingValidator()
+    {
+        if (mValidator == null) {
+            return false;
+        }
+        if (!(mValidator instanceof DTDValidatorBase)) {
+            return true;
+        }
+        DTDValidatorBase dtdv = (DTDValidatorBase) mValidator;
+        return dtdv.reallyValidating() || dtdv.hasElementSpecs();
+    }
+
     /**
      * Method called by {@link BasicStreamReader}, to retrieve the
      * attribute collector it needs for some direct access.
@@ -285,35 +330,65 @@ public final class InputElementStack
      * Method called to construct a non-transient NamespaceContext instance;
      * generally needed when creating events to return from event-based
      * iterators.
+     *<p>
+     * Contexts are structurally shared: elements that do not declare
+     * namespaces share the context of their parent element, so that as
+     * long as the parent's context has been constructed, this is a
+     * constant-time operation that does not allocate anything.
      */
     public BaseNsContext createNonTransientNsContext(Location loc)
     {
-        // Have an instance we can reuse? Great!
-        if (mLastNsContext != null) {
-            return mLastNsContext;
-        }
-
-        // No namespaces declared at this point? Easy, as well:
-        int totalNsSize = mNamespaces.size();
-        if (totalNsSize < 1) {
-            return (mLastNsContext = EmptyNamespaceContext.getInstance());
-        }
-
-        // Otherwise, we need to create a new non-empty context:
-        int localCount = getCurrentNsCount() << 1;
-        BaseNsContext nsCtxt = new CompactNsContext
-            (loc, /*getDefaultNsURI(),*/
-             mNamespaces.asArray(), totalNsSize,
-             totalNsSize - localCount);
-        /* And it can be shared if there are no new ('local', ie. included
-         * within this start element) bindings -- if there are, underlying
-         * array might be shareable, but offsets wouldn't be)
-         */
-        if (localCount == 0) {
-            mLastNsContext = nsCtxt;
+        Element curr = mCurrElement;
+        if (curr == null) { // outside root element, no bindings
+            return EmptyNamespaceContext.getInstance();
         }
-        return nsCtxt;
-}
+        BaseNsContext ctxt = curr.mNsContext;
+        if (ctxt == null) {
+            ctxt = constructNsContext(curr, mNamespaces.size(), loc);
+        }
+        return ctxt;
+    }
+
+    /**
+     * Helper method that constructs non-transient namespace context for
+     * given open element, as well as for any of its ancestors that do not
+     * yet have one.
+     *
+     * @param nsEnd End offset of the namespace bindings declared by the
+     *   element, within {@link #mNamespaces}
+     */
+    private BaseNsContext constructNsContext(Element elem, int nsEnd, Location loc)
+    {
+        Element parent = elem.mParent;
+        BaseNsContext parentCtxt;
+
+        if (parent == null) {
+            parentCtxt = null;
+        } else {
+            parentCtxt = parent.mNsContext;
+            if (parentCtxt == null) {
+                /* Location is only needed for Namespace events of the
+                 * element itself, and ancestors are no longer current
+                 */
+                parentCtxt = constructNsContext(parent, elem.mNsOffset, null);
+            }
+        }
+        ChainedNsContext base = (parentCtxt instanceof ChainedNsContext) ?
+            ((ChainedNsContext) parentCtxt).inheritedContext() : null;
+        BaseNsContext ctxt;
+        int offset = elem.mNsOffset;
+        if (nsEnd == offset) { // no local bindings, can share
+            ctxt = (base == null) ? EmptyNamespaceContext.getInstance() : base;
+        } else {
+            String[] local = new String[nsEnd - offset];
+            for (int i = 0; i < local.length; ++i) {
+                local[i] = mNamespaces.getString(offset + i);
+            }
+            ctxt = new ChainedNsContext(loc, base, local);
+        }
+        elem.mNsContext = ctxt;
+        return ctxt;
+    }
 
     /**
      * Method called by the stream reader to add new (start) element
@@ -384,7 +459,6 @@ public final class InputElementStack
         // Need to purge namespaces?
         int nsCount = mNamespaces.size() - child.mNsOffset;
         if (nsCount > 0) { // 2 entries for each NS mapping:
-            mLastNsContext = null; // let's invalidate ns ctxt too, if we had one
             mNamespaces.removeLast(nsCount);
         }
         return (parent != null);
@@ -410,11 +484,6 @@ public final class InputElementStack
         {
             int nsCount = ac.getNsCount();
             if (nsCount > 0) {
-                /* let's first invalidate old (possibly) shared ns ctxt too,
-                 * if we had one; new one can be created at a later point
-                 */
-                mLastNsContext = null;
-
                 boolean internNsUris = mConfig.willInternNsURIs();
                 for (int i = 0; i < nsCount; ++i) {
                     Attribute ns = ac.resolveNamespaceDecl(i, internNsUris);
@@ -504,6 +573,9 @@ public final class InputElementStack
             }
         }
         mCurrElement.mNamespaceURI = ns;
+        // id depends on namespace too, so can only be resolved now
+        mCurrElement.mNameId = (mNameVocabulary == null) ?
+            NameVocabulary.NO_ID : mNameVocabulary.findId(ns, mCurrElement.mLocalName);
 
         // And finally, resolve attributes' namespaces too:
         int xmlidIx = ac.resolveNamespaces(mReporter, mNamespaces);
@@ -521,7 +593,18 @@ public final class InputElementStack
         }
 
         // Otherwise need to call relevant validation methods.
+        if (mMetrics != null) {
+            long start = System.nanoTime();
+            int result = validateElement(vld, ac);
+            mMetrics.addValidationTime(System.nanoTime() - start);
+            return result;
+        }
+        return validateElement(vld, ac);
+    }
 
+    private int validateElement(XMLValidator vld, AttributeCollector ac)
+        throws XMLStreamException
+    {
         /* First, a call to check if the element itself may be acceptable
          * within structure:
          */
@@ -532,14 +615,14 @@ public final class InputElementStack
         int attrLen = ac.getCount();
         if (attrLen > 0) {
             for (int i = 0; i < attrLen; ++i) {
-                ac.validateAttribute(i, mValidator);
+                ac.validateAttribute(i, vld);
             }
         }
 
         /* And finally let's wrap things up to see what textual content
          * is allowed as child content, if any:
          */
-        return mValidator.validateElementAndAttributes();
+        return vld.validateElementAndAttributes();
     }
 
     /**
@@ -556,11 +639,15 @@ public final class InputElementStack
         if (mValidator == null) { // should never be null if we get here
             return XMLValidator.CONTENT_ALLOW_ANY_TEXT;
         }
+        long start = (mMetrics == null) ? 0L : System.nanoTime();
         int result =  mValidator.validateElementEnd
             (mCurrElement.mLocalName, mCurrElement.mNamespaceURI, mCurrElement.mPrefix);
         if (mDepth == 1) { // root closing
             mValidator.validationCompleted(true);
         }
+        if (mMetrics != null) {
+            mMetrics.addValidationTime(System.nanoTime() - start);
+        }
         return result;
     }
 
@@ -915,12 +1002,24 @@ public final class InputElementStack
     public final void validateText(TextBuffer tb, boolean lastTextSegment)
         throws XMLStreamException
     {
+        if (mMetrics != null) {
+            long start = System.nanoTime();
+            tb.validateText(mValidator, lastTextSegment);
+            mMetrics.addValidationTime(System.nanoTime() - start);
+            return;
+        }
         tb.validateText(mValidator, lastTextSegment);
     }
 
     public final void validateText(String contents, boolean lastTextSegment)
         throws XMLStreamException
     {
+        if (mMetrics != null) {
+            long start = System.nanoTime();
+            mValidator.validateText(contents, lastTextSegment);
+            mMetrics.addValidationTime(System.nanoTime() - start);
+            return;
+        }
         mValidator.validateText(contents, lastTextSegment);
     }
 
@@ -948,6 +1047,14 @@ public final class InputElementStack
      */
     public final int getDepth() { return mDepth; }
 
+    /**
+     * @return Number of elements started so far (used for enforcing the
+     *   maximum element count limit)
+     *
+     * @since 5.0
+     */
+    public final long getTotalElements() { return mTotalElements; }
+
     // // // Information about element at top of stack:
 
     public final String getDefaultNsURI() {
@@ -978,6 +1085,20 @@ public final class InputElementStack
         return mCurrElement.mLocalName;
     }
 
+    /**
+     * @return Id of the local name of the current element in the
+     *   configured name vocabulary; -1 if no vocabulary is used, or
+     *   if it does not contain the name.
+     *
+     * @since 5.0
+     */
+    public final int getLocalNameId() {
+        if (mDepth == 0) {
+            throw new IllegalStateException("Illegal access, empty stack.");
+        }
+        return mCurrElement.mNameId;
+    }
+
     public final boolean matches(String prefix, String localName)
     {
         if (mDepth == 0) {
@@ -1053,6 +1174,108 @@ public final class InputElementStack
         return mNamespaces.getString(offset + index + 1);
     }
 
+    /**
+     * Method for finding namespace bindings that the current element
+     * inherits from its ancestors: that is, bindings in scope, excluding
+     * ones declared by the element itself. Only the innermost binding of
+     * each prefix is included; default namespace is included with
+     * the empty String as prefix (unless it is not bound).
+     *
+     * @return Map from prefixes to namespace URIs, in declaration order
+     *
+     * @since 5.0
+     */
+    public Map<String,String> getInheritedNsBindings()
+    {
+        if (mCurrElement == null) {
+            return Collections.emptyMap();
+        }
+        Map<String,String> result = new LinkedHashMap<String,String>();
+        for (int i = 0, end = mCurrElement.mNsOffset; i < end; i += 2) {
+            String prefix = mNamespaces.getString(i);
+            String uri = mNamespaces.getString(i+1);
+            if (prefix == null) {
+                prefix = "";
+            }
+            // Unbinding (of default ns, or of a prefix in xml 1.1)?
+            if (uri == null || uri.length() == 0) {
+                result.remove(prefix);
+            } else {
+                result.put(prefix, uri);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Method called when creating a reader checkpoint, to get
+     * descriptions of open elements.
+     *
+     * @param count Number of outermost open elements to include
+     *
+     * @return Descriptions of open elements, outermost first
+     *
+     * @since 5.0
+     */
+    protected ReaderCheckpoint.OpenElement[] getOpenElements(int count)
+    {
+        ReaderCheckpoint.OpenElement[] result = new ReaderCheckpoint.OpenElement[count];
+        int nsEnd = mNamespaces.size();
+        int ix = mDepth;
+        for (Element elem = mCurrElement; elem != null; elem = elem.mParent) {
+            if (--ix < count) {
+                String[] nsDecls = new String[nsEnd - elem.mNsOffset];
+                for (int i = 0; i < nsDecls.length; ++i) {
+                    nsDecls[i] = mNamespaces.getString(elem.mNsOffset + i);
+                }
+                result[ix] = new ReaderCheckpoint.OpenElement(elem.mPrefix, elem.mLocalName,
+                        elem.mNamespaceURI, elem.mDefaultNsURI, nsDecls, elem.mChildCount);
+            }
+            nsEnd = elem.mNsOffset;
+        }
+        return result;
+    }
+
+    /**
+     * Method called when resuming parsing from a checkpoint, to re-create
+     * elements that were open at the checkpoint. Names are canonicalized
+     * using given symbol table, so that they are identical to names
+     * the reader would have parsed.
+     *
+     * @since 5.0
+     */
+    protected void restoreOpenElements(ReaderCheckpoint.OpenElement[] elems,
+                                       long totalElements, SymbolTable symbols)
+    {
+        final boolean internNsURIs = mConfig.willInternNsURIs();
+        for (ReaderCheckpoint.OpenElement oe : elems) {
+            String prefix = (oe.mPrefix == null) ? null : symbols.findSymbol(oe.mPrefix);
+            String localName = symbols.findSymbol(oe.mLocalName);
+            mCurrElement = new Element(mCurrElement, mNamespaces.size(), prefix, localName);
+            mCurrElement.mNamespaceURI = internNs(oe.mNsURI, internNsURIs);
+            mCurrElement.mDefaultNsURI = internNs(oe.mDefaultNsURI, internNsURIs);
+            mCurrElement.mChildCount = oe.mChildCount;
+            mCurrElement.mNameId = (mNameVocabulary == null) ?
+                NameVocabulary.NO_ID : mNameVocabulary.findId(mCurrElement.mNamespaceURI, localName);
+            String[] nsDecls = oe.mNsDecls;
+            for (int i = 0; i < nsDecls.length; i += 2) {
+                String nsPrefix = nsDecls[i];
+                mNamespaces.addStrings((nsPrefix == null) ? null : symbols.findSymbol(nsPrefix),
+                                       internNs(nsDecls[i+1], internNsURIs));
+            }
+            ++mDepth;
+        }
+        mTotalElements = totalElements;
+    }
+
+    private static String internNs(String uri, boolean intern)
+    {
+        if (uri == null || !intern) {
+            return uri;
+        }
+        return InternCache.getInstance().intern(uri);
+    }
+
     private void throwIllegalIndex(int index, int localCount)
     {
         throw new IllegalArgumentException("Illegal namespace index "
@@ -0,0 +1,298 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ctc.wstx.sr;
+
+import java.io.*;
+import java.util.*;
+
+import com.ctc.wstx.cfg.XmlConsts;
+
+/**
+ * Snapshot of the logical state of a {@link BasicStreamReader} at an
+ * element boundary (START_ELEMENT or END_ELEMENT event), created using
+ * {@link BasicStreamReader#createCheckpoint}. It contains everything
+ * needed to resume parsing right after the start or end tag, from a
+ * seekable source (see
+ * {@link com.ctc.wstx.stax.WstxInputFactory#createResumedReader}):
+ * byte and character offsets, location, names and namespace
+ * declarations of open elements, internal entities declared in the
+ * DTD, and counters used for enforcing limits.
+ *<p>
+ * Checkpoints can be stored using a compact binary format (see
+ * {@link #writeTo} and {@link #readFrom}), so that parsing can also be
+ * resumed by a different process. Instances are immutable.
+ *
+ * @since 5.0
+ */
+public final class ReaderCheckpoint
+{
+    final static int MAGIC = 0x57784350; // "WxCP"
+
+    final static int FORMAT_VERSION = 1;
+
+    /**
+     * Description of an element that is open at the checkpoint.
+     */
+    final static class OpenElement
+    {
+        final String mPrefix, mLocalName, mNsURI, mDefaultNsURI;
+
+        /**
+         * Namespace declarations of the element: prefix (null for the
+         * default namespace) followed by URI
+         */
+        final String[] mNsDecls;
+
+        final int mChildCount;
+
+        OpenElement(String prefix, String localName, String nsURI, String defaultNsURI,
+                    String[] nsDecls, int childCount)
+        {
+            mPrefix = prefix;
+            mLocalName = localName;
+            mNsURI = nsURI;
+            mDefaultNsURI = defaultNsURI;
+            mNsDecls = nsDecls;
+            mChildCount = childCount;
+        }
+    }
+
+    final String mSystemId;
+
+    /**
+     * Name of the charset used to decode the document; for UTF-16 also
+     * indicates endianness
+     */
+    final String mCharset;
+
+    final long mByteOffset;
+
+    final long mCharOffset;
+
+    final int mRow;
+
+    /**
+     * Offset of the checkpoint from the start of the current row (0
+     * for the first column)
+     */
+    final int mColumn;
+
+    final int mXmlVersion;
+
+    final String mXmlEncoding;
+
+    final int mStandalone;
+
+    final OpenElement[] mOpenElements;
+
+    final long mTotalElements;
+
+    final int mEntityExpansionCount;
+
+    /**
+     * Replacement texts of internal entities declared in the DTD
+     */
+    final Map<String,String> mEntities;
+
+    ReaderCheckpoint(String systemId, String charset, long byteOffset, long charOffset,
+                     int row, int column, int xmlVersion, String xmlEncoding, int standalone,
+                     OpenElement[] openElements, long totalElements, int entityExpansionCount,
+                     Map<String,String> entities)
+    {
+        mSystemId = systemId;
+        mCharset = charset;
+        mByteOffset = byteOffset;
+        mCharOffset = charOffset;
+        mRow = row;
+        mColumn = column;
+        mXmlVersion = xmlVersion;
+        mXmlEncoding = xmlEncoding;
+        mStandalone = standalone;
+        mOpenElements = openElements;
+        mTotalElements = totalElements;
+        mEntityExpansionCount = entityExpansionCount;
+        mEntities = entities;
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Accessors
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * @return System id of the document (URL of the file)
+     */
+    public String getSystemId() { return mSystemId; }
+
+    /**
+     * @return Name of the charset to use for decoding the document,
+     *   starting from the checkpoint
+     */
+    public String getCharset() { return mCharset; }
+
+    /**
+     * @return Offset of the first byte following the checkpoint (that
+     *   is, after the start or end tag)
+     */
+    public long getByteOffset() { return mByteOffset; }
+
+    public long getCharOffset() { return mCharOffset; }
+
+    public boolean isXml11() { return mXmlVersion == XmlConsts.XML_V_11; }
+
+    /**
+     * @return Number of elements open at the checkpoint
+     */
+    public int getDepth() { return mOpenElements.length; }
+
+    /**
+     * @return Internal entities declared in the DTD of the document,
+     *   from name to replacement text
+     */
+    public Map<String,String> getEntities() {
+        return Collections.unmodifiableMap(mEntities);
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Serialization
+    ///////////////////////////////////////////////////////////
+     */
+
+    public void writeTo(OutputStream out)
+        throws IOException
+    {
+        DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out));
+        dout.writeInt(MAGIC);
+        dout.writeByte(FORMAT_VERSION);
+        writeString(dout, mSystemId);
+        dout.writeUTF(mCharset);
+        dout.writeLong(mByteOffset);
+        dout.writeLong(mCharOffset);
+        dout.writeInt(mRow);
+        dout.writeInt(mColumn);
+        dout.writeInt(mXmlVersion);
+        writeString(dout, mXmlEncoding);
+        dout.writeByte(mStandalone);
+        dout.writeLong(mTotalElements);
+        dout.writeInt(mEntityExpansionCount);
+
+        dout.writeInt(mOpenElements.length);
+        for (OpenElement elem : mOpenElements) {
+            writeString(dout, elem.mPrefix);
+            dout.writeUTF(elem.mLocalName);
+            writeString(dout, elem.mNsURI);
+            writeString(dout, elem.mDefaultNsURI);
+            dout.writeInt(elem.mChildCount);
+            dout.writeInt(elem.mNsDecls.length);
+            for (String str : elem.mNsDecls) {
+                writeString(dout, str);
+            }
+        }
+        dout.writeInt(mEntities.size());
+        for (Map.Entry<String,String> en : mEntities.entrySet()) {
+            dout.writeUTF(en.getKey());
+            writeLongString(dout, en.getValue());
+        }
+        dout.flush();
+    }
+
+    public static ReaderCheckpoint readFrom(InputStream in)
+        throws IOException
+    {
+        DataInputStream din = new DataInputStream(new BufferedInputStream(in));
+        if (din.readInt() != MAGIC) {
+            throw new IOException("Invalid reader checkpoint: does not start with the expected signature");
+        }
+        int version = din.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported reader checkpoint format version "+version
+                    +"; only version "+FORMAT_VERSION+" supported");
+        }
+        String systemId = readString(din);
+        String charset = din.readUTF();
+        long byteOffset = din.readLong();
+        long charOffset = din.readLong();
+        int row = din.readInt();
+        int column = din.readInt();
+        int xmlVersion = din.readInt();
+        String xmlEncoding = readString(din);
+        int standalone = din.readUnsignedByte();
+        long totalElements = din.readLong();
+        int entityExpansionCount = din.readInt();
+
+        OpenElement[] elems = new OpenElement[din.readInt()];
+        for (int i = 0; i < elems.length; ++i) {
+            String prefix = readString(din);
+            String localName = din.readUTF();
+            String nsURI = readString(din);
+            String defaultNsURI = readString(din);
+            int childCount = din.readInt();
+            String[] nsDecls = new String[din.readInt()];
+            for (int j = 0; j < nsDecls.length; ++j) {
+                nsDecls[j] = readString(din);
+            }
+            elems[i] = new OpenElement(prefix, localName, nsURI, defaultNsURI, nsDecls, childCount);
+        }
+        int entCount = din.readInt();
+        Map<String,String> entities = new LinkedHashMap<String,String>();
+        for (int i = 0; i < entCount; ++i) {
+            String name = din.readUTF();
+            entities.put(name, readLongString(din));
+        }
+        return new ReaderCheckpoint(systemId, charset, byteOffset, charOffset, row, column,
+                xmlVersion, xmlEncoding, standalone, elems, totalElements, entityExpansionCount,
+                entities);
+    }
+
+    private static void writeString(DataOutput out, String str)
+        throws IOException
+    {
+        out.writeBoolean(str != null);
+        if (str != null) {
+            out.writeUTF(str);
+        }
+    }
+
+    private static String readString(DataInput in)
+        throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Entity replacement texts may exceed the length limit of
+     * {@link DataOutput#writeUTF}, so they are written as chars
+     */
+    private static void writeLongString(DataOutput out, String str)
+        throws IOException
+    {
+        out.writeInt(str.length());
+        out.writeChars(str);
+    }
+
+    private static String readLongString(DataInput in)
+        throws IOException
+    {
+        char[] ch = new char[in.readInt()];
+        for (int i = 0; i < ch.length; ++i) {
+            ch[i] = in.readChar();
+        }
+        return new String(ch);
+    }
+}
@@ -25,4 +25,25 @@ public interface StreamReaderImpl
     public AttributeCollector getAttributeCollector();
 
     public InputElementStack getInputElementStack();
+
+    /**
+     * Method that copies all content of the current START_ELEMENT as
+     * is, if possible, leaving reader at the matching END_ELEMENT.
+     *
+     * @return True if content was copied; false if raw copying was
+     *   not possible (and nothing was done)
+     *
+     * @since 5.0
+     */
+    public boolean copyRawContent(java.io.Writer w) throws XMLStreamException;
+
+    /**
+     * Method that checks whether the current text event is indentation
+     * (a linefeed followed by spaces or tabs) recognized by the reader.
+     *
+     * @return Indentation character (space or tab) if so; 0 if not
+     *
+     * @since 5.0
+     */
+    public char getIndentationChar();
 }
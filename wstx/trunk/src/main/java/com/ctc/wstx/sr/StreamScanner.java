@@ -86,6 +86,14 @@ public abstract class StreamScanner
      */
     protected final static char CHAR_LOWEST_LEGAL_LOCALNAME_CHAR = '-';
 
+    /**
+     * Marker value returned by {@link #fullyResolveEntity(boolean,boolean)}
+     * to indicate that entity was expanded without a new input source.
+     *
+     * @since 5.0
+     */
+    protected final static int CHAR_ENTITY_INLINED = -1;
+
     /*
     ///////////////////////////////////////////////////////////
     // Character validity constants, structs
@@ -181,11 +189,13 @@ public abstract class StreamScanner
      */
 
     /**
-     * Copy of the configuration object passed by the factory.
+     * Configuration object passed by the factory.
      * Contains immutable settings for this reader (or in case
-     * of DTD parsers, reader that uses it)
+     * of DTD parsers, reader that uses it). May be a snapshot shared
+     * with other readers; if so, it is replaced with a private copy
+     * before being modified.
      */
-    protected final ReaderConfig mConfig;
+    protected ReaderConfig mConfig;
 
     // // // Various extracted settings:
 
@@ -364,6 +374,16 @@ public abstract class StreamScanner
      */
     protected EntityDecl mCurrEntity;
 
+    /**
+     * Replacement text of the internal entity last expanded "inline",
+     * that is, without constructing a new input source; set when
+     * {@link #fullyResolveEntity(boolean,boolean)} returns
+     * {@link #CHAR_ENTITY_INLINED}.
+     *
+     * @since 5.0
+     */
+    protected char[] mInlinedEntityText;
+
     /*
     ///////////////////////////////////////////////////////////
     // Life-cycle
@@ -376,6 +396,19 @@ public abstract class StreamScanner
      */
     protected StreamScanner(WstxInputSource input, ReaderConfig cfg,
                             XMLResolver res)
+    {
+        this(input, cfg, cfg.getSymbols(), res);
+    }
+
+    /**
+     * Constructor used when the symbol table to use is not contained
+     * in the configuration object (which is the case for shared
+     * configuration snapshots)
+     *
+     * @since 5.0
+     */
+    protected StreamScanner(WstxInputSource input, ReaderConfig cfg,
+                            SymbolTable symbols, XMLResolver res)
     {
         super();
         mInput = input;
@@ -383,7 +416,7 @@ public abstract class StreamScanner
         mRootInput = input;
 
         mConfig = cfg;
-        mSymbols = cfg.getSymbols();
+        mSymbols = symbols;
         int cf = cfg.getConfigFlags();
         mCfgNsEnabled = (cf & CFG_NAMESPACE_AWARE) != 0;
         mCfgReplaceEntities = (cf & CFG_REPLACE_ENTITY_REFS) != 0;
@@ -993,6 +1026,7 @@ public abstract class StreamScanner
         throws XMLStreamException
     {
         WstxInputSource input = mInput;
+        inputBufferChanging();
         do {
             /* Need to make sure offsets are properly updated for error
              * reporting purposes, and do this now while previous amounts
@@ -1061,6 +1095,7 @@ public abstract class StreamScanner
         mCurrInputProcessed += mInputEnd;
         mCurrInputRowStart -= mInputEnd;
         verifyLimit("Maximum document characters", mConfig.getMaxCharacters(), mCurrInputProcessed);
+        inputBufferChanging();
         try {
             int count = mInput.readInto(this);
             return (count > 0);
@@ -1099,6 +1134,7 @@ public abstract class StreamScanner
         if (currAmount >= minAmount) {
             return true;
         }
+        inputBufferChanging();
         try {
             return mInput.readMore(this, minAmount);
         } catch (IOException ie) {
@@ -1106,6 +1142,16 @@ public abstract class StreamScanner
         }
     }
 
+    /**
+     * Method called right before contents of the current input buffer
+     * may be overwritten (or replaced by contents of another input
+     * source), to give sub-classes a chance to retain any data they
+     * still refer to. Default implementation does nothing.
+     *
+     * @since 5.0
+     */
+    protected void inputBufferChanging() { }
+
     protected void closeAllInput(boolean force)
         throws XMLStreamException
     {
@@ -1515,6 +1561,21 @@ public abstract class StreamScanner
      */
     protected int fullyResolveEntity(boolean allowExt)
         throws XMLStreamException
+    {
+        return fullyResolveEntity(allowExt, false);
+    }
+
+    /**
+     * @param allowInline If true, caller can handle expansion of internal
+     *   entities with plain text replacement text without a new input
+     *   source: if such entity is found, {@link #CHAR_ENTITY_INLINED} is
+     *   returned, and replacement text is available from
+     *   {@link #mInlinedEntityText}.
+     *
+     * @since 5.0
+     */
+    protected int fullyResolveEntity(boolean allowExt, boolean allowInline)
+        throws XMLStreamException
     {
         char c = getNextCharFromCurrent(SUFFIX_IN_ENTITY_REF);
         // Do we have a (numeric) character entity reference?
@@ -1569,6 +1630,11 @@ public abstract class StreamScanner
             return d;
         }
 
+        if (allowInline && !mCfgTreatCharRefsAsEntities) {
+            if (expandEntityInline(id)) {
+                return CHAR_ENTITY_INLINED;
+            }
+        }
         final EntityDecl e = expandEntity(id, allowExt, null);
         if (mCfgTreatCharRefsAsEntities) {
             mCurrEntity = e;
@@ -1704,6 +1770,34 @@ public abstract class StreamScanner
         initInputSource(newInput, isExt, id);
     }
 
+    /**
+     * Method called to check if the specified entity is an internal
+     * entity with plain text replacement text, and if so, to "expand"
+     * it without constructing a new input source. Same limits apply
+     * as with regular expansion.
+     *
+     * @return True if entity was expanded inline (replacement text is
+     *   in {@link #mInlinedEntityText}); false if regular expansion is
+     *   needed
+     */
+    private boolean expandEntityInline(String id)
+        throws XMLStreamException
+    {
+        mCurrName = id;
+        EntityDecl ed = findEntity(id, null);
+        if (!(ed instanceof IntEntity)) {
+            return false;
+        }
+        char[] text = ((IntEntity) ed).getPlainTextReplacement();
+        if (text == null) {
+            return false;
+        }
+        verifyLimit("Maximum entity expansion count", mConfig.getMaxEntityCount(), ++mEntityExpansionCount);
+        verifyLimit("Maximum entity expansion depth", mConfig.getMaxEntityDepth(), mInput.getEntityDepth() + 1);
+        mInlinedEntityText = text;
+        return true;
+    }
+
     /**
      *<p>
      * note: only called from the local expandEntity() method
@@ -0,0 +1,146 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ctc.wstx.sr;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.ctc.wstx.util.ExceptionUtil;
+import com.ctc.wstx.util.TextBuffer;
+
+/**
+ * {@link Reader} implementation returned by
+ * {@link BasicStreamReader#getTextReader}, used for accessing contents
+ * of a (possibly very long) text event without buffering all of it.
+ * Text is parsed by the owning stream reader a chunk (text buffer
+ * segment) at a time, as content is read.
+ *<p>
+ * Instances are only valid as long as the owning stream reader is not
+ * advanced; after that, reads will fail with an {@link IOException}.
+ *
+ * @since 5.0
+ */
+final class StreamingTextReader
+    extends Reader
+{
+    final BasicStreamReader mOwner;
+
+    /**
+     * Offset of the next character to return, within contents of the
+     * current chunk in the text buffer
+     */
+    int mChunkPtr = 0;
+
+    /**
+     * Set to true once all content has been returned
+     */
+    boolean mEOF = false;
+
+    StreamingTextReader(BasicStreamReader owner)
+    {
+        mOwner = owner;
+    }
+
+    public int read(char[] cbuf, int offset, int len)
+        throws IOException
+    {
+        if (len < 1) {
+            return 0;
+        }
+        if (mEOF) {
+            return -1;
+        }
+        checkActive();
+        TextBuffer tb = mOwner.mTextBuffer;
+        while (mChunkPtr >= tb.size()) {
+            if (!readMore()) {
+                return -1;
+            }
+        }
+        int count = tb.contentsToArray(mChunkPtr, cbuf, offset, len);
+        mChunkPtr += count;
+        return count;
+    }
+
+    public int read() throws IOException
+    {
+        char[] buf = new char[1];
+        return (read(buf, 0, 1) < 0) ? -1 : buf[0];
+    }
+
+    public long skip(long amount)
+        throws IOException
+    {
+        if (mEOF) {
+            return 0L;
+        }
+        checkActive();
+        long skipped = 0L;
+        TextBuffer tb = mOwner.mTextBuffer;
+        while (skipped < amount && !mEOF) {
+            int avail = tb.size() - mChunkPtr;
+            if (avail <= 0) {
+                if (!readMore()) {
+                    break;
+                }
+                continue;
+            }
+            int count = (int) Math.min((long) avail, amount - skipped);
+            mChunkPtr += count;
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    public boolean ready() {
+        return !mEOF && mOwner.isActiveTextReader(this)
+            && (mChunkPtr < mOwner.mTextBuffer.size());
+    }
+
+    /**
+     * Closing does not affect the owning stream reader: any content
+     * not read will be skipped when the stream reader is advanced.
+     */
+    public void close() {
+        mEOF = true;
+    }
+
+    private void checkActive()
+        throws IOException
+    {
+        if (!mOwner.isActiveTextReader(this)) {
+            throw new IOException("Stream reader has been advanced (or text accessed by other means) since the text Reader was constructed");
+        }
+    }
+
+    private boolean readMore()
+        throws IOException
+    {
+        try {
+            if (mOwner.readNextTextChunk()) {
+                mChunkPtr = 0;
+                return true;
+            }
+        } catch (XMLStreamException e) {
+            throw ExceptionUtil.constructIOException(e.getMessage(), e);
+        }
+        mEOF = true;
+        return false;
+    }
+}
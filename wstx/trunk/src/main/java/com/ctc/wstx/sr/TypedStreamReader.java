@@ -36,6 +36,7 @@ import com.ctc.wstx.cfg.ErrorConsts;
 import com.ctc.wstx.io.BranchingReaderSource;
 import com.ctc.wstx.io.InputBootstrapper;
 import com.ctc.wstx.io.WstxInputData;
+import com.ctc.wstx.util.SymbolTable;
 
 /**
  * Complete implementation of {@link org.codehaus.stax2.XMLStreamReader2},
@@ -88,11 +89,11 @@ public class TypedStreamReader
 
     protected TypedStreamReader(InputBootstrapper bs,
                                 BranchingReaderSource input, ReaderCreator owner,
-                                ReaderConfig cfg, InputElementStack elemStack,
-                                boolean forER)
+                                ReaderConfig cfg, SymbolTable symbols,
+                                InputElementStack elemStack, boolean forER)
         throws XMLStreamException
     {
-        super(bs, input, owner, cfg, elemStack, forER);
+        super(bs, input, owner, cfg, symbols, elemStack, forER);
     }
 
     /**
@@ -110,7 +111,7 @@ public class TypedStreamReader
     {
 
         TypedStreamReader sr = new TypedStreamReader
-            (bs, input, owner, cfg, createElementStack(cfg), forER);
+            (bs, input, owner, cfg, cfg.getSymbols(), createElementStack(cfg), forER);
         return sr;
     }
 
@@ -35,6 +35,7 @@ import com.ctc.wstx.dtd.DTDSubset;
 import com.ctc.wstx.dtd.DTDValidatorBase;
 import com.ctc.wstx.dtd.FullDTDReader;
 import com.ctc.wstx.ent.EntityDecl;
+import com.ctc.wstx.util.SymbolTable;
 import com.ctc.wstx.util.URLUtil;
 
 /**
@@ -99,11 +100,11 @@ public class ValidatingStreamReader
 
     private ValidatingStreamReader(InputBootstrapper bs,
                                    BranchingReaderSource input, ReaderCreator owner,
-                                   ReaderConfig cfg, InputElementStack elemStack,
-                                   boolean forER)
+                                   ReaderConfig cfg, SymbolTable symbols,
+                                   InputElementStack elemStack, boolean forER)
         throws XMLStreamException
     {
-        super(bs, input, owner, cfg, elemStack, forER);
+        super(bs, input, owner, cfg, symbols, elemStack, forER);
     }
 
     /**
@@ -123,9 +124,25 @@ public class ValidatingStreamReader
         (BranchingReaderSource input, ReaderCreator owner,
          ReaderConfig cfg, InputBootstrapper bs, boolean forER)
         throws XMLStreamException
+    {
+        return createValidatingStreamReader(input, owner, cfg, cfg.getSymbols(), bs, forER);
+    }
+
+    /**
+     * Factory method for constructing readers that use a configuration
+     * object without symbol table (shared configuration snapshot).
+     *
+     * @param symbols Symbol table reader is to use
+     *
+     * @since 5.0
+     */
+    public static ValidatingStreamReader createValidatingStreamReader
+        (BranchingReaderSource input, ReaderCreator owner,
+         ReaderConfig cfg, SymbolTable symbols, InputBootstrapper bs, boolean forER)
+        throws XMLStreamException
     {
         ValidatingStreamReader sr = new ValidatingStreamReader
-            (bs, input, owner, cfg, createElementStack(cfg), forER);
+            (bs, input, owner, cfg, symbols, createElementStack(cfg), forER);
         return sr;
     }
 
@@ -268,7 +285,7 @@ public class ValidatingStreamReader
             }
 
             try {
-                intSubset = FullDTDReader.readInternalSubset(this, mInput, mConfig,
+                intSubset = FullDTDReader.readInternalSubset(this, mInput, ensurePrivateConfig(),
                                                              hasConfigFlags(CFG_VALIDATE_AGAINST_DTD),
                                                              mDocXmlVersion);
             } finally {
@@ -421,6 +438,9 @@ public class ValidatingStreamReader
 
         if (cache) {
             DTDSubset extSubset = findCachedSubset(dtdId, intSubset);
+            if (mMetrics != null) {
+                mMetrics.dtdCacheAccessed(extSubset != null);
+            }
             if (extSubset != null) {
                 return extSubset;
             }
@@ -460,7 +480,7 @@ public class ValidatingStreamReader
             throwFromIOE(ioe);
         }
 
-        DTDSubset extSubset = FullDTDReader.readExternalSubset(src, mConfig, intSubset,
+        DTDSubset extSubset = FullDTDReader.readExternalSubset(src, ensurePrivateConfig(), intSubset,
                                                                hasConfigFlags(CFG_VALIDATE_AGAINST_DTD),
                                                                mDocXmlVersion);
         
@@ -17,6 +17,10 @@ package com.ctc.wstx.stax;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.xml.stream.*;
 import javax.xml.stream.util.XMLEventAllocator;
@@ -46,7 +50,10 @@ import com.ctc.wstx.dom.WstxDOMWrappingReader;
 import com.ctc.wstx.evt.DefaultEventAllocator;
 import com.ctc.wstx.evt.WstxEventReader;
 import com.ctc.wstx.exc.WstxIOException;
+import com.ctc.wstx.ent.EntityDecl;
 import com.ctc.wstx.io.*;
+import com.ctc.wstx.sr.BasicStreamReader;
+import com.ctc.wstx.sr.ReaderCheckpoint;
 import com.ctc.wstx.sr.ValidatingStreamReader;
 import com.ctc.wstx.sr.ReaderCreator;
 import com.ctc.wstx.util.DefaultXmlSymbolTable;
@@ -100,6 +107,15 @@ public class WstxInputFactory
      */
     protected final ReaderConfig mConfig;
 
+    /**
+     * Immutable snapshot of {@link #mConfig}, shared by all readers
+     * created by this factory; rebuilt when the configuration changes
+     * (as indicated by its modification count).
+     *
+     * @since 5.0
+     */
+    private volatile ReaderConfig mConfigSnapshot;
+
     // // // Stax - mandated objects:
 
     protected XMLEventAllocator mAllocator = null;
@@ -435,7 +451,7 @@ public class WstxInputFactory
          * input stream created from the URL
          */
         return new WstxEventReader(createEventAllocator(),
-                                   createSR(createPrivateConfig(), src, true, true));
+                                   createSR(getConfigSnapshot(), src, true, true));
     }
 
     public XMLEventReader2 createXMLEventReader(File f)
@@ -454,7 +470,7 @@ public class WstxInputFactory
         /* true for auto-close, since caller has no access to the underlying
          * input stream created from the URL
          */
-        return createSR(createPrivateConfig(), src, false, true);
+        return createSR(getConfigSnapshot(), src, false, true);
     }
 
     /**
@@ -507,6 +523,82 @@ public class WstxInputFactory
         return mConfig;
     }
 
+    /*
+    ///////////////////////////////////////////////////////////
+    // Woodstox-specific factory methods
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Factory method for constructing a reader that resumes parsing of
+     * the given file from a checkpoint created earlier (see
+     * {@link BasicStreamReader#createCheckpoint}). Reader starts at
+     * START_DOCUMENT; first event returned by <code>next()</code> is the
+     * one following the start or end tag the checkpoint was created at.
+     * Elements open at the checkpoint are open for the reader too
+     * (and can be accessed via namespace context and depth), and will be
+     * closed by their end tags as usual; internal entities that were
+     * declared in the DTD can be referenced.
+     *
+     * @since 5.0
+     */
+    public XMLStreamReader2 createResumedReader(ReaderCheckpoint cp, File f)
+        throws XMLStreamException
+    {
+        try {
+            FileInputStream in = new FileInputStream(f);
+            in.getChannel().position(cp.getByteOffset());
+            // true for auto-close, as caller has no access to the stream
+            return createResumedReader(cp, in, true);
+        } catch (IOException ioe) {
+            throw new WstxIOException(ioe);
+        }
+    }
+
+    /**
+     * Factory method for constructing a reader that resumes parsing of
+     * the file accessed via given channel from a checkpoint; similar to
+     * {@link #createResumedReader(ReaderCheckpoint, File)}, except that
+     * the channel is only closed by the reader if auto-closing of input
+     * is enabled. Note that reading starts from the current position of
+     * the channel, which will be changed to the position of the
+     * checkpoint.
+     *
+     * @since 5.0
+     */
+    public XMLStreamReader2 createResumedReader(ReaderCheckpoint cp, FileChannel ch)
+        throws XMLStreamException
+    {
+        try {
+            ch.position(cp.getByteOffset());
+        } catch (IOException ioe) {
+            throw new WstxIOException(ioe);
+        }
+        return createResumedReader(cp, Channels.newInputStream(ch), mConfig.willAutoCloseInput());
+    }
+
+    protected XMLStreamReader2 createResumedReader(ReaderCheckpoint cp, InputStream in,
+                                                   boolean autoCloseInput)
+        throws XMLStreamException
+    {
+        ReaderConfig cfg = createPrivateConfig();
+        cfg.enableXml11(cp.isXml11());
+        // Entities declared in DTD are passed as custom entities; ones set explicitly take precedence
+        Map<String,Object> entities = new HashMap<String,Object>(cp.getEntities());
+        for (Map.Entry<String,EntityDecl> en : cfg.getCustomInternalEntities().entrySet()) {
+            entities.put(en.getKey(), en.getValue().getReplacementChars());
+        }
+        cfg.setCustomInternalEntities(entities);
+
+        String enc = cp.getCharset();
+        SystemId systemId = SystemId.construct(cp.getSystemId());
+        Reader r = DefaultInputResolver.constructOptimizedReader(cfg, in, cp.isXml11(), enc);
+        BasicStreamReader sr = (BasicStreamReader) createSR(cfg, systemId,
+                ReaderBootstrapper.getInstance(null, systemId, r, enc), false, autoCloseInput);
+        sr.resumeFromCheckpoint(cp);
+        return sr;
+    }
+
     /*
     ///////////////////////////////////////////////////////////
     // Internal methods:
@@ -539,10 +631,20 @@ public class WstxInputFactory
             autoCloseInput = cfg.willAutoCloseInput();
         }
 
+        // Shared config snapshots have no symbol table; need a child table
+        SymbolTable symbols = cfg.getSymbols();
+        if (symbols == null) {
+            symbols = mSymbols.makeChild();
+        }
+
         Reader r;
         try {
             r = bs.bootstrapInput(cfg, true, XmlConsts.XML_V_UNKNOWN);
             if (bs.declaredXml11()) {
+                // xml 1.1 is per-document state; can not modify shared snapshot
+                if (cfg.isFrozen()) {
+                    cfg = cfg.createNonShared(symbols);
+                }
                 cfg.enableXml11(true);
             }
         } catch (IOException ie) {
@@ -555,7 +657,7 @@ public class WstxInputFactory
         BranchingReaderSource input = InputSourceFactory.constructDocumentSource
             (cfg, bs, null, systemId, r, autoCloseInput);
 
-        return ValidatingStreamReader.createValidatingStreamReader(input, this, cfg, bs, forER);
+        return ValidatingStreamReader.createValidatingStreamReader(input, this, cfg, symbols, bs, forER);
     }
 
     /**
@@ -612,10 +714,13 @@ public class WstxInputFactory
         if (in == null) {
             throw new IllegalArgumentException("Null InputStream is not a valid argument");
         }
-        ReaderConfig cfg = createPrivateConfig();
+        ReaderConfig cfg = getConfigSnapshot();
         if (enc == null || enc.length() == 0) {
-            return createSR(cfg, systemId, StreamBootstrapper.getInstance
-                            (null, systemId, in), forER, autoCloseInput);
+            return createSR(cfg, systemId, in, forER, autoCloseInput);
+        }
+        if (cfg.willReadInputAhead() || cfg.willDecompressInput()) {
+            in = wrapInputStream(cfg, in, autoCloseInput);
+            autoCloseInput |= cfg.willReadInputAhead();
         }
 
         /* !!! 17-Feb-2006, TSa: We don't yet know if it's xml 1.0 or 1.1;
@@ -645,16 +750,44 @@ public class WstxInputFactory
     		InputStream in, boolean forER, boolean autoCloseInput)
         throws XMLStreamException
     {
+        if (cfg.willReadInputAhead() || cfg.willDecompressInput()) {
+            in = wrapInputStream(cfg, in, autoCloseInput);
+            // read-ahead stream must always be closed, to stop the thread
+            autoCloseInput |= cfg.willReadInputAhead();
+        }
         return doCreateSR(cfg, systemId,
 			  StreamBootstrapper.getInstance(null, systemId, in),
 			  forER, autoCloseInput);
     }
 
+    /**
+     * Helper method for adding read-ahead and/or decompression of input,
+     * if enabled by configuration.
+     *
+     * @param autoCloseInput Whether underlying stream is to be closed
+     *   when reader is closed, even if auto-closing is not enabled
+     *   by configuration
+     */
+    protected InputStream wrapInputStream(ReaderConfig cfg, InputStream in,
+            boolean autoCloseInput)
+        throws XMLStreamException
+    {
+        if (cfg.willReadInputAhead()) {
+            return ReadAheadInputStream.construct(in, autoCloseInput || cfg.willAutoCloseInput(),
+                    cfg.willDecompressInput());
+        }
+        try {
+            return InputDecompressor.wrapIfCompressed(in);
+        } catch (IOException ioe) {
+            throw new WstxIOException(ioe);
+        }
+    }
+
     protected XMLStreamReader2 createSR(SystemId systemId, Reader r,
     		boolean forER, boolean autoCloseInput)
         throws XMLStreamException
     {
-        return createSR(createPrivateConfig(), systemId,
+        return createSR(getConfigSnapshot(), systemId,
         		ReaderBootstrapper.getInstance
         		(null, systemId, r, null), forER, autoCloseInput);
     }
@@ -662,7 +795,7 @@ public class WstxInputFactory
     protected XMLStreamReader2 createSR(File f, boolean forER, boolean autoCloseInput)
         throws XMLStreamException
     {
-        ReaderConfig cfg = createPrivateConfig();
+        ReaderConfig cfg = getConfigSnapshot();
         try {
             /* 18-Nov-2008, TSa: If P_BASE_URL is set, and File reference is
              *   relative, let's resolve against base...
@@ -696,7 +829,7 @@ public class WstxInputFactory
     		boolean forER)
         throws XMLStreamException
     {
-        ReaderConfig cfg = createPrivateConfig();
+        ReaderConfig cfg = getConfigSnapshot();
         Reader r = null;
         InputStream in = null;
         String pubId = null;
@@ -764,8 +897,10 @@ public class WstxInputFactory
             autoCloseInput = cfg.willAutoCloseInput();
         } else if (src instanceof DOMSource) {
             DOMSource domSrc = (DOMSource) src;
-            // SymbolTable not used by the DOM-based 'reader':
-            return WstxDOMWrappingReader.createFrom(domSrc, cfg);
+            /* SymbolTable not used by the DOM-based 'reader'; but it does
+             * modify its configuration directly, so can not share snapshot
+             */
+            return WstxDOMWrappingReader.createFrom(domSrc, mConfig.createNonShared(null));
         } else {
             throw new IllegalArgumentException("Can not instantiate Stax reader for XML source type "+src.getClass()+" (unrecognized type)");
         }
@@ -821,4 +956,23 @@ public class WstxInputFactory
     {
         return mConfig.createNonShared(mSymbols.makeChild());
     }
+
+    /**
+     * Method called to get the immutable snapshot of the factory's
+     * configuration, to be shared by readers this factory creates.
+     * Snapshot is only rebuilt when configuration has been changed
+     * after the previous snapshot was taken; readers that need to
+     * modify their configuration will make a private copy first.
+     *
+     * @since 5.0
+     */
+    public ReaderConfig getConfigSnapshot()
+    {
+        ReaderConfig snapshot = mConfigSnapshot;
+        if (snapshot == null || snapshot.getModCount() != mConfig.getModCount()) {
+            snapshot = mConfig.createFrozen();
+            mConfigSnapshot = snapshot;
+        }
+        return snapshot;
+    }
 }
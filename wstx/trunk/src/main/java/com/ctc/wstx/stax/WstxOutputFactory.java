@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.lang.ref.SoftReference;
 
 import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLOutputFactory;
@@ -41,13 +42,17 @@ import com.ctc.wstx.cfg.OutputConfigFlags;
 import com.ctc.wstx.dom.WstxDOMWrappingWriter;
 import com.ctc.wstx.exc.WstxIOException;
 import com.ctc.wstx.io.CharsetNames;
+import com.ctc.wstx.io.SingleByteCodec;
 import com.ctc.wstx.io.UTF8Writer;
+import com.ctc.wstx.io.WriteBehindOutputStream;
 import com.ctc.wstx.sw.AsciiXmlWriter;
+import com.ctc.wstx.sw.BaseStreamWriter;
 import com.ctc.wstx.sw.BufferingXmlWriter;
 import com.ctc.wstx.sw.ISOLatin1XmlWriter;
 import com.ctc.wstx.sw.NonNsStreamWriter;
 import com.ctc.wstx.sw.RepairingNsStreamWriter;
 import com.ctc.wstx.sw.SimpleNsStreamWriter;
+import com.ctc.wstx.sw.StreamWriterPool;
 import com.ctc.wstx.sw.XmlWriter;
 import com.ctc.wstx.util.URLUtil;
 
@@ -73,6 +78,22 @@ public class WstxOutputFactory
 
     protected final WriterConfig mConfig;
 
+    /**
+     * Immutable snapshot of {@link #mConfig}, shared by all writers
+     * created by this factory; rebuilt when the configuration changes.
+     *
+     * @since 5.0
+     */
+    private volatile WriterConfig mConfigSnapshot;
+
+    /**
+     * Per-thread pools of closed stream writers that can be reused;
+     * only used if writer recycling has been enabled (see
+     * {@link WstxOutputProperties#P_OUTPUT_RECYCLE_WRITERS}).
+     */
+    protected final ThreadLocal<SoftReference<StreamWriterPool>> mWriterPools
+        = new ThreadLocal<SoftReference<StreamWriterPool>>();
+
     /*
     ///////////////////////////////////////////////////////////
     // Life-cycle
@@ -217,6 +238,24 @@ public class WstxOutputFactory
         return mConfig;
     }
 
+    /**
+     * Method called to get the immutable snapshot of the factory's
+     * configuration, to be shared by writers this factory creates.
+     * Snapshot is only rebuilt when configuration has been changed
+     * after the previous snapshot was taken.
+     *
+     * @since 5.0
+     */
+    public WriterConfig getConfigSnapshot()
+    {
+        WriterConfig snapshot = mConfigSnapshot;
+        if (snapshot == null || snapshot.getModCount() != mConfig.getModCount()) {
+            snapshot = mConfig.createFrozen();
+            mConfigSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
     /*
     ///////////////////////////////////////////////////////////
     // Internal methods:
@@ -235,15 +274,6 @@ public class WstxOutputFactory
                                       boolean requireAutoClose)
         throws XMLStreamException
     {
-        /* Need to ensure that the configuration object is not shared
-         * any more; otherwise later changes via factory could be
-         * visible half-way through output...
-         */
-        WriterConfig cfg = mConfig.createNonShared();
-        XmlWriter xw;
-
-        boolean autoCloseOutput = requireAutoClose || mConfig.willAutoCloseOutput();
-
         if (w == null) {
             if (enc == null) {
                 enc = WstxOutputProperties.DEFAULT_OUTPUT_ENCODING;
@@ -257,7 +287,52 @@ public class WstxOutputFactory
                     enc = CharsetNames.normalize(enc);
                 }
             }
+        } else {
+            // we may still be able to figure out the encoding:
+            if (enc == null) {
+                enc = CharsetNames.findEncodingFor(w);
+            }
+        }
+
+        // Can we just reuse a writer closed earlier?
+        StreamWriterPool pool = null;
+        if (!requireAutoClose && mConfig.willRecycleWriters()
+            && (w != null || !mConfig.willWriteBehind())) {
+            SoftReference<StreamWriterPool> ref = mWriterPools.get();
+            if (ref != null) {
+                pool = ref.get();
+            }
+            if (pool == null) {
+                pool = new StreamWriterPool();
+                mWriterPools.set(new SoftReference<StreamWriterPool>(pool));
+            } else {
+                BaseStreamWriter sw = pool.acquire(w == null, enc, mConfig);
+                if (sw != null) {
+                    if (w == null) {
+                        sw.reset(out);
+                    } else {
+                        sw.reset(w);
+                    }
+                    return sw;
+                }
+            }
+        }
 
+        /* Need to ensure that the configuration object is not shared
+         * with the factory; otherwise later changes via factory could be
+         * visible half-way through output. Immutable snapshot can be
+         * shared between writers, however.
+         */
+        WriterConfig cfg = getConfigSnapshot();
+        XmlWriter xw;
+
+        boolean autoCloseOutput = requireAutoClose || mConfig.willAutoCloseOutput();
+
+        if (w == null && cfg.willWriteBehind()) {
+            out = new WriteBehindOutputStream(out);
+        }
+
+        if (w == null) {
             try {
                 if (enc == CharsetNames.CS_UTF8) {
                     w = new UTF8Writer(cfg, out, autoCloseOutput);
@@ -267,17 +342,18 @@ public class WstxOutputFactory
                 } else if (enc == CharsetNames.CS_US_ASCII) {
                     xw = new AsciiXmlWriter(out, cfg, autoCloseOutput);
                 } else {
-                    w = new OutputStreamWriter(out, enc);
-                    xw = new BufferingXmlWriter(w, cfg, enc, autoCloseOutput, out, -1);
+                    SingleByteCodec codec = SingleByteCodec.forEncoding(enc);
+                    if (codec != null && codec.isAsciiCompatible()) {
+                        xw = new ISOLatin1XmlWriter(out, cfg, enc, autoCloseOutput, codec);
+                    } else {
+                        w = new OutputStreamWriter(out, enc);
+                        xw = new BufferingXmlWriter(w, cfg, enc, autoCloseOutput, out, -1);
+                    }
                 }
             } catch (IOException ex) {
                 throw new XMLStreamException(ex);
             }
         } else {
-            // we may still be able to figure out the encoding:
-            if (enc == null) {
-                enc = CharsetNames.findEncodingFor(w);
-            }
             try {
                 xw = new BufferingXmlWriter(w, cfg, enc, autoCloseOutput, null, -1);
             } catch (IOException ex) {
@@ -285,7 +361,11 @@ public class WstxOutputFactory
             }
         }
 
-        return createSW(enc, cfg, xw);
+        XMLStreamWriter2 sw = createSW(enc, cfg, xw);
+        if (pool != null && (sw instanceof BaseStreamWriter)) {
+            pool.register((BaseStreamWriter) sw);
+        }
+        return sw;
     }
 
     /**
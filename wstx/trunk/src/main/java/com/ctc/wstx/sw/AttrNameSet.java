@@ -0,0 +1,154 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.sw;
+
+/**
+ * Simple open-addressing (linear probing) hash set, used by stream
+ * writers for checking that no attribute is written more than once for
+ * an element. Since attributes can only be written for the currently
+ * open start element, a single instance is reused for all elements
+ * output by a writer: clearing is done by incrementing a generation
+ * marker, so that after the table has grown to its working size no
+ * further allocations are needed.
+ *<p>
+ * Names are compared by identity first, since they usually are
+ * either String constants or otherwise canonicalized; but equality is
+ * still checked to guarantee correctness.
+ *
+ * @since 5.0
+ */
+final class AttrNameSet
+{
+    final static int INIT_SIZE = 16;
+
+    /**
+     * Entries: 2 Strings per slot, namespace URI (never null; "" for
+     * no namespace) followed by local name.
+     */
+    private String[] mNames;
+
+    /**
+     * Generation marker for each slot; slot is in use only if its marker
+     * equals {@link #mGeneration}.
+     */
+    private int[] mSlotGenerations;
+
+    private int mGeneration = 1;
+
+    private int mCount;
+
+    public AttrNameSet()
+    {
+        mNames = new String[INIT_SIZE * 2];
+        mSlotGenerations = new int[INIT_SIZE];
+    }
+
+    /**
+     * Method called to clear the set, when a new start element is
+     * opened.
+     */
+    public void reset()
+    {
+        if (mCount > 0) {
+            mCount = 0;
+            if (++mGeneration == 0) { // wrapped around (very unlikely)
+                java.util.Arrays.fill(mSlotGenerations, 0);
+                mGeneration = 1;
+            }
+        }
+    }
+
+    /**
+     * @return True if name was added; false if it was already
+     *   contained in the set
+     */
+    public boolean add(String nsURI, String localName)
+    {
+        if (nsURI == null) {
+            nsURI = "";
+        }
+        if ((mCount + mCount) >= mSlotGenerations.length) {
+            expand();
+        }
+        final int[] gens = mSlotGenerations;
+        final String[] names = mNames;
+        final int mask = gens.length - 1;
+        final int gen = mGeneration;
+        int ix = hash(nsURI, localName) & mask;
+
+        while (gens[ix] == gen) {
+            int ptr = ix+ix;
+            String ln = names[ptr+1];
+            if (ln == localName || ln.equals(localName)) {
+                String uri = names[ptr];
+                if (uri == nsURI || uri.equals(nsURI)) {
+                    return false;
+                }
+            }
+            ix = (ix + 1) & mask;
+        }
+        gens[ix] = gen;
+        names[ix+ix] = nsURI;
+        names[ix+ix+1] = localName;
+        ++mCount;
+        return true;
+    }
+
+    /**
+     * Helper method used to construct description of an attribute name,
+     * for error messages.
+     */
+    public static String describe(String nsURI, String localName)
+    {
+        if (nsURI != null && nsURI.length() > 0) {
+            return "{"+nsURI + "} " +localName;
+        }
+        return localName;
+    }
+
+    private void expand()
+    {
+        final String[] oldNames = mNames;
+        final int[] oldGens = mSlotGenerations;
+        final int gen = mGeneration;
+        final int size = oldGens.length << 1;
+        final int mask = size - 1;
+        final String[] names = new String[size * 2];
+        final int[] gens = new int[size];
+
+        for (int i = 0; i < oldGens.length; ++i) {
+            if (oldGens[i] == gen) {
+                String uri = oldNames[i+i];
+                String ln = oldNames[i+i+1];
+                int ix = hash(uri, ln) & mask;
+                while (gens[ix] == gen) {
+                    ix = (ix + 1) & mask;
+                }
+                gens[ix] = gen;
+                names[ix+ix] = uri;
+                names[ix+ix+1] = ln;
+            }
+        }
+        mNames = names;
+        mSlotGenerations = gens;
+    }
+
+    private static int hash(String nsURI, String localName)
+    {
+        int h = localName.hashCode() ^ (nsURI.hashCode() * 31);
+        return h ^ (h >>> 16);
+    }
+}
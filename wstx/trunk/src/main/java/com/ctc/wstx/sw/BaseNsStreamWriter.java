@@ -94,19 +94,14 @@ public abstract class BaseNsStreamWriter
      * significant improvement. As long as instances are ONLY reused
      * within context of a single writer, they stay in cheap ("Eden")
      * GC area, and thus it should be a win.
+     *<p>
+     * Pool size is not limited: instances are only returned when elements
+     * are closed, so it can not grow bigger than the maximum nesting depth
+     * of the output, and it allows writing without allocating any
+     * instances once that depth has been reached.
      */
     protected SimpleOutputElement mOutputElemPool = null;
 
-    /**
-     * Although pooled objects are small, let's limit the pool size
-     * nonetheless, to optimize memory usage for deeply nested
-     * documents. In general, even just low number like 4 levels gets
-     * decent return, but 8 should get 99% hit rate.
-     */
-    final static int MAX_POOL_SIZE = 8;
-
-    protected int mPoolSize = 0;
-
     /*
     ////////////////////////////////////////////////////
     // Life-cycle (ctors)
@@ -121,6 +116,22 @@ public abstract class BaseNsStreamWriter
         mEmptyElementHandler = cfg.getEmptyElementHandler();
     }
 
+    protected void resetState()
+    {
+        super.resetState();
+        // Elements left open (if any) can be recycled as well
+        SimpleOutputElement curr = mCurrElem;
+        while (!curr.isRoot()) {
+            SimpleOutputElement parent = curr.getParent();
+            curr.addToPool(mOutputElemPool);
+            mOutputElemPool = curr;
+            curr = parent;
+        }
+        curr.resetRoot();
+        mCurrElem = curr;
+        mRootNsContext = null;
+    }
+
     /*
     ////////////////////////////////////////////////////
     // XMLStreamWriter API
@@ -251,7 +262,6 @@ public abstract class BaseNsStreamWriter
         if (mOutputElemPool != null) {
             SimpleOutputElement newCurr = mOutputElemPool;
             mOutputElemPool = newCurr.reuseAsChild(mCurrElem, localName);
-            --mPoolSize;
             mCurrElem = newCurr;
         } else {
             mCurrElem = mCurrElem.createChild(localName);
@@ -295,7 +305,6 @@ public abstract class BaseNsStreamWriter
         if (mOutputElemPool != null) {
             SimpleOutputElement newCurr = mOutputElemPool;
             mOutputElemPool = newCurr.reuseAsChild(mCurrElem, localName);
-            --mPoolSize;
             mCurrElem = newCurr;
         } else {
             mCurrElem = mCurrElem.createChild(localName);
@@ -326,7 +335,9 @@ public abstract class BaseNsStreamWriter
             throwOutputError(ErrorConsts.WERR_ATTR_NO_ELEM);
         }
         if (mCheckAttrs) { // still need to ensure no duplicate attrs?
-            mCurrElem.checkAttrWrite(nsURI, localName);
+            if (!addAttrName(nsURI, localName)) {
+                throwOutputError(ErrorConsts.WERR_ATTR_DUPLICATE, AttrNameSet.describe(nsURI, localName));
+            }
         }
         try {
             if (mValidator == null) {
@@ -422,6 +433,9 @@ public abstract class BaseNsStreamWriter
 
         // Need bit more special handling for empty elements...
         if (emptyElem) {
+            if (mIndentState != null) {
+                indentEndTag(false);
+            }
             SimpleOutputElement curr = mCurrElem;
             mCurrElem = curr.getParent();
             if (mCurrElem.isRoot()) { // Did we close the root? (isRoot() returns true for the virtual "document node")
@@ -431,11 +445,8 @@ public abstract class BaseNsStreamWriter
                 mVldContent = mValidator.validateElementEnd
                     (curr.getLocalName(), curr.getNamespaceURI(), curr.getPrefix());
             }
-            if (mPoolSize < MAX_POOL_SIZE) {
-                curr.addToPool(mOutputElemPool);
-                mOutputElemPool = curr;
-                ++mPoolSize;
-            }
+            curr.addToPool(mOutputElemPool);
+            mOutputElemPool = curr;
         }
     }
 
@@ -480,7 +491,9 @@ public abstract class BaseNsStreamWriter
         throws XMLStreamException
     {
         if (mCheckAttrs) { // still need to ensure no duplicate attrs?
-            mCurrElem.checkAttrWrite(nsURI, localName);
+            if (!addAttrName(nsURI, localName)) {
+                throwOutputError(ErrorConsts.WERR_ATTR_DUPLICATE, AttrNameSet.describe(nsURI, localName));
+            }
         }
 
         if (mValidator != null) {
@@ -525,7 +538,9 @@ public abstract class BaseNsStreamWriter
         throws XMLStreamException
     {
         if (mCheckAttrs) { // still need to ensure no duplicate attrs?
-            mCurrElem.checkAttrWrite(nsURI, localName);
+            if (!addAttrName(nsURI, localName)) {
+                throwOutputError(ErrorConsts.WERR_ATTR_DUPLICATE, AttrNameSet.describe(nsURI, localName));
+            }
         }
 
         if (mValidator != null) {
@@ -598,6 +613,10 @@ public abstract class BaseNsStreamWriter
     {
         mAnyOutput = true;
         mStartElementOpen = true;
+        resetAttrNames();
+        if (mIndentState != null) {
+            indentStartTag();
+        }
         try {
             mWriter.writeStartTagStart(localName);
         } catch (IOException ioe) {
@@ -610,6 +629,10 @@ public abstract class BaseNsStreamWriter
     {
         mAnyOutput = true;
         mStartElementOpen = true;
+        resetAttrNames();
+        if (mIndentState != null) {
+            indentStartTag();
+        }
         try {
             boolean hasPrefix = (prefix != null && prefix.length() > 0);
             if (hasPrefix) {
@@ -655,12 +678,9 @@ public abstract class BaseNsStreamWriter
 
         // Ok, and then let's pop that element from the stack
         mCurrElem = thisElem.getParent();
-        // Need to return the instance to pool?
-        if (mPoolSize < MAX_POOL_SIZE) {
-            thisElem.addToPool(mOutputElemPool);
-            mOutputElemPool = thisElem;
-            ++mPoolSize;
-        }
+        // And return the instance to pool
+        thisElem.addToPool(mOutputElemPool);
+        mOutputElemPool = thisElem;
 
         if (mCheckStructure) {
             if (expName != null) {
@@ -696,6 +716,9 @@ public abstract class BaseNsStreamWriter
                 // We could write an empty element, implicitly?
                 if (allowEmpty) {
                     mWriter.writeStartTagEmptyEnd();
+                    if (mIndentState != null) {
+                        indentEndTag(false);
+                    }
                     if (mCurrElem.isRoot()) {
                         mState = STATE_EPILOG;
                     }
@@ -711,6 +734,9 @@ public abstract class BaseNsStreamWriter
             }
         }
 
+        if (mIndentState != null) {
+            indentEndTag(true);
+        }
         try {
             mWriter.writeEndTag(prefix, localName);
         } catch (IOException ioe) {
@@ -16,6 +16,7 @@
 package com.ctc.wstx.sw;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.text.MessageFormat;
 
@@ -41,12 +42,14 @@ import com.ctc.wstx.cfg.ErrorConsts;
 import com.ctc.wstx.cfg.OutputConfigFlags;
 import com.ctc.wstx.cfg.XmlConsts;
 import com.ctc.wstx.exc.*;
+import com.ctc.wstx.io.CharsetNames;
 import com.ctc.wstx.io.WstxInputLocation;
 import com.ctc.wstx.sr.StreamReaderImpl;
 import com.ctc.wstx.sr.AttributeCollector;
 import com.ctc.wstx.sr.InputElementStack;
 import com.ctc.wstx.util.DataUtil;
 import com.ctc.wstx.util.StringUtil;
+import com.ctc.wstx.util.TextBuffer;
 
 /**
  * Base class for {@link XMLStreamWriter} implementations Woodstox has.
@@ -80,6 +83,19 @@ public abstract class BaseStreamWriter
 
     protected final static int DEFAULT_COPYBUFFER_LEN = 512;
 
+    // // // Indentation state flags
+
+    /**
+     * Flag that indicates that an element (or document level) has had
+     * child elements, comments or processing instructions
+     */
+    protected final static byte INDENT_HAS_MARKUP = 1;
+
+    /**
+     * Flag that indicates that an element has had textual content
+     */
+    protected final static byte INDENT_HAS_TEXT = 2;
+
     /*
     ///////////////////////////////////////////////////////////
     // Output objects
@@ -100,19 +116,45 @@ public abstract class BaseStreamWriter
      */
     protected char[] mCopyBuffer = null;
 
+    /**
+     * Set used for verifying that attribute names of the currently open
+     * start element are unique, if such checks are enabled. Constructed
+     * when first needed, and then reused for all elements.
+     */
+    AttrNameSet mAttrNames = null;
+
+    /**
+     * Pool this writer is to be returned to when closed, if the factory
+     * that created it has writer recycling enabled.
+     */
+    StreamWriterPool mPool = null;
+
+    /**
+     * Flag set when this writer has been closed and returned to
+     * {@link #mPool}; needed to make further calls to close methods
+     * no-ops.
+     */
+    boolean mInPool = false;
+
     /*
     ///////////////////////////////////////////////////////////
     // Per-factory configuration (options, features)
     ///////////////////////////////////////////////////////////
      */
 
-    protected final WriterConfig mConfig;
+    /**
+     * Configuration of this writer; may be a snapshot shared with
+     * other writers, in which case it is replaced with a private copy
+     * before being modified.
+     */
+    protected WriterConfig mConfig;
 
     // // // Specialized configuration flags, extracted from config flags:
 
     protected final boolean mCfgCDataAsText;
     protected final boolean mCfgCopyDefaultAttrs;
     protected final boolean mCfgAutomaticEmptyElems;
+    protected final boolean mCfgIndentMixedContent;
 
     // NOTE: can not be final, may be enabled when schema (etc) validation enabled
 
@@ -205,6 +247,17 @@ public abstract class BaseStreamWriter
     
     protected boolean mReturnNullForDefaultNamespace;
 
+    /**
+     * Indentation state flags for the document level (first entry) and
+     * each open element, if output is to be indented; null if not.
+     */
+    protected byte[] mIndentState;
+
+    /**
+     * Nesting level of output, used for indentation
+     */
+    protected int mIndentDepth = 0;
+
     /*
     ////////////////////////////////////////////////////
     // Life-cycle
@@ -225,6 +278,10 @@ public abstract class BaseStreamWriter
         mCfgAutomaticEmptyElems = (flags & OutputConfigFlags.CFG_AUTOMATIC_EMPTY_ELEMENTS) != 0;
         mCfgCDataAsText = (flags & OutputConfigFlags.CFG_OUTPUT_CDATA_AS_TEXT) != 0;
         mCfgCopyDefaultAttrs = (flags & OutputConfigFlags.CFG_COPY_DEFAULT_ATTRS) != 0;
+        mCfgIndentMixedContent = (flags & OutputConfigFlags.CFG_INDENT_MIXED_CONTENT) != 0;
+        if (cfg.getIndentation() != null) {
+            mIndentState = new byte[16];
+        }
         
         mReturnNullForDefaultNamespace = mConfig.returnNullForDefaultNamespace();
     }
@@ -244,7 +301,13 @@ public abstract class BaseStreamWriter
          *    element, if one exists, and then closing scopes by adding
          *    matching end elements.
          */
+        if (mInPool) {
+            return;
+        }
         _finishDocument(false);
+        if (mPool != null) {
+            mPool.release(this);
+        }
     }
 
     @Override
@@ -329,6 +392,9 @@ public abstract class BaseStreamWriter
         if (mStartElementOpen) {
             closeStartElement(mEmptyElement);
         }
+        if (mIndentState != null) {
+            mIndentState[mIndentDepth] |= INDENT_HAS_TEXT;
+        }
         verifyWriteCData();
         if (mVldContent == XMLValidator.CONTENT_ALLOW_VALIDATABLE_TEXT
             && mValidator != null) {
@@ -357,6 +423,9 @@ public abstract class BaseStreamWriter
         if (mStartElementOpen) {
             closeStartElement(mEmptyElement);
         }
+        if (mIndentState != null) {
+            mIndentState[mIndentDepth] |= INDENT_HAS_TEXT;
+        }
 
         /* Not legal outside main element tree, except if it's all
          * white space
@@ -394,7 +463,13 @@ public abstract class BaseStreamWriter
                 if (inPrologOrEpilog()) {
                     mWriter.writeRaw(text, start, len);
                 } else {
-                    mWriter.writeCharacters(text, start, len);
+                    // Indentation is common, and never needs escaping:
+                    char indChar = indentationChar(text, start, len);
+                    if (indChar != 0) {
+                        mWriter.writeIndentationRun(indChar, len-1);
+                    } else {
+                        mWriter.writeCharacters(text, start, len);
+                    }
                 }
             } catch (IOException ioe) {
                 throw new WstxIOException(ioe);
@@ -411,6 +486,9 @@ public abstract class BaseStreamWriter
         if (mStartElementOpen) {
             closeStartElement(mEmptyElement);
         }
+        if (mIndentState != null) {
+            mIndentState[mIndentDepth] |= INDENT_HAS_TEXT;
+        }
 
         // Need to validate structure?
         if (mCheckStructure) {
@@ -457,6 +535,17 @@ public abstract class BaseStreamWriter
             return;
         }
 
+        // Indentation is common, and never needs escaping:
+        char indChar = indentationChar(text);
+        if (indChar != 0) {
+            try {
+                mWriter.writeIndentationRun(indChar, text.length()-1);
+            } catch (IOException ioe) {
+                throw new WstxIOException(ioe);
+            }
+            return;
+        }
+
         /* Now, would it pay off to make an intermediate copy?
          * String.getChars (which uses System.arraycopy()) is
          * very fast compared to access via String.charAt.
@@ -495,6 +584,9 @@ public abstract class BaseStreamWriter
         if (mStartElementOpen) {
             closeStartElement(mEmptyElement);
         }
+        if (mIndentState != null) {
+            indentBeforeMarkup();
+        }
 
         // 08-Dec-2005, TSa: validator-based validation?
         if (mVldContent == XMLValidator.CONTENT_ALLOW_NONE) {
@@ -527,6 +619,9 @@ public abstract class BaseStreamWriter
     {
         verifyWriteDTD();
         mDtdRootElem = ""; // marker to verify only one is output
+        if (mIndentState != null) {
+            indentBeforeMarkup();
+        }
         try {
             mWriter.writeDTD(dtd);
         } catch (IOException ioe) {
@@ -568,6 +663,9 @@ public abstract class BaseStreamWriter
         if (mStartElementOpen) {
             closeStartElement(mEmptyElement);
         }
+        if (mIndentState != null) {
+            mIndentState[mIndentDepth] |= INDENT_HAS_TEXT;
+        }
 
         // Structurally, need to check we are not in prolog/epilog.
         if (mCheckStructure) {
@@ -616,6 +714,9 @@ public abstract class BaseStreamWriter
         if (mStartElementOpen) {
             closeStartElement(mEmptyElement);
         }
+        if (mIndentState != null) {
+            indentBeforeMarkup();
+        }
 
         // Structurally, PIs are always ok (content might not be)
         // 08-Dec-2005, TSa: validator-based validation?
@@ -720,6 +821,9 @@ public abstract class BaseStreamWriter
         } catch (IOException ioe) {
             throw new WstxIOException(ioe);
         }
+        if (mIndentState != null) {
+            mIndentState[0] |= INDENT_HAS_MARKUP;
+        }
     }
 
     @Override
@@ -806,11 +910,16 @@ public abstract class BaseStreamWriter
                     if (mStartElementOpen) {
                         closeStartElement(mEmptyElement);
                     }
-                    /* No need to write as chars, should be pure space
-                     * (caller should have verified); also, no escaping
-                     * necessary.
-                     */
-                    sr.getText(wrapAsRawWriter(), preserveEventData);
+                    if (mIndentState != null) {
+                        mIndentState[mIndentDepth] |= INDENT_HAS_TEXT;
+                    }
+                    if (!copyIndentation(sr)) {
+                        /* No need to write as chars, should be pure space
+                         * (caller should have verified); also, no escaping
+                         * necessary.
+                         */
+                        sr.getText(wrapAsRawWriter(), preserveEventData);
+                    }
                 }
                 return;
 
@@ -823,6 +932,9 @@ public abstract class BaseStreamWriter
                     if (mStartElementOpen) {
                         closeStartElement(mEmptyElement);
                     }
+                    if (mIndentState != null) {
+                        mIndentState[mIndentDepth] |= INDENT_HAS_TEXT;
+                    }
 
                     // Not legal outside main element tree:
                     if (mCheckStructure) {
@@ -850,7 +962,12 @@ public abstract class BaseStreamWriter
                     if (mStartElementOpen) {
                         closeStartElement(mEmptyElement);
                     }
-                    sr.getText(wrapAsTextWriter(), preserveEventData);
+                    if (mIndentState != null) {
+                        mIndentState[mIndentDepth] |= INDENT_HAS_TEXT;
+                    }
+                    if (!copyIndentation(sr)) {
+                        sr.getText(wrapAsTextWriter(), preserveEventData);
+                    }
                 }
                 return;
                 
@@ -860,6 +977,9 @@ public abstract class BaseStreamWriter
                     if (mStartElementOpen) {
                         closeStartElement(mEmptyElement);
                     }
+                    if (mIndentState != null) {
+                        indentBeforeMarkup();
+                    }
                     // No need to check for content (embedded '--'); reader
                     // is assumed to have verified it's ok (otherwise should
                     // have thrown an exception for non-well-formed XML)
@@ -871,6 +991,9 @@ public abstract class BaseStreamWriter
 
             case PROCESSING_INSTRUCTION:
                 {
+                    if (mIndentState != null) {
+                        indentBeforeMarkup();
+                    }
                     mWriter.writePIStart(sr.getPITarget(), true);
                     sr.getText(wrapAsRawWriter(), preserveEventData);
                     mWriter.writePIEnd();
@@ -912,6 +1035,90 @@ public abstract class BaseStreamWriter
                                      +sr.getEventType()+"); not sure how to copy");
     }
 
+    /**
+     * Method similar to {@link #copyEventFromReader}, but one that copies
+     * the whole element the reader currently points to (which has to be
+     * START_ELEMENT), including all of its content. If the reader is a
+     * Woodstox stream reader, and settings of both allow it, content is
+     * passed through as is: characters are copied directly from the
+     * reader's input buffer to the output buffer of this writer, without
+     * tokenizing or re-escaping them. Otherwise content is copied
+     * event by event.
+     *<p>
+     * After the call, reader points to the END_ELEMENT matching the
+     * start element.
+     *
+     * @since 5.0
+     */
+    public void copyElementFromReader(XMLStreamReader2 sr)
+        throws XMLStreamException
+    {
+        if (sr.getEventType() != START_ELEMENT) {
+            throw new IllegalStateException(ErrorConsts.ERR_STATE_NOT_STELEM);
+        }
+        copyEventFromReader(sr, false);
+        if (!sr.isEmptyElement() && canCopyRawFrom(sr)) {
+            mAnyOutput = true;
+            if (mStartElementOpen) {
+                closeStartElement(mEmptyElement);
+            }
+            if (((StreamReaderImpl) sr).copyRawContent(wrapAsRawWriter())) {
+                writeEndElement();
+                return;
+            }
+        }
+        int depth = 1;
+        while (true) {
+            int type = sr.next();
+            copyEventFromReader(sr, false);
+            if (type == START_ELEMENT) {
+                ++depth;
+            } else if (type == END_ELEMENT) {
+                if (--depth == 0) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Method called to check whether content can be copied from given
+     * reader as is, without changing its meaning: this is not the case
+     * if this writer would need to modify content (validation,
+     * namespace repairing, custom escaping, indentation and so on), or if the encoding
+     * this writer uses might not be able to represent all characters
+     * of the input document. Latter is only known to be the case for
+     * Unicode encodings, and for the encoding of the input document
+     * itself (or US-ASCII input).
+     *
+     * @since 5.0
+     */
+    protected boolean canCopyRawFrom(XMLStreamReader2 sr)
+    {
+        if (!(sr instanceof StreamReaderImpl) || mValidator != null
+            || mIndentState != null) {
+            return false;
+        }
+        if (mCfgCDataAsText || mConfig.automaticNamespacesEnabled()
+            || mConfig.getTextEscaperFactory() != null
+            || mConfig.getAttrValueEscaperFactory() != null) {
+            return false;
+        }
+        String outEnc = mWriter.mEncoding;
+        // 16 bits means "any char": also used for unknown (Writer) targets
+        if (BufferingXmlWriter.guessEncodingBitSize(outEnc) >= 16) {
+            return true;
+        }
+        // Otherwise, some chars may need to be escaped, unless input can't have them
+        String inEnc = sr.getEncoding();
+        if (inEnc == null) {
+            return false;
+        }
+        inEnc = CharsetNames.normalize(inEnc);
+        return inEnc == CharsetNames.CS_US_ASCII
+            || inEnc.equals(CharsetNames.normalize(outEnc));
+    }
+
     /*
     ///////////////////////////////////////////////////////////
     // StAX2, output handling
@@ -921,7 +1128,13 @@ public abstract class BaseStreamWriter
     public void closeCompletely()
         throws XMLStreamException
     {
+        if (mInPool) {
+            return;
+        }
         _finishDocument(true);
+        if (mPool != null) {
+            mPool.release(this);
+        }
     }
 
     /*
@@ -949,6 +1162,9 @@ public abstract class BaseStreamWriter
         /* Note: can not call local method, since it'll return false for
          * recognized but non-mutable properties
          */
+        if (mConfig.isFrozen()) { // shared snapshot, need a private copy
+            mConfig = mConfig.createNonShared();
+        }
         return mConfig.setProperty(name, value);
     }
 
@@ -1058,6 +1274,9 @@ public abstract class BaseStreamWriter
         if (mStartElementOpen) {
             closeStartElement(mEmptyElement);
         }
+        if (mIndentState != null) {
+            mIndentState[mIndentDepth] |= INDENT_HAS_TEXT;
+        }
         verifyWriteCData();
         if (mVldContent == XMLValidator.CONTENT_ALLOW_VALIDATABLE_TEXT
             && mValidator != null) {
@@ -1090,6 +1309,9 @@ public abstract class BaseStreamWriter
     {
         verifyWriteDTD();
         mDtdRootElem = rootName;
+        if (mIndentState != null) {
+            indentBeforeMarkup();
+        }
         try {
             mWriter.writeDTD(rootName, systemId, publicId, internalSubset);
         } catch (IOException ioe) {
@@ -1113,6 +1335,9 @@ public abstract class BaseStreamWriter
         if (mStartElementOpen) {
             closeStartElement(mEmptyElement);
         }
+        if (mIndentState != null) {
+            mIndentState[mIndentDepth] |= INDENT_HAS_TEXT;
+        }
         try {
             mWriter.writeRaw(text, 0, text.length());
         } catch (IOException ioe) {
@@ -1127,6 +1352,9 @@ public abstract class BaseStreamWriter
         if (mStartElementOpen) {
             closeStartElement(mEmptyElement);
         }
+        if (mIndentState != null) {
+            mIndentState[mIndentDepth] |= INDENT_HAS_TEXT;
+        }
         try {
             mWriter.writeRaw(text, start, offset);
         } catch (IOException ioe) {
@@ -1141,6 +1369,9 @@ public abstract class BaseStreamWriter
         if (mStartElementOpen) {
             closeStartElement(mEmptyElement);
         }
+        if (mIndentState != null) {
+            mIndentState[mIndentDepth] |= INDENT_HAS_TEXT;
+        }
         try {
             mWriter.writeRaw(text, start, offset);
         } catch (IOException ioe) {
@@ -1164,6 +1395,107 @@ public abstract class BaseStreamWriter
         writeRaw(text, offset, length);
     }
 
+    /*
+    ///////////////////////////////////////////////////////////
+    // Woodstox-specific API, reuse
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * Method that can be called to reuse this writer for outputting
+     * another document, to given stream. Writer is returned to its
+     * initial state, but buffers and other helper objects it has
+     * allocated are retained. Configuration (including encoding used)
+     * is not changed; validators and validation problem handler are
+     * removed.
+     *<p>
+     * Writer should have been closed (or at least flushed) before calling
+     * this method, since any content still buffered is discarded.
+     *
+     * @since 5.0
+     */
+    public void reset(OutputStream out)
+        throws XMLStreamException
+    {
+        if (out == null) {
+            throw new IllegalArgumentException("Null OutputStream is not a valid argument");
+        }
+        _resetOutput(out, null);
+    }
+
+    /**
+     * Method that can be called to reuse this writer for outputting
+     * another document, to given writer; see {@link #reset(OutputStream)}
+     * for details.
+     *
+     * @throws IllegalArgumentException If this writer was constructed to
+     *   output to an <code>OutputStream</code> using an encoding it
+     *   encodes itself (ISO-8859-1 or US-ASCII), and can thus not
+     *   output to a <code>Writer</code>
+     *
+     * @since 5.0
+     */
+    public void reset(Writer w)
+        throws XMLStreamException
+    {
+        if (w == null) {
+            throw new IllegalArgumentException("Null Writer is not a valid argument");
+        }
+        _resetOutput(null, w);
+    }
+
+    private void _resetOutput(OutputStream out, Writer w)
+        throws XMLStreamException
+    {
+        try {
+            mWriter.resetOutput(out, w);
+        } catch (IOException ioe) {
+            throw new WstxIOException(ioe);
+        }
+        resetState();
+    }
+
+    /**
+     * Method called to release references to the current output target,
+     * when this writer is returned to a pool.
+     */
+    final void detachOutput()
+    {
+        try {
+            mWriter.resetOutput(null, null);
+        } catch (IOException ioe) { // never thrown when detaching
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    /**
+     * Method called when this writer is reset, to clear all per-document
+     * state. Sub-classes that keep additional state need to override
+     * it, and call this implementation.
+     *
+     * @since 5.0
+     */
+    protected void resetState()
+    {
+        mEncoding = mWriter.mEncoding;
+        mXml11 = false;
+        mValidator = null;
+        mVldProbHandler = null;
+        resetValidationFlags();
+        resetAttrNames();
+
+        mState = STATE_PROLOG;
+        mAnyOutput = false;
+        mStartElementOpen = false;
+        mEmptyElement = false;
+        mVldContent = XMLValidator.CONTENT_ALLOW_ANY_TEXT;
+        mDtdRootElem = null;
+        mIndentDepth = 0;
+        if (mIndentState != null) {
+            mIndentState[0] = 0;
+        }
+    }
+
     /*
     ///////////////////////////////////////////////////////////
     // ValidationContext interface (StAX2, validation)
@@ -1404,6 +1736,143 @@ public abstract class BaseStreamWriter
         return (mState != STATE_TREE);
     }
 
+    /**
+     * Method called before writing a start tag, comment, processing
+     * instruction or DOCTYPE declaration, when output is to be indented:
+     * starts a new, indented line, unless this is the first markup of the
+     * document, or current element has text content (and mixed content
+     * is not to be indented).
+     */
+    protected final void indentBeforeMarkup()
+        throws XMLStreamException
+    {
+        final int depth = mIndentDepth;
+        final int state = mIndentState[depth];
+        if ((depth > 0 || (state & INDENT_HAS_MARKUP) != 0)
+            && ((state & INDENT_HAS_TEXT) == 0 || mCfgIndentMixedContent)) {
+            try {
+                mWriter.writeIndentation(depth);
+            } catch (IOException ioe) {
+                throw new WstxIOException(ioe);
+            }
+        }
+        mIndentState[depth] = (byte) (state | INDENT_HAS_MARKUP);
+    }
+
+    /**
+     * Method called before writing a start tag, when output is to be
+     * indented.
+     */
+    protected final void indentStartTag()
+        throws XMLStreamException
+    {
+        indentBeforeMarkup();
+        int depth = ++mIndentDepth;
+        if (depth >= mIndentState.length) {
+            byte[] old = mIndentState;
+            mIndentState = new byte[old.length + old.length];
+            System.arraycopy(old, 0, mIndentState, 0, old.length);
+        }
+        mIndentState[depth] = 0;
+    }
+
+    /**
+     * Method called when an element is closed, when output is to be
+     * indented.
+     *
+     * @param endTag True if an end tag is to be written (in which case
+     *   a new line is started for it, if the element had markup content);
+     *   false if the element was output as an empty element
+     */
+    protected final void indentEndTag(boolean endTag)
+        throws XMLStreamException
+    {
+        if (mIndentDepth == 0) { // unbalanced output, can't do much
+            return;
+        }
+        final int state = mIndentState[mIndentDepth--];
+        if (endTag && (state & INDENT_HAS_MARKUP) != 0
+            && ((state & INDENT_HAS_TEXT) == 0 || mCfgIndentMixedContent)) {
+            try {
+                mWriter.writeIndentation(mIndentDepth);
+            } catch (IOException ioe) {
+                throw new WstxIOException(ioe);
+            }
+        }
+    }
+
+    /**
+     * Method called when copying a text event from given reader, to
+     * output it using a shared canonical run if reader has recognized it
+     * as indentation.
+     *
+     * @return True if the event was indentation, and was written;
+     *   false if not (and nothing was written)
+     */
+    private final boolean copyIndentation(XMLStreamReader2 sr)
+        throws IOException
+    {
+        if (sr instanceof StreamReaderImpl) {
+            char indChar = ((StreamReaderImpl) sr).getIndentationChar();
+            if (indChar != 0) {
+                mWriter.writeIndentationRun(indChar, sr.getTextLength()-1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method for checking whether given text is indentation that
+     * {@link XmlWriter#writeIndentationRun} can output: a linefeed
+     * followed by spaces or tabs (but not both), at most as many as
+     * stream readers recognize.
+     *
+     * @return Indentation character (space or tab) if so; 0 if not
+     */
+    private final static char indentationChar(char[] text, int start, int len)
+    {
+        if (len < 1 || len > (TextBuffer.MAX_INDENT_SPACES + 1)
+            || text[start] != '\n') {
+            return 0;
+        }
+        if (len == 1) { // just a linefeed, can use either run
+            return ' ';
+        }
+        char c = text[start+1];
+        if (c != ' ' && (c != '\t' || len > (TextBuffer.MAX_INDENT_TABS + 1))) {
+            return 0;
+        }
+        for (int i = start+2, end = start+len; i < end; ++i) {
+            if (text[i] != c) {
+                return 0;
+            }
+        }
+        return c;
+    }
+
+    private final static char indentationChar(String text)
+    {
+        int len = text.length();
+        if (len < 1 || len > (TextBuffer.MAX_INDENT_SPACES + 1)
+            || text.charAt(0) != '\n') {
+            return 0;
+        }
+        if (len == 1) {
+            return ' ';
+        }
+        char c = text.charAt(1);
+        if (c != ' ' && (c != '\t' || len > (TextBuffer.MAX_INDENT_TABS + 1))) {
+            return 0;
+        }
+        for (int i = 2; i < len; ++i) {
+            if (text.charAt(i) != c) {
+                return 0;
+            }
+        }
+        return c;
+    }
+
     /**
      * @param forceRealClose If true, will force calling of close() on the
      *   underlying physical result (stream, writer). If false, will let
@@ -1760,6 +2229,33 @@ public abstract class BaseStreamWriter
     ///////////////////////////////////////////////////////////
      */
 
+    /**
+     * Method called to check that an attribute with given name has not
+     * yet been written for the currently open start element.
+     *
+     * @return True if no such attribute has yet been written; false if
+     *   one has been written
+     */
+    protected final boolean addAttrName(String nsURI, String localName)
+    {
+        AttrNameSet names = mAttrNames;
+        if (names == null) {
+            mAttrNames = names = new AttrNameSet();
+        }
+        return names.add(nsURI, localName);
+    }
+
+    /**
+     * Method called when a new start element is opened, to forget
+     * attribute names of the previous one.
+     */
+    protected final void resetAttrNames()
+    {
+        if (mAttrNames != null) {
+            mAttrNames.reset();
+        }
+    }
+
     protected final char[] getCopyBuffer()
     {
         char[] buf = mCopyBuffer;
@@ -17,6 +17,7 @@ package com.ctc.wstx.sw;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.Arrays;
 
@@ -29,6 +30,7 @@ import org.codehaus.stax2.validation.XMLValidator;
 import com.ctc.wstx.api.WriterConfig;
 import com.ctc.wstx.io.CharsetNames;
 import com.ctc.wstx.io.CompletelyCloseable;
+import com.ctc.wstx.io.UTF8Writer;
 
 /**
  * Concrete implementation of {@link XmlWriter} that will dispatch writes
@@ -98,7 +100,7 @@ public final class BufferingXmlWriter
     /**
      * Actual Writer to use for outputting buffered data as appropriate.
      */
-    protected final Writer mOut;
+    protected Writer mOut;
 
     protected char[] mOutputBuffer;
 
@@ -119,7 +121,7 @@ public final class BufferingXmlWriter
      * application may (try to) figure out the original
      * source.
      */
-    protected final OutputStream mUnderlyingStream;
+    protected OutputStream mUnderlyingStream;
 
     /*
     ////////////////////////////////////////////////
@@ -202,6 +204,42 @@ public final class BufferingXmlWriter
         return mOut;
     }
 
+    /*
+    ////////////////////////////////////////////////
+    // Reuse
+    ////////////////////////////////////////////////
+     */
+
+    public void resetOutput(OutputStream out, Writer w)
+        throws IOException
+    {
+        if (out != null) {
+            // Can reuse our own UTF-8 encoder, but not JDK ones
+            if (mOut instanceof UTF8Writer) {
+                ((UTF8Writer) mOut).reset(out);
+            } else {
+                mOut = new OutputStreamWriter(out, mEncoding);
+            }
+        } else if (w != null) {
+            mOut = w;
+        } else { // just detaching
+            if (mOut instanceof UTF8Writer) {
+                ((UTF8Writer) mOut).reset(null);
+            } else {
+                mOut = null;
+            }
+            mUnderlyingStream = null;
+            return;
+        }
+        mUnderlyingStream = out;
+        if (mOutputBuffer == null) {
+            mOutputBuffer = mConfig.allocFullCBuffer(DEFAULT_BUFFER_SIZE);
+            mOutputBufLen = mOutputBuffer.length;
+        }
+        mOutputPtr = 0;
+        resetState();
+    }
+
     /*
     ////////////////////////////////////////////////
     // Low-level (pass-through) methods
@@ -93,7 +93,7 @@ public abstract class EncodingXmlWriter
      * Actual output stream to use for outputting encoded content as
      * bytes.
      */
-    private final OutputStream mOut;
+    private OutputStream mOut;
 
     protected byte[] mOutputBuffer;
 
@@ -107,6 +107,20 @@ public abstract class EncodingXmlWriter
      */
     protected int mSurrogate = 0;
 
+    /**
+     * Indentation characters (see {@link #mIndentChars}) as bytes; all
+     * encodings supported by sub-classes are ASCII-compatible, and
+     * indentation consists of white space only, so no encoding is needed
+     */
+    protected byte[] mIndentBytes;
+
+    /**
+     * Canonical indentation runs (see {@link XmlWriter#INDENT_SPACES})
+     * as bytes
+     */
+    private final static byte[] INDENT_SPACE_BYTES = asciiBytes(INDENT_SPACES);
+    private final static byte[] INDENT_TAB_BYTES = asciiBytes(INDENT_TABS);
+
     /*
     ////////////////////////////////////////////////
     // 
@@ -148,6 +162,31 @@ public abstract class EncodingXmlWriter
         return null;
     }
 
+    /*
+    ////////////////////////////////////////////////
+    // Reuse
+    ////////////////////////////////////////////////
+     */
+
+    public void resetOutput(OutputStream out, Writer w)
+        throws IOException
+    {
+        if (out == null) {
+            if (w != null) {
+                throw new IllegalArgumentException("Can not reset an encoding writer to output to a Writer");
+            }
+            mOut = null;
+            return;
+        }
+        mOut = out;
+        if (mOutputBuffer == null) {
+            mOutputBuffer = mConfig.allocFullBBuffer(DEFAULT_BUFFER_SIZE);
+        }
+        mOutputPtr = 0;
+        mSurrogate = 0;
+        resetState();
+    }
+
     public void close(boolean forceRealClose)
         throws IOException
     {
@@ -760,6 +799,63 @@ public abstract class EncodingXmlWriter
         }
     }
 
+    public void writeIndentation(int level)
+        throws IOException
+    {
+        if (mSurrogate != 0) {
+            throwUnpairedSurrogate();
+        }
+        int len = indentationLength(level);
+        byte[] run = mIndentBytes;
+        if (run == null || run.length < len) {
+            char[] chars = mIndentChars;
+            run = new byte[chars.length];
+            for (int i = 0; i < chars.length; ++i) {
+                run[i] = (byte) chars[i];
+            }
+            mIndentBytes = run;
+        }
+        int offset = 0;
+        while (len > 0) {
+            if (mOutputPtr >= mOutputBuffer.length) {
+                flushBuffer();
+            }
+            int count = Math.min(len, mOutputBuffer.length - mOutputPtr);
+            System.arraycopy(run, offset, mOutputBuffer, mOutputPtr, count);
+            mOutputPtr += count;
+            offset += count;
+            len -= count;
+        }
+    }
+
+    public void writeIndentationRun(char indChar, int count)
+        throws IOException
+    {
+        if (mTextWriter != null) { // custom escaping?
+            super.writeIndentationRun(indChar, count);
+            return;
+        }
+        if (mSurrogate != 0) {
+            throwUnpairedSurrogate();
+        }
+        int len = count+1;
+        if ((mOutputPtr + len) > mOutputBuffer.length) {
+            flushBuffer();
+        }
+        System.arraycopy((indChar == '\t') ? INDENT_TAB_BYTES : INDENT_SPACE_BYTES, 0,
+                         mOutputBuffer, mOutputPtr, len);
+        mOutputPtr += len;
+    }
+
+    private static byte[] asciiBytes(char[] chars)
+    {
+        byte[] result = new byte[chars.length];
+        for (int i = 0; i < chars.length; ++i) {
+            result[i] = (byte) chars[i];
+        }
+        return result;
+    }
+
     public final void writeRawAscii(char[] buf, int offset, int len)
         throws IOException
     {
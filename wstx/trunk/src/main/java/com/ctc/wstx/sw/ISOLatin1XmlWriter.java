@@ -21,10 +21,16 @@ import javax.xml.stream.XMLStreamException;
 
 import com.ctc.wstx.api.WriterConfig;
 import com.ctc.wstx.io.CharsetNames;
+import com.ctc.wstx.io.SingleByteCodec;
 
 /**
  * Concrete implementation of {@link EncodingXmlWriter} used when output
- * is to be encoded using ISO-8859-1, aka ISO-Latin1 encoding.
+ * is to be encoded using ISO-8859-1, aka ISO-Latin1 encoding; or, as of
+ * 5.0, any other ascii-compatible single-byte encoding (such as
+ * windows-1252, or other ISO-8859-x variants). Non-ascii characters are
+ * encoded using the code table of the encoding (see
+ * {@link SingleByteCodec}); characters that can not be encoded are
+ * output as character entities where possible.
  *<p>
  * Regarding surrogate pair handling: most of the checks are in the base
  * class, and here we only need to worry about <code>writeRaw</code>
@@ -33,10 +39,27 @@ import com.ctc.wstx.io.CharsetNames;
 public final class ISOLatin1XmlWriter
     extends EncodingXmlWriter
 {
+    final SingleByteCodec mCodec;
+
     public ISOLatin1XmlWriter(OutputStream out, WriterConfig cfg, boolean autoclose)
         throws IOException
     {
-        super(out, cfg, CharsetNames.CS_ISO_LATIN1, autoclose);
+        this(out, cfg, CharsetNames.CS_ISO_LATIN1, autoclose,
+             SingleByteCodec.forEncoding(CharsetNames.CS_ISO_LATIN1));
+    }
+
+    /**
+     * @since 5.0
+     */
+    public ISOLatin1XmlWriter(OutputStream out, WriterConfig cfg, String encoding,
+                              boolean autoclose, SingleByteCodec codec)
+        throws IOException
+    {
+        super(out, cfg, encoding, autoclose);
+        if (!codec.isAsciiCompatible()) {
+            throw new IllegalArgumentException("Encoding "+codec.getEncoding()+" not ascii-compatible, can not be used for output");
+        }
+        mCodec = codec;
     }
 
     public void writeRaw(char[] cbuf, int offset, int len)
@@ -72,21 +95,24 @@ public final class ISOLatin1XmlWriter
                             c = handleInvalidChar(c);
                         }
                     } else if (c > 0x7E) {
-                        if (c > 0xFF) {
+                        if (mXml11 && c < 0x9F && c != 0x85) {
                             mOutputPtr = ptr;
-                            handleInvalidLatinChar(c);
-                        } else if (mXml11) {
-                            if (c < 0x9F && c != 0x85) {
-                                mOutputPtr = ptr;
-                                c = handleInvalidChar(c);
-                            }
+                            c = handleInvalidChar(c);
                         }
+                        c = encodeChar(c, ptr);
                     }
                     mOutputBuffer[ptr++] = (byte) c;
                 }
             } else {
                 for (int inEnd = offset + max; offset < inEnd; ++offset) {
-                    mOutputBuffer[ptr++] = (byte) cbuf[offset];
+                    int c = cbuf[offset];
+                    if (c >= 0x80) { // no checks: unmappable chars just get truncated
+                        int b = mCodec.encode(c);
+                        if (b >= 0) {
+                            c = b;
+                        }
+                    }
+                    mOutputBuffer[ptr++] = (byte) c;
                 }
             }
             len -= max;
@@ -126,21 +152,24 @@ public final class ISOLatin1XmlWriter
                             c = handleInvalidChar(c);
                         }
                     } else if (c > 0x7E) {
-                        if (c > 0xFF) {
+                        if (mXml11 && c < 0x9F && c != 0x85) {
                             mOutputPtr = ptr;
-                            handleInvalidLatinChar(c);
-                        } else if (mXml11) {
-                            if (c < 0x9F && c != 0x85) {
-                                mOutputPtr = ptr;
-                                c = handleInvalidChar(c);
-                            }
+                            c = handleInvalidChar(c);
                         }
+                        c = encodeChar(c, ptr);
                     }
                     mOutputBuffer[ptr++] = (byte) c;
                 }
             } else {
                 for (int inEnd = offset + max; offset < inEnd; ++offset) {
-                    mOutputBuffer[ptr++] = (byte) str.charAt(offset);
+                    int c = str.charAt(offset);
+                    if (c >= 0x80) { // no checks: unmappable chars just get truncated
+                        int b = mCodec.encode(c);
+                        if (b >= 0) {
+                            c = b;
+                        }
+                    }
+                    mOutputBuffer[ptr++] = (byte) c;
                 }
             }
             len -= max;
@@ -180,6 +209,7 @@ public final class ISOLatin1XmlWriter
             inner_loop:
             for (int inEnd = offset + max; offset < inEnd; ) {
                 int c = data.charAt(offset++);
+                int b;
                 if (c < 32) {
                     /* Need to quote all white space except for regular
                      * space chars, to preserve them (round-tripping)
@@ -205,8 +235,8 @@ public final class ISOLatin1XmlWriter
                         continue;
                     }
                     // otherwise fall back on quoting
-                } else if (c > 0x9F && c <= 0xFF) {
-                    mOutputBuffer[ptr++] = (byte) c;
+                } else if (c > 0x9F && (b = mCodec.encode(c)) >= 0) {
+                    mOutputBuffer[ptr++] = (byte) b;
                     continue; // [WSTX-88]
                 } else {
                     // Surrogate?
@@ -263,6 +293,7 @@ public final class ISOLatin1XmlWriter
             inner_loop:
             for (int inEnd = offset + max; offset < inEnd; ) {
                 int c = data[offset++];
+                int b;
                 if (c < 32) {
                     /* Need to quote all white space except for regular
                      * space chars, to preserve them (round-tripping)
@@ -288,8 +319,8 @@ public final class ISOLatin1XmlWriter
                         continue;
                     }
                     // otherwise fall back on quoting
-                } else if (c > 0x9F && c <= 0xFF) {
-                    mOutputBuffer[ptr++] = (byte) c;
+                } else if (c > 0x9F && (b = mCodec.encode(c)) >= 0) {
+                    mOutputBuffer[ptr++] = (byte) b;
                     continue; // [WSTX-88]
                 } else {
                     // Surrogate?
@@ -354,15 +385,11 @@ public final class ISOLatin1XmlWriter
                         c = handleInvalidChar(c);
                     }
                 } else if (c > 0x7E) {
-                    if (c > 0xFF) {
+                    if (mXml11 && c < 0x9F && c != 0x85) {
                         mOutputPtr = ptr;
-                        handleInvalidLatinChar(c);
-                    } else if (mXml11) {
-                        if (c < 0x9F && c != 0x85) {
-                            mOutputPtr = ptr;
-                            c = handleInvalidChar(c);
-                        }
+                        c = handleInvalidChar(c);
                     }
+                    c = encodeChar(c, ptr);
                 } else if (c == '>') { // embedded "]]>"?
                     if (offset > 2 && data.charAt(offset-2) == ']'
                         && data.charAt(offset-3) == ']') {
@@ -430,15 +457,11 @@ public final class ISOLatin1XmlWriter
                         c = handleInvalidChar(c);
                     }
                 } else if (c > 0x7E) {
-                    if (c > 0xFF) {
+                    if (mXml11 && c < 0x9F && c != 0x85) {
                         mOutputPtr = ptr;
-                        handleInvalidLatinChar(c);
-                    } else if (mXml11) {
-                        if (c < 0x9F && c != 0x85) {
-                            mOutputPtr = ptr;
-                            c = handleInvalidChar(c);
-                        }
+                        c = handleInvalidChar(c);
                     }
+                    c = encodeChar(c, ptr);
                 } else if (c == '>') { // embedded "]]>"?
                     if (offset >= (start+3) && cbuf[offset-2] == ']'
                         && cbuf[offset-3] == ']') {
@@ -507,15 +530,11 @@ public final class ISOLatin1XmlWriter
                         c = handleInvalidChar(c);
                     }
                 } else if (c > 0x7E) {
-                    if (c > 0xFF) {
+                    if (mXml11 && c < 0x9F && c != 0x85) {
                         mOutputPtr = ptr;
-                        handleInvalidLatinChar(c);
-                    } else if (mXml11) {
-                        if (c < 0x9F && c != 0x85) {
-                            mOutputPtr = ptr;
-                            c = handleInvalidChar(c);
-                        }
+                        c = handleInvalidChar(c);
                     }
+                    c = encodeChar(c, ptr);
                 } else if (c == '-') { // embedded "--"?
                     if (offset > 1 && data.charAt(offset-2) == '-') {
                         if (!mFixContent) {
@@ -586,15 +605,11 @@ public final class ISOLatin1XmlWriter
                         c = handleInvalidChar(c);
                     }
                 } else if (c > 0x7E) {
-                    if (c > 0xFF) {
+                    if (mXml11 && c < 0x9F && c != 0x85) {
                         mOutputPtr = ptr;
-                        handleInvalidLatinChar(c);
-                    } else if (mXml11) {
-                        if (c < 0x9F && c != 0x85) {
-                            mOutputPtr = ptr;
-                            c = handleInvalidChar(c);
-                        }
+                        c = handleInvalidChar(c);
                     }
+                    c = encodeChar(c, ptr);
                 } else if (c == '>') { // enclosed end marker ("?>")?
                     if (offset > 0 && data.charAt(offset-1) == '?') {
                         return offset-2;
@@ -636,6 +651,7 @@ public final class ISOLatin1XmlWriter
             inner_loop:
             for (int inEnd = offset + max; offset < inEnd; ) {
                 int c = data.charAt(offset++);
+                int b;
                 if (c < 32) {
                     if (c == '\n' || c == '\t') { // TODO: line count
                         mOutputBuffer[mOutputPtr++] = (byte) c;
@@ -662,8 +678,8 @@ public final class ISOLatin1XmlWriter
                         }
                     }
                     // otherwise fall back on quoting
-                } else if (c > 0x9F && c <= 0xFF) {
-                    mOutputBuffer[mOutputPtr++] = (byte) c;
+                } else if (c > 0x9F && (b = mCodec.encode(c)) >= 0) {
+                    mOutputBuffer[mOutputPtr++] = (byte) b;
                     continue; // [WSTX-88]
                 } else {
                     // Surrogate?
@@ -713,6 +729,7 @@ public final class ISOLatin1XmlWriter
             inner_loop:
             for (int inEnd = offset + max; offset < inEnd; ) {
                 int c = cbuf[offset++];
+                int b;
                 if (c < 32) {
                     if (c == '\n' || c == '\t') { // TODO: line count
                         mOutputBuffer[mOutputPtr++] = (byte) c;
@@ -742,8 +759,8 @@ public final class ISOLatin1XmlWriter
                         }
                     }
                     // otherwise fall back on quoting
-                } else if (c > 0x9F && c <= 0xFF) {
-                    mOutputBuffer[mOutputPtr++] = (byte) c;
+                } else if (c > 0x9F && (b = mCodec.encode(c)) >= 0) {
+                    mOutputBuffer[mOutputPtr++] = (byte) b;
                     continue; // [WSTX-88]
                 } else {
                     // Surrogate?
@@ -774,7 +791,23 @@ public final class ISOLatin1XmlWriter
     ////////////////////////////////////////////////////
      */
 
-    protected void handleInvalidLatinChar(int c)
+    /**
+     * Helper method for encoding a non-ascii character that can not be
+     * output as a character entity: if the character can not be encoded,
+     * an exception is thrown.
+     */
+    private final int encodeChar(int c, int ptr)
+        throws IOException
+    {
+        int b = mCodec.encode(c);
+        if (b < 0) {
+            mOutputPtr = ptr;
+            handleUnmappableChar(c);
+        }
+        return b;
+    }
+
+    protected void handleUnmappableChar(int c)
         throws IOException
     {
         // First, let's flush any output we may have, to make debugging easier
@@ -786,6 +819,6 @@ public final class ISOLatin1XmlWriter
          *   can only throw IOExceptions (when invoked via Writer proxy).
          *   Need to figure out how to resolve this.
          */
-        throw new IOException("Invalid XML character (0x"+Integer.toHexString(c)+"); can only be output using character entity when using ISO-8859-1 encoding");
+        throw new IOException("Invalid XML character (0x"+Integer.toHexString(c)+"); can only be output using character entity when using "+mEncoding+" encoding");
     }
 }
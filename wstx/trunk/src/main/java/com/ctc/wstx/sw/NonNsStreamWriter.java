@@ -57,16 +57,6 @@ public class NonNsStreamWriter
      */
     final StringVector mElements;
 
-    /**
-     * Container for attribute names for current element; used only
-     * if uniqueness of attribute names is to be enforced.
-     *<p>
-     * TreeSet is used mostly because clearing it up is faster than
-     * clearing up HashSet, and the only access is done by
-     * adding entries and see if an value was already set.
-     */
-    TreeSet<String> mAttrNames;
-
     /*
     ////////////////////////////////////////////////////
     // Life-cycle (ctors)
@@ -79,6 +69,12 @@ public class NonNsStreamWriter
         mElements = new StringVector(32);
     }
 
+    protected void resetState()
+    {
+        super.resetState();
+        mElements.clear(true);
+    }
+
     /*
     ////////////////////////////////////////////////////
     // XMLStreamWriter API
@@ -118,13 +114,7 @@ public class NonNsStreamWriter
             reportNwfStructure(ErrorConsts.WERR_ATTR_NO_ELEM);
         }
         if (mCheckAttrs) {
-            /* 11-Dec-2005, TSa: Should use a more efficient Set/Map value
-             *   for this in future.
-             */
-            if (mAttrNames == null) {
-                mAttrNames = new TreeSet<String>();
-            }
-            if (!mAttrNames.add(localName)) {
+            if (!addAttrName(null, localName)) {
                 reportNwfAttr("Trying to write attribute '"+localName+"' twice");
             }
         }
@@ -285,11 +275,8 @@ public class NonNsStreamWriter
         if (!mStartElementOpen && mCheckStructure) {
             reportNwfStructure(ErrorConsts.WERR_ATTR_NO_ELEM);
         }
-        if (mCheckAttrs) { // doh. Not good, need to construct non-transient value...
-            if (mAttrNames == null) {
-                mAttrNames = new TreeSet<String>();
-            }
-            if (!mAttrNames.add(localName)) {
+        if (mCheckAttrs) {
+            if (!addAttrName(null, localName)) {
                 reportNwfAttr("Trying to write attribute '"+localName+"' twice");
             }
         }
@@ -315,9 +302,6 @@ public class NonNsStreamWriter
         throws XMLStreamException
     {
         mStartElementOpen = false;
-        if (mAttrNames != null) {
-            mAttrNames.clear();
-        }
 
         try {
             if (emptyElem) {
@@ -335,6 +319,9 @@ public class NonNsStreamWriter
 
         // Need bit more special handling for empty elements...
         if (emptyElem) {
+            if (mIndentState != null) {
+                indentEndTag(false);
+            }
             String localName = mElements.removeLast();
             if (mElements.isEmpty()) {
                 mState = STATE_EPILOG;
@@ -447,7 +434,11 @@ public class NonNsStreamWriter
         }       
 
         mStartElementOpen = true;
+        resetAttrNames();
         mElements.addString(localName);
+        if (mIndentState != null) {
+            indentStartTag();
+        }
         try {
             mWriter.writeStartTagStart(localName);
         } catch (IOException ioe) {
@@ -514,13 +505,13 @@ public class NonNsStreamWriter
                 mVldContent = mValidator.validateElementAndAttributes();
             }
             mStartElementOpen = false;
-            if (mAttrNames != null) {
-                mAttrNames.clear();
-            }
             try {
                 // We could write an empty element, implicitly?
                 if (allowEmpty) {
                     mWriter.writeStartTagEmptyEnd();
+                    if (mIndentState != null) {
+                        indentEndTag(false);
+                    }
                     if (mElements.isEmpty()) {
                         mState = STATE_EPILOG;
                     }
@@ -536,6 +527,9 @@ public class NonNsStreamWriter
             }
         }
 
+        if (mIndentState != null) {
+            indentEndTag(true);
+        }
         try {
             mWriter.writeEndTag(localName);
         } catch (IOException ioe) {
@@ -88,6 +88,18 @@ public final class RepairingNsStreamWriter
         mAutomaticNsPrefix = cfg.getAutomaticNsPrefix();
     }
 
+    protected void resetState()
+    {
+        super.resetState();
+        if (mAutoNsSeq != null) {
+            mAutoNsSeq[0] = 1;
+        }
+        mSuggestedDefNs = null;
+        if (mSuggestedPrefixes != null) {
+            mSuggestedPrefixes.clear();
+        }
+    }
+
     /*
     ///////////////////////////////////////////////////////////
     // XMLStreamWriter API
@@ -265,7 +277,6 @@ public final class RepairingNsStreamWriter
         if (mOutputElemPool != null) {
             SimpleOutputElement newCurr = mOutputElemPool;
             mOutputElemPool = newCurr.reuseAsChild(mCurrElem, prefix, localName, nsURI);
-            --mPoolSize;
             mCurrElem = newCurr;
         } else {
             mCurrElem = mCurrElem.createChild(prefix, localName, nsURI);
@@ -307,7 +318,6 @@ public final class RepairingNsStreamWriter
             if (mOutputElemPool != null) {
                 SimpleOutputElement newCurr = mOutputElemPool;
                 mOutputElemPool = newCurr.reuseAsChild(mCurrElem, actPrefix, localName, nsURI);
-                --mPoolSize;
                 mCurrElem = newCurr;
             } else {
                 mCurrElem = mCurrElem.createChild(actPrefix, localName, nsURI);
@@ -328,7 +338,6 @@ public final class RepairingNsStreamWriter
             if (mOutputElemPool != null) {
                 SimpleOutputElement newCurr = mOutputElemPool;
                 mOutputElemPool = newCurr.reuseAsChild(mCurrElem, actPrefix, localName, nsURI);
-                --mPoolSize;
                 mCurrElem = newCurr;
             } else {
                 mCurrElem = mCurrElem.createChild(actPrefix, localName, nsURI);
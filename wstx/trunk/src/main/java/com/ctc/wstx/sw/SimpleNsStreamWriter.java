@@ -240,7 +240,6 @@ public class SimpleNsStreamWriter
         if (mOutputElemPool != null) {
             SimpleOutputElement newCurr = mOutputElemPool;
             mOutputElemPool = newCurr.reuseAsChild(mCurrElem, prefix, localName, nsURI);
-            --mPoolSize;
             mCurrElem = newCurr;
         } else {
             mCurrElem = mCurrElem.createChild(prefix, localName, nsURI);
@@ -259,7 +258,6 @@ public class SimpleNsStreamWriter
         if (mOutputElemPool != null) {
             SimpleOutputElement newCurr = mOutputElemPool;
             mOutputElemPool = newCurr.reuseAsChild(mCurrElem, prefix, localName, nsURI);
-            --mPoolSize;
             mCurrElem = newCurr;
         } else {
             mCurrElem = mCurrElem.createChild(prefix, localName, nsURI);
@@ -15,11 +15,8 @@
 
 package com.ctc.wstx.sw;
 
-import java.util.*;
-
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.namespace.QName;
-import javax.xml.stream.XMLStreamException;
 
 import com.ctc.wstx.compat.QNameCreator;
 import com.ctc.wstx.util.BijectiveNsMap;
@@ -73,18 +70,6 @@ public final class SimpleOutputElement
      */
     String mURI;
 
-    /*
-    ////////////////////////////////////////////
-    // Attribute information
-    ////////////////////////////////////////////
-     */
-
-    /**
-     * Map used to check for duplicate attribute declarations, if
-     * feature is enabled.
-     */
-    protected HashSet<AttrName> mAttrSet = null;
-
     /*
     ////////////////////////////////////////////
     // Life-cycle
@@ -139,6 +124,20 @@ public final class SimpleOutputElement
         return new SimpleOutputElement();
     }
 
+    /**
+     * Method called to clear bindings of the virtual root element, when
+     * the owning writer is reset for reuse. Namespace mapping (if any)
+     * is retained, to be reused for the next document.
+     */
+    protected void resetRoot()
+    {
+        if (mNsMapping != null) {
+            mNsMapping.clear();
+        }
+        mDefaultNsURI = "";
+        mRootNsContext = null;
+    }
+
     /**
      * Simplest factory method, which gets called when a 1-argument
      * element output method is called. It is, then, assumed to
@@ -146,11 +145,6 @@ public final class SimpleOutputElement
      */
     protected SimpleOutputElement createChild(String localName)
     {
-        /* At this point we can also discard attribute Map; it is assumed
-         * that when a child element has been opened, no more attributes
-         * can be output.
-         */
-        mAttrSet = null;
         return new SimpleOutputElement(this, null, localName,
                                        mDefaultNsURI, mNsMapping);
     }
@@ -161,7 +155,6 @@ public final class SimpleOutputElement
     protected SimpleOutputElement reuseAsChild(SimpleOutputElement parent,
                                                String localName)
     {
-        mAttrSet = null;
         SimpleOutputElement poolHead = mParent;
         relink(parent, null, localName, mDefaultNsURI);
         return poolHead;
@@ -171,7 +164,6 @@ public final class SimpleOutputElement
                                                String prefix, String localName,
                                                String uri)
     {
-        mAttrSet = null;
         SimpleOutputElement poolHead = mParent;
         relink(parent, prefix, localName, uri);
         return poolHead;
@@ -184,11 +176,6 @@ public final class SimpleOutputElement
     protected SimpleOutputElement createChild(String prefix, String localName,
                                               String uri)
     {
-        /* At this point we can also discard attribute Map; it is assumed
-         * that when a child element has been opened, no more attributes
-         * can be output.
-         */
-        mAttrSet = null;
         return new SimpleOutputElement(this, prefix, localName, uri, mNsMapping);
     }
 
@@ -247,28 +234,6 @@ public final class SimpleOutputElement
         return QNameCreator.create(mURI, mLocalName, mPrefix);
     }
 
-    /*
-    ////////////////////////////////////////////
-    // Public API, ns binding, checking
-    ////////////////////////////////////////////
-     */
-
-    public void checkAttrWrite(String nsURI, String localName)
-        throws XMLStreamException
-    {
-        AttrName an = new AttrName(nsURI, localName);
-        if (mAttrSet == null) {
-            /* 13-Dec-2005, TSa: Should use a more efficient Set/Map value
-             *   for this in future -- specifically one that could use
-             *   ns/local-name pairs without intermediate objects
-             */
-            mAttrSet = new HashSet<AttrName>();
-        }
-        if (!mAttrSet.add(an)) {
-            throw new XMLStreamException("Duplicate attribute write for attribute '"+an+"'");
-        }
-    }
-
     /*
     ////////////////////////////////////////////
     // Public API, mutators
@@ -296,71 +261,4 @@ public final class SimpleOutputElement
             mDefaultNsURI = defURI;
         }
     }
-
-    /*
-    //////////////////////////////////////////////////
-    // Helper classes:
-    //////////////////////////////////////////////////
-     */
-
-    /**
-     * Simple key class used to represent two-piece (attribute) names;
-     * first part being optional (URI), and second non-optional (local name).
-     */
-    final static class AttrName
-        implements Comparable<AttrName>
-    {
-        final String mNsURI;
-        final String mLocalName;
-
-        /**
-         * Let's cache the hash code, since although hash calculation is
-         * fast, hash code is needed a lot as this is always used as a 
-         * HashSet/TreeMap key.
-         */
-        final int mHashCode;
-
-        public AttrName(String nsURI, String localName) {
-            mNsURI = (nsURI == null) ? "" : nsURI;
-            mLocalName = localName;
-            mHashCode = mNsURI.hashCode() * 31 ^ mLocalName.hashCode();
-        }
-
-        public boolean equals(Object o) {
-            if (o == this) {
-                return true;
-            }
-            if (!(o instanceof AttrName)) {
-                return false;
-            }
-            AttrName other = (AttrName) o;
-            String otherLN = other.mLocalName;
-            // Local names are shorter, more varying:
-            if (otherLN != mLocalName && !otherLN.equals(mLocalName)) {
-                return false;
-            }
-            String otherURI = other.mNsURI;
-            return (otherURI == mNsURI || otherURI.equals(mNsURI));
-        }
-
-        public String toString() {
-            if (mNsURI.length() > 0) {
-                return "{"+mNsURI + "} " +mLocalName;
-            }
-            return mLocalName;
-        }
-
-        public int hashCode() {
-            return mHashCode;
-        }
-
-        public int compareTo(AttrName other) {
-            // Let's first order by namespace:
-            int result = mNsURI.compareTo(other.mNsURI);
-            if (result == 0) {
-                result = mLocalName.compareTo(other.mLocalName);
-            }
-            return result;
-        }
-    }
 }
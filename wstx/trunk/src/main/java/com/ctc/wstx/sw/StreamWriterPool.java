@@ -0,0 +1,124 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.wstx.sw;
+
+import com.ctc.wstx.api.WriterConfig;
+
+/**
+ * Small pool of closed stream writers that output factory uses for
+ * recycling writers, if enabled (see
+ * {@link com.ctc.wstx.api.WstxOutputProperties#P_OUTPUT_RECYCLE_WRITERS}).
+ * Writers registered with a pool return themselves to it when closed;
+ * and are handed out again (after being reset) for creation calls
+ * with compatible target type, encoding and configuration.
+ *<p>
+ * Pools are owned by a single thread (one that constructed the pool),
+ * and are not thread-safe: writers closed by any other thread are
+ * simply discarded. This is necessary since writers use buffer
+ * recyclers bound to the thread that created them.
+ *
+ * @since 5.0
+ */
+public final class StreamWriterPool
+{
+    /**
+     * Maximum number of writers retained by a pool; since writers are
+     * expected to be closed soon after they have been created, there is
+     * rarely need for more than one or two.
+     */
+    final static int MAX_WRITERS = 8;
+
+    private final Thread mOwner;
+
+    private final BaseStreamWriter[] mWriters = new BaseStreamWriter[MAX_WRITERS];
+
+    /**
+     * Whether matching writers in {@link #mWriters} were constructed
+     * to output to an <code>OutputStream</code> (true) or to a
+     * <code>Writer</code> (false).
+     */
+    private final boolean[] mForStream = new boolean[MAX_WRITERS];
+
+    private int mCount = 0;
+
+    public StreamWriterPool()
+    {
+        mOwner = Thread.currentThread();
+    }
+
+    /**
+     * Method called by the factory to make given newly constructed
+     * writer return to this pool when closed.
+     */
+    public void register(BaseStreamWriter sw)
+    {
+        sw.mPool = this;
+    }
+
+    /**
+     * Method called to find a pooled writer that can be reused for
+     * outputting to a target of specified type, using specified encoding
+     * and configuration. If one is found, it is removed from the pool;
+     * caller is responsible for resetting it.
+     *
+     * @return Writer to reuse, if one found; null if not
+     */
+    public BaseStreamWriter acquire(boolean forStream, String encoding,
+            WriterConfig cfg)
+    {
+        if (Thread.currentThread() != mOwner) {
+            return null;
+        }
+        for (int i = mCount; --i >= 0; ) {
+            BaseStreamWriter sw = mWriters[i];
+            if (mForStream[i] == forStream
+                && sameEncoding(sw.mWriter.mEncoding, encoding)
+                && sw.mConfig.hasSameSettings(cfg)) {
+                int last = --mCount;
+                mWriters[i] = mWriters[last];
+                mForStream[i] = mForStream[last];
+                mWriters[last] = null;
+                sw.mInPool = false;
+                return sw;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method called by a registered writer when it has been closed.
+     */
+    void release(BaseStreamWriter sw)
+    {
+        if (Thread.currentThread() != mOwner || mCount >= MAX_WRITERS) {
+            return;
+        }
+        boolean forStream = (sw.mWriter.getOutputStream() != null);
+        sw.detachOutput();
+        sw.mInPool = true;
+        mWriters[mCount] = sw;
+        mForStream[mCount] = forStream;
+        ++mCount;
+    }
+
+    private static boolean sameEncoding(String enc1, String enc2)
+    {
+        if (enc1 == null) {
+            return (enc2 == null);
+        }
+        return (enc1 == enc2) || enc1.equals(enc2);
+    }
+}
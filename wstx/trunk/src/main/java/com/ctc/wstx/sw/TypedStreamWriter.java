@@ -176,6 +176,9 @@ public abstract class TypedStreamWriter
         if (mStartElementOpen) {
             closeStartElement(mEmptyElement);
         }
+        if (mIndentState != null) {
+            mIndentState[mIndentDepth] |= INDENT_HAS_TEXT;
+        }
         // How about well-formedness?
         if (mCheckStructure) {
             if (inPrologOrEpilog()) {
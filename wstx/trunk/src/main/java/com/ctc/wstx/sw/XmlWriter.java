@@ -33,6 +33,7 @@ import com.ctc.wstx.cfg.ErrorConsts;
 import com.ctc.wstx.cfg.OutputConfigFlags;
 import com.ctc.wstx.exc.WstxIOException;
 import com.ctc.wstx.io.WstxInputData;
+import com.ctc.wstx.util.TextBuffer;
 
 /**
  * This is the base class for actual physical xml outputters. These
@@ -72,6 +73,14 @@ public abstract class XmlWriter
 
     protected final static char DEFAULT_QUOTE_CHAR = '"';
 
+    /**
+     * Canonical indentation runs: a linefeed followed by as many spaces
+     * (or tabs) as stream readers recognize as indentation; used for
+     * outputting indentation white space as is.
+     */
+    protected final static char[] INDENT_SPACES = indentationRun(' ', TextBuffer.MAX_INDENT_SPACES);
+    protected final static char[] INDENT_TABS = indentationRun('\t', TextBuffer.MAX_INDENT_TABS);
+
     protected final WriterConfig mConfig;
     protected final String mEncoding;
 
@@ -145,6 +154,29 @@ public abstract class XmlWriter
      */
     protected XmlWriterWrapper mTextWrapper = null;
 
+    /*
+    ///////////////////////////////////////////////////////
+    // Indentation
+    ///////////////////////////////////////////////////////
+     */
+
+    /**
+     * Line separator followed by indentation string repeated for as many
+     * levels as have been needed so far, if indentation is enabled;
+     * null if not. Written as is, without escaping.
+     */
+    protected char[] mIndentChars;
+
+    /**
+     * Length of the line separator at the start of {@link #mIndentChars}
+     */
+    protected int mLineSepLength;
+
+    /**
+     * Length of the indentation string for a single level
+     */
+    protected int mIndentLength;
+
     /*
     ///////////////////////////////////////////////////////
     // Output location info
@@ -186,8 +218,29 @@ public abstract class XmlWriter
         mAddSpaceAfterEmptyElem = (flags & OutputConfigFlags.CFG_ADD_SPACE_AFTER_EMPTY_ELEM) != 0;
         mUseDoubleQuotesInXmlDecl = (flags & OutputConfigFlags.CFG_USE_DOUBLE_QUOTES_IN_XML_DECL) != 0;
 
-        // Has caller requested any custom text or attr value escaping?
+        String indent = cfg.getIndentation();
+        if (indent != null) {
+            String sep = cfg.getLineSeparator();
+            mLineSepLength = sep.length();
+            mIndentLength = indent.length();
+            // let's start with enough for typical nesting depths
+            mIndentChars = new char[mLineSepLength + 8 * mIndentLength];
+            sep.getChars(0, mLineSepLength, mIndentChars, 0);
+            for (int ptr = mLineSepLength; ptr < mIndentChars.length; ptr += mIndentLength) {
+                indent.getChars(0, mIndentLength, mIndentChars, ptr);
+            }
+        }
+
+        createEscapingWriters();
+    }
 
+    /**
+     * Helper method called to construct custom text and attribute value
+     * escaping writers, if caller has requested them.
+     */
+    private void createEscapingWriters()
+        throws IOException
+    {
         EscapingWriterFactory f = mConfig.getTextEscaperFactory();
         if (f == null) {
             mTextWriter = null;
@@ -217,6 +270,47 @@ public abstract class XmlWriter
         mXml11 = true;
     }
 
+    /*
+    ////////////////////////////////////////////////////
+    // Reuse
+    ////////////////////////////////////////////////////
+     */
+
+    /**
+     * Method called when the owning stream writer is reset, to make this
+     * writer output to a new target. Content still buffered for the
+     * previous target is discarded; buffers released when this writer
+     * was closed are re-allocated.
+     *<p>
+     * If both arguments are null, writer will only drop references
+     * to its current output target (but retain its buffers), so that
+     * it can be held for later reuse without retaining the target.
+     *
+     * @param out Output stream to write to, if target is a stream
+     * @param w Writer to write to, if target is a Writer
+     *
+     * @throws IllegalArgumentException If the type of target is not
+     *   supported by this writer
+     *
+     * @since 5.0
+     */
+    public abstract void resetOutput(OutputStream out, Writer w)
+        throws IOException;
+
+    /**
+     * Method sub-classes call from {@link #resetOutput} to reset the
+     * state base class keeps track of.
+     */
+    protected void resetState()
+        throws IOException
+    {
+        mXml11 = false;
+        mLocPastChars = 0;
+        mLocRowNr = 1;
+        mLocRowStartOffset = 0;
+        createEscapingWriters();
+    }
+
     /*
     ////////////////////////////////////////////////////
     // Access to underlying physical output destinations
@@ -256,6 +350,76 @@ public abstract class XmlWriter
     public abstract void writeRaw(String str, int offset, int len)
         throws IOException;
 
+    /**
+     * Method called to start a new line, indented for given nesting
+     * level. Must only be called if indentation is enabled.
+     *<p>
+     * Default implementation writes pre-computed characters using
+     * {@link #writeRaw(char[],int,int)}; sub-classes may override it to
+     * output pre-encoded content directly.
+     *
+     * @since 5.0
+     */
+    public void writeIndentation(int level)
+        throws IOException
+    {
+        int len = indentationLength(level); // may expand mIndentChars
+        writeRaw(mIndentChars, 0, len);
+    }
+
+    /**
+     * Method that returns the number of characters needed for indenting
+     * given nesting level, expanding {@link #mIndentChars} if necessary.
+     */
+    protected final int indentationLength(int level)
+    {
+        int len = mLineSepLength + level * mIndentLength;
+        if (len > mIndentChars.length) {
+            char[] old = mIndentChars;
+            // double the levels, to avoid expanding for each new level
+            char[] chars = new char[mLineSepLength + (level + level) * mIndentLength];
+            System.arraycopy(old, 0, chars, 0, old.length);
+            for (int ptr = old.length; ptr < chars.length; ptr += mIndentLength) {
+                System.arraycopy(old, mLineSepLength, chars, ptr, mIndentLength);
+            }
+            mIndentChars = chars;
+        }
+        return len;
+    }
+
+    /**
+     * Method called to output indentation white space as textual
+     * content: a linefeed followed by given number of spaces or tabs,
+     * not exceeding {@link TextBuffer#MAX_INDENT_SPACES} or
+     * {@link TextBuffer#MAX_INDENT_TABS}, respectively. Since such
+     * content never needs escaping, it is written from a shared
+     * canonical run, unless a custom text escaper is in use (shared
+     * arrays must never be passed to application code, which could
+     * modify them).
+     *
+     * @since 5.0
+     */
+    public void writeIndentationRun(char indChar, int count)
+        throws IOException
+    {
+        char[] run = (indChar == '\t') ? INDENT_TABS : INDENT_SPACES;
+        if (mTextWriter != null) { // custom escaping? Need to let it see content
+            writeCharacters(new String(run, 0, count+1));
+        } else { // short enough to always be copied to the output buffer
+            writeRaw(run, 0, count+1);
+        }
+    }
+
+    private static char[] indentationRun(char indChar, int count)
+    {
+        char[] run = new char[count+1];
+        run[0] = '\n';
+        for (int i = 1; i <= count; ++i) {
+            run[i] = indChar;
+        }
+        return run;
+    }
+
     public void writeRaw(String str)
         throws IOException
     {
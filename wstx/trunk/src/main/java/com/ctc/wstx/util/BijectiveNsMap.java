@@ -250,6 +250,17 @@ public final class BijectiveNsMap
         return null;
     }
 
+    /**
+     * Method for removing all bindings of the current scope, so that
+     * the map (and its underlying array) can be reused.
+     *
+     * @since 5.0
+     */
+    public void clear()
+    {
+        mScopeEnd = mScopeStart;
+    }
+
     /**
      * Method used to add a dynamic binding, and return the prefix
      * used to bind the specified namespace URI.
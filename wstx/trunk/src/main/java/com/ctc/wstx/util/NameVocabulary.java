@@ -0,0 +1,258 @@
+/* Woodstox XML processor
+ *
+ * Copyright (c) 2004- Tatu Saloranta, tatu.saloranta@iki.fi
+ *
+ * Licensed under the License specified in file LICENSE, included with
+ * the source code.
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.ctc.wstx.util;
+
+import java.util.*;
+
+import org.codehaus.stax2.validation.XMLValidationSchema;
+
+/**
+ * Immutable mapping from a fixed set of element names (the "vocabulary")
+ * to dense integer ids, from 0 to <code>size()-1</code>. Vocabularies
+ * are constructed once, from an explicit list of names or from a
+ * validation schema (DTD, W3C Schema or RELAX NG), and can then be
+ * shared by any number of stream readers (see
+ * {@link com.ctc.wstx.api.WstxInputProperties#P_NAME_VOCABULARY}).
+ * Readers resolve the id of each element as its start tag is parsed,
+ * which allows binding code to dispatch on ints instead of comparing
+ * Strings.
+ *<p>
+ * Names are either qualified, expressed using "Clark notation"
+ * (<code>{namespace-uri}local-name</code>, with empty URI for
+ * elements that do not belong to a namespace), in which case they
+ * only match elements in that namespace; or plain local names, which
+ * match elements with that local name in any namespace (or none).
+ * If both match an element, the qualified name is used.
+ * Schema-based vocabularies use qualified names, except for DTDs
+ * which have no namespace information.
+ *<p>
+ * Lookups use a simple open-addressing hash table, keyed by local
+ * name. Since names passed by readers are canonicalized by their
+ * symbol tables, names are compared by identity first, and equality
+ * only checked if that fails.
+ *
+ * @since 5.0
+ */
+public final class NameVocabulary
+{
+    /**
+     * Id returned for names not included in the vocabulary.
+     */
+    public final static int NO_ID = -1;
+
+    /**
+     * Interface implemented by validation schemas that can enumerate
+     * the element names they declare.
+     */
+    public interface NameSource
+    {
+        /**
+         * Method called to add names of all elements declared by the
+         * schema into given collection: names are in Clark notation
+         * (<code>{namespace-uri}local-name</code>) if the schema
+         * defines namespaces of elements, and plain local names if not.
+         * Note that for DTDs read in non-namespace-aware mode, local
+         * names are the full names, including any prefix.
+         */
+        public void addElementNames(Collection<String> names);
+    }
+
+    /**
+     * Local names in the order of their ids.
+     */
+    final String[] mNames;
+
+    /**
+     * Namespace URIs in the order of their ids; null for names that
+     * match any namespace, empty String for "no namespace".
+     */
+    final String[] mNsURIs;
+
+    /**
+     * Hash area, by local name; null for unused slots.
+     */
+    final String[] mHashNames;
+
+    /**
+     * Namespace URIs of names in matching slots of {@link #mHashNames}.
+     */
+    final String[] mHashNsURIs;
+
+    /**
+     * Ids of names in matching slots of {@link #mHashNames}.
+     */
+    final int[] mHashIds;
+
+    private NameVocabulary(String[] names, String[] nsURIs)
+    {
+        mNames = names;
+        mNsURIs = nsURIs;
+        // Fill rate of at most 50%, to keep probe sequences short
+        int size = 8;
+        while (size < (names.length << 1)) {
+            size += size;
+        }
+        mHashNames = new String[size];
+        mHashNsURIs = new String[size];
+        mHashIds = new int[size];
+        final int mask = size - 1;
+        for (int i = 0; i < names.length; ++i) {
+            String name = names[i];
+            int ix = hash(name) & mask;
+            while (mHashNames[ix] != null) {
+                ix = (ix + 1) & mask;
+            }
+            mHashNames[ix] = name;
+            mHashNsURIs[ix] = nsURIs[i];
+            mHashIds[ix] = i;
+        }
+    }
+
+    /**
+     * Factory method for constructing a vocabulary from an explicit
+     * list of names (plain local names, or qualified names in Clark
+     * notation): ids are assigned in iteration order (duplicates
+     * are ignored), so that for a list, ids are list indexes.
+     */
+    public static NameVocabulary construct(Collection<String> names)
+    {
+        LinkedHashSet<String> uniq = new LinkedHashSet<String>(names);
+        int count = uniq.size();
+        String[] localNames = new String[count];
+        String[] nsURIs = new String[count];
+        int i = 0;
+        for (String name : uniq) {
+            if (name == null) {
+                throw new IllegalArgumentException("Null name in vocabulary");
+            }
+            if (name.length() > 0 && name.charAt(0) == '{') {
+                int end = name.indexOf('}');
+                if (end < 0 || end == name.length()-1) {
+                    throw new IllegalArgumentException("Invalid qualified name '"+name+"' in vocabulary: expected '{namespace-uri}local-name'");
+                }
+                nsURIs[i] = name.substring(1, end);
+                name = name.substring(end+1);
+            }
+            // canonical instances, to allow identity comparisons
+            localNames[i++] = name.intern();
+        }
+        return new NameVocabulary(localNames, nsURIs);
+    }
+
+    /**
+     * Factory method for constructing a vocabulary that contains all
+     * element names declared by given schema. Ids are assigned in
+     * alphabetic order of names (of qualified names in Clark notation,
+     * if the schema defines namespaces).
+     *
+     * @throws IllegalArgumentException If schema is not of a type that
+     *   can enumerate its element names (see {@link NameSource})
+     */
+    public static NameVocabulary construct(XMLValidationSchema schema)
+    {
+        if (!(schema instanceof NameSource)) {
+            throw new IllegalArgumentException("Schema of type "+schema.getClass().getName()+" can not enumerate its element names");
+        }
+        TreeSet<String> names = new TreeSet<String>();
+        ((NameSource) schema).addElementNames(names);
+        return construct(names);
+    }
+
+    /*
+    ////////////////////////////////////////////////
+    // Public API
+    ////////////////////////////////////////////////
+     */
+
+    /**
+     * @return Number of names in this vocabulary
+     */
+    public int size() {
+        return mNames.length;
+    }
+
+    /**
+     * @return Local name of the name that has specified id
+     */
+    public String getName(int id) {
+        return mNames[id];
+    }
+
+    /**
+     * @return Namespace URI of the name that has specified id: empty
+     *   String for names that only match elements not in a namespace,
+     *   and null for names that match any namespace.
+     */
+    public String getNamespaceURI(int id) {
+        return mNsURIs[id];
+    }
+
+    /**
+     * Method for finding id of an element that does not belong to
+     * a namespace; equivalent to calling
+     * <code>findId(null, localName)</code>.
+     *
+     * @return Id of the given name, if included in this vocabulary;
+     *   {@link #NO_ID} if not.
+     */
+    public int findId(String localName) {
+        return findId(null, localName);
+    }
+
+    /**
+     * @param nsURI Namespace URI of the element; null or empty String
+     *   if the element does not belong to a namespace
+     *
+     * @return Id of the given name, if included in this vocabulary
+     *   (either qualified with given namespace, or as a plain local
+     *   name); {@link #NO_ID} if not.
+     */
+    public int findId(String nsURI, String localName)
+    {
+        if (nsURI == null) {
+            nsURI = "";
+        }
+        final String[] names = mHashNames;
+        final int mask = names.length - 1;
+        int ix = hash(localName) & mask;
+        int anyNsId = NO_ID;
+        String curr;
+        while ((curr = names[ix]) != null) {
+            if (curr == localName || curr.equals(localName)) {
+                String currNs = mHashNsURIs[ix];
+                if (currNs == null) {
+                    anyNsId = mHashIds[ix];
+                } else if (currNs == nsURI || currNs.equals(nsURI)) {
+                    return mHashIds[ix];
+                }
+            }
+            ix = (ix + 1) & mask;
+        }
+        return anyNsId;
+    }
+
+    @Override
+    public String toString() {
+        return "[NameVocabulary, "+mNames.length+" names]";
+    }
+
+    private static int hash(String name)
+    {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
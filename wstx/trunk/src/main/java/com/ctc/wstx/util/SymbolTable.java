@@ -683,6 +683,22 @@ public class SymbolTable {
         return ((double) count) / ((double) mSize);
     }
 
+    /**
+     * @return Number of symbols that are stored in collision buckets,
+     *   instead of primary hash slots
+     *
+     * @since 5.0
+     */
+    public int calcCollisionCount() {
+        int count = 0;
+        for (int i = 0, len = mBuckets.length; i < len; ++i) {
+            for (Bucket b = mBuckets[i]; b != null; b = b.getNext()) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
     /*
     //////////////////////////////////////////////////////////
     // Bucket class
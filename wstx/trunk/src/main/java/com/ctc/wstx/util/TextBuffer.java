@@ -360,6 +360,30 @@ public final class TextBuffer
         }
     }
 
+    /**
+     * Method that can be used to check whether the current contents are
+     * a canonical indentation run (a linefeed followed by zero or more
+     * spaces or tabs), as set by {@link #resetWithIndentation}.
+     *
+     * @return Indentation character (space or tab) if contents are a
+     *   canonical indentation run, with {@link #size} minus one
+     *   indentation characters; 0 otherwise
+     *
+     * @since 5.0
+     */
+    public char getIndentationChar()
+    {
+        if (mInputStart == 0) {
+            if (mInputBuffer == sIndSpacesArray) {
+                return ' ';
+            }
+            if (mInputBuffer == sIndTabsArray) {
+                return '\t';
+            }
+        }
+        return 0;
+    }
+
     /*
     //////////////////////////////////////////////
     // Accessors for implementing StAX interface:
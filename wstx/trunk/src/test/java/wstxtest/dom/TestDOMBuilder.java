@@ -0,0 +1,131 @@
+package wstxtest.dom;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.*;
+
+import org.w3c.dom.*;
+
+import org.codehaus.stax2.XMLStreamReader2;
+
+import com.ctc.wstx.dom.WstxDOMBuilder;
+
+/**
+ * Unit tests for verifying that {@link WstxDOMBuilder} builds
+ * expected DOM trees.
+ */
+public class TestDOMBuilder
+    extends wstxtest.BaseWstxTest
+{
+    final static String XML =
+        "<?xml version='1.0'?>\n"
+        +"<!--prolog--><root xmlns='urn:a' xmlns:ns='urn:b' attr='1' ns:attr='2'>"
+        +"text &amp; more<ns:leaf a='x'/><![CDATA[cdata]]><?proc data?>"
+        +"<!--c--><leaf>x</leaf></root>";
+
+    public void testFullDocument() throws Exception
+    {
+        XMLStreamReader sr = getInputFactory().createXMLStreamReader(new StringReader(XML));
+        Document doc = new WstxDOMBuilder().build(sr);
+        assertTokenType(END_DOCUMENT, sr.getEventType());
+        sr.close();
+
+        assertEquals(Node.COMMENT_NODE, doc.getFirstChild().getNodeType());
+        Element root = doc.getDocumentElement();
+        assertEquals("root", root.getLocalName());
+        assertEquals("urn:a", root.getNamespaceURI());
+        assertNull(root.getPrefix());
+        assertEquals("1", root.getAttributeNS(null, "attr"));
+        assertEquals("2", root.getAttributeNS("urn:b", "attr"));
+        assertEquals("urn:b", root.getAttribute("xmlns:ns"));
+        assertEquals("urn:a", root.getAttribute("xmlns"));
+
+        NodeList kids = root.getChildNodes();
+        assertEquals(6, kids.getLength());
+        // non-coalescing reader may split text; builder needs to combine
+        assertEquals("text & more", ((Text) kids.item(0)).getData());
+        Element leaf = (Element) kids.item(1);
+        assertEquals("ns:leaf", leaf.getTagName());
+        assertEquals("urn:b", leaf.getNamespaceURI());
+        assertEquals("x", leaf.getAttribute("a"));
+        assertEquals(Node.CDATA_SECTION_NODE, kids.item(2).getNodeType());
+        ProcessingInstruction pi = (ProcessingInstruction) kids.item(3);
+        assertEquals("proc", pi.getTarget());
+        assertEquals("data", pi.getData());
+        assertEquals(Node.COMMENT_NODE, kids.item(4).getNodeType());
+        leaf = (Element) kids.item(5);
+        assertEquals("urn:a", leaf.getNamespaceURI());
+        assertEquals("x", leaf.getTextContent());
+    }
+
+    public void testNonNamespaceAware() throws Exception
+    {
+        XMLInputFactory f = getNewInputFactory();
+        f.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        XMLStreamReader sr = f.createXMLStreamReader(new StringReader("<a:root a:x='1'><b/></a:root>"));
+        WstxDOMBuilder b = new WstxDOMBuilder();
+        Document doc = b.build(sr);
+        Element root = doc.getDocumentElement();
+        assertEquals("a:root", root.getTagName());
+        assertEquals("1", root.getAttribute("a:x"));
+        assertEquals("b", ((Element) root.getFirstChild()).getTagName());
+    }
+
+    public void testStartAtRoot() throws Exception
+    {
+        XMLStreamReader sr = getInputFactory().createXMLStreamReader
+            (new StringReader("<!--c--><root a='1'><leaf/>text</root><!--end-->"));
+        assertTokenType(COMMENT, sr.next());
+        assertTokenType(START_ELEMENT, sr.next());
+        WstxDOMBuilder b = new WstxDOMBuilder();
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        b.build(sr, doc);
+        assertTokenType(END_DOCUMENT, sr.getEventType());
+        Element root = doc.getDocumentElement();
+        assertEquals("root", root.getTagName());
+        assertEquals("1", root.getAttribute("a"));
+        assertEquals("leaf", ((Element) root.getFirstChild()).getTagName());
+        assertEquals("text", root.getTextContent());
+        assertEquals(Node.COMMENT_NODE, doc.getLastChild().getNodeType());
+        sr.close();
+
+        // but other positions are not accepted
+        sr = getInputFactory().createXMLStreamReader(new StringReader("<!--c--><root/>"));
+        assertTokenType(COMMENT, sr.next());
+        try {
+            b.build(sr, DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument());
+            fail("Expected an exception for reader not at START_DOCUMENT or START_ELEMENT");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().indexOf("START_DOCUMENT") >= 0);
+        }
+        sr.close();
+    }
+
+    public void testSubtrees() throws Exception
+    {
+        XMLStreamReader2 sr = (XMLStreamReader2) getInputFactory().createXMLStreamReader
+            (new StringReader("<root><rec id='1'><x>a</x></rec><skip><y/></skip><rec id='2'/></root>"));
+        WstxDOMBuilder b = new WstxDOMBuilder();
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        assertTokenType(START_ELEMENT, sr.next());
+
+        assertTokenType(START_ELEMENT, sr.next());
+        Element rec = b.buildElement(sr, doc);
+        assertTokenType(END_ELEMENT, sr.getEventType());
+        assertEquals("rec", sr.getLocalName());
+        assertEquals("1", rec.getAttribute("id"));
+        assertEquals("a", rec.getTextContent());
+
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("skip", sr.getLocalName());
+        sr.skipElement();
+
+        assertTokenType(START_ELEMENT, sr.next());
+        rec = b.buildElement(sr, doc);
+        assertEquals("2", rec.getAttribute("id"));
+        assertFalse(rec.hasChildNodes());
+        assertTokenType(END_ELEMENT, sr.next());
+        sr.close();
+    }
+}
@@ -0,0 +1,125 @@
+package wstxtest.evt;
+
+import java.io.StringReader;
+import java.util.*;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.*;
+import javax.xml.stream.events.*;
+
+import org.codehaus.stax2.XMLStreamReader2;
+
+/**
+ * Unit tests for verifying that structurally shared non-transient
+ * namespace contexts (constructed for start element events) expose
+ * correct bindings, and are shared between elements when possible.
+ */
+public class TestSharedNsContexts
+    extends wstxtest.BaseWstxTest
+{
+    final static String XML =
+        "<root xmlns='urn:def' xmlns:a='urn:a'>"
+        +"<x><y xmlns:b='urn:b' xmlns:a='urn:a2'><z/></y></x>"
+        +"<x xmlns='' xmlns:c='urn:a'/>"
+        +"</root>";
+
+    public void testEventContexts() throws XMLStreamException
+    {
+        XMLEventReader er = getInputFactory().createXMLEventReader(new StringReader(XML));
+        assertTokenType(START_DOCUMENT, er.nextEvent().getEventType());
+
+        StartElement root = er.nextEvent().asStartElement();
+        assertEquals(2, countNamespaces(root));
+        NamespaceContext rootCtxt = root.getNamespaceContext();
+        assertEquals("urn:def", rootCtxt.getNamespaceURI(""));
+        assertEquals("urn:a", rootCtxt.getNamespaceURI("a"));
+        assertNull(rootCtxt.getNamespaceURI("b"));
+
+        StartElement x = er.nextEvent().asStartElement();
+        assertEquals(0, countNamespaces(x));
+        NamespaceContext xCtxt = x.getNamespaceContext();
+        assertEquals("urn:def", xCtxt.getNamespaceURI(""));
+        assertEquals("a", xCtxt.getPrefix("urn:a"));
+
+        StartElement y = er.nextEvent().asStartElement();
+        assertEquals(2, countNamespaces(y));
+        NamespaceContext yCtxt = y.getNamespaceContext();
+        assertEquals("urn:b", yCtxt.getNamespaceURI("b"));
+        assertEquals("urn:a2", yCtxt.getNamespaceURI("a"));
+        // "a" rebound, so "urn:a" is no longer reachable
+        assertNull(yCtxt.getPrefix("urn:a"));
+        assertEquals("urn:def", yCtxt.getNamespaceURI(""));
+
+        StartElement z = er.nextEvent().asStartElement();
+        assertEquals(0, countNamespaces(z));
+        NamespaceContext zCtxt = z.getNamespaceContext();
+        assertEquals("urn:a2", zCtxt.getNamespaceURI("a"));
+        assertEquals("b", zCtxt.getPrefix("urn:b"));
+
+        // and earlier contexts must not have been affected
+        assertEquals("urn:a", rootCtxt.getNamespaceURI("a"));
+        assertEquals("a", xCtxt.getPrefix("urn:a"));
+
+        assertTokenType(END_ELEMENT, er.nextEvent().getEventType()); // z
+        assertTokenType(END_ELEMENT, er.nextEvent().getEventType()); // y
+        assertTokenType(END_ELEMENT, er.nextEvent().getEventType()); // x
+
+        StartElement x2 = er.nextEvent().asStartElement();
+        assertEquals(2, countNamespaces(x2));
+        NamespaceContext x2Ctxt = x2.getNamespaceContext();
+        assertEquals("", x2Ctxt.getNamespaceURI(""));
+        assertNull(x2Ctxt.getNamespaceURI("b"));
+        Set<String> prefixes = new HashSet<String>();
+        for (Iterator<?> it = x2Ctxt.getPrefixes("urn:a"); it.hasNext(); ) {
+            prefixes.add((String) it.next());
+        }
+        assertEquals(2, prefixes.size());
+        assertTrue(prefixes.contains("a"));
+        assertTrue(prefixes.contains("c"));
+        er.close();
+    }
+
+    public void testContextSharing() throws XMLStreamException
+    {
+        XMLStreamReader2 sr = (XMLStreamReader2) getInputFactory().createXMLStreamReader(new StringReader(XML));
+        assertTokenType(START_ELEMENT, sr.next());
+        NamespaceContext rootCtxt = sr.getNonTransientNamespaceContext();
+        assertTokenType(START_ELEMENT, sr.next()); // x
+        NamespaceContext xCtxt = sr.getNonTransientNamespaceContext();
+        assertNotSame(rootCtxt, xCtxt);
+        assertTokenType(START_ELEMENT, sr.next()); // y
+        NamespaceContext yCtxt = sr.getNonTransientNamespaceContext();
+        assertTokenType(START_ELEMENT, sr.next()); // z
+        NamespaceContext zCtxt = sr.getNonTransientNamespaceContext();
+        assertNotSame(yCtxt, zCtxt);
+        assertTokenType(END_ELEMENT, sr.next()); // z
+        assertTokenType(END_ELEMENT, sr.next()); // y
+        // context is retained for the end element too
+        assertSame(yCtxt, sr.getNonTransientNamespaceContext());
+        assertTokenType(END_ELEMENT, sr.next()); // x
+        assertSame(xCtxt, sr.getNonTransientNamespaceContext());
+        sr.close();
+
+        // also ok to skip ancestors' contexts
+        sr = (XMLStreamReader2) getInputFactory().createXMLStreamReader(new StringReader(XML));
+        sr.next();
+        sr.next();
+        sr.next();
+        sr.next();
+        assertEquals("z", sr.getLocalName());
+        zCtxt = sr.getNonTransientNamespaceContext();
+        assertEquals("urn:def", zCtxt.getNamespaceURI(""));
+        assertEquals("urn:a2", zCtxt.getNamespaceURI("a"));
+        assertEquals("urn:b", zCtxt.getNamespaceURI("b"));
+        sr.close();
+    }
+
+    private int countNamespaces(StartElement elem)
+    {
+        int count = 0;
+        for (Iterator<?> it = elem.getNamespaces(); it.hasNext(); it.next()) {
+            ++count;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,241 @@
+package wstxtest.io;
+
+import java.io.*;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.*;
+
+import junit.framework.TestCase;
+
+import org.codehaus.stax2.XMLInputFactory2;
+
+import com.ctc.wstx.api.WstxInputProperties;
+import com.ctc.wstx.io.InputDecompressor;
+import com.ctc.wstx.io.ReadAheadInputStream;
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Unit tests for verifying that read-ahead input streams and detection
+ * of compressed input work as expected, both directly and when enabled
+ * for stream readers.
+ */
+public class TestReadAheadInput extends TestCase
+{
+    public void testReadAheadStream() throws IOException
+    {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) (i * 31 + (i >> 8));
+        }
+        // small buffers, to exercise ring wrap-around
+        InputStream in = ReadAheadInputStream.construct(new ByteArrayInputStream(data),
+                                                        true, false, 3, 1000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+        byte[] buf = new byte[777];
+        int count;
+        while ((count = in.read(buf)) >= 0) {
+            out.write(buf, 0, count);
+            // and mix in single-byte reads
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            out.write(b);
+        }
+        assertEquals(-1, in.read());
+        in.close();
+        assertTrue(java.util.Arrays.equals(data, out.toByteArray()));
+    }
+
+    public void testDecompressorDetection() throws IOException
+    {
+        byte[] xml = "<root>abc</root>".getBytes("UTF-8");
+        assertEquals("<root>abc</root>", readAll(InputDecompressor.wrapIfCompressed(new ByteArrayInputStream(xml))));
+        assertEquals("<root>abc</root>", readAll(InputDecompressor.wrapIfCompressed(new ByteArrayInputStream(gzip(xml)))));
+        assertEquals("<root>abc</root>", readAll(InputDecompressor.wrapIfCompressed(new ByteArrayInputStream(deflate(xml)))));
+        // also must work with streams that do not support marks, and very short content
+        assertEquals("x", readAll(InputDecompressor.wrapIfCompressed(new BufferedInputStream(new ByteArrayInputStream(new byte[] { 'x' })) {
+            public boolean markSupported() { return false; }
+        })));
+    }
+
+    public void testReaderWithReadAhead() throws XMLStreamException, IOException
+    {
+        String doc = generateDoc(5000);
+        byte[] data = doc.getBytes("UTF-8");
+        WstxInputFactory f = new WstxInputFactory();
+        f.setProperty(WstxInputProperties.P_INPUT_READ_AHEAD, Boolean.TRUE);
+        assertEquals(Boolean.TRUE, f.getProperty(WstxInputProperties.P_INPUT_READ_AHEAD));
+        assertEquals(Boolean.FALSE, f.getProperty(WstxInputProperties.P_INPUT_DECOMPRESSION));
+        assertEquals(collectText(new WstxInputFactory().createXMLStreamReader(new ByteArrayInputStream(data))),
+                     collectText(f.createXMLStreamReader(new ByteArrayInputStream(data))));
+        // and with explicit encoding
+        assertEquals(5000, collectText(f.createXMLStreamReader(new ByteArrayInputStream(data), "UTF-8")).length());
+    }
+
+    public void testReaderWithCompressedFile() throws XMLStreamException, IOException
+    {
+        String doc = generateDoc(3000);
+        File file = File.createTempFile("wstx-readahead", ".xml.gz");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        out.write(gzip(doc.getBytes("UTF-8")));
+        out.close();
+
+        WstxInputFactory f = new WstxInputFactory();
+        f.setProperty(WstxInputProperties.P_INPUT_DECOMPRESSION, Boolean.TRUE);
+        // first without read-ahead
+        XMLStreamReader sr = ((XMLInputFactory2) f).createXMLStreamReader(file);
+        assertEquals(3000, collectText(sr).length());
+        // then with
+        f.setProperty(WstxInputProperties.P_INPUT_READ_AHEAD, Boolean.TRUE);
+        sr = ((XMLInputFactory2) f).createXMLStreamReader(file);
+        assertEquals(3000, collectText(sr).length());
+        // zlib content via stream
+        sr = f.createXMLStreamReader(new ByteArrayInputStream(deflate(doc.getBytes("UTF-8"))));
+        assertEquals(3000, collectText(sr).length());
+    }
+
+    public void testCloseAndErrors() throws XMLStreamException, IOException
+    {
+        WstxInputFactory f = new WstxInputFactory();
+        f.setProperty(WstxInputProperties.P_INPUT_READ_AHEAD, Boolean.TRUE);
+        byte[] data = generateDoc(2000).getBytes("UTF-8");
+
+        // underlying stream only closed if auto-closing enabled
+        TrackingStream in = new TrackingStream(data, -1);
+        XMLStreamReader sr = f.createXMLStreamReader(in);
+        sr.next();
+        sr.close();
+        assertFalse(in.closed);
+        f.setProperty(XMLInputFactory2.P_AUTO_CLOSE_INPUT, Boolean.TRUE);
+        in = new TrackingStream(data, -1);
+        sr = f.createXMLStreamReader(in);
+        sr.next();
+        sr.close();
+        assertTrue(in.closed);
+
+        // and failures in background thread must be reported
+        sr = f.createXMLStreamReader(new TrackingStream(data, 50000));
+        try {
+            while (sr.hasNext()) {
+                sr.next();
+            }
+            fail("Expected an exception for failed input");
+        } catch (XMLStreamException e) {
+            assertTrue(e.getMessage().indexOf("Simulated failure") >= 0);
+        }
+    }
+
+    public void testUncheckedFailure() throws IOException
+    {
+        // unchecked exceptions must not leave the consumer waiting forever
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(new byte[5000])) {
+            int mCount;
+
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (mCount >= 2000) {
+                    throw new IllegalStateException("Simulated unchecked failure");
+                }
+                int count = super.read(b, off, len);
+                mCount += count;
+                return count;
+            }
+        };
+        ReadAheadInputStream ra = ReadAheadInputStream.construct(in, true, false, 2, 1000);
+        try {
+            readAll(ra);
+            fail("Expected an exception for failed input");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertTrue(e.getMessage().indexOf("Simulated unchecked failure") >= 0);
+        }
+        ra.close();
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Helper methods, classes
+    ///////////////////////////////////////////////////////////
+     */
+
+    final static class TrackingStream extends FilterInputStream
+    {
+        final int mFailAt;
+
+        int mCount;
+
+        boolean closed;
+
+        TrackingStream(byte[] data, int failAt) {
+            super(new ByteArrayInputStream(data));
+            mFailAt = failAt;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (mFailAt >= 0 && mCount + len > mFailAt) {
+                throw new IOException("Simulated failure");
+            }
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                mCount += count;
+            }
+            return count;
+        }
+
+        public void close() { closed = true; }
+    }
+
+    private static String generateDoc(int count)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<root>");
+        for (int i = 0; i < count; ++i) {
+            sb.append("<item id='").append(i).append("'>").append((char) ('a' + (i % 26))).append("</item>\n");
+        }
+        sb.append("</root>");
+        return sb.toString();
+    }
+
+    private static String collectText(XMLStreamReader sr) throws XMLStreamException
+    {
+        StringBuilder sb = new StringBuilder();
+        while (sr.hasNext()) {
+            if (sr.next() == XMLStreamConstants.START_ELEMENT && "item".equals(sr.getLocalName())) {
+                sb.append(sr.getElementText());
+            }
+        }
+        sr.close();
+        return sb.toString();
+    }
+
+    private static String readAll(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0) {
+            out.write(b);
+        }
+        return out.toString("UTF-8");
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new GZIPOutputStream(bytes);
+        out.write(data);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new DeflaterOutputStream(bytes);
+        out.write(data);
+        out.close();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,106 @@
+package wstxtest.io;
+
+import java.io.*;
+
+import javax.xml.stream.*;
+
+import junit.framework.TestCase;
+
+import com.ctc.wstx.cfg.XmlConsts;
+import com.ctc.wstx.io.SingleByteCodec;
+import com.ctc.wstx.io.SingleByteReader;
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Unit tests for verifying that content in single-byte encodings is
+ * decoded using code tables, identically to JDK decoders.
+ */
+public class TestSingleByteReader extends TestCase
+{
+    public void testCodecs() throws IOException
+    {
+        SingleByteCodec codec = SingleByteCodec.forEncoding("windows-1252");
+        assertNotNull(codec);
+        assertTrue(codec.isAsciiCompatible());
+        assertSame(codec, SingleByteCodec.forEncoding("windows-1252"));
+        // aliases share the codec of the canonical name
+        assertSame(codec, SingleByteCodec.forEncoding("cp1252"));
+        assertEquals("windows-1252", codec.getEncoding());
+        assertEquals(0x80, codec.encode('\u20AC'));
+        assertEquals(0xE9, codec.encode('\u00E9'));
+        assertEquals(-1, codec.encode('\u0151'));
+
+        // EBCDIC can be decoded, but not used for output
+        codec = SingleByteCodec.forEncoding("IBM037");
+        assertNotNull(codec);
+        assertFalse(codec.isAsciiCompatible());
+
+        // and multi-byte encodings are not handled
+        assertNull(SingleByteCodec.forEncoding("UTF-8"));
+        assertNull(SingleByteCodec.forEncoding("Shift_JIS"));
+        assertNull(SingleByteCodec.forEncoding("no-such-encoding"));
+    }
+
+    public void testDecoding() throws IOException
+    {
+        String[] ENCS = { "windows-1252", "ISO-8859-2", "KOI8-R", "IBM037" };
+        for (int i = 0; i < ENCS.length; ++i) {
+            String enc = ENCS[i];
+            byte[] data = new byte[256];
+            for (int b = 0; b < data.length; ++b) {
+                data[b] = (byte) b;
+            }
+            String exp = new String(data, enc);
+            SingleByteReader r = new SingleByteReader(null, new ByteArrayInputStream(data),
+                                                      new byte[16], 0, 0, true,
+                                                      SingleByteCodec.forEncoding(enc));
+            assertEquals(enc, exp, readAll(r));
+        }
+    }
+
+    public void testXml11() throws IOException
+    {
+        // 0x85 is NEL in ISO-8859-2 (but ellipsis in windows-1252)
+        byte[] data = "a\u0085b".getBytes("ISO-8859-2");
+        SingleByteReader r = new SingleByteReader(null, new ByteArrayInputStream(data),
+                                                  new byte[16], 0, 0, true,
+                                                  SingleByteCodec.forEncoding("ISO-8859-2"));
+        r.setXmlCompliancy(XmlConsts.XML_V_11);
+        assertEquals("a\nb", readAll(r));
+    }
+
+    public void testStreamReader() throws Exception
+    {
+        final String TEXT = "\u20AC \u2013 \u00E9 \u201Cx\u201D";
+        String[] ENCS = { "windows-1252", "ISO-8859-15" };
+        WstxInputFactory f = new WstxInputFactory();
+        for (int i = 0; i < ENCS.length; ++i) {
+            String enc = ENCS[i];
+            String text = enc.startsWith("ISO") ? "\u20AC \u00E9" : TEXT;
+            String doc = "<?xml version='1.0' encoding='"+enc+"'?><root attr='"+text+"'>"+text+"</root>";
+            XMLStreamReader sr = f.createXMLStreamReader(new ByteArrayInputStream(doc.getBytes(enc)));
+            assertEquals(XMLStreamConstants.START_ELEMENT, sr.next());
+            assertEquals(text, sr.getAttributeValue(0));
+            assertEquals(XMLStreamConstants.CHARACTERS, sr.next());
+            assertEquals(text, sr.getText());
+            sr.close();
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Helper methods
+    ///////////////////////////////////////////////////////////
+     */
+
+    private String readAll(Reader r) throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        char[] cbuf = new char[7];
+        int count;
+        while ((count = r.read(cbuf, 0, cbuf.length)) >= 0) {
+            sb.append(cbuf, 0, count);
+        }
+        return sb.toString();
+    }
+}
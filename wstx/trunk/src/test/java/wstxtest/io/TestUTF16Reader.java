@@ -0,0 +1,145 @@
+package wstxtest.io;
+
+import java.io.*;
+
+import javax.xml.stream.*;
+
+import junit.framework.TestCase;
+
+import com.ctc.wstx.cfg.XmlConsts;
+import com.ctc.wstx.io.UTF16Reader;
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Unit tests for verifying that UTF-16 content is properly decoded
+ * by {@link UTF16Reader}, including surrogate pairs split across
+ * buffer boundaries.
+ */
+public class TestUTF16Reader extends TestCase
+{
+    final static String TEXT = "abc\u00E9\u20AC\uD834\uDD1Exyz\uD83D\uDE00\r\n";
+
+    public void testDecoding() throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 50; ++i) {
+            sb.append(TEXT);
+        }
+        String text = sb.toString();
+        // Use odd buffer and read lengths, to hit all boundary cases
+        for (int bufLen = 4; bufLen < 40; bufLen += 3) {
+            for (int readLen = 1; readLen < 8; ++readLen) {
+                assertEquals(text, decode(text.getBytes("UTF-16BE"), true, bufLen, readLen, false));
+                assertEquals(text, decode(text.getBytes("UTF-16LE"), false, bufLen, readLen, false));
+            }
+        }
+    }
+
+    public void testInvalidSurrogates() throws IOException
+    {
+        verifyFailure("ab\uD834c", "surrogate");
+        verifyFailure("ab\uDD1Ec", "surrogate");
+        // missing second half at EOF
+        verifyFailure("ab\uD834", "EOF");
+        verifyFailure("ab\uFFFE", "0xfffe");
+    }
+
+    public void testOddLength() throws IOException
+    {
+        byte[] data = "abc".getBytes("UTF-16BE");
+        byte[] odd = new byte[data.length+1];
+        System.arraycopy(data, 0, odd, 0, data.length);
+        try {
+            decode(odd, true, 16, 10, false);
+            fail("Expected an exception for odd byte count");
+        } catch (CharConversionException e) {
+            assertTrue(e.getMessage().indexOf("EOF") >= 0);
+        }
+    }
+
+    public void testXml11() throws IOException
+    {
+        String text = "a\u0085b\r\u2028c";
+        assertEquals(text, decode(text.getBytes("UTF-16LE"), false, 16, 10, false));
+        assertEquals("a\nb\n\nc", decode(text.getBytes("UTF-16LE"), false, 16, 10, true));
+        try {
+            decode("a\u0090".getBytes("UTF-16LE"), false, 16, 10, true);
+            fail("Expected an exception for a control character in xml 1.1");
+        } catch (CharConversionException e) {
+            assertTrue(e.getMessage().indexOf("xml 1.1") >= 0);
+        }
+    }
+
+    public void testStreamReader() throws Exception
+    {
+        final String XML = "<root attr='\u00E9'>\uD834\uDD1E text</root>";
+        WstxInputFactory f = new WstxInputFactory();
+        String[] ENCS = { "UTF-16BE", "UTF-16LE" };
+        for (int i = 0; i < ENCS.length; ++i) {
+            String enc = ENCS[i];
+            // Both with BOM and undeclared encoding; and declared without BOM
+            String[] docs = { "\uFEFF"+XML,
+                              "<?xml version='1.0' encoding='"+enc+"'?>"+XML };
+            for (int j = 0; j < docs.length; ++j) {
+                XMLStreamReader sr = f.createXMLStreamReader(new ByteArrayInputStream(docs[j].getBytes(enc)));
+                assertEquals(enc, sr.getEncoding());
+                assertEquals(XMLStreamConstants.START_ELEMENT, sr.next());
+                assertEquals("\u00E9", sr.getAttributeValue(0));
+                assertEquals(XMLStreamConstants.CHARACTERS, sr.next());
+                assertEquals("\uD834\uDD1E text", sr.getText());
+                assertEquals(XMLStreamConstants.END_ELEMENT, sr.next());
+                sr.close();
+            }
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Helper methods
+    ///////////////////////////////////////////////////////////
+     */
+
+    private String decode(byte[] data, boolean bigEndian, int bufLen, int readLen,
+                          boolean xml11)
+        throws IOException
+    {
+        /* Reader must be allowed to manage the buffer (to move partial
+         * chars to its beginning); but with no config, it will not be
+         * recycled
+         */
+        UTF16Reader r = new UTF16Reader(null, new ByteArrayInputStream(data),
+                                        new byte[bufLen], 0, 0, true, bigEndian);
+        if (xml11) {
+            r.setXmlCompliancy(XmlConsts.XML_V_11);
+        }
+        StringBuilder sb = new StringBuilder();
+        char[] cbuf = new char[readLen];
+        int count;
+        while ((count = r.read(cbuf, 0, readLen)) >= 0) {
+            // must not block to return nothing
+            assertTrue(count > 0);
+            sb.append(cbuf, 0, count);
+        }
+        return sb.toString();
+    }
+
+    private void verifyFailure(String text, String expMsg) throws IOException
+    {
+        try {
+            // (can not use String.getBytes(), would replace invalid chars)
+            byte[] data = new byte[text.length() * 2];
+            for (int i = 0; i < text.length(); ++i) {
+                char c = text.charAt(i);
+                data[i+i] = (byte) (c >> 8);
+                data[i+i+1] = (byte) c;
+            }
+            decode(data, true, 16, 10, false);
+            fail("Expected an exception for invalid content");
+        } catch (CharConversionException e) {
+            String msg = e.getMessage();
+            if (msg.indexOf(expMsg) < 0) {
+                fail("Expected exception message to contain '"+expMsg+"', got: "+msg);
+            }
+        }
+    }
+}
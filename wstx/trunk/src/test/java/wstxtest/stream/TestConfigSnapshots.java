@@ -0,0 +1,182 @@
+package wstxtest.stream;
+
+import java.io.*;
+
+import javax.xml.stream.*;
+
+import org.codehaus.stax2.XMLStreamReader2;
+import org.codehaus.stax2.XMLStreamWriter2;
+
+import com.ctc.wstx.api.ReaderConfig;
+import com.ctc.wstx.api.WriterConfig;
+import com.ctc.wstx.api.WstxInputProperties;
+import com.ctc.wstx.stax.WstxInputFactory;
+import com.ctc.wstx.stax.WstxOutputFactory;
+
+/**
+ * Unit tests for verifying that factories share immutable configuration
+ * snapshots between readers and writers, and that changes to either
+ * factory or individual readers/writers do not leak.
+ */
+public class TestConfigSnapshots
+    extends BaseStreamTest
+{
+    public void testReaderSnapshotReuse() throws Exception
+    {
+        WstxInputFactory f = (WstxInputFactory) getNewInputFactory();
+        ReaderConfig snap = f.getConfigSnapshot();
+        assertTrue(snap.isFrozen());
+        assertNull(snap.getSymbols());
+        // no changes, same snapshot
+        assertSame(snap, f.getConfigSnapshot());
+
+        // but will be rebuilt after changes, via factory or config
+        f.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        ReaderConfig snap2 = f.getConfigSnapshot();
+        assertNotSame(snap, snap2);
+        assertTrue(snap2.willCoalesceText());
+        assertFalse(snap.willCoalesceText());
+
+        f.getConfig().setMaxElementDepth(10);
+        ReaderConfig snap3 = f.getConfigSnapshot();
+        assertNotSame(snap2, snap3);
+        assertEquals(10, snap3.getMaxElementDepth());
+    }
+
+    public void testFrozenReaderConfig() throws Exception
+    {
+        ReaderConfig snap = ((WstxInputFactory) getNewInputFactory()).getConfigSnapshot();
+        try {
+            snap.doCoalesceText(true);
+            fail("Expected an exception when modifying frozen config");
+        } catch (IllegalStateException e) {
+            ; // good
+        }
+        try {
+            snap.setProperty(WstxInputProperties.P_INPUT_BUFFER_LENGTH, Integer.valueOf(100));
+            fail("Expected an exception when modifying frozen config");
+        } catch (IllegalStateException e) {
+            ; // good
+        }
+        assertFalse(snap.willCoalesceText());
+        // but private copies can be modified
+        ReaderConfig copy = snap.createNonShared(null);
+        assertFalse(copy.isFrozen());
+        copy.doCoalesceText(true);
+        assertTrue(copy.willCoalesceText());
+    }
+
+    public void testSharedPropertyChange() throws Exception
+    {
+        WstxInputFactory f = (WstxInputFactory) getNewInputFactory();
+        final String XML = "<root xmlns='urn:x' />";
+        f.setProperty(WstxInputProperties.P_RETURN_NULL_FOR_DEFAULT_NAMESPACE, Boolean.FALSE);
+        XMLStreamReader sr = constructStreamReader(f, XML);
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("", sr.getNamespacePrefix(0));
+        sr.close();
+        ReaderConfig snap = f.getConfigSnapshot();
+
+        // shared property must be visible to readers created afterwards
+        f.setProperty(WstxInputProperties.P_RETURN_NULL_FOR_DEFAULT_NAMESPACE, Boolean.TRUE);
+        assertNotSame(snap, f.getConfigSnapshot());
+        sr = constructStreamReader(f, XML);
+        assertTokenType(START_ELEMENT, sr.next());
+        assertNull(sr.getNamespacePrefix(0));
+        sr.close();
+
+        // and frozen snapshots must not be modifiable
+        try {
+            f.getConfigSnapshot().setProperty(WstxInputProperties.P_RETURN_NULL_FOR_DEFAULT_NAMESPACE, Boolean.FALSE);
+            fail("Expected an exception when modifying frozen config");
+        } catch (IllegalStateException e) {
+            ; // good
+        }
+
+        // same for writer configs
+        WstxOutputFactory of = (WstxOutputFactory) getNewOutputFactory();
+        WriterConfig wsnap = of.getConfigSnapshot();
+        boolean old = wsnap.returnNullForDefaultNamespace();
+        of.setProperty(WstxInputProperties.P_RETURN_NULL_FOR_DEFAULT_NAMESPACE, Boolean.valueOf(!old));
+        assertNotSame(wsnap, of.getConfigSnapshot());
+        assertEquals(!old, of.getConfigSnapshot().returnNullForDefaultNamespace());
+        try {
+            of.getConfigSnapshot().setProperty(WstxInputProperties.P_RETURN_NULL_FOR_DEFAULT_NAMESPACE, Boolean.valueOf(old));
+            fail("Expected an exception when modifying frozen config");
+        } catch (IllegalStateException e) {
+            ; // good
+        }
+    }
+
+    public void testReaderPropertyNotShared() throws Exception
+    {
+        XMLInputFactory f = getNewInputFactory();
+        final String XML = "<root><a>x</a><b/></root>";
+        XMLStreamReader2 sr1 = constructStreamReader(f, XML);
+        XMLStreamReader2 sr2 = constructStreamReader(f, XML);
+
+        assertTrue(sr1.setProperty(WstxInputProperties.P_MAX_ELEMENT_DEPTH, Integer.valueOf(1)));
+        assertEquals(Integer.valueOf(1), sr1.getProperty(WstxInputProperties.P_MAX_ELEMENT_DEPTH));
+        assertFalse(Integer.valueOf(1).equals(sr2.getProperty(WstxInputProperties.P_MAX_ELEMENT_DEPTH)));
+        assertFalse(Integer.valueOf(1).equals(f.getProperty(WstxInputProperties.P_MAX_ELEMENT_DEPTH)));
+
+        // and limit set for the reader must be effective
+        assertTokenType(START_ELEMENT, sr1.next());
+        try {
+            sr1.next();
+            fail("Expected an exception for exceeding max element depth");
+        } catch (XMLStreamException e) {
+            assertTrue(e.getMessage().indexOf("Maximum Element Depth") >= 0);
+        }
+        streamThrough(sr2);
+    }
+
+    public void testReaderXml11AndDtd() throws Exception
+    {
+        XMLInputFactory f = getNewInputFactory();
+        XMLStreamReader sr = f.createXMLStreamReader(new StringReader
+            ("<?xml version='1.1'?><!DOCTYPE root [<!ENTITY ent 'value'>]><root>&ent;</root>"));
+        assertEquals("1.1", sr.getVersion());
+        assertTokenType(DTD, sr.next());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("root", sr.getLocalName());
+        assertTokenType(CHARACTERS, sr.next());
+        assertEquals("value", getAndVerifyText(sr));
+        sr.close();
+
+        // must not affect readers created afterwards
+        assertFalse(((WstxInputFactory) f).getConfigSnapshot().isXml11());
+        sr = f.createXMLStreamReader(new StringReader("<root />"));
+        assertTokenType(START_ELEMENT, sr.next());
+        sr.close();
+    }
+
+    public void testWriterSnapshot() throws Exception
+    {
+        WstxOutputFactory f = (WstxOutputFactory) getNewOutputFactory();
+        WriterConfig snap = f.getConfigSnapshot();
+        assertTrue(snap.isFrozen());
+        assertSame(snap, f.getConfigSnapshot());
+        try {
+            snap.doEscapeCr(false);
+            fail("Expected an exception when modifying frozen config");
+        } catch (IllegalStateException e) {
+            ; // good
+        }
+
+        f.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, Boolean.TRUE);
+        WriterConfig snap2 = f.getConfigSnapshot();
+        assertNotSame(snap, snap2);
+        assertTrue(snap2.automaticNamespacesEnabled());
+
+        // writer-specific change must not leak to factory
+        StringWriter w = new StringWriter();
+        XMLStreamWriter2 sw = (XMLStreamWriter2) f.createXMLStreamWriter(w);
+        sw.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, Boolean.FALSE);
+        assertEquals(Boolean.TRUE, f.getProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES));
+        assertSame(snap2, f.getConfigSnapshot());
+        sw.writeEmptyElement("root");
+        sw.close();
+        assertEquals("<root/>", w.toString());
+    }
+}
@@ -0,0 +1,202 @@
+package wstxtest.stream;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.*;
+
+import org.codehaus.stax2.XMLStreamReader2;
+
+import com.ctc.wstx.record.ElementIndex;
+import com.ctc.wstx.record.ElementIndexBuilder;
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Unit tests for verifying that {@link ElementIndexBuilder} records
+ * correct byte offsets, and that indexed elements can be parsed
+ * separately.
+ */
+public class TestElementIndex
+    extends BaseStreamTest
+{
+    final static QName ROOT = new QName("urn:default", "root");
+    final static QName REC = new QName("urn:default", "rec");
+    final static QName GROUP = new QName("urn:default", "group");
+
+    final static int RECORDS = 300;
+
+    public void testUTF8() throws Exception
+    {
+        verifyIndex("UTF-8", false);
+        verifyIndex("UTF-8", true);
+    }
+
+    public void testUTF16() throws Exception
+    {
+        verifyIndex("UTF-16BE", false);
+        verifyIndex("UTF-16LE", false);
+        verifyIndex("UTF-16", true);
+    }
+
+    public void testSingleByte() throws Exception
+    {
+        verifyIndex("ISO-8859-1", false);
+    }
+
+    public void testNestedPaths() throws Exception
+    {
+        // include multi-byte chars, including one outside of the BMP
+        File f = writeFile("<root xmlns='urn:default'>\uD83D\uDE00\u20AC<group><rec id='a'/>"
+                           +"<group><rec id='b'/></group></group><rec id='c'/></root>", "UTF-8", false);
+        ElementIndex index = new ElementIndexBuilder(new WstxInputFactory())
+            .addPath(ROOT, GROUP)
+            .addPath(ROOT, GROUP, REC)
+            .build(f);
+        // outer group, its record; but not nested group or record in it
+        assertEquals(2, index.size());
+        assertEquals(0, index.getPathIndex(0));
+        assertEquals(2, index.getDepth(0));
+        assertEquals(1, index.getPathIndex(1));
+        assertEquals(3, index.getDepth(1));
+        XMLStreamReader2 sr = index.createReader(new WstxInputFactory(), f, 0);
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("group", sr.getLocalName());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("a", sr.getAttributeValue(null, "id"));
+        sr.close();
+    }
+
+    public void testSerialization() throws Exception
+    {
+        File f = writeFile(buildDoc(), "UTF-8", false);
+        ElementIndex index = new ElementIndexBuilder(new WstxInputFactory())
+            .addPath(ROOT, REC).addPath(ROOT, GROUP, REC).build(f);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(bytes);
+        // should be compact: just a few bytes per entry
+        assertTrue(bytes.size() < index.size() * 8);
+        ElementIndex index2 = ElementIndex.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(index.size(), index2.size());
+        assertEquals(index.getCharset(), index2.getCharset());
+        assertEquals(index.getPath(1), index2.getPath(1));
+        for (int i = 0; i < index.size(); ++i) {
+            assertEquals(index.getStartOffset(i), index2.getStartOffset(i));
+            assertEquals(index.getEndOffset(i), index2.getEndOffset(i));
+            assertEquals(index.getDepth(i), index2.getDepth(i));
+            assertEquals(index.getPathIndex(i), index2.getPathIndex(i));
+            assertEquals(index.getNamespaceBindings(i), index2.getNamespaceBindings(i));
+        }
+
+        try {
+            ElementIndex.readFrom(new ByteArrayInputStream("<root/>".getBytes("UTF-8")));
+            fail("Expected an exception for invalid index");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().indexOf("signature") >= 0);
+        }
+    }
+
+    public void testUnsupportedEncoding() throws Exception
+    {
+        File f = writeFile("<?xml version='1.0' encoding='Shift_JIS'?><root/>", "Shift_JIS", false);
+        try {
+            new ElementIndexBuilder(new WstxInputFactory()).addPath(new QName("root")).build(f);
+            fail("Expected an exception for unsupported encoding");
+        } catch (XMLStreamException e) {
+            assertTrue(e.getMessage().indexOf("Shift_JIS") >= 0);
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Helper methods
+    ///////////////////////////////////////////////////////////
+     */
+
+    private void verifyIndex(String enc, boolean bom)
+        throws Exception
+    {
+        String doc = buildDoc();
+        if (!enc.equals("UTF-8")) {
+            doc = "<?xml version='1.0' encoding='"+enc+"'?>"+doc;
+        }
+        File f = writeFile(doc, enc, bom);
+        ElementIndex index = new ElementIndexBuilder(new WstxInputFactory())
+            .addPath(ROOT, REC)
+            .addPath(ROOT, GROUP, REC)
+            .build(f);
+        assertEquals(RECORDS + RECORDS/10, index.size());
+        assertEquals(2, index.getPathCount());
+
+        WstxInputFactory f2 = new WstxInputFactory();
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        FileChannel ch = raf.getChannel();
+        try {
+            // Go backwards, to verify that no state is carried over
+            for (int i = index.size(); --i >= 0; ) {
+                XMLStreamReader2 sr = index.createReader(f2, ch, i);
+                assertTokenType(START_ELEMENT, sr.next());
+                assertEquals("rec", sr.getLocalName());
+                assertEquals("urn:default", sr.getNamespaceURI());
+                String id = sr.getAttributeValue(null, "id");
+                if (index.getPathIndex(i) == 1) {
+                    assertEquals(3, index.getDepth(i));
+                    assertEquals("urn:a2", index.getNamespaceBindings(i).get("a"));
+                    assertTrue(id.startsWith("g"));
+                    assertTokenType(START_ELEMENT, sr.next());
+                    assertEquals("urn:a2", sr.getNamespaceURI());
+                    assertTokenType(END_ELEMENT, sr.next());
+                } else {
+                    assertEquals(2, index.getDepth(i));
+                    assertEquals("urn:a", index.getNamespaceBindings(i).get("a"));
+                    int nr = Integer.parseInt(id);
+                    if ((nr & 1) == 0) {
+                        assertTokenType(START_ELEMENT, sr.next());
+                        assertEquals("urn:a", sr.getNamespaceURI());
+                        assertEquals("\u00E9 &\n"+nr, sr.getElementText());
+                    }
+                }
+                assertTokenType(END_ELEMENT, sr.next());
+                assertTokenType(END_DOCUMENT, sr.next());
+                sr.close();
+            }
+        } finally {
+            raf.close();
+        }
+        assertEquals(RECORDS/10, index.getEntriesForPath(1).length);
+    }
+
+    private String buildDoc()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<root xmlns='urn:default' xmlns:a='urn:a'>\r\n");
+        for (int i = 0; i < RECORDS; ++i) {
+            if ((i & 1) == 0) {
+                sb.append("<rec id='"+i+"'><a:x>\u00E9 &amp;\r\n"+i+"</a:x></rec>\r\n");
+            } else {
+                sb.append("<rec id=\""+i+"\" />\n");
+            }
+            if ((i % 10) == 5) {
+                sb.append("<group xmlns:a='urn:a2'><!-- <rec> --><rec id='g"+i+"'><a:y/></rec></group>");
+            }
+        }
+        sb.append("</root>");
+        return sb.toString();
+    }
+
+    private File writeFile(String content, String enc, boolean bom)
+        throws IOException
+    {
+        File f = File.createTempFile("index", ".xml");
+        f.deleteOnExit();
+        // (UTF-16 encoder adds BOM on its own)
+        if (bom && !enc.equals("UTF-16")) {
+            content = "\uFEFF" + content;
+        }
+        Writer w = new OutputStreamWriter(new FileOutputStream(f), enc);
+        w.write(content);
+        w.close();
+        return f;
+    }
+}
@@ -223,6 +223,63 @@ public class TestEntityRead
         }
     }
 
+    /**
+     * Test to verify that repeated references to plain text entities
+     * (which are expanded without new input sources) are expanded
+     * properly in all contexts.
+     */
+    public void testPlainTextEntities()
+        throws XMLStreamException
+    {
+        String XML = "<!DOCTYPE root [\n"
+            +"<!ENTITY prod 'Woodstox\tXML'>\n"
+            +"<!ENTITY ver '5.0'>\n"
+            +"<!ENTITY both '&prod; &ver;'>\n"
+            +"]><root attr='&prod; &ver;!'>&prod;, &ver; [&both;]<leaf>&prod;</leaf>&ver;</root>";
+
+        for (int i = 0; i < 2; ++i) {
+            boolean coalescing = (i > 0);
+            XMLStreamReader sr = getReader(XML, true, coalescing);
+            assertTokenType(DTD, sr.next());
+            assertTokenType(START_ELEMENT, sr.next());
+            assertEquals("Woodstox XML 5.0!", sr.getAttributeValue(0));
+            assertTokenType(CHARACTERS, sr.next());
+            assertEquals("Woodstox\tXML, 5.0 [Woodstox\tXML 5.0]", getAndVerifyText(sr));
+            assertTokenType(START_ELEMENT, sr.next());
+            assertTokenType(CHARACTERS, sr.next());
+            assertEquals("Woodstox\tXML", getAndVerifyText(sr));
+            assertTokenType(END_ELEMENT, sr.next());
+            assertTokenType(CHARACTERS, sr.next());
+            assertEquals("5.0", getAndVerifyText(sr));
+            assertTokenType(END_ELEMENT, sr.next());
+            sr.close();
+        }
+    }
+
+    /**
+     * Expansion limits must be enforced for plain text entities, too.
+     */
+    public void testPlainTextEntityLimits()
+        throws XMLStreamException
+    {
+        String XML = "<!DOCTYPE root [\n"
+            +"<!ENTITY prod 'Woodstox'>\n"
+            +"]><root>&prod;&prod;&prod;&prod;</root>";
+        XMLInputFactory f = getConfiguredFactory(true, true);
+        f.setProperty(WstxInputProperties.P_MAX_ENTITY_COUNT, Integer.valueOf(3));
+        setLazyParsing(f, false);
+        XMLStreamReader sr = constructStreamReader(f, XML);
+        assertTokenType(DTD, sr.next());
+        assertTokenType(START_ELEMENT, sr.next());
+        try {
+            sr.next();
+            fail("Should have failed with entity expansion count limit");
+        } catch (XMLStreamException e) {
+            verifyException(e, "Maximum entity expansion count");
+        }
+        sr.close();
+    }
+
     /*
     ///////////////////////////////////////////////////////////
     // Private methods, other
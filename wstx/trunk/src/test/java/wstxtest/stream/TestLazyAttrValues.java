@@ -0,0 +1,131 @@
+package wstxtest.stream;
+
+import java.io.StringReader;
+
+import javax.xml.stream.*;
+
+import org.codehaus.stax2.XMLStreamReader2;
+
+import com.ctc.wstx.api.WstxInputProperties;
+
+/**
+ * Tests that verify that lazy decoding of attribute values (enabled
+ * with {@link WstxInputProperties#P_LAZY_ATTRIBUTE_VALUES}) produces
+ * same values as default eager decoding, including cases where input
+ * buffer is reloaded in the middle of a start tag.
+ *
+ * @since 5.0
+ */
+public class TestLazyAttrValues
+    extends BaseStreamTest
+{
+    public void testSimpleValues() throws XMLStreamException
+    {
+        final String XML = "<root a='1' b=\"two\" c='x &amp; y' d='' e='tab\there' xmlns:ns='urn:x' ns:f='last'/>";
+        for (int i = 0; i < 2; ++i) {
+            boolean ns = (i == 0);
+            XMLStreamReader sr = getReader(XML, ns, 4000);
+            assertTokenType(START_ELEMENT, sr.next());
+            // in non-namespace mode, namespace declaration is an attribute too
+            assertEquals(ns ? 6 : 7, sr.getAttributeCount());
+            // access in reverse order, to verify offsets
+            assertEquals("last", sr.getAttributeValue(ns ? 5 : 6));
+            assertEquals("tab here", sr.getAttributeValue(4));
+            assertEquals("", sr.getAttributeValue(3));
+            assertEquals("x & y", sr.getAttributeValue(2));
+            assertEquals("two", sr.getAttributeValue(1));
+            assertEquals("1", sr.getAttributeValue(0));
+            assertEquals("two", sr.getAttributeValue(null, "b"));
+            if (ns) {
+                assertEquals("last", sr.getAttributeValue("urn:x", "f"));
+            }
+            assertTokenType(END_ELEMENT, sr.next());
+            sr.close();
+        }
+    }
+
+    public void testTypedAccess() throws XMLStreamException
+    {
+        final String XML = "<root int='  37 ' list='1 2 3' bin='AQID' bool='true'/>";
+        XMLStreamReader2 sr = getReader(XML, true, 4000);
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals(37, sr.getAttributeAsInt(0));
+        int[] ints = sr.getAttributeAsIntArray(1);
+        assertEquals(3, ints.length);
+        assertEquals(3, ints[2]);
+        byte[] data = sr.getAttributeAsBinary(2);
+        assertEquals(3, data.length);
+        assertEquals(2, data[1]);
+        assertTrue(sr.getAttributeAsBoolean(3));
+        sr.close();
+    }
+
+    /**
+     * Test that uses minimal input buffer, to force buffer reloads
+     * in the middle of start tags.
+     */
+    public void testWithBufferReloads() throws XMLStreamException
+    {
+        StringBuilder sb = new StringBuilder("<root>");
+        for (int i = 0; i < 50; ++i) {
+            sb.append("<elem id='").append(i).append("' name='name-").append(i)
+                .append("' attr").append(i % 3).append("='value&#x41;").append(i)
+                .append("' last='").append(i * 7).append("'/>");
+        }
+        sb.append("</root>");
+
+        for (int i = 0; i < 2; ++i) {
+            boolean ns = (i == 0);
+            XMLStreamReader sr = getReader(sb.toString(), ns, 16);
+            assertTokenType(START_ELEMENT, sr.next());
+            for (int j = 0; j < 50; ++j) {
+                assertTokenType(START_ELEMENT, sr.next());
+                assertEquals(4, sr.getAttributeCount());
+                assertEquals(String.valueOf(j * 7), sr.getAttributeValue(3));
+                assertEquals("valueA"+j, sr.getAttributeValue(2));
+                assertEquals("name-"+j, sr.getAttributeValue(null, "name"));
+                assertEquals(String.valueOf(j), sr.getAttributeValue(0));
+                assertTokenType(END_ELEMENT, sr.next());
+            }
+            assertTokenType(END_ELEMENT, sr.next());
+            sr.close();
+        }
+    }
+
+    public void testWithDefaultsAndValidation() throws XMLStreamException
+    {
+        final String XML = "<!DOCTYPE root [\n"
+            +"<!ELEMENT root EMPTY>\n"
+            +"<!ATTLIST root id ID #REQUIRED>\n"
+            +"<!ATTLIST root toks NMTOKENS #IMPLIED>\n"
+            +"<!ATTLIST root def CDATA 'default'>\n"
+            +"]><root id='abc' toks='a  b' />";
+        XMLInputFactory f = getNewInputFactory();
+        f.setProperty(WstxInputProperties.P_LAZY_ATTRIBUTE_VALUES, Boolean.TRUE);
+        f.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.TRUE);
+        XMLStreamReader sr = f.createXMLStreamReader(new StringReader(XML));
+        assertTokenType(DTD, sr.next());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals(3, sr.getAttributeCount());
+        assertEquals("abc", sr.getAttributeValue(0));
+        assertEquals("a b", sr.getAttributeValue(1));
+        assertEquals("default", sr.getAttributeValue(2));
+        sr.close();
+    }
+
+    /*
+    ////////////////////////////////////////
+    // Private methods
+    ////////////////////////////////////////
+     */
+
+    private XMLStreamReader2 getReader(String contents, boolean nsAware, int bufferLen)
+        throws XMLStreamException
+    {
+        XMLInputFactory f = getNewInputFactory();
+        f.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.valueOf(nsAware));
+        f.setProperty(WstxInputProperties.P_LAZY_ATTRIBUTE_VALUES, Boolean.TRUE);
+        f.setProperty(WstxInputProperties.P_INPUT_BUFFER_LENGTH, Integer.valueOf(bufferLen));
+        return (XMLStreamReader2) f.createXMLStreamReader(new StringReader(contents));
+    }
+}
@@ -0,0 +1,235 @@
+package wstxtest.stream;
+
+import java.io.*;
+import java.util.*;
+
+import javax.xml.stream.*;
+
+import org.codehaus.stax2.XMLStreamReader2;
+
+import com.ctc.wstx.record.ParallelRecordParser;
+import com.ctc.wstx.record.RecordConsumer;
+import com.ctc.wstx.record.RecordMapper;
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Unit tests for verifying that {@link ParallelRecordParser} produces
+ * the same records as sequential parsing, even when speculative splitting
+ * of the document finds false record boundaries.
+ */
+public class TestParallelRecordParser
+    extends BaseStreamTest
+{
+    final static int RECORDS = 500;
+
+    /**
+     * Mapper that returns id, namespace URI and all text of the record
+     */
+    final static RecordMapper<String> TEXT_MAPPER = new RecordMapper<String>() {
+        @Override
+        public String mapRecord(XMLStreamReader2 sr) throws XMLStreamException
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append(sr.getAttributeValue(null, "id")).append('|');
+            sb.append(sr.getNamespaceURI()).append('|');
+            int depth = sr.getDepth();
+            while (sr.next() != END_ELEMENT || sr.getDepth() != depth) {
+                if (sr.getEventType() == CHARACTERS || sr.getEventType() == CDATA) {
+                    sb.append(sr.getText());
+                }
+            }
+            return sb.toString();
+        }
+    };
+
+    /**
+     * Mapper that does not read contents of the record at all
+     */
+    final static RecordMapper<String> ID_MAPPER = new RecordMapper<String>() {
+        @Override
+        public String mapRecord(XMLStreamReader2 sr) {
+            return sr.getAttributeValue(null, "id");
+        }
+    };
+
+    final static class Collector implements RecordConsumer<String>
+    {
+        final List<String> mRecords = new ArrayList<String>();
+
+        @Override
+        public synchronized void consumeRecord(String record) {
+            mRecords.add(record);
+        }
+    }
+
+    public void testSequential() throws Exception
+    {
+        File f = writeDoc("UTF-8");
+        List<String> records = parse(f, TEXT_MAPPER, 1, 100, true);
+        assertEquals(RECORDS * 4 / 5, records.size());
+        assertEquals("0|urn:recs|entity value \u00E9", records.get(0));
+        assertEquals("1|urn:recs| <rec id='bad'> \u00E9\u20AC\uD83D\uDE00", records.get(1));
+        assertEquals("3|urn:recs|", records.get(2));
+        assertEquals("4|urn:recs|text", records.get(3));
+    }
+
+    public void testParallelUtf8() throws Exception
+    {
+        File f = writeDoc("UTF-8");
+        List<String> exp = parse(f, TEXT_MAPPER, 1, 100, true);
+        // Small chunk sizes to get lots of false boundaries
+        final int[] SIZES = { 30, 97, 200, 1000, 100000 };
+        for (int i = 0; i < SIZES.length; ++i) {
+            assertEquals(exp, parse(f, TEXT_MAPPER, 4, SIZES[i], true));
+            assertEquals(exp, parse(f, TEXT_MAPPER, 3, SIZES[i], true));
+        }
+    }
+
+    public void testParallelLatin1() throws Exception
+    {
+        File f = writeDoc("ISO-8859-1");
+        List<String> exp = parse(f, TEXT_MAPPER, 1, 100, true);
+        assertEquals(exp, parse(f, TEXT_MAPPER, 4, 77, true));
+    }
+
+    public void testNonAsciiCompatibleEncoding() throws Exception
+    {
+        // Can not split, but must still work
+        File f = writeDoc("UTF-16");
+        List<String> exp = parse(writeDoc("UTF-8"), TEXT_MAPPER, 1, 100, true);
+        assertEquals(exp, parse(f, TEXT_MAPPER, 4, 77, true));
+    }
+
+    public void testUnordered() throws Exception
+    {
+        File f = writeDoc("UTF-8");
+        List<String> exp = parse(f, TEXT_MAPPER, 1, 100, true);
+        List<String> result = parse(f, TEXT_MAPPER, 4, 150, false);
+        assertEquals(new HashSet<String>(exp), new HashSet<String>(result));
+        assertEquals(exp.size(), result.size());
+    }
+
+    public void testUnreadRecords() throws Exception
+    {
+        File f = writeDoc("UTF-8");
+        List<String> result = parse(f, ID_MAPPER, 4, 50, true);
+        assertEquals(RECORDS * 4 / 5, result.size());
+        assertEquals("0", result.get(0));
+        assertEquals(String.valueOf(RECORDS-1), result.get(result.size()-1));
+    }
+
+    public void testEmptyRoot() throws Exception
+    {
+        File f = File.createTempFile("records", ".xml");
+        f.deleteOnExit();
+        writeFile(f, "<root />", "UTF-8");
+        assertEquals(0, parse(f, TEXT_MAPPER, 4, 10, true).size());
+    }
+
+    public void testInvalidConfig() throws Exception
+    {
+        ParallelRecordParser p = new ParallelRecordParser(new WstxInputFactory(), "rec");
+        try {
+            p.setThreadCount(0);
+            fail("Expected an exception for invalid thread count");
+        } catch (IllegalArgumentException e) {
+            verifyException(e, "thread count");
+        }
+        try {
+            p.setChunkSize(0L);
+            fail("Expected an exception for invalid chunk size");
+        } catch (IllegalArgumentException e) {
+            verifyException(e, "chunk size");
+        }
+    }
+
+    public void testErrorInRecord() throws Exception
+    {
+        File f = File.createTempFile("records", ".xml");
+        f.deleteOnExit();
+        StringBuilder sb = new StringBuilder("<root>");
+        for (int i = 0; i < 100; ++i) {
+            sb.append("<rec id='"+i+"'>x</rec>\n");
+        }
+        sb.append("<rec id='x'></rex>");
+        for (int i = 0; i < 100; ++i) {
+            sb.append("<rec id='"+i+"'>x</rec>\n");
+        }
+        sb.append("</root>");
+        writeFile(f, sb.toString(), "UTF-8");
+        try {
+            parse(f, TEXT_MAPPER, 4, 100, true);
+            fail("Expected an exception for mismatched end tag");
+        } catch (XMLStreamException e) {
+            verifyException(e, "rex");
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Helper methods
+    ///////////////////////////////////////////////////////////
+     */
+
+    private List<String> parse(File f, RecordMapper<String> mapper, int threads, int chunkSize,
+            boolean ordered)
+        throws XMLStreamException
+    {
+        ParallelRecordParser p = new ParallelRecordParser(new WstxInputFactory(), "rec");
+        p.setThreadCount(threads);
+        p.setChunkSize(chunkSize);
+        p.setOrdered(ordered);
+        Collector c = new Collector();
+        long count = p.parse(f, mapper, c);
+        assertEquals(c.mRecords.size(), (int) count);
+        return c.mRecords;
+    }
+
+    /**
+     * Method for writing a document with records, and lots of things
+     * that look like record start tags but are not
+     */
+    private File writeDoc(String enc)
+        throws IOException
+    {
+        boolean latin1 = enc.startsWith("ISO");
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version='1.0' encoding='").append(enc).append("'?>\r\n");
+        sb.append("<!DOCTYPE root [\n<!ENTITY ent 'entity value \u00E9'>\n]>\n");
+        sb.append("<!-- <rec id='comment'> -->\n");
+        sb.append("<root xmlns='urn:recs' xmlns:x='urn:x'>\r\n");
+        for (int i = 0; i < RECORDS; ++i) {
+            switch (i % 5) {
+            case 0:
+                sb.append("<rec id='"+i+"'><!-- <rec id='x'> --><rec id='nested'/>&ent;</rec>\n");
+                break;
+            case 1:
+                sb.append("<rec\r\nid='"+i+"'><![CDATA[ <rec id='bad'> ]]>");
+                sb.append(latin1 ? "\u00E9" : "\u00E9\u20AC\uD83D\uDE00");
+                sb.append("</rec>\r\n");
+                break;
+            case 2:
+                sb.append("<x:other><rec id='inner'/><rec>\n</rec></x:other>\n");
+                break;
+            case 3:
+                sb.append("<rec id='"+i+"'/>");
+                break;
+            default:
+                sb.append("<?pi <rec ?><rec id='"+i+"' attr='&lt;rec '>text</rec>\n");
+            }
+        }
+        sb.append("</root>\n<!-- <rec> -->\n");
+        File f = File.createTempFile("records", ".xml");
+        f.deleteOnExit();
+        writeFile(f, sb.toString(), enc);
+        return f;
+    }
+
+    private void writeFile(File f, String content, String enc)
+        throws IOException
+    {
+        Writer w = new OutputStreamWriter(new FileOutputStream(f), enc);
+        w.write(content);
+        w.close();
+    }
+}
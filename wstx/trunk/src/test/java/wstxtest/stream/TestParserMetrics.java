@@ -0,0 +1,119 @@
+package wstxtest.stream;
+
+import java.io.*;
+import java.util.*;
+
+import javax.xml.stream.*;
+
+import com.ctc.wstx.api.WstxInputProperties;
+import com.ctc.wstx.metrics.DocumentMetrics;
+import com.ctc.wstx.metrics.MetricsCollector;
+import com.ctc.wstx.metrics.ParserMetricsListener;
+
+/**
+ * Unit tests for verifying that stream readers report parsing metrics
+ * to listener registered via {@link WstxInputProperties#P_METRICS_LISTENER}.
+ */
+public class TestParserMetrics
+    extends BaseStreamTest
+{
+    final static class Listener implements ParserMetricsListener
+    {
+        final List<DocumentMetrics> mDocs = new ArrayList<DocumentMetrics>();
+
+        @Override
+        public void documentCompleted(DocumentMetrics metrics) {
+            mDocs.add(metrics);
+        }
+    }
+
+    public void testBasicMetrics() throws Exception
+    {
+        final String XML = "<?xml version='1.0' encoding='UTF-8'?>\n"
+            +"<!DOCTYPE root [ <!ENTITY ent '<leaf/>'> ]>"
+            +"<root attr='x'>text &ent;<!--c--><leaf>&ent;</leaf></root>";
+        XMLInputFactory f = getNewInputFactory();
+        setCoalescing(f, true);
+        Listener l = new Listener();
+        f.setProperty(WstxInputProperties.P_METRICS_LISTENER, l);
+        assertSame(l, f.getProperty(WstxInputProperties.P_METRICS_LISTENER));
+
+        byte[] data = XML.getBytes("UTF-8");
+        XMLStreamReader sr = f.createXMLStreamReader(new ByteArrayInputStream(data));
+        while (sr.next() != END_DOCUMENT) { }
+        // reported once EOF is reached
+        assertEquals(1, l.mDocs.size());
+        sr.close();
+        // but not again when closed
+        assertEquals(1, l.mDocs.size());
+
+        DocumentMetrics m = l.mDocs.get(0);
+        assertTrue(m.isCompleted());
+        assertEquals(data.length, m.getBytesRead());
+        assertEquals(XML.length(), m.getCharsRead());
+        assertTrue(m.getBufferLoads() > 0);
+        assertEquals(4, m.getEventCount(START_ELEMENT));
+        assertEquals(4, m.getEventCount(END_ELEMENT));
+        assertEquals(1, m.getEventCount(COMMENT));
+        assertEquals(1, m.getEventCount(DTD));
+        assertEquals(2, m.getEntityExpansions());
+        assertTrue(m.getSymbolCount() >= 2);
+        assertTrue(m.getSymbolAvgSeek() >= 1.0);
+    }
+
+    public void testReportOnClose() throws Exception
+    {
+        XMLInputFactory f = getNewInputFactory();
+        Listener l = new Listener();
+        f.setProperty(WstxInputProperties.P_METRICS_LISTENER, l);
+        XMLStreamReader sr = f.createXMLStreamReader(new StringReader("<root><a/><b/></root>"));
+        assertTokenType(START_ELEMENT, sr.next());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals(0, l.mDocs.size());
+        sr.close();
+        assertEquals(1, l.mDocs.size());
+        DocumentMetrics m = l.mDocs.get(0);
+        assertEquals(2, m.getEventCount(START_ELEMENT));
+        // no byte stream to count bytes of
+        assertEquals(-1L, m.getBytesRead());
+    }
+
+    public void testNoMetricsByDefault() throws Exception
+    {
+        XMLInputFactory f = getNewInputFactory();
+        assertNull(f.getProperty(WstxInputProperties.P_METRICS_LISTENER));
+    }
+
+    public void testCollector() throws Exception
+    {
+        File dtdFile = File.createTempFile("metrics", ".dtd");
+        dtdFile.deleteOnExit();
+        Writer w = new OutputStreamWriter(new FileOutputStream(dtdFile), "UTF-8");
+        w.write("<!ELEMENT root (#PCDATA)>\n<!ATTLIST root id CDATA #IMPLIED>\n");
+        w.close();
+        final String XML = "<!DOCTYPE root SYSTEM '"+dtdFile.toURI().toURL()+"'><root id='1'>x</root>";
+
+        XMLInputFactory f = getNewInputFactory();
+        f.setProperty(WstxInputProperties.P_CACHE_DTDS, Boolean.TRUE);
+        setValidating(f, true);
+        MetricsCollector c = new MetricsCollector();
+        f.setProperty(WstxInputProperties.P_METRICS_LISTENER, c);
+
+        for (int i = 0; i < 3; ++i) {
+            XMLStreamReader sr = f.createXMLStreamReader(new StringReader(XML));
+            streamThrough(sr);
+            sr.close();
+        }
+        assertEquals(3L, c.getDocumentCount());
+        assertEquals(3L, c.getElementCount());
+        assertEquals(1L, c.getDtdCacheMisses());
+        assertEquals(2L, c.getDtdCacheHits());
+        assertEquals(3L * XML.length(), c.getCharsRead());
+        assertTrue(c.getParseTimeMillis() >= c.getMaxParseTimeMillis());
+        assertNull(c.getSlowestDocument());
+
+        c.reset();
+        assertEquals(0L, c.getDocumentCount());
+        assertEquals(0L, c.getDtdCacheHits());
+    }
+}
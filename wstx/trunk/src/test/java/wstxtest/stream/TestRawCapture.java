@@ -0,0 +1,191 @@
+package wstxtest.stream;
+
+import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+
+import javax.xml.stream.*;
+
+import com.ctc.wstx.api.WstxInputProperties;
+import com.ctc.wstx.io.ByteBufferWriter;
+import com.ctc.wstx.sr.BasicStreamReader;
+
+/**
+ * Unit tests for verifying that stream readers can capture whole
+ * elements as they appear in the input, without parsing their content.
+ */
+public class TestRawCapture
+    extends BaseStreamTest
+{
+    final static String ELEM = "<ns:elem  xmlns:ns='urn:x' a = \"&ent; &lt;\"\r\n>text &ent; \u00E9\u20AC"
+        +"<!-- </ns:elem> --><![CDATA[</ns:elem>]]><x:leaf xmlns:x='urn:y'/>\r\n<b>\u00E9</b></ns:elem >";
+
+    final static String DOC = "<!DOCTYPE root [<!ENTITY ent 'value'>]>"
+        +"<root>"+ELEM+"<next/></root>";
+
+    public void testCaptureWithWriter()
+        throws Exception
+    {
+        BasicStreamReader sr = startAtElem(getNewInputFactory(), DOC);
+        StringWriter w = new StringWriter();
+        assertTrue(sr.captureRawElement(w));
+        assertEquals(ELEM, w.toString());
+        verifyAfterCapture(sr);
+    }
+
+    public void testCaptureWithStream()
+        throws Exception
+    {
+        final String[] ENCS = { "UTF-8", "UTF-16", "ISO-8859-15" };
+        for (int i = 0; i < ENCS.length; ++i) {
+            String enc = ENCS[i];
+            String doc = "<?xml version='1.0' encoding='"+enc+"'?>"+DOC;
+            XMLInputFactory f = getNewInputFactory();
+            BasicStreamReader sr = startAtElem(f, new ByteArrayInputStream(doc.getBytes(enc)));
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            assertTrue(sr.captureRawElement(bos));
+            String expEnc = enc.equals("UTF-16") ? "UTF-16BE" : enc;
+            assertEquals(ELEM, bos.toString(expEnc));
+            // must be byte-identical too
+            assertEquals(ELEM.getBytes(expEnc).length, bos.size());
+            verifyAfterCapture(sr);
+        }
+    }
+
+    public void testCaptureWithByteBuffer()
+        throws Exception
+    {
+        byte[] data = DOC.getBytes("UTF-8");
+        byte[] exp = ELEM.getBytes("UTF-8");
+
+        BasicStreamReader sr = startAtElem(getNewInputFactory(), new ByteArrayInputStream(data));
+        ByteBuffer bb = ByteBuffer.allocate(1000);
+        assertTrue(sr.captureRawElement(bb));
+        bb.flip();
+        byte[] result = new byte[bb.remaining()];
+        bb.get(result);
+        assertEquals(ELEM, new String(result, "UTF-8"));
+        assertEquals(exp.length, result.length);
+        verifyAfterCapture(sr);
+
+        // and then overflow: buffer must be left as is, and reader
+        // must point to the end of the element
+        sr = startAtElem(getNewInputFactory(), new ByteArrayInputStream(data));
+        bb = ByteBuffer.allocate(30);
+        bb.put((byte) 'x');
+        try {
+            sr.captureRawElement(bb);
+            fail("Expected an exception for buffer overflow");
+        } catch (BufferOverflowException e) {
+            ; // good
+        }
+        assertEquals(1, bb.position());
+        verifyAfterCapture(sr);
+    }
+
+    public void testByteBufferWriterErrors()
+        throws Exception
+    {
+        // unmappable and malformed chars must not be replaced silently
+        ByteBuffer bb = ByteBuffer.allocate(100);
+        Writer w = new ByteBufferWriter(bb, Charset.forName("ISO-8859-1"));
+        w.write("abc");
+        try {
+            w.write("\u20AC");
+            fail("Expected an exception for unmappable character");
+        } catch (CharacterCodingException e) {
+            ; // good
+        }
+        w = new ByteBufferWriter(bb, Charset.forName("UTF-8"));
+        w.write("x\uD800");
+        try {
+            w.write("y");
+            w.flush();
+            fail("Expected an exception for malformed content");
+        } catch (CharacterCodingException e) {
+            ; // good
+        }
+    }
+
+    public void testCaptureWithSmallBuffers()
+        throws Exception
+    {
+        // Tags may not be available as is: but content must be
+        XMLInputFactory f = getNewInputFactory();
+        f.setProperty(WstxInputProperties.P_INPUT_BUFFER_LENGTH, Integer.valueOf(16));
+        BasicStreamReader sr = startAtElem(f, DOC);
+        StringWriter w = new StringWriter();
+        assertTrue(sr.captureRawElement(w));
+        String result = w.toString();
+        int ix = ELEM.indexOf("text");
+        assertTrue(result.indexOf(ELEM.substring(ix, ELEM.lastIndexOf("</"))) > 0);
+        // and must be well-formed, same element
+        XMLStreamReader sr2 = constructNsStreamReader("<!DOCTYPE x [<!ENTITY ent 'value'>]>"+result, true);
+        assertTokenType(DTD, sr2.next());
+        assertTokenType(START_ELEMENT, sr2.next());
+        assertEquals("urn:x", sr2.getNamespaceURI());
+        assertEquals("value <", sr2.getAttributeValue(0));
+        sr2.close();
+        verifyAfterCapture(sr);
+    }
+
+    public void testNoCaptureFromEntity()
+        throws Exception
+    {
+        String doc = "<!DOCTYPE root [<!ENTITY ent '<a>x</a>'>]><root>&ent;</root>";
+        BasicStreamReader sr = (BasicStreamReader) constructNsStreamReader(doc, false);
+        assertTokenType(DTD, sr.next());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertFalse(sr.captureRawElement(new StringWriter()));
+        assertTokenType(START_ELEMENT, sr.getEventType());
+        assertEquals("a", sr.getLocalName());
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Helper methods
+    ///////////////////////////////////////////////////////////
+     */
+
+    private BasicStreamReader startAtElem(XMLInputFactory f, String doc)
+        throws XMLStreamException
+    {
+        return startAtElem((BasicStreamReader) f.createXMLStreamReader(new StringReader(doc)));
+    }
+
+    private BasicStreamReader startAtElem(XMLInputFactory f, InputStream in)
+        throws XMLStreamException
+    {
+        return startAtElem((BasicStreamReader) f.createXMLStreamReader(in));
+    }
+
+    private BasicStreamReader startAtElem(BasicStreamReader sr)
+        throws XMLStreamException
+    {
+        assertTokenType(DTD, sr.next());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("elem", sr.getLocalName());
+        return sr;
+    }
+
+    private void verifyAfterCapture(BasicStreamReader sr)
+        throws XMLStreamException
+    {
+        assertTokenType(END_ELEMENT, sr.getEventType());
+        assertEquals("elem", sr.getLocalName());
+        assertEquals("urn:x", sr.getNamespaceURI());
+        // line numbers must still be accurate
+        assertEquals(3, sr.getLocation().getLineNumber());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("next", sr.getLocalName());
+        assertTokenType(END_ELEMENT, sr.next());
+        assertTokenType(END_ELEMENT, sr.next());
+        assertTokenType(END_DOCUMENT, sr.next());
+        sr.close();
+    }
+}
@@ -0,0 +1,290 @@
+package wstxtest.stream;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+import javax.xml.stream.*;
+
+import org.codehaus.stax2.XMLStreamReader2;
+
+import com.ctc.wstx.api.WstxInputProperties;
+import com.ctc.wstx.sr.BasicStreamReader;
+import com.ctc.wstx.sr.ReaderCheckpoint;
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Unit tests for verifying that stream readers can create checkpoints,
+ * and that parsing can be resumed from them.
+ */
+public class TestReaderCheckpoint
+    extends BaseStreamTest
+{
+    final static int RECORDS = 50;
+
+    public void testResumeUTF8() throws Exception
+    {
+        File f = writeFile(buildDoc("UTF-8"), "UTF-8");
+        for (int i = 1; i < 15; i += 3) {
+            verifyResume(f, i, false);
+        }
+        verifyResume(f, 20, true);
+    }
+
+    public void testResumeUTF16() throws Exception
+    {
+        File f = writeFile(buildDoc("UTF-16"), "UTF-16");
+        verifyResume(f, 4, false);
+        verifyResume(f, 9, true);
+    }
+
+    public void testResumeLatin1() throws Exception
+    {
+        File f = writeFile(buildDoc("ISO-8859-1"), "ISO-8859-1");
+        verifyResume(f, 7, true);
+    }
+
+    public void testResumeAtStartElement() throws Exception
+    {
+        File f = writeFile(buildDoc("UTF-8"), "UTF-8");
+        WstxInputFactory fact = new WstxInputFactory();
+        List<String> all = collectEvents(fact.createXMLStreamReader(f), -1);
+
+        XMLStreamReader2 sr = fact.createXMLStreamReader(f);
+        // Advance to the 5th record start element
+        int count = 0;
+        while (true) {
+            if (sr.next() == START_ELEMENT && sr.getLocalName().equals("rec")) {
+                if (++count == 5) {
+                    break;
+                }
+            }
+        }
+        int done = eventIndex(sr, all);
+        ReaderCheckpoint cp = ((BasicStreamReader) sr).createCheckpoint();
+        sr.close();
+        assertEquals(2, cp.getDepth());
+        List<String> rest = collectEvents(fact.createResumedReader(cp, f), -1);
+        assertEquals(all.subList(done+1, all.size()), rest);
+    }
+
+    public void testResumeInEpilog() throws Exception
+    {
+        File f = writeFile("<root><a/></root><!--x--><?pi?>", "UTF-8");
+        WstxInputFactory fact = new WstxInputFactory();
+        XMLStreamReader2 sr = fact.createXMLStreamReader(f);
+        while (sr.next() != END_ELEMENT || !sr.getLocalName().equals("root")) { }
+        ReaderCheckpoint cp = ((BasicStreamReader) sr).createCheckpoint();
+        sr.close();
+        assertEquals(0, cp.getDepth());
+        sr = fact.createResumedReader(cp, f);
+        assertTokenType(COMMENT, sr.next());
+        assertTokenType(PROCESSING_INSTRUCTION, sr.next());
+        assertTokenType(END_DOCUMENT, sr.next());
+        sr.close();
+    }
+
+    public void testInvalidState() throws Exception
+    {
+        WstxInputFactory fact = new WstxInputFactory();
+        BasicStreamReader sr = (BasicStreamReader) fact.createXMLStreamReader(new StringReader("<root><a/>x</root>"));
+        assertTokenType(START_ELEMENT, sr.next());
+        // not a file, can not calculate byte offsets:
+        try {
+            sr.createCheckpoint();
+            fail("Expected an exception for reader that does not read a file");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().indexOf("files") >= 0);
+        }
+        assertTokenType(START_ELEMENT, sr.next());
+        try {
+            sr.createCheckpoint();
+            fail("Expected an exception for empty element");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().indexOf("empty element") >= 0);
+        }
+        assertTokenType(END_ELEMENT, sr.next());
+        assertTokenType(CHARACTERS, sr.next());
+        try {
+            sr.createCheckpoint();
+            fail("Expected an exception for CHARACTERS");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().indexOf("START_ELEMENT or END_ELEMENT") >= 0);
+        }
+    }
+
+    public void testDtdAttrDefaults() throws Exception
+    {
+        // resumed reader has no DTD, so defaulted attributes would be lost
+        File f = writeFile("<!DOCTYPE root [<!ATTLIST rec kind CDATA 'dflt'>]>\n"
+                +"<root><rec id='1'>x</rec><rec id='2'>y</rec></root>", "UTF-8");
+        WstxInputFactory fact = new WstxInputFactory();
+        BasicStreamReader sr = (BasicStreamReader) fact.createXMLStreamReader(f);
+        assertTokenType(DTD, sr.next());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals(2, sr.getAttributeCount());
+        assertEquals("dflt", sr.getAttributeValue(null, "kind"));
+        assertTokenType(CHARACTERS, sr.next());
+        assertTokenType(END_ELEMENT, sr.next());
+        try {
+            sr.createCheckpoint();
+            fail("Expected an exception when DTD declares attributes");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().indexOf("DTD") >= 0);
+        }
+        sr.close();
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Helper methods
+    ///////////////////////////////////////////////////////////
+     */
+
+    /**
+     * @param recordNr Number of the record at the end of which
+     *   checkpoint is created
+     */
+    private void verifyResume(File f, int recordNr, boolean useChannel)
+        throws Exception
+    {
+        WstxInputFactory fact = new WstxInputFactory();
+        // small buffers, to verify offset calculations across buffer boundaries
+        fact.setProperty(WstxInputProperties.P_INPUT_BUFFER_LENGTH, Integer.valueOf(64));
+        List<String> all = collectEvents(fact.createXMLStreamReader(f), -1);
+
+        XMLStreamReader2 sr = fact.createXMLStreamReader(f);
+        int count = 0;
+        ReaderCheckpoint cp = null;
+        int done = -1;
+        while (cp == null) {
+            if (sr.next() == END_ELEMENT && sr.getLocalName().equals("rec")) {
+                ++count;
+                // create some earlier checkpoints too, to test incremental calculation
+                ReaderCheckpoint cp2 = ((BasicStreamReader) sr).createCheckpoint();
+                if (count == recordNr) {
+                    done = eventIndex(sr, all);
+                    cp = cp2;
+                }
+            }
+        }
+        sr.close();
+        assertEquals(1, cp.getDepth());
+
+        // Round-trip via binary form
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        cp.writeTo(bytes);
+        cp = ReaderCheckpoint.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+
+        List<String> rest;
+        if (useChannel) {
+            RandomAccessFile raf = new RandomAccessFile(f, "r");
+            FileChannel ch = raf.getChannel();
+            try {
+                rest = collectEvents(fact.createResumedReader(cp, ch), 3);
+            } finally {
+                raf.close();
+            }
+        } else {
+            rest = collectEvents(fact.createResumedReader(cp, f), 3);
+        }
+        assertEquals(all.subList(done+1, all.size()), rest);
+    }
+
+    /**
+     * @param checkpointAt If not negative, number of records after which a
+     *   checkpoint is created, and parsing then resumed from it
+     */
+    private List<String> collectEvents(XMLStreamReader2 sr, int checkpointAt)
+        throws XMLStreamException
+    {
+        List<String> result = new ArrayList<String>();
+        int records = 0;
+        while (sr.hasNext()) {
+            int type = sr.next();
+            StringBuilder sb = new StringBuilder();
+            sb.append(type).append(' ').append(sr.getLocation().getLineNumber())
+                .append(':').append(sr.getLocation().getColumnNumber())
+                .append(':').append(sr.getLocation().getCharacterOffset()).append(' ');
+            if (type == START_ELEMENT || type == END_ELEMENT) {
+                sb.append('{').append(sr.getNamespaceURI()).append('}').append(sr.getLocalName())
+                    .append(" depth=").append(sr.getDepth());
+                if (type == START_ELEMENT) {
+                    sb.append(" a:").append(sr.getNamespaceContext().getNamespaceURI("a"));
+                    for (int i = 0; i < sr.getAttributeCount(); ++i) {
+                        sb.append(' ').append(sr.getAttributeLocalName(i)).append('=').append(sr.getAttributeValue(i));
+                    }
+                }
+            } else if (type == CHARACTERS || type == SPACE || type == COMMENT) {
+                sb.append(sr.getText());
+            }
+            result.add(sb.toString());
+            if (checkpointAt >= 0 && type == END_ELEMENT && sr.getLocalName().equals("rec")
+                && ++records == checkpointAt) {
+                // checkpoint from a resumed reader, and continue from it
+                ReaderCheckpoint cp = ((BasicStreamReader) sr).createCheckpoint();
+                sr.close();
+                sr = new WstxInputFactory().createResumedReader(cp, toFile(cp.getSystemId()));
+            }
+        }
+        sr.close();
+        return result;
+    }
+
+    private File toFile(String systemId)
+    {
+        try {
+            return new File(new URL(systemId).toURI());
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private int eventIndex(XMLStreamReader sr, List<String> all)
+    {
+        String loc = " "+sr.getLocation().getLineNumber()+":"+sr.getLocation().getColumnNumber()
+            +":"+sr.getLocation().getCharacterOffset()+" ";
+        for (int i = 0; i < all.size(); ++i) {
+            String ev = all.get(i);
+            if (ev.startsWith(sr.getEventType()+loc)) {
+                return i;
+            }
+        }
+        fail("Could not find event at "+loc);
+        return -1;
+    }
+
+    private String buildDoc(String enc)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version='1.0' encoding='"+enc+"'?>\n");
+        sb.append("<!DOCTYPE root [\n<!ENTITY ent 'entity &#x20AC; value'>\n]>\n");
+        sb.append("<root xmlns='urn:default' xmlns:a='urn:a'>\r\n");
+        for (int i = 0; i < RECORDS; ++i) {
+            sb.append("  <rec id='"+i+"'");
+            if ((i % 3) == 0) {
+                sb.append(" xmlns:a='urn:a"+i+"'");
+            }
+            sb.append(">\u00E9 &ent; ");
+            if ((i & 1) == 0) {
+                sb.append("&lt;&#65;");
+            }
+            sb.append("<a:x attr='&lt;'>text\r\n</a:x><!-- c"+i+" --></rec>\n");
+        }
+        sb.append("</root>\n<!-- end -->");
+        return sb.toString();
+    }
+
+    private File writeFile(String content, String enc)
+        throws IOException
+    {
+        File f = File.createTempFile("checkpoint", ".xml");
+        f.deleteOnExit();
+        Writer w = new OutputStreamWriter(new FileOutputStream(f), enc);
+        w.write(content);
+        w.close();
+        return f;
+    }
+}
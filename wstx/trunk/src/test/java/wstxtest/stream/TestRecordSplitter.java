@@ -0,0 +1,151 @@
+package wstxtest.stream;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.*;
+
+import org.codehaus.stax2.XMLStreamReader2;
+
+import com.ctc.wstx.record.RecordFragment;
+import com.ctc.wstx.record.RecordSplitter;
+import com.ctc.wstx.stax.WstxInputFactory;
+
+/**
+ * Unit tests for verifying that {@link RecordSplitter} produces
+ * fragments that can be parsed independently of the original document.
+ */
+public class TestRecordSplitter
+    extends BaseStreamTest
+{
+    final static String DOC = "<?xml version='1.0' encoding='ISO-8859-1'?>"
+        +"<root xmlns='urn:default' xmlns:a='urn:a' xmlns:b='urn:b'>"
+        +"<rec id='1'><a:x>\u00E9</a:x></rec>\n"
+        +"<group xmlns:a='urn:a2'><rec id='2' xmlns:b='urn:b2' a:attr='&amp;'><a:x/><b:y/></rec></group>"
+        +"<rec xmlns='' id='3'>not a record</rec>"
+        +"<other><rec id='4'><rec id='nested' /></rec></other>"
+        +"</root>";
+
+    public void testSplitAndParse() throws Exception
+    {
+        List<RecordFragment> frags = split(new WstxInputFactory(), DOC, new QName("urn:default", "rec"));
+        assertEquals(3, frags.size());
+        WstxInputFactory f = new WstxInputFactory();
+
+        RecordFragment frag = frags.get(0);
+        assertEquals("urn:a", frag.getInheritedNamespaces().get("a"));
+        assertEquals("urn:default", frag.getInheritedNamespaces().get(""));
+        XMLStreamReader2 sr = frag.createReader(f);
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("urn:default", sr.getNamespaceURI());
+        assertEquals("1", sr.getAttributeValue(null, "id"));
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("urn:a", sr.getNamespaceURI());
+        assertEquals("\u00E9", sr.getElementText());
+        assertTokenType(END_ELEMENT, sr.next());
+        assertTokenType(END_DOCUMENT, sr.next());
+        sr.close();
+
+        // Inner declarations override outer ones; own declarations are kept
+        frag = frags.get(1);
+        assertEquals("urn:a2", frag.getInheritedNamespaces().get("a"));
+        assertFalse(frag.getInheritedNamespaces().containsKey("b"));
+        sr = frag.createReader(f);
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("&", sr.getAttributeValue("urn:a2", "attr"));
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("urn:a2", sr.getNamespaceURI());
+        assertTokenType(END_ELEMENT, sr.next());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("urn:b2", sr.getNamespaceURI());
+        sr.close();
+
+        // Nested records are part of the outer one
+        frag = frags.get(2);
+        String str = new String(frag.getContent(), "UTF-8");
+        assertTrue(str.startsWith("<rec xmlns="));
+        assertTrue(str.endsWith("<rec id='nested' /></rec>"));
+    }
+
+    public void testSplitWhenValidating() throws Exception
+    {
+        // Raw copying not possible, need to serialize
+        String doc = "<!DOCTYPE root [\n"
+            +"<!ELEMENT root (rec*)>\n<!ATTLIST root xmlns:p CDATA #FIXED 'urn:p'>\n"
+            +"<!ELEMENT rec (#PCDATA)>\n<!ATTLIST rec p:a CDATA #IMPLIED>\n"
+            +"]><root xmlns:p='urn:p'><rec p:a='x'>a</rec><rec>b &amp; c</rec></root>";
+        WstxInputFactory f = new WstxInputFactory();
+        setValidating(f, true);
+        List<RecordFragment> frags = split(f, doc, new QName("rec"));
+        assertEquals(2, frags.size());
+        XMLStreamReader2 sr = frags.get(0).createReader(new WstxInputFactory());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("x", sr.getAttributeValue("urn:p", "a"));
+        assertEquals("a", sr.getElementText());
+        sr.close();
+        sr = frags.get(1).createReader(new WstxInputFactory());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("b & c", sr.getElementText());
+        sr.close();
+    }
+
+    public void testParallelConsumers() throws Exception
+    {
+        StringBuilder sb = new StringBuilder("<root xmlns:x='urn:x'>");
+        for (int i = 0; i < 1000; ++i) {
+            sb.append("<x:rec><x:value>"+i+"</x:value></x:rec>\n");
+        }
+        sb.append("</root>");
+        XMLStreamReader sr = new WstxInputFactory().createXMLStreamReader(new StringReader(sb.toString()));
+        RecordSplitter splitter = new RecordSplitter(sr, new QName("urn:x", "rec"));
+        final WstxInputFactory f = new WstxInputFactory();
+        ExecutorService exec = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        RecordFragment frag;
+        while ((frag = splitter.nextRecord()) != null) {
+            final RecordFragment curr = frag;
+            results.add(exec.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    XMLStreamReader2 sr2 = curr.createReader(f);
+                    sr2.nextTag();
+                    sr2.nextTag();
+                    assertEquals("urn:x", sr2.getNamespaceURI());
+                    return Integer.valueOf(sr2.getElementText());
+                }
+            }));
+        }
+        exec.shutdown();
+        assertEquals(1000, results.size());
+        for (int i = 0; i < results.size(); ++i) {
+            assertEquals(i, results.get(i).get().intValue());
+        }
+    }
+
+    public void testNonWoodstoxReader() throws Exception
+    {
+        try {
+            new RecordSplitter(new javax.xml.stream.util.StreamReaderDelegate(
+                    constructNsStreamReader("<root />", false)), new QName("rec"));
+            fail("Expected an exception for non-Woodstox reader");
+        } catch (IllegalArgumentException e) {
+            verifyException(e, "Woodstox");
+        }
+    }
+
+    private List<RecordFragment> split(XMLInputFactory f, String doc, QName recordName)
+        throws Exception
+    {
+        XMLStreamReader sr = f.createXMLStreamReader(new ByteArrayInputStream(doc.getBytes("ISO-8859-1")));
+        RecordSplitter splitter = new RecordSplitter(sr, recordName);
+        List<RecordFragment> result = new ArrayList<RecordFragment>();
+        RecordFragment frag;
+        while ((frag = splitter.nextRecord()) != null) {
+            result.add(frag);
+        }
+        sr.close();
+        return result;
+    }
+}
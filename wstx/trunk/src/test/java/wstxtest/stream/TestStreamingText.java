@@ -0,0 +1,173 @@
+package wstxtest.stream;
+
+import java.io.*;
+
+import javax.xml.stream.*;
+
+import org.codehaus.stax2.XMLInputFactory2;
+import org.codehaus.stax2.XMLStreamReader2;
+
+import com.ctc.wstx.api.WstxInputProperties;
+import com.ctc.wstx.sr.BasicStreamReader;
+
+/**
+ * Unit tests for verifying that long text content can be accessed
+ * via streaming {@link Reader}s returned by stream readers.
+ */
+public class TestStreamingText
+    extends BaseStreamTest
+{
+    final static String TEXT_CHUNK = "Some text &amp; &lt;more&gt;\r\n &#x20AC;&#65; ";
+    final static String EXP_CHUNK = "Some text & <more>\n \u20ACA ";
+
+    final static String CDATA_CHUNK = "Some ]] cdata <x> &amp;\r\n";
+    final static String EXP_CDATA_CHUNK = "Some ]] cdata <x> &amp;\n";
+
+    public void testLongText()
+        throws Exception
+    {
+        // Need enough content to span multiple text buffer segments
+        final int COUNT = 20000;
+        String doc = "<root>"+repeat(TEXT_CHUNK, COUNT)+"<end/></root>";
+        BasicStreamReader sr = startAt(getFactory(false), doc, CHARACTERS);
+        String text = readAll(sr.getTextReader());
+        assertEquals(EXP_CHUNK.length() * COUNT, text.length());
+        assertEquals(repeat(EXP_CHUNK, COUNT), text);
+        verifyEnd(sr);
+    }
+
+    public void testLongCData()
+        throws Exception
+    {
+        final int COUNT = 20000;
+        String doc = "<root><![CDATA["+repeat(CDATA_CHUNK, COUNT)+"]]><end/></root>";
+        BasicStreamReader sr = startAt(getFactory(false), doc, CDATA);
+        assertEquals(repeat(EXP_CDATA_CHUNK, COUNT), readAll(sr.getTextReader()));
+        verifyEnd(sr);
+    }
+
+    public void testCoalescing()
+        throws Exception
+    {
+        final int COUNT = 5000;
+        String doc = "<root>"+repeat(TEXT_CHUNK, COUNT)
+            +"<![CDATA["+repeat(CDATA_CHUNK, COUNT)+"]]><![CDATA[]]>"
+            +repeat(TEXT_CHUNK, COUNT)+"<end/></root>";
+        BasicStreamReader sr = startAt(getFactory(true), doc, CHARACTERS);
+        String exp = repeat(EXP_CHUNK, COUNT) + repeat(EXP_CDATA_CHUNK, COUNT)
+            + repeat(EXP_CHUNK, COUNT);
+        assertEquals(exp, readAll(sr.getTextReader()));
+        verifyEnd(sr);
+    }
+
+    public void testPartialRead()
+        throws Exception
+    {
+        final int COUNT = 20000;
+        String doc = "<root>"+repeat(TEXT_CHUNK, COUNT)+"<end/></root>";
+        BasicStreamReader sr = startAt(getFactory(false), doc, CHARACTERS);
+        Reader r = sr.getTextReader();
+        char[] buf = new char[100];
+        int count = 0;
+        while (count < buf.length) { // may get less than asked for
+            int n = r.read(buf, count, buf.length - count);
+            assertTrue(n > 0);
+            count += n;
+        }
+        assertEquals(repeat(EXP_CHUNK, 10).substring(0, 100), new String(buf));
+        // rest must be skipped when advancing:
+        verifyEnd(sr);
+        // and Reader can not be used any more
+        try {
+            r.read(buf);
+            fail("Expected an exception when reading after stream reader was advanced");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().indexOf("advanced") >= 0);
+        }
+    }
+
+    public void testCompleteToken()
+        throws Exception
+    {
+        String doc = "<root>"+TEXT_CHUNK+"<end/></root>";
+        XMLInputFactory2 f = getFactory(false);
+        setLazyParsing(f, false);
+        BasicStreamReader sr = startAt(f, doc, CHARACTERS);
+        assertEquals(EXP_CHUNK, readAll(sr.getTextReader()));
+        // can also access text normally
+        assertEquals(EXP_CHUNK, sr.getText());
+        verifyEnd(sr);
+    }
+
+    public void testNonTextual()
+        throws Exception
+    {
+        BasicStreamReader sr = startAt(getFactory(false), "<root/>", START_ELEMENT);
+        try {
+            sr.getTextReader();
+            fail("Expected an exception for START_ELEMENT");
+        } catch (IllegalStateException e) {
+            ; // good
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Helper methods
+    ///////////////////////////////////////////////////////////
+     */
+
+    private XMLInputFactory2 getFactory(boolean coalescing)
+        throws XMLStreamException
+    {
+        XMLInputFactory2 f = getNewInputFactory();
+        setCoalescing(f, coalescing);
+        setLazyParsing(f, true);
+        // small buffers, to verify handling of boundaries
+        f.setProperty(WstxInputProperties.P_INPUT_BUFFER_LENGTH, Integer.valueOf(17));
+        return f;
+    }
+
+    private BasicStreamReader startAt(XMLInputFactory f, String doc, int expType)
+        throws XMLStreamException
+    {
+        XMLStreamReader2 sr = constructStreamReader(f, doc);
+        assertTokenType(START_ELEMENT, sr.next());
+        if (expType != START_ELEMENT) {
+            assertTokenType(expType, sr.next());
+        }
+        return (BasicStreamReader) sr;
+    }
+
+    private void verifyEnd(XMLStreamReader sr)
+        throws XMLStreamException
+    {
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals("end", sr.getLocalName());
+        assertTokenType(END_ELEMENT, sr.next());
+        assertTokenType(END_ELEMENT, sr.next());
+        assertTokenType(END_DOCUMENT, sr.next());
+        sr.close();
+    }
+
+    private static String readAll(Reader r)
+        throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[1000];
+        int count;
+        while ((count = r.read(buf)) >= 0) {
+            sb.append(buf, 0, count);
+        }
+        return sb.toString();
+    }
+
+    private static String repeat(String str, int count)
+    {
+        StringBuilder sb = new StringBuilder(str.length() * count);
+        for (int i = 0; i < count; ++i) {
+            sb.append(str);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,179 @@
+package wstxtest.vstream;
+
+import java.io.StringReader;
+import java.util.*;
+
+import javax.xml.stream.*;
+
+import org.codehaus.stax2.validation.XMLValidationSchema;
+
+import com.ctc.wstx.api.WstxInputProperties;
+import com.ctc.wstx.sr.BasicStreamReader;
+import com.ctc.wstx.util.NameVocabulary;
+
+/**
+ * Unit tests for verifying that element names are resolved to ids
+ * of the name vocabulary configured with
+ * {@link WstxInputProperties#P_NAME_VOCABULARY}, and that vocabularies
+ * can be constructed from schemas.
+ */
+public class TestNameVocabulary
+    extends BaseValidationTest
+{
+    final static String DOC = "<ns:root xmlns:ns='urn:x'><item><name>x</name><other/></item><item /></ns:root>";
+
+    public void testExplicitNames() throws Exception
+    {
+        NameVocabulary v = NameVocabulary.construct(Arrays.asList("root", "item", "name", "item"));
+        assertEquals(3, v.size());
+        assertEquals(0, v.findId("root"));
+        assertEquals(1, v.findId("item"));
+        // non-canonical instance must work as well
+        assertEquals(2, v.findId(new String("name")));
+        assertEquals("name", v.getName(2));
+        assertEquals(NameVocabulary.NO_ID, v.findId("other"));
+
+        XMLInputFactory f = getNewInputFactory();
+        f.setProperty(WstxInputProperties.P_NAME_VOCABULARY, v);
+        assertSame(v, f.getProperty(WstxInputProperties.P_NAME_VOCABULARY));
+        BasicStreamReader sr = (BasicStreamReader) f.createXMLStreamReader(new StringReader(DOC));
+
+        int[] exp = { 0, 1, 2, 2, -1, -1, 1, 1, 1, 0 };
+        int i = 0;
+        while (sr.hasNext()) {
+            int type = sr.next();
+            if (type == START_ELEMENT || type == END_ELEMENT) {
+                assertEquals("Element #"+i+" ("+sr.getLocalName()+")", exp[i], sr.getLocalNameId());
+                ++i;
+            } else {
+                try {
+                    sr.getLocalNameId();
+                    fail("Expected an exception for event "+tokenTypeDesc(type));
+                } catch (IllegalStateException e) {
+                    ; // good
+                }
+            }
+        }
+        assertEquals(exp.length, i);
+        sr.close();
+    }
+
+    public void testNoVocabulary() throws Exception
+    {
+        XMLInputFactory f = getNewInputFactory();
+        assertNull(f.getProperty(WstxInputProperties.P_NAME_VOCABULARY));
+        BasicStreamReader sr = (BasicStreamReader) f.createXMLStreamReader(new StringReader(DOC));
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals(-1, sr.getLocalNameId());
+        sr.close();
+    }
+
+    public void testFromDTD() throws Exception
+    {
+        XMLValidationSchema schema = parseDTDSchema
+            ("<!ELEMENT root (item*)>\n<!ELEMENT item (name?)>\n<!ELEMENT name (#PCDATA)>\n");
+        NameVocabulary v = NameVocabulary.construct(schema);
+        assertNames(v, new String[] { "item", "name", "root" });
+    }
+
+    public void testFromW3CSchema() throws Exception
+    {
+        XMLValidationSchema schema = parseW3CSchema
+            ("<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"
+             +"<xs:element name='root'><xs:complexType><xs:sequence>"
+             +"<xs:element ref='item' maxOccurs='unbounded'/>"
+             +"</xs:sequence></xs:complexType></xs:element>"
+             +"<xs:element name='item' type='itemType'/>"
+             +"<xs:complexType name='itemType'><xs:sequence>"
+             +"<xs:element name='name' type='xs:string'/>"
+             +"<xs:element ref='item' minOccurs='0'/>"
+             +"</xs:sequence></xs:complexType>"
+             +"</xs:schema>");
+        NameVocabulary v = NameVocabulary.construct(schema);
+        assertNames(v, new String[] { "item", "name", "root" });
+    }
+
+    public void testFromRelaxNG() throws Exception
+    {
+        XMLValidationSchema schema = parseRngSchema
+            ("<element name='root' xmlns='http://relaxng.org/ns/structure/1.0'>"
+             +"<zeroOrMore><element name='item'><choice>"
+             +"<element name='name'><text/></element>"
+             +"<element><anyName /><empty /></element>"
+             +"</choice></element></zeroOrMore>"
+             +"</element>");
+        NameVocabulary v = NameVocabulary.construct(schema);
+        assertNames(v, new String[] { "item", "name", "root" });
+    }
+
+    public void testNamespaces() throws Exception
+    {
+        // same local name in different namespaces must get different ids
+        XMLValidationSchema schema = parseRngSchema
+            ("<element name='root' xmlns='http://relaxng.org/ns/structure/1.0'>"
+             +"<element name='item' ns='urn:b'><empty /></element>"
+             +"<element name='item' ns='urn:a'><empty /></element>"
+             +"</element>");
+        NameVocabulary v = NameVocabulary.construct(schema);
+        assertEquals(3, v.size());
+        // ordered by names in Clark notation: "{urn:a}item", "{urn:b}item", "{}root"
+        assertEquals("urn:a", v.getNamespaceURI(0));
+        assertEquals("urn:b", v.getNamespaceURI(1));
+        assertEquals("item", v.getName(1));
+        assertEquals("", v.getNamespaceURI(2));
+        assertEquals("root", v.getName(2));
+        assertEquals(0, v.findId("urn:a", "item"));
+        assertEquals(1, v.findId("urn:b", "item"));
+        assertEquals(NameVocabulary.NO_ID, v.findId("item"));
+        assertEquals(NameVocabulary.NO_ID, v.findId("urn:a", "root"));
+
+        final String XML = "<root xmlns:a='urn:a' xmlns:b='urn:b'><b:item/><a:item/><item/></root>";
+        verifyIds(v, XML, new int[] { 2, 1, 1, 0, 0, -1, -1, 2 });
+
+        // explicit names: qualified ones have precedence over plain ones
+        v = NameVocabulary.construct(Arrays.asList("item", "{urn:a}item", "{}root"));
+        assertNull(v.getNamespaceURI(0));
+        assertEquals("urn:a", v.getNamespaceURI(1));
+        assertEquals("", v.getNamespaceURI(2));
+        verifyIds(v, XML, new int[] { 2, 0, 0, 1, 1, 0, 0, 2 });
+        try {
+            NameVocabulary.construct(Arrays.asList("{urn:a"));
+            fail("Expected an exception for invalid qualified name");
+        } catch (IllegalArgumentException e) {
+            ; // good
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Helper methods
+    ///////////////////////////////////////////////////////////
+     */
+
+    private void verifyIds(NameVocabulary v, String xml, int[] exp)
+        throws XMLStreamException
+    {
+        XMLInputFactory f = getNewInputFactory();
+        f.setProperty(WstxInputProperties.P_NAME_VOCABULARY, v);
+        BasicStreamReader sr = (BasicStreamReader) f.createXMLStreamReader(new StringReader(xml));
+        int i = 0;
+        while (sr.hasNext()) {
+            int type = sr.next();
+            if (type == START_ELEMENT || type == END_ELEMENT) {
+                assertEquals("Element #"+i+" ("+sr.getName()+")", exp[i], sr.getLocalNameId());
+                ++i;
+            }
+        }
+        assertEquals(exp.length, i);
+        sr.close();
+    }
+
+    private void assertNames(NameVocabulary v, String[] exp)
+    {
+        assertEquals(exp.length, v.size());
+        for (int i = 0; i < exp.length; ++i) {
+            assertEquals(exp[i], v.getName(i));
+            assertEquals(i, v.findId(exp[i]));
+        }
+    }
+}
@@ -6,6 +6,8 @@ import javax.xml.stream.*;
 
 import org.codehaus.stax2.*;
 
+import com.ctc.wstx.api.WstxOutputProperties;
+
 /**
  * This unit test suite verifies that output-side content validation
  * works as expected, when enabled.
@@ -34,4 +36,52 @@ public class TestAttrValidation
         }
         sw.writeEndDocument();
     }
+
+    /**
+     * Test for verifying that duplicate attributes are detected, when
+     * attribute validation is enabled, for all kinds of writers;
+     * and that checks are properly scoped to single elements.
+     */
+    public void testDuplicateAttrs()
+        throws Exception
+    {
+        for (int mode = 0; mode < 3; ++mode) {
+            XMLOutputFactory2 f = getOutputFactory();
+            f.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, Boolean.valueOf(mode == 2));
+            f.setProperty(XMLStreamProperties.XSP_NAMESPACE_AWARE, Boolean.valueOf(mode != 0));
+            f.setProperty(WstxOutputProperties.P_OUTPUT_VALIDATE_ATTR, Boolean.TRUE);
+            StringWriter w = new StringWriter();
+            XMLStreamWriter sw = f.createXMLStreamWriter(w);
+
+            sw.writeStartDocument();
+            sw.writeStartElement("root");
+            for (int i = 0; i < 10; ++i) {
+                // same names for all elements are fine
+                sw.writeStartElement("leaf");
+                // enough attributes to force resizing of the name set
+                for (int j = 0; j < 40; ++j) {
+                    sw.writeAttribute("attr"+j, String.valueOf(i));
+                }
+                if (mode != 0) {
+                    // same local name, different namespace: fine too
+                    sw.writeNamespace("x", "urn:x");
+                    sw.writeAttribute("x", "urn:x", "attr0", "ns");
+                }
+                sw.writeEndElement();
+                sw.writeEmptyElement("empty");
+                sw.writeAttribute("attr0", "x");
+            }
+            sw.writeStartElement("leaf");
+            sw.writeAttribute("a", "1");
+            sw.writeAttribute("b", "2");
+            sw.writeAttribute("c", "3");
+            try {
+                // need to create a new String, to avoid identity matching
+                sw.writeAttribute(new String("b"), "4");
+                fail("Expected an exception when trying to write duplicate attribute (mode "+mode+")");
+            } catch (XMLStreamException sex) {
+                assertTrue(sex.getMessage(), sex.getMessage().indexOf("'b'") >= 0);
+            }
+        }
+    }
 }
@@ -0,0 +1,243 @@
+package wstxtest.wstream;
+
+import java.io.*;
+
+import javax.xml.stream.*;
+
+import org.codehaus.stax2.XMLStreamProperties;
+import org.codehaus.stax2.XMLStreamReader2;
+import org.codehaus.stax2.XMLStreamWriter2;
+
+import com.ctc.wstx.api.WstxOutputProperties;
+import com.ctc.wstx.stax.WstxOutputFactory;
+import com.ctc.wstx.sw.BaseStreamWriter;
+
+/**
+ * Unit tests for verifying that built-in indentation of stream writers
+ * works as expected, for all kinds of writers and output targets.
+ */
+public class TestIndentation
+    extends BaseWriterTest
+{
+    final static String[] ENCS = { "UTF-8", "ISO-8859-1", "US-ASCII", "UTF-16", "windows-1252" };
+
+    public void testSimple() throws Exception
+    {
+        final String EXP = "<?xml version='1.0' encoding='UTF-8'?>\n"
+            +"<root>\n"
+            +"  <branch attr=\"x\">\n"
+            +"    <leaf>text</leaf>\n"
+            +"    <empty/>\n"
+            +"    <open></open>\n"
+            +"  </branch>\n"
+            +"  <!--comment-->\n"
+            +"</root>";
+        // non-ns, ns, repairing
+        for (int mode = 0; mode < 3; ++mode) {
+            XMLOutputFactory f = getFactory(mode, "  ");
+            StringWriter w = new StringWriter();
+            XMLStreamWriter sw = f.createXMLStreamWriter(w);
+            writeSimpleDoc(sw, "UTF-8");
+            assertEquals(EXP, w.toString());
+
+            for (int i = 0; i < ENCS.length; ++i) {
+                String enc = ENCS[i];
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                sw = f.createXMLStreamWriter(bos, enc);
+                writeSimpleDoc(sw, enc);
+                assertEquals(EXP.replace("UTF-8", enc), bos.toString(enc));
+            }
+        }
+    }
+
+    public void testMixedContent() throws Exception
+    {
+        XMLOutputFactory f = getFactory(1, "\t");
+        StringWriter w = new StringWriter();
+        XMLStreamWriter sw = f.createXMLStreamWriter(w);
+        writeMixedDoc(sw);
+        assertEquals("<doc>\n\t<p>Some <b>bold</b> text<br/></p>\n</doc>", w.toString());
+
+        f.setProperty(WstxOutputProperties.P_OUTPUT_INDENT_MIXED_CONTENT, Boolean.TRUE);
+        f.setProperty(WstxOutputProperties.P_OUTPUT_LINE_SEPARATOR, "\r\n");
+        assertEquals("\r\n", f.getProperty(WstxOutputProperties.P_OUTPUT_LINE_SEPARATOR));
+        w = new StringWriter();
+        sw = f.createXMLStreamWriter(w);
+        writeMixedDoc(sw);
+        assertEquals("<doc>\r\n\t<p>Some \r\n\t\t<b>bold</b> text\r\n\t\t<br/>\r\n\t</p>\r\n</doc>", w.toString());
+    }
+
+    public void testPrologAndEpilog() throws Exception
+    {
+        XMLOutputFactory f = getFactory(1, " ");
+        StringWriter w = new StringWriter();
+        XMLStreamWriter sw = f.createXMLStreamWriter(w);
+        sw.writeStartDocument();
+        sw.writeDTD("<!DOCTYPE root>");
+        sw.writeProcessingInstruction("pi", "data");
+        sw.writeStartElement("root");
+        sw.writeEndElement();
+        sw.writeComment("end");
+        sw.writeEndDocument();
+        sw.close();
+        assertEquals("<?xml version='1.0' encoding='UTF-8'?>\n<!DOCTYPE root>\n<?pi data?>\n<root/>\n<!--end-->",
+                     w.toString());
+
+        // and without xml declaration, no leading line feed
+        w = new StringWriter();
+        sw = f.createXMLStreamWriter(w);
+        sw.writeStartElement("root");
+        sw.writeEmptyElement("leaf");
+        sw.writeEndDocument();
+        sw.close();
+        assertEquals("<root>\n <leaf/>\n</root>", w.toString());
+    }
+
+    public void testDeepNesting() throws Exception
+    {
+        final int DEPTH = 40;
+        StringBuilder exp = new StringBuilder();
+        for (int i = 0; i < DEPTH; ++i) {
+            if (i > 0) {
+                exp.append('\n');
+            }
+            appendIndent(exp, i);
+            exp.append("<e").append(i).append('>');
+        }
+        exp.append("x");
+        for (int i = DEPTH; --i >= 0; ) {
+            if (i < DEPTH-1) {
+                exp.append('\n');
+                appendIndent(exp, i);
+            }
+            exp.append("</e").append(i).append('>');
+        }
+        for (int i = 0; i < ENCS.length; ++i) {
+            String enc = ENCS[i];
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            XMLStreamWriter sw = getFactory(2, "   ").createXMLStreamWriter(bos, enc);
+            for (int j = 0; j < DEPTH; ++j) {
+                sw.writeStartElement("e"+j);
+            }
+            sw.writeCharacters("x");
+            sw.writeEndDocument();
+            sw.close();
+            assertEquals(exp.toString(), bos.toString(enc));
+        }
+    }
+
+    public void testCopyFromReader() throws Exception
+    {
+        final String XML = "<root><a><b>text</b><c/></a><!--x--></root>";
+        XMLStreamReader sr = getInputFactory().createXMLStreamReader(new StringReader(XML));
+        StringWriter w = new StringWriter();
+        XMLStreamWriter2 sw = (XMLStreamWriter2) getFactory(1, "  ").createXMLStreamWriter(w);
+        while (sr.hasNext()) {
+            sr.next();
+            sw.copyEventFromReader((org.codehaus.stax2.XMLStreamReader2) sr, false);
+        }
+        sw.close();
+        assertEquals("<root>\n  <a>\n    <b>text</b>\n    <c/>\n  </a>\n  <!--x-->\n</root>", w.toString());
+    }
+
+    public void testCopyElementFromReader() throws Exception
+    {
+        // whole-element copies must not bypass indentation either
+        final String XML = "<r><a><b>x</b><c/></a><d/></r>";
+        final String EXP = "<r>\n  <a>\n    <b>x</b>\n    <c/>\n  </a>\n  <d/>\n</r>";
+        for (int i = 0; i < ENCS.length; ++i) {
+            String enc = ENCS[i];
+            XMLStreamReader2 sr = (XMLStreamReader2) getInputFactory().createXMLStreamReader
+                (new ByteArrayInputStream(XML.getBytes(enc)), enc);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            BaseStreamWriter sw = (BaseStreamWriter) getFactory(1, "  ").createXMLStreamWriter(bos, enc);
+            assertTokenType(START_ELEMENT, sr.next());
+            sw.copyEventFromReader(sr, false);
+            while (sr.next() != END_ELEMENT || !"r".equals(sr.getLocalName())) {
+                if (sr.getEventType() == START_ELEMENT) {
+                    sw.copyElementFromReader(sr);
+                }
+            }
+            sw.copyEventFromReader(sr, false);
+            sw.close();
+            assertEquals(EXP, bos.toString(enc));
+        }
+    }
+
+    public void testInvalidSettings() throws Exception
+    {
+        XMLOutputFactory f = new WstxOutputFactory();
+        try {
+            f.setProperty(WstxOutputProperties.P_OUTPUT_INDENTATION, "--");
+            fail("Expected an exception for non-whitespace indentation");
+        } catch (IllegalArgumentException e) {
+            ; // good
+        }
+        try {
+            f.setProperty(WstxOutputProperties.P_OUTPUT_LINE_SEPARATOR, "\n\n");
+            fail("Expected an exception for invalid line separator");
+        } catch (IllegalArgumentException e) {
+            ; // good
+        }
+        assertNull(f.getProperty(WstxOutputProperties.P_OUTPUT_INDENTATION));
+        assertEquals("\n", f.getProperty(WstxOutputProperties.P_OUTPUT_LINE_SEPARATOR));
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Helper methods
+    ///////////////////////////////////////////////////////////
+     */
+
+    private XMLOutputFactory getFactory(int mode, String indent)
+    {
+        XMLOutputFactory f = new WstxOutputFactory();
+        f.setProperty(XMLStreamProperties.XSP_NAMESPACE_AWARE, Boolean.valueOf(mode > 0));
+        f.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, Boolean.valueOf(mode > 1));
+        f.setProperty(WstxOutputProperties.P_OUTPUT_INDENTATION, indent);
+        return f;
+    }
+
+    private void writeSimpleDoc(XMLStreamWriter sw, String enc)
+        throws XMLStreamException
+    {
+        sw.writeStartDocument(enc, "1.0");
+        sw.writeStartElement("root");
+        sw.writeStartElement("branch");
+        sw.writeAttribute("attr", "x");
+        sw.writeStartElement("leaf");
+        sw.writeCharacters("text");
+        sw.writeEndElement();
+        sw.writeEmptyElement("empty");
+        sw.writeStartElement("open");
+        ((XMLStreamWriter2) sw).writeFullEndElement();
+        sw.writeEndElement();
+        sw.writeComment("comment");
+        sw.writeEndElement();
+        sw.writeEndDocument();
+        sw.close();
+    }
+
+    private void writeMixedDoc(XMLStreamWriter sw)
+        throws XMLStreamException
+    {
+        sw.writeStartElement("doc");
+        sw.writeStartElement("p");
+        sw.writeCharacters("Some ");
+        sw.writeStartElement("b");
+        sw.writeCharacters("bold");
+        sw.writeEndElement();
+        sw.writeCharacters(" text");
+        sw.writeEmptyElement("br");
+        sw.writeEndElement();
+        sw.writeEndElement();
+        sw.close();
+    }
+
+    private static void appendIndent(StringBuilder sb, int level)
+    {
+        for (int i = 0; i < level; ++i) {
+            sb.append("   ");
+        }
+    }
+}
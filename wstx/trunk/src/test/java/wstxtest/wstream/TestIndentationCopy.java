@@ -0,0 +1,170 @@
+package wstxtest.wstream;
+
+import java.io.*;
+
+import javax.xml.stream.*;
+
+import org.codehaus.stax2.XMLOutputFactory2;
+import org.codehaus.stax2.XMLStreamReader2;
+import org.codehaus.stax2.XMLStreamWriter2;
+import org.codehaus.stax2.io.EscapingWriterFactory;
+
+import com.ctc.wstx.sr.StreamReaderImpl;
+import com.ctc.wstx.stax.WstxOutputFactory;
+
+/**
+ * Unit tests for verifying that indentation white space is recognized
+ * by stream readers, and output as is by stream writers, both when
+ * copying events and when written by the application.
+ */
+public class TestIndentationCopy
+    extends BaseWriterTest
+{
+    final static String[] ENCS = { "UTF-8", "ISO-8859-1", "US-ASCII", "UTF-16", "windows-1252" };
+
+    final static String DOC = "<root>\n"
+        +"  <a>text &amp; more</a>\n"
+        +"  <b>\n"
+        +"\t\t<c attr=\"x\"/>\n"
+        +"\t\t\t\t\t\t\t\t\t\t<d/>\n" // too many tabs to be recognized
+        +"  \t<e/>\n" // mixed, ditto
+        +"                                        <f/>\n" // too many spaces
+        +"  </b>\n"
+        +"  <?pi data?>\n"
+        +"  <!--comment-->\n"
+        +"\n"
+        +"</root>";
+
+    public void testReaderIndentation() throws XMLStreamException
+    {
+        // linefeeds are normalized first, so \r\n must work as well
+        for (int crlf = 0; crlf < 2; ++crlf) {
+            String input = (crlf == 0) ? DOC : DOC.replace("\n", "\r\n");
+            XMLStreamReader2 sr = constructNsStreamReader(input, false);
+            StringBuilder sb = new StringBuilder();
+            while (sr.hasNext()) {
+                if (sr.next() == CHARACTERS) {
+                    char c = ((StreamReaderImpl) sr).getIndentationChar();
+                    if (c != 0) {
+                        String text = sr.getText();
+                        assertEquals('\n', text.charAt(0));
+                        for (int i = 1; i < text.length(); ++i) {
+                            assertEquals(c, text.charAt(i));
+                        }
+                        sb.append(c == '\t' ? 't' : 's').append(text.length()-1).append(',');
+                    }
+                } else {
+                    assertEquals(0, ((StreamReaderImpl) sr).getIndentationChar());
+                }
+            }
+            /* Reader stops checking for indentation if it does not seem to
+             * be used, so only the beginning is certain to be recognized
+             */
+            assertTrue(sb.toString(), sb.toString().startsWith("s2,s2,t2,"));
+            sr.close();
+        }
+    }
+
+    public void testCopyIndented() throws XMLStreamException, IOException
+    {
+        for (int coal = 0; coal < 2; ++coal) {
+            StringWriter w = new StringWriter();
+            XMLStreamWriter2 sw = (XMLStreamWriter2) new WstxOutputFactory().createXMLStreamWriter(w);
+            copyAll(constructNsStreamReader(DOC, coal == 1), sw);
+            assertEquals(DOC, w.toString());
+
+            for (int i = 0; i < ENCS.length; ++i) {
+                String enc = ENCS[i];
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                sw = (XMLStreamWriter2) new WstxOutputFactory().createXMLStreamWriter(bos, enc);
+                copyAll(constructNsStreamReader(DOC, coal == 1), sw);
+                assertEquals(DOC, bos.toString(enc));
+            }
+        }
+    }
+
+    public void testWriteIndentation() throws XMLStreamException, IOException
+    {
+        String[] TEXTS = { "\n", "\n    ", "\n\t\t", "\n \t", "\n  x", "\n\t\t\t\t\t\t\t\t\t",
+                           "\n                                  ", " \n" };
+        StringBuilder exp = new StringBuilder("<root>");
+        for (int i = 0; i < TEXTS.length; ++i) {
+            exp.append(TEXTS[i]).append(TEXTS[i]);
+        }
+        exp.append("</root>");
+
+        StringWriter w = new StringWriter();
+        writeTexts(new WstxOutputFactory().createXMLStreamWriter(w), TEXTS);
+        assertEquals(exp.toString(), w.toString());
+        for (int i = 0; i < ENCS.length; ++i) {
+            String enc = ENCS[i];
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            writeTexts(new WstxOutputFactory().createXMLStreamWriter(bos, enc), TEXTS);
+            assertEquals(exp.toString(), bos.toString(enc));
+        }
+    }
+
+    public void testIndentationWithEscaper() throws XMLStreamException, IOException
+    {
+        // escaping writer that (legally) overwrites buffers passed to it
+        EscapingWriterFactory scribbler = new EscapingWriterFactory() {
+            public Writer createEscapingWriterFor(final Writer w, String enc) {
+                return new FilterWriter(w) {
+                    public void write(char[] cbuf, int off, int len) throws IOException {
+                        w.write(cbuf, off, len);
+                        java.util.Arrays.fill(cbuf, off, off+len, 'x');
+                    }
+                };
+            }
+            public Writer createEscapingWriterFor(OutputStream out, String enc) {
+                throw new IllegalStateException();
+            }
+        };
+        String[] TEXTS = { "\n    ", "\n\t\t" };
+        StringBuilder exp = new StringBuilder("<root>");
+        for (int i = 0; i < TEXTS.length; ++i) {
+            exp.append(TEXTS[i]).append(TEXTS[i]);
+        }
+        exp.append("</root>");
+
+        XMLOutputFactory f = new WstxOutputFactory();
+        f.setProperty(XMLOutputFactory2.P_TEXT_ESCAPER, scribbler);
+        StringWriter w = new StringWriter();
+        writeTexts(f.createXMLStreamWriter(w), TEXTS);
+        assertEquals(exp.toString(), w.toString());
+        // and must not affect other writers either
+        w = new StringWriter();
+        writeTexts(new WstxOutputFactory().createXMLStreamWriter(w), TEXTS);
+        assertEquals(exp.toString(), w.toString());
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Helper methods
+    ///////////////////////////////////////////////////////////
+     */
+
+    private void copyAll(XMLStreamReader2 sr, XMLStreamWriter2 sw)
+        throws XMLStreamException
+    {
+        while (sr.hasNext()) {
+            sr.next();
+            sw.copyEventFromReader(sr, false);
+        }
+        sr.close();
+        sw.close();
+    }
+
+    private void writeTexts(XMLStreamWriter sw, String[] texts)
+        throws XMLStreamException
+    {
+        sw.writeStartElement("root");
+        for (int i = 0; i < texts.length; ++i) {
+            sw.writeCharacters(texts[i]);
+            char[] buf = ("xx"+texts[i]+"yy").toCharArray();
+            sw.writeCharacters(buf, 2, texts[i].length());
+        }
+        sw.writeEndElement();
+        sw.close();
+    }
+}
@@ -0,0 +1,220 @@
+package wstxtest.wstream;
+
+import java.io.*;
+
+import javax.xml.stream.*;
+
+import org.codehaus.stax2.*;
+import org.codehaus.stax2.io.EscapingWriterFactory;
+
+import com.ctc.wstx.api.WstxInputProperties;
+import com.ctc.wstx.sr.BasicStreamReader;
+import com.ctc.wstx.sw.BaseStreamWriter;
+
+/**
+ * Unit tests for verifying that whole elements can be copied from
+ * a Woodstox stream reader to a Woodstox stream writer by passing
+ * content through as is.
+ */
+public class TestRawCopy
+    extends BaseWriterTest
+{
+    final static String CONTENT =
+        "text &amp; &#x20AC;\r\n<a attr='>/' b=\"'\"><b/><!-- <c> - > --></a>"
+        +"<![CDATA[ </x> ]] > ]]><?pi <y> ?><c><c>x</c></c>\n";
+
+    public void testRawCopyWithWriter()
+        throws Exception
+    {
+        // Small buffers, to verify handling of buffer boundaries
+        for (int bufLen = 20; bufLen <= 4000; bufLen *= 10) {
+            XMLInputFactory2 f = getNewInputFactory();
+            f.setProperty(WstxInputProperties.P_INPUT_BUFFER_LENGTH, Integer.valueOf(bufLen));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 20; ++i) {
+                sb.append(CONTENT);
+            }
+            String content = sb.toString();
+            String doc = "<root><item id='1'>"+content+"</item><item/><end /></root>";
+
+            XMLStreamReader2 sr = constructStreamReader(f, doc);
+            StringWriter w = new StringWriter();
+            BaseStreamWriter sw = (BaseStreamWriter) getOutputFactory().createXMLStreamWriter(w);
+
+            assertTokenType(START_ELEMENT, sr.next());
+            sw.copyEventFromReader(sr, false);
+            assertTokenType(START_ELEMENT, sr.next());
+            sw.copyElementFromReader(sr);
+            assertTokenType(END_ELEMENT, sr.getEventType());
+            assertEquals("item", sr.getLocalName());
+            // line numbers must still be accurate
+            assertEquals(41, sr.getLocation().getLineNumber());
+
+            // empty element is fine too
+            assertTokenType(START_ELEMENT, sr.next());
+            sw.copyElementFromReader(sr);
+            assertTokenType(END_ELEMENT, sr.getEventType());
+            assertTokenType(START_ELEMENT, sr.next());
+            assertEquals("end", sr.getLocalName());
+            sw.copyEventFromReader(sr, false);
+            assertTokenType(END_ELEMENT, sr.next());
+            sw.copyEventFromReader(sr, false);
+            assertTokenType(END_ELEMENT, sr.next());
+            sw.copyEventFromReader(sr, false);
+            sw.close();
+            sr.close();
+
+            assertEquals("<root><item id=\"1\">"+content+"</item><item/><end/></root>",
+                         w.toString());
+        }
+    }
+
+    public void testRawCopyWithStream()
+        throws Exception
+    {
+        final String[] ENCS = { "UTF-8", "ISO-8859-1", "US-ASCII" };
+        for (int i = 0; i < ENCS.length; ++i) {
+            String enc = ENCS[i];
+            // Writer uses Latin-1: can only pass through Latin-1 and ASCII
+            String text;
+            if (enc.equals("UTF-8")) {
+                text = "\u00E9\u20AC";
+            } else if (enc.equals("US-ASCII")) {
+                text = "&#xE9;";
+            } else {
+                text = "\u00E9";
+            }
+            String doc = "<?xml version='1.0' encoding='"+enc+"'?><root>x&#xE9;y<a>"+text+"</a></root>";
+            XMLStreamReader2 sr = (XMLStreamReader2) getNewInputFactory().createXMLStreamReader(new ByteArrayInputStream(doc.getBytes(enc)));
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            BaseStreamWriter sw = (BaseStreamWriter) getOutputFactory().createXMLStreamWriter(bos, "ISO-8859-1");
+            assertTokenType(START_ELEMENT, sr.next());
+            sw.copyElementFromReader(sr);
+            assertTokenType(END_ELEMENT, sr.getEventType());
+            sw.close();
+
+            // Must get the same logical content, either way
+            XMLStreamReader2 sr2 = constructStreamReader(getNewInputFactory(), bos.toString("ISO-8859-1"));
+            assertTokenType(START_ELEMENT, sr2.next());
+            assertTokenType(CHARACTERS, sr2.next());
+            assertEquals("x\u00E9y", getAndVerifyText(sr2));
+            assertTokenType(START_ELEMENT, sr2.next());
+            assertTokenType(CHARACTERS, sr2.next());
+            assertEquals(enc.equals("UTF-8") ? "\u00E9\u20AC" : "\u00E9", getAndVerifyText(sr2));
+            sr2.close();
+        }
+    }
+
+    public void testNonUnicodeOutput()
+        throws Exception
+    {
+        final String TEXT = "\u4E2D\u00E9 & <";
+        final String DOC = "<root><a attr='\u4E2D\u00E9'>"+TEXT.replace("&", "&amp;").replace("<", "&lt;")+"</a></root>";
+        final String[] ENCS = { "US-ASCII", "ISO-8859-1", "windows-1252", "UTF-8", "UTF-16" };
+        byte[] input = DOC.getBytes("UTF-8");
+
+        for (int i = 0; i < ENCS.length; ++i) {
+            String enc = ENCS[i];
+            // both to streams, and to Writers that encode
+            for (int target = 0; target < 2; ++target) {
+                XMLStreamReader2 sr = (XMLStreamReader2) getNewInputFactory().createXMLStreamReader(new ByteArrayInputStream(input));
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                BaseStreamWriter sw;
+                if (target == 0) {
+                    sw = (BaseStreamWriter) getOutputFactory().createXMLStreamWriter(bos, enc);
+                } else {
+                    sw = (BaseStreamWriter) getOutputFactory().createXMLStreamWriter(new OutputStreamWriter(bos, enc), enc);
+                }
+                assertTokenType(START_ELEMENT, sr.next());
+                assertTokenType(START_ELEMENT, sr.next());
+                sw.copyElementFromReader(sr);
+                sw.close();
+                sr.close();
+
+                // Unrepresentable characters must have been escaped
+                String result = bos.toString(enc);
+                XMLStreamReader2 sr2 = constructStreamReader(getNewInputFactory(), result);
+                assertTokenType(START_ELEMENT, sr2.next());
+                assertEquals("Encoding "+enc+": "+result, "\u4E2D\u00E9", sr2.getAttributeValue(0));
+                assertTokenType(CHARACTERS, sr2.next());
+                assertEquals("Encoding "+enc+": "+result, TEXT, getAndVerifyText(sr2));
+                sr2.close();
+            }
+        }
+    }
+
+    public void testNoRawCopyWithEscapers()
+        throws Exception
+    {
+        final String DOC = "<root><a attr='x'>text</a></root>";
+        // escaper that upper-cases everything, to see that it was used
+        EscapingWriterFactory upper = new EscapingWriterFactory() {
+            public Writer createEscapingWriterFor(final Writer w, String enc) {
+                return new FilterWriter(w) {
+                    public void write(int c) throws IOException { w.write(Character.toUpperCase((char) c)); }
+                    public void write(char[] cbuf, int off, int len) throws IOException {
+                        w.write(new String(cbuf, off, len).toUpperCase());
+                    }
+                    public void write(String str, int off, int len) throws IOException {
+                        w.write(str.substring(off, off+len).toUpperCase());
+                    }
+                };
+            }
+            public Writer createEscapingWriterFor(OutputStream out, String enc) {
+                throw new IllegalStateException();
+            }
+        };
+        String[] PROPS = { XMLOutputFactory2.P_TEXT_ESCAPER, XMLOutputFactory2.P_ATTR_VALUE_ESCAPER };
+        String[] EXP = { "<a attr=\"x\">TEXT</a>", "<a attr=\"X\">text</a>" };
+        for (int i = 0; i < PROPS.length; ++i) {
+            XMLOutputFactory2 f = getNewOutputFactory();
+            f.setProperty(PROPS[i], upper);
+            XMLStreamReader2 sr = constructStreamReader(getNewInputFactory(), DOC);
+            StringWriter w = new StringWriter();
+            BaseStreamWriter sw = (BaseStreamWriter) f.createXMLStreamWriter(w);
+            assertTokenType(START_ELEMENT, sr.next());
+            assertTokenType(START_ELEMENT, sr.next());
+            sw.copyElementFromReader(sr);
+            sw.close();
+            sr.close();
+            assertEquals(EXP[i], w.toString());
+        }
+    }
+
+    public void testFallbackWithEntities()
+        throws Exception
+    {
+        String doc = "<!DOCTYPE root [<!ENTITY ent 'value'>]><root><a>&ent;<b/></a></root>";
+        XMLInputFactory2 f = getNewInputFactory();
+        setCoalescing(f, true);
+        XMLStreamReader2 sr = constructStreamReader(f, doc);
+        StringWriter w = new StringWriter();
+        BaseStreamWriter sw = (BaseStreamWriter) getOutputFactory().createXMLStreamWriter(w);
+        assertTokenType(DTD, sr.next());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertTokenType(START_ELEMENT, sr.next());
+        // Can not copy raw, since the entity would not be defined
+        assertFalse(((BasicStreamReader) sr).copyRawContent(new StringWriter()));
+        assertTokenType(START_ELEMENT, sr.getEventType());
+        sw.copyElementFromReader(sr);
+        assertTokenType(END_ELEMENT, sr.getEventType());
+        assertEquals("a", sr.getLocalName());
+        sw.close();
+        assertEquals("<a>value<b/></a>", w.toString());
+    }
+
+    public void testNotAtStartElement()
+        throws Exception
+    {
+        XMLStreamReader2 sr = constructStreamReader(getNewInputFactory(), "<root>x</root>");
+        BaseStreamWriter sw = (BaseStreamWriter) getOutputFactory().createXMLStreamWriter(new StringWriter());
+        assertTokenType(START_ELEMENT, sr.next());
+        assertTokenType(CHARACTERS, sr.next());
+        try {
+            sw.copyElementFromReader(sr);
+            fail("Expected an exception when not positioned at START_ELEMENT");
+        } catch (IllegalStateException e) {
+            ; // good
+        }
+    }
+}
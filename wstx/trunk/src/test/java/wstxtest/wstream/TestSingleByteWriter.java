@@ -0,0 +1,72 @@
+package wstxtest.wstream;
+
+import java.io.*;
+
+import javax.xml.stream.*;
+
+import com.ctc.wstx.sw.BaseStreamWriter;
+
+/**
+ * Unit tests for verifying that output in single-byte encodings
+ * (other than ISO-8859-1 and US-ASCII) is properly encoded, and that
+ * characters that can not be encoded are output as character entities.
+ */
+public class TestSingleByteWriter
+    extends BaseWriterTest
+{
+    public void testWindows1252() throws Exception
+    {
+        final String ENC = "windows-1252";
+        // Euro and quotes map to windows-1252 chars; Greek and emoji need escaping
+        final String TEXT = "\u20AC \u201Cx\u201D \u00E9 \u03B1\u03B2 \uD83D\uDE00 <&>";
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XMLStreamWriter sw = getOutputFactory().createXMLStreamWriter(bos, ENC);
+        sw.writeStartDocument(ENC, "1.0");
+        sw.writeStartElement("root");
+        sw.writeAttribute("attr", TEXT);
+        sw.writeCharacters(TEXT);
+        sw.writeComment(" \u20AC \u00E9 ");
+        sw.writeCData("\u20AC");
+        sw.writeEndElement();
+        sw.writeEndDocument();
+        sw.close();
+
+        String doc = bos.toString(ENC);
+        assertTrue(doc.indexOf("\u20AC \u201Cx\u201D \u00E9 &#x3b1;&#x3b2; &#x1f600; &lt;&amp;") > 0);
+        assertTrue(doc.indexOf("<!-- \u20AC \u00E9 -->") > 0);
+
+        // And must read back as the same
+        XMLStreamReader sr = constructNsStreamReader(doc, true);
+        assertTokenType(START_ELEMENT, sr.next());
+        assertEquals(TEXT, sr.getAttributeValue(0));
+        assertTokenType(CHARACTERS, sr.next());
+        assertEquals(TEXT, getAndVerifyText(sr));
+    }
+
+    public void testUnmappableInComment() throws Exception
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XMLStreamWriter sw = getOutputFactory().createXMLStreamWriter(bos, "windows-1252");
+        sw.writeStartElement("root");
+        try {
+            // can not use entities in comments
+            sw.writeComment("\u03B1");
+            sw.flush();
+            fail("Expected an exception for unmappable char in a comment");
+        } catch (XMLStreamException e) {
+            verifyException(e, "windows-1252");
+        }
+    }
+
+    public void testRawCopy() throws Exception
+    {
+        String doc = "<?xml version='1.0' encoding='ISO-8859-2'?><root>\u0151<a>\u0171</a></root>";
+        XMLStreamReader sr = getInputFactory().createXMLStreamReader(new ByteArrayInputStream(doc.getBytes("ISO-8859-2")));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        BaseStreamWriter sw = (BaseStreamWriter) getOutputFactory().createXMLStreamWriter(bos, "ISO-8859-2");
+        assertTokenType(START_ELEMENT, sr.next());
+        sw.copyElementFromReader((org.codehaus.stax2.XMLStreamReader2) sr);
+        sw.close();
+        assertEquals("<root>\u0151<a>\u0171</a></root>", bos.toString("ISO-8859-2"));
+    }
+}
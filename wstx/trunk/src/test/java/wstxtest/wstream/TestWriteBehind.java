@@ -0,0 +1,204 @@
+package wstxtest.wstream;
+
+import java.io.*;
+
+import javax.xml.stream.*;
+
+import org.codehaus.stax2.XMLOutputFactory2;
+
+import com.ctc.wstx.api.WstxOutputProperties;
+import com.ctc.wstx.io.WriteBehindOutputStream;
+import com.ctc.wstx.stax.WstxOutputFactory;
+
+/**
+ * Unit tests for verifying that write-behind output produces same
+ * output as synchronous output, and that flushing, closing and
+ * failures are handled as expected.
+ */
+public class TestWriteBehind
+    extends BaseWriterTest
+{
+    public void testWriteBehindStream() throws IOException
+    {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) (i * 31 + (i >> 8));
+        }
+        // small buffers and slow target, to exercise back-pressure
+        SlowStream target = new SlowStream(-1);
+        OutputStream out = new WriteBehindOutputStream(target, 3, 1000);
+        int ptr = 0;
+        while (ptr < data.length) {
+            int count = Math.min(1234, data.length - ptr);
+            out.write(data, ptr, count);
+            ptr += count;
+            if (ptr < data.length) {
+                out.write(data[ptr++]);
+            }
+        }
+        out.flush();
+        // all content must be written by flush
+        assertTrue(java.util.Arrays.equals(data, target.toByteArray()));
+        assertFalse(target.closed);
+        out.close();
+        assertTrue(target.closed);
+    }
+
+    public void testSameOutput() throws Exception
+    {
+        final String[] ENCS = { "UTF-8", "ISO-8859-1", "US-ASCII", "UTF-16" };
+        for (int i = 0; i < ENCS.length; ++i) {
+            String enc = ENCS[i];
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            XMLStreamWriter sw = getOutputFactory(false).createXMLStreamWriter(bos, enc);
+            writeDoc(sw, enc, 3000);
+            sw.close();
+            byte[] expected = bos.toByteArray();
+
+            bos = new ByteArrayOutputStream();
+            sw = getOutputFactory(true).createXMLStreamWriter(bos, enc);
+            writeDoc(sw, enc, 3000);
+            sw.close();
+            assertTrue("Output differs for encoding "+enc, java.util.Arrays.equals(expected, bos.toByteArray()));
+        }
+    }
+
+    public void testFlushAndClose() throws Exception
+    {
+        XMLOutputFactory f = getOutputFactory(true);
+        assertEquals(Boolean.TRUE, f.getProperty(WstxOutputProperties.P_OUTPUT_WRITE_BEHIND));
+        SlowStream out = new SlowStream(-1);
+        XMLStreamWriter sw = f.createXMLStreamWriter(out, "UTF-8");
+        sw.writeStartDocument("UTF-8", "1.0");
+        sw.writeStartElement("root");
+        sw.writeCharacters("text");
+        sw.flush();
+        assertEquals("<?xml version='1.0' encoding='UTF-8'?><root>text", out.toString("UTF-8"));
+        sw.writeEndElement();
+        sw.writeEndDocument();
+        sw.close();
+        assertEquals("<?xml version='1.0' encoding='UTF-8'?><root>text</root>", out.toString("UTF-8"));
+        assertFalse(out.closed);
+
+        // but with auto-close, underlying stream is to be closed
+        f.setProperty(XMLOutputFactory2.P_AUTO_CLOSE_OUTPUT, Boolean.TRUE);
+        out = new SlowStream(-1);
+        sw = f.createXMLStreamWriter(out, "UTF-8");
+        sw.writeEmptyElement("root");
+        sw.close();
+        assertTrue(out.closed);
+        assertEquals("<root/>", out.toString("UTF-8"));
+    }
+
+    public void testFailure() throws Exception
+    {
+        XMLOutputFactory f = getOutputFactory(true);
+        XMLStreamWriter sw = f.createXMLStreamWriter(new SlowStream(50000), "UTF-8");
+        try {
+            writeDoc(sw, "UTF-8", 10000);
+            sw.flush();
+            fail("Expected an exception for failed output");
+        } catch (XMLStreamException e) {
+            assertTrue(e.getMessage().indexOf("Simulated failure") >= 0);
+        }
+    }
+
+    public void testErrorInFlusher() throws IOException
+    {
+        // Errors must not leave the writing thread waiting forever either
+        OutputStream target = new OutputStream() {
+            public void write(int b) { }
+
+            public void write(byte[] b, int off, int len) {
+                throw new SimulatedError();
+            }
+        };
+        OutputStream out = new WriteBehindOutputStream(target, 2, 100);
+        try {
+            for (int i = 0; i < 1000; ++i) {
+                out.write(new byte[50]);
+            }
+            out.flush();
+            fail("Expected an exception for failed output");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().indexOf("terminated unexpectedly") >= 0);
+        }
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Helper methods, classes
+    ///////////////////////////////////////////////////////////
+     */
+
+    private XMLOutputFactory getOutputFactory(boolean writeBehind)
+    {
+        XMLOutputFactory f = new WstxOutputFactory();
+        f.setProperty(WstxOutputProperties.P_OUTPUT_WRITE_BEHIND, Boolean.valueOf(writeBehind));
+        return f;
+    }
+
+    private void writeDoc(XMLStreamWriter sw, String enc, int count)
+        throws XMLStreamException
+    {
+        sw.writeStartDocument(enc, "1.0");
+        sw.writeStartElement("root");
+        for (int i = 0; i < count; ++i) {
+            sw.writeStartElement("item");
+            sw.writeAttribute("id", String.valueOf(i));
+            sw.writeCharacters("Some text & more text: "+i);
+            sw.writeEndElement();
+            sw.writeCharacters("\n");
+        }
+        sw.writeEndElement();
+        sw.writeEndDocument();
+    }
+
+    @SuppressWarnings("serial")
+    final static class SimulatedError extends Error
+    {
+        SimulatedError() { super("Simulated error"); }
+
+        // no need for a stack trace when thread dies
+        public void printStackTrace(PrintStream s) { s.println(getMessage()); }
+    }
+
+    /**
+     * Target stream that is slower to write to than the writer, and
+     * can be made to fail once given number of bytes has been written
+     */
+    final static class SlowStream extends OutputStream
+    {
+        final ByteArrayOutputStream mBytes = new ByteArrayOutputStream();
+
+        final int mFailAt;
+
+        boolean closed;
+
+        SlowStream(int failAt) {
+            mFailAt = failAt;
+        }
+
+        public void write(int b) throws IOException
+        {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            if (mFailAt >= 0 && mBytes.size() + len > mFailAt) {
+                throw new IOException("Simulated failure");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException ie) { }
+            mBytes.write(b, off, len);
+        }
+
+        public void close() { closed = true; }
+
+        byte[] toByteArray() { return mBytes.toByteArray(); }
+
+        String toString(String enc) throws IOException { return mBytes.toString(enc); }
+    }
+}
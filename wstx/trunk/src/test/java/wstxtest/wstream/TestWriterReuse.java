@@ -0,0 +1,160 @@
+package wstxtest.wstream;
+
+import java.io.*;
+
+import javax.xml.stream.*;
+
+import org.codehaus.stax2.*;
+
+import com.ctc.wstx.api.WstxOutputProperties;
+import com.ctc.wstx.sw.BaseStreamWriter;
+
+/**
+ * Unit tests for verifying that stream writers can be reset to output
+ * new documents, and that output factory can recycle closed writers
+ * when configured to do so.
+ */
+public class TestWriterReuse
+    extends BaseWriterTest
+{
+    public void testResetWithWriter()
+        throws Exception
+    {
+        // non-ns, ns, repairing
+        for (int mode = 0; mode < 3; ++mode) {
+            XMLOutputFactory2 f = getFactory(mode);
+            StringWriter w = new StringWriter();
+            BaseStreamWriter sw = (BaseStreamWriter) f.createXMLStreamWriter(w);
+            writeDoc(sw, mode, true);
+            sw.close();
+            String expected = w.toString();
+
+            // should produce identical output after reset
+            for (int i = 0; i < 3; ++i) {
+                w = new StringWriter();
+                sw.reset(w);
+                writeDoc(sw, mode, true);
+                sw.close();
+                assertEquals(expected, w.toString());
+            }
+
+            // also when previous document was left incomplete
+            sw.reset(new StringWriter());
+            writeDoc(sw, mode, false);
+            w = new StringWriter();
+            sw.reset(w);
+            writeDoc(sw, mode, true);
+            sw.close();
+            assertEquals(expected, w.toString());
+        }
+    }
+
+    public void testResetWithStream()
+        throws Exception
+    {
+        final String[] ENCS = { "UTF-8", "ISO-8859-1", "US-ASCII", "UTF-16" };
+        for (int mode = 0; mode < 3; ++mode) {
+            XMLOutputFactory2 f = getFactory(mode);
+            for (int i = 0; i < ENCS.length; ++i) {
+                String enc = ENCS[i];
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                BaseStreamWriter sw = (BaseStreamWriter) f.createXMLStreamWriter(bos, enc);
+                writeDoc(sw, mode, true);
+                sw.close();
+                String expected = bos.toString(enc);
+
+                bos = new ByteArrayOutputStream();
+                sw.reset(bos);
+                writeDoc(sw, mode, true);
+                sw.close();
+                assertEquals(expected, bos.toString(enc));
+            }
+        }
+    }
+
+    public void testRecycling()
+        throws Exception
+    {
+        XMLOutputFactory2 f = getFactory(1);
+        assertEquals(Boolean.FALSE, f.getProperty(WstxOutputProperties.P_OUTPUT_RECYCLE_WRITERS));
+        // not enabled by default
+        XMLStreamWriter sw1 = f.createXMLStreamWriter(new StringWriter());
+        writeDoc(sw1, 1, true);
+        sw1.close();
+        assertNotSame(sw1, f.createXMLStreamWriter(new StringWriter()));
+
+        f.setProperty(WstxOutputProperties.P_OUTPUT_RECYCLE_WRITERS, Boolean.TRUE);
+        StringWriter w = new StringWriter();
+        sw1 = f.createXMLStreamWriter(w);
+        writeDoc(sw1, 1, true);
+        sw1.close();
+        // closing more than once must be fine
+        sw1.close();
+        String expected = w.toString();
+
+        w = new StringWriter();
+        XMLStreamWriter sw2 = f.createXMLStreamWriter(w);
+        assertSame(sw1, sw2);
+        // but while in use, can not be handed out again
+        XMLStreamWriter sw3 = f.createXMLStreamWriter(new StringWriter());
+        assertNotSame(sw2, sw3);
+        writeDoc(sw2, 1, true);
+        sw2.close();
+        assertEquals(expected, w.toString());
+
+        // Different target type or encoding needs a different writer
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XMLStreamWriter sw4 = f.createXMLStreamWriter(bos, "UTF-8");
+        assertNotSame(sw2, sw4);
+        writeDoc(sw4, 1, true);
+        sw4.close();
+        assertSame(sw4, f.createXMLStreamWriter(new ByteArrayOutputStream(), "UTF-8"));
+        assertNotSame(sw4, f.createXMLStreamWriter(new ByteArrayOutputStream(), "ISO-8859-1"));
+
+        // and changes to configuration invalidate pooled writers
+        writeDoc(sw3, 1, true);
+        sw3.close();
+        f.setProperty(WstxOutputProperties.P_OUTPUT_VALIDATE_ATTR, Boolean.TRUE);
+        assertNotSame(sw3, f.createXMLStreamWriter(new StringWriter()));
+    }
+
+    /*
+    ///////////////////////////////////////////////////////////
+    // Helper methods
+    ///////////////////////////////////////////////////////////
+     */
+
+    private XMLOutputFactory2 getFactory(int mode)
+    {
+        XMLOutputFactory2 f = getOutputFactory();
+        f.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, Boolean.valueOf(mode == 2));
+        f.setProperty(XMLStreamProperties.XSP_NAMESPACE_AWARE, Boolean.valueOf(mode != 0));
+        return f;
+    }
+
+    private void writeDoc(XMLStreamWriter sw, int mode, boolean complete)
+        throws XMLStreamException
+    {
+        sw.writeStartDocument();
+        if (mode == 0) {
+            sw.writeStartElement("root");
+            sw.writeAttribute("attr", "value");
+            sw.writeStartElement("leaf");
+        } else {
+            sw.writeStartElement("ns", "root", "urn:ns");
+            sw.writeNamespace("ns", "urn:ns");
+            sw.writeAttribute("attr", "value");
+            sw.writeStartElement("urn:ns", "leaf");
+            if (mode == 2) {
+                // generated prefix, should be same for all documents
+                sw.writeAttribute("urn:other", "attr", "x");
+            }
+        }
+        sw.writeCharacters("text \u00E9\u20AC");
+        if (complete) {
+            sw.writeEndElement();
+            sw.writeEndElement();
+            sw.writeEndDocument();
+        }
+    }
+}